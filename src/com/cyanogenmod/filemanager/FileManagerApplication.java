@@ -37,6 +37,7 @@ import com.cyanogenmod.filemanager.preferences.FileManagerSettings;
 import com.cyanogenmod.filemanager.preferences.ObjectStringIdentifier;
 import com.cyanogenmod.filemanager.preferences.Preferences;
 import com.cyanogenmod.filemanager.providers.secure.SecureCacheCleanupService;
+import com.cyanogenmod.filemanager.service.FileNameIndexService;
 import com.cyanogenmod.filemanager.service.MimeTypeIndexService;
 import com.cyanogenmod.filemanager.ui.ThemeManager;
 import com.cyanogenmod.filemanager.ui.ThemeManager.Theme;
@@ -44,6 +45,7 @@ import com.cyanogenmod.filemanager.util.AIDHelper;
 import com.cyanogenmod.filemanager.util.AndroidHelper;
 import com.cyanogenmod.filemanager.util.MimeTypeHelper;
 import com.cyanogenmod.filemanager.util.StorageHelper;
+import com.cyanogenmod.filemanager.util.TrashStaging;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -190,6 +192,15 @@ public final class FileManagerApplication extends Application {
             MimeTypeIndexService.indexFileRoot(this, storageVolume.getPath());
         }
 
+        // Build (or revalidate) the filename index of the storage volumes, so searches
+        // don't need to walk the filesystem
+        for (StorageVolume storageVolume : storageVolumes) {
+            FileNameIndexService.indexFileRoot(this, storageVolume.getPath());
+        }
+
+        // Purge the deleted items that a previous process staged but didn't purge
+        TrashStaging.purgeStale(this);
+
 
         // Schedule in case not scheduled (i.e. never booted with this app on device
         SecureCacheCleanupService.scheduleCleanup(getApplicationContext());
@@ -0,0 +1,438 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.activities;
+
+import android.app.ActionBar;
+import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Bundle;
+import android.text.Html;
+import android.util.Log;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.AdapterView.OnItemClickListener;
+import android.widget.AdapterView.OnItemLongClickListener;
+import android.widget.ListView;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import com.cyanogenmod.filemanager.R;
+import com.cyanogenmod.filemanager.adapters.DuplicatesAdapter;
+import com.cyanogenmod.filemanager.commands.AsyncResultListener;
+import com.cyanogenmod.filemanager.commands.DuplicatesExecutable;
+import com.cyanogenmod.filemanager.listeners.OnRequestRefreshListener;
+import com.cyanogenmod.filemanager.model.DuplicateGroup;
+import com.cyanogenmod.filemanager.model.FileSystemObject;
+import com.cyanogenmod.filemanager.preferences.FileManagerSettings;
+import com.cyanogenmod.filemanager.preferences.Preferences;
+import com.cyanogenmod.filemanager.ui.IconHolder;
+import com.cyanogenmod.filemanager.ui.ThemeManager;
+import com.cyanogenmod.filemanager.ui.ThemeManager.Theme;
+import com.cyanogenmod.filemanager.ui.dialogs.ActionsDialog;
+import com.cyanogenmod.filemanager.ui.policy.IntentsActionPolicy;
+import com.cyanogenmod.filemanager.util.CommandHelper;
+import com.cyanogenmod.filemanager.util.ExceptionUtil;
+import com.cyanogenmod.filemanager.util.FileHelper;
+
+/**
+ * An activity for find the duplicated files of a directory tree. The groups of
+ * duplicates are displayed as soon as they are found.
+ */
+public class DuplicatesActivity extends Activity
+    implements OnItemClickListener, OnItemLongClickListener, OnRequestRefreshListener {
+
+    private static final String TAG = "DuplicatesActivity"; //$NON-NLS-1$
+
+    private static boolean DEBUG = false;
+
+    /**
+     * The directory where to find the duplicates.
+     */
+    public static final String EXTRA_DUPLICATES_DIRECTORY =
+            "extra_duplicates_directory";  //$NON-NLS-1$
+
+    private final BroadcastReceiver mNotificationReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (intent != null && intent.getAction().compareTo(
+                    FileManagerSettings.INTENT_THEME_CHANGED) == 0) {
+                applyTheme();
+            }
+        }
+    };
+
+    private final AsyncResultListener mAsyncListener = new AsyncResultListener() {
+        @Override
+        public void onAsyncStart() {
+            /**NON BLOCK**/
+        }
+
+        @Override
+        public void onAsyncEnd(boolean cancelled) {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    DuplicatesActivity.this.mInProgress = false;
+                    DuplicatesActivity.this.mProgress.setVisibility(View.INVISIBLE);
+                    updateStatus();
+                }
+            });
+        }
+
+        @Override
+        public void onAsyncExitCode(int exitCode) {
+            /**NON BLOCK**/
+        }
+
+        @Override
+        public void onPartialResult(final Object result) {
+            if (!(result instanceof DuplicateGroup)) {
+                return;
+            }
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    DuplicatesActivity.this.mAdapter.addGroup((DuplicateGroup)result);
+                    updateStatus();
+                }
+            });
+        }
+
+        @Override
+        public void onException(final Exception cause) {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    ExceptionUtil.translateException(DuplicatesActivity.this, cause);
+                }
+            });
+        }
+    };
+
+    /**
+     * @hide
+     */
+    ListView mListView;
+    /**
+     * @hide
+     */
+    DuplicatesAdapter mAdapter;
+    /**
+     * @hide
+     */
+    ProgressBar mProgress;
+    /**
+     * @hide
+     */
+    boolean mInProgress;
+    private View mEmptyListMsg;
+    private TextView mFoundGroups;
+    private TextView mWastedSize;
+    private DuplicatesExecutable mExecutable;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onCreate(Bundle state) {
+        if (DEBUG) {
+            Log.d(TAG, "DuplicatesActivity.onCreate"); //$NON-NLS-1$
+        }
+
+        // Register the broadcast receiver
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(FileManagerSettings.INTENT_THEME_CHANGED);
+        registerReceiver(this.mNotificationReceiver, filter);
+
+        // Set the theme before setContentView
+        Theme theme = ThemeManager.getCurrentTheme(this);
+        theme.setBaseTheme(this, false);
+
+        //Set in transition
+        overridePendingTransition(R.anim.translate_to_right_in, R.anim.hold_out);
+
+        //Set the main layout of the activity
+        setContentView(R.layout.duplicates);
+
+        //Initialize action bars and components
+        initTitleActionBar();
+        initComponents();
+
+        // Apply current theme
+        applyTheme();
+
+        // Find the duplicates
+        String directory = getIntent().getStringExtra(EXTRA_DUPLICATES_DIRECTORY);
+        if (directory != null) {
+            findDuplicates(directory);
+        }
+
+        //Save state
+        super.onCreate(state);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onDestroy() {
+        if (DEBUG) {
+            Log.d(TAG, "DuplicatesActivity.onDestroy"); //$NON-NLS-1$
+        }
+
+        // Unregister the receiver
+        try {
+            unregisterReceiver(this.mNotificationReceiver);
+        } catch (Throwable ex) {
+            /**NON BLOCK**/
+        }
+
+        // Stop the command and release the adapter
+        cancel();
+        this.mAdapter.dispose();
+
+        //All destroy. Continue
+        super.onDestroy();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onPause() {
+        //Set out transition
+        overridePendingTransition(R.anim.hold_in, R.anim.translate_to_left_out);
+        super.onPause();
+    }
+
+    /**
+     * Method that initializes the titlebar of the activity.
+     */
+    private void initTitleActionBar() {
+        //Configure the action bar options
+        final ActionBar actionBar = getActionBar();
+        actionBar.setDisplayShowTitleEnabled(false);
+        actionBar.setBackgroundDrawable(
+                getResources().getDrawable(R.drawable.bg_material_titlebar));
+        actionBar.setDisplayOptions(ActionBar.DISPLAY_SHOW_CUSTOM);
+        actionBar.setDisplayHomeAsUpEnabled(true);
+
+        View customTitle = getLayoutInflater().inflate(R.layout.simple_customtitle, null, false);
+        TextView title = (TextView)customTitle.findViewById(R.id.customtitle_title);
+        title.setText(R.string.duplicates_title);
+        title.setContentDescription(getString(R.string.duplicates_title));
+        actionBar.setCustomView(customTitle);
+    }
+
+    /**
+     * Method that initializes the component of the activity.
+     */
+    private void initComponents() {
+        final boolean displayThumbs = Preferences.getSharedPreferences().getBoolean(
+                FileManagerSettings.SETTINGS_DISPLAY_THUMBS.getId(),
+                ((Boolean)FileManagerSettings.SETTINGS_DISPLAY_THUMBS.getDefaultValue())
+                        .booleanValue());
+        this.mAdapter = new DuplicatesAdapter(this, new IconHolder(this, displayThumbs));
+
+        this.mEmptyListMsg = findViewById(R.id.duplicates_empty_msg);
+        this.mListView = (ListView)findViewById(R.id.duplicates_listview);
+        this.mListView.setAdapter(this.mAdapter);
+        this.mListView.setOnItemClickListener(this);
+        this.mListView.setOnItemLongClickListener(this);
+        this.mProgress = (ProgressBar)findViewById(R.id.duplicates_progress_bar);
+        this.mFoundGroups = (TextView)findViewById(R.id.duplicates_status_found_groups);
+        this.mWastedSize = (TextView)findViewById(R.id.duplicates_status_wasted_size);
+        updateStatus();
+    }
+
+    /**
+     * Method that starts the search of the duplicates.
+     *
+     * @param directory The directory where to search
+     */
+    private void findDuplicates(String directory) {
+        try {
+            this.mInProgress = true;
+            this.mProgress.setVisibility(View.VISIBLE);
+            this.mExecutable =
+                    CommandHelper.findDuplicates(this, directory, this.mAsyncListener, null);
+        } catch (Exception e) {
+            this.mInProgress = false;
+            this.mProgress.setVisibility(View.INVISIBLE);
+            updateStatus();
+            ExceptionUtil.translateException(this, e);
+        }
+    }
+
+    /**
+     * Method that cancels the search of the duplicates, if it's running.
+     */
+    private void cancel() {
+        try {
+            if (this.mExecutable != null && this.mInProgress
+                    && this.mExecutable.isCancellable() && !this.mExecutable.isCancelled()) {
+                this.mExecutable.cancel();
+            }
+        } catch (Exception e) {/**NON BLOCK**/}
+    }
+
+    /**
+     * Method that updates the status bar and the empty message.
+     *
+     * @hide
+     */
+    void updateStatus() {
+        int groups = this.mAdapter.getGroupsCount();
+        this.mFoundGroups.setText(getResources().getQuantityString(
+                R.plurals.duplicates_found_groups, groups, Integer.valueOf(groups)));
+        this.mWastedSize.setText(Html.fromHtml(getString(R.string.duplicates_wasted_size,
+                FileHelper.getHumanReadableSize(this.mAdapter.getWastedSize()))));
+        this.mEmptyListMsg.setVisibility(
+                !this.mInProgress && groups == 0 ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                finish();
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+        FileSystemObject fso = this.mAdapter.getItem(position).getFso();
+        if (fso != null) {
+            IntentsActionPolicy.openFileSystemObject(this, fso, false, null);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onItemLongClick(AdapterView<?> parent, View view, int position, long id) {
+        FileSystemObject fso = this.mAdapter.getItem(position).getFso();
+        if (fso == null) {
+            return false;
+        }
+        ActionsDialog dialog = new ActionsDialog(this, null, fso, false, true);
+        dialog.setOnRequestRefreshListener(this);
+        dialog.show();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRequestRefresh(Object o, boolean clearSelection) {
+        // Ignore
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRequestBookmarksRefresh() {
+        // Ignore
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRequestRemove(Object o, boolean clearSelection) {
+        if (o instanceof FileSystemObject) {
+            this.mAdapter.removeFile((FileSystemObject)o);
+            updateStatus();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onNavigateTo(Object o) {
+        if (o instanceof FileSystemObject) {
+            Intent intent = new Intent(this, NavigationActivity.class);
+            intent.putExtra(NavigationActivity.EXTRA_NAVIGATE_TO,
+                    ((FileSystemObject)o).getFullPath());
+            intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+            startActivity(intent);
+            finish();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onClearCache(Object o) {
+        // Ignore
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCancel() {
+        // nop
+    }
+
+    /**
+     * Method that applies the current theme to the activity
+     * @hide
+     */
+    void applyTheme() {
+        Theme theme = ThemeManager.getCurrentTheme(this);
+        theme.setBaseTheme(this, false);
+
+        //- ActionBar
+        View v = getActionBar().getCustomView().findViewById(R.id.customtitle_title);
+        theme.setTextColor(this, (TextView)v, "action_bar_text_color"); //$NON-NLS-1$
+        // ContentView
+        theme.setBackgroundDrawable(
+                this, getWindow().getDecorView(), "background_drawable"); //$NON-NLS-1$
+        //- StatusBar
+        v = findViewById(R.id.duplicates_status);
+        theme.setBackgroundDrawable(this, v, "statusbar_drawable"); //$NON-NLS-1$
+        v = findViewById(R.id.duplicates_status_found_groups);
+        theme.setTextColor(this, (TextView)v, "action_bar_text_color"); //$NON-NLS-1$
+        v = findViewById(R.id.duplicates_status_wasted_size);
+        theme.setTextColor(this, (TextView)v, "action_bar_text_color"); //$NON-NLS-1$
+
+        //ListView
+        this.mAdapter.notifyDataSetChanged();
+        this.mListView.setDivider(
+                theme.getDrawable(this, "horizontal_divider_drawable")); //$NON-NLS-1$
+        this.mListView.invalidate();
+    }
+}
@@ -84,6 +84,7 @@ import com.cyanogenmod.filemanager.ui.widgets.FlingerListView;
 import com.cyanogenmod.filemanager.ui.widgets.FlingerListView.OnItemFlingerListener;
 import com.cyanogenmod.filemanager.ui.widgets.FlingerListView.OnItemFlingerResponder;
 import com.cyanogenmod.filemanager.util.CommandHelper;
+import com.cyanogenmod.filemanager.util.CompiledQuery;
 import com.cyanogenmod.filemanager.util.DialogHelper;
 import com.cyanogenmod.filemanager.util.ExceptionUtil;
 import com.cyanogenmod.filemanager.util.ExceptionUtil.OnRelaunchCommandResult;
@@ -100,6 +101,10 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An activity for search files and folders.
@@ -114,6 +119,11 @@ public class SearchActivity extends Activity
 
     private static int INVALID_RELEVANCE = 1;
 
+    // The delay used to coalesce the partial results of the search
+    private static final long RESULTS_BATCH_DELAY = 150L;
+    // The maximum number of results merged into the list at once
+    private static final int RESULTS_BATCH_SIZE = 500;
+
     /**
      * An {@link Intent} action for restore view information.
      */
@@ -367,6 +377,27 @@ public class SearchActivity extends Activity
     private boolean mShowRelevanceWidget;
     private int mHighlightColor;
     private ArrayList<DataHolder> mAdapterList = new ArrayList<>();
+
+    // The partial results of the search pending to be processed, and the worker that
+    // processes them in batches
+    private final ScheduledExecutorService mResultsWorker =
+            Executors.newSingleThreadScheduledExecutor();
+    /**
+     * @hide
+     */
+    final Object mPendingResultsSync = new Object();
+    /**
+     * @hide
+     */
+    List<FileSystemObject> mPendingResults = new ArrayList<FileSystemObject>();
+    /**
+     * @hide
+     */
+    boolean mResultsBatchScheduled;
+    /**
+     * @hide
+     */
+    volatile int mSearchGeneration;
     private IconHolder mIconHolder;
 
     /**
@@ -453,6 +484,7 @@ public class SearchActivity extends Activity
             /**NON BLOCK**/
         }
         recycle();
+        this.mResultsWorker.shutdownNow();
 
         //All destroy. Continue
         super.onDestroy();
@@ -767,6 +799,7 @@ public class SearchActivity extends Activity
         }
 
         //Set the listview
+        discardPendingResults();
         if (this.mSearchListView.getAdapter() != null) {
             ((SearchResultAdapter)this.mSearchListView.getAdapter()).dispose();
         }
@@ -824,81 +857,161 @@ public class SearchActivity extends Activity
         });
     }
 
-    private static class ProcessSearchResult extends AsyncTask<FileSystemObject, Void, Boolean> {
+    /**
+     * Processes the pending partial results of the search in batches. Every batch is
+     * filtered, converted to data holders and sorted in the worker thread, and then
+     * merged into the adapter in the UI thread.
+     */
+    private static class ProcessSearchResults implements Runnable {
 
         private WeakReference<SearchActivity> mActivity;
 
-        private SearchResult mResult;
-        private DataHolder mHolder;
-
-        public ProcessSearchResult(SearchActivity parent) {
+        public ProcessSearchResults(SearchActivity parent) {
             super();
             mActivity = new WeakReference<SearchActivity>(parent);
         }
 
         @Override
-        protected Boolean doInBackground(FileSystemObject... params) {
+        public void run() {
             SearchActivity activity = mActivity.get();
             if (activity == null) {
-                return false;
+                return;
             }
 
-            FileSystemObject result = params[0];
-            // check against user's display preferences
-            if ( !FileHelper.compliesWithDisplayPreferences(result, null, activity.mChRooted) ) {
-                return false;
+            // Take all the pending results
+            List<FileSystemObject> results;
+            int generation;
+            synchronized (activity.mPendingResultsSync) {
+                results = activity.mPendingResults;
+                activity.mPendingResults = new ArrayList<FileSystemObject>();
+                activity.mResultsBatchScheduled = false;
+                generation = activity.mSearchGeneration;
             }
 
-            // resolve sym links
-            FileHelper.resolveSymlink(activity, result);
+            SearchResultAdapter adapter = activity.mAdapter;
+            int cc = results.size();
+            for (int i = 0; i < cc; i += RESULTS_BATCH_SIZE) {
+                if (generation != activity.mSearchGeneration) {
+                    // A new search was started
+                    return;
+                }
+                List<DataHolder> batch = activity.processSearchResults(
+                        results.subList(i, Math.min(cc, i + RESULTS_BATCH_SIZE)),
+                        adapter.getCompiledQuery());
+                adapter.sortItems(batch);
+                activity.addSearchResults(batch, generation);
+            }
+        }
+    }
 
-            // convert to search result
-            mResult = SearchHelper.convertToResult(result, activity.mQuery);
+    /**
+     * Method that converts a batch of search results to data holders, discarding the
+     * ones that don't meet the display preferences of the user or the minimum relevance.
+     *
+     * @param results The found files
+     * @param query The compiled query of the search
+     * @return List<DataHolder> The data holders
+     */
+    List<DataHolder> processSearchResults(
+            List<FileSystemObject> results, CompiledQuery query) {
+        List<DataHolder> holders = new ArrayList<DataHolder>(results.size());
+        CompiledQuery.Match match = new CompiledQuery.Match();
+        for (FileSystemObject fso : results) {
+            // check against user's display preferences
+            if (!FileHelper.compliesWithDisplayPreferences(fso, null, this.mChRooted)) {
+                continue;
+            }
 
-            mHolder = activity.generateDataHolder(mResult);
+            // resolve sym links
+            FileHelper.resolveSymlink(this, fso);
 
-            return mHolder != null && mResult != null;
+            // convert to search result (relevance and highlight in a single match)
+            query.match(fso.getName(), match);
+            if (match.getRelevance() <= INVALID_RELEVANCE) {
+                continue;
+            }
+            SearchResult result = new SearchResult(match.getRelevance(), fso);
+            DataHolder holder = generateDataHolder(result, match);
+            if (holder != null) {
+                holders.add(holder);
+            }
         }
+        return holders;
+    }
 
-        @Override
-        protected void onPostExecute(Boolean success) {
-            SearchActivity activity = mActivity.get();
-            if (activity == null) {
-                return;
-            }
-            if (success) {
-                // add to adapter
-                if (mResult.getRelevance() > INVALID_RELEVANCE) {
-                    activity.mAdapter.addNewItem(mHolder);
+    /**
+     * Method that merges a sorted batch of search results into the adapter (in the
+     * UI thread).
+     *
+     * @param batch The sorted batch of data holders
+     * @param generation The search that produced the batch
+     */
+    void addSearchResults(final List<DataHolder> batch, final int generation) {
+        this.mSearchListView.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mSearchGeneration) {
+                    return;
                 }
-                int progress = activity.mAdapter.resultsSize();
-                activity.toggleResults(progress > 0, false);
-                String foundItems = activity.getResources().getQuantityString(
+                mAdapter.addNewItems(batch);
+                int progress = mAdapter.resultsSize();
+                toggleResults(progress > 0, false);
+                String foundItems = getResources().getQuantityString(
                         R.plurals.search_found_items, progress, progress);
-                activity.mSearchFoundItems.setText(activity.getString(
+                mSearchFoundItems.setText(getString(
                         R.string.search_found_items_in_directory,
-                        foundItems, activity.mSearchDirectory));
+                        foundItems, mSearchDirectory));
             }
-        }
+        });
     }
 
     /**
-     * Ensures the search result meets user preferences and passes it to the adapter for display
+     * Ensures the search result meets user preferences and passes it to the adapter for display.
+     * The results are coalesced and processed in batches
      *
      * @param result FileSystemObject that matches the search result criteria
      */
     private void showSearchResult(FileSystemObject result) {
-        new ProcessSearchResult(this).execute(result);
+        synchronized (this.mPendingResultsSync) {
+            this.mPendingResults.add(result);
+            if (!this.mResultsBatchScheduled) {
+                try {
+                    this.mResultsWorker.schedule(new ProcessSearchResults(this),
+                            RESULTS_BATCH_DELAY, TimeUnit.MILLISECONDS);
+                    this.mResultsBatchScheduled = true;
+                } catch (RejectedExecutionException ex) {
+                    // The activity was destroyed
+                }
+            }
+        }
     }
 
-    private DataHolder generateDataHolder(SearchResult result) {
+    /**
+     * Method that discards the pending results of the previous search.
+     */
+    private void discardPendingResults() {
+        synchronized (this.mPendingResultsSync) {
+            this.mPendingResults.clear();
+            this.mSearchGeneration++;
+        }
+    }
+
+    private DataHolder generateDataHolder(SearchResult result, CompiledQuery query) {
+        CompiledQuery.Match match = null;
+        if (mHighlightTerms) {
+            match = query.match(result.getFso().getName());
+        }
+        return generateDataHolder(result, match);
+    }
+
+    private DataHolder generateDataHolder(SearchResult result, CompiledQuery.Match match) {
         //Build the data holder
         final FileSystemObject fso = result.getFso();
         final Drawable icon = mIconHolder.getDrawable(
                 MimeTypeHelper.getIcon(this, fso));
         final CharSequence highlightedName;
         if (mHighlightTerms) {
-            highlightedName = SearchHelper.getHighlightedName(result, mQuery.getQueries(),
+            highlightedName = SearchHelper.getHighlightedName(fso.getName(), match,
                     mHighlightColor);
         } else {
             highlightedName = SearchHelper.getNonHighlightedName(result);
@@ -922,9 +1035,11 @@ public class SearchActivity extends Activity
             public void run() {
                 //Toggle results
                 List<SearchResult> list = SearchActivity.this.mRestoreState.getSearchResultList();
+                CompiledQuery compiledQuery =
+                        new CompiledQuery(SearchActivity.this.mRestoreState.getSearchQuery());
                 mAdapterList.clear();
                 for (SearchResult searchResult : list) {
-                    mAdapterList.add(generateDataHolder(searchResult));
+                    mAdapterList.add(generateDataHolder(searchResult, compiledQuery));
                 }
 
 
@@ -1478,10 +1593,13 @@ public class SearchActivity extends Activity
             boolean chRooted =
                     FileManagerApplication.getAccessMode().compareTo(AccessMode.SAFE) == 0;
 
-            List<SearchResult> newResults = SearchHelper.convertToResults(
-                    FileHelper.applyUserPreferences(
-                            mResultList, null, true, chRooted),
-                    new Query().fillSlots(mQuery.getQueries()));
+            CompiledQuery compiledQuery = new CompiledQuery(mQuery);
+            List<FileSystemObject> files = FileHelper.applyUserPreferences(
+                    mResultList, null, true, chRooted);
+            List<SearchResult> newResults = new ArrayList<SearchResult>(files.size());
+            for (FileSystemObject fso : files) {
+                newResults.add(SearchHelper.convertToResult(fso, compiledQuery));
+            }
 
             for (SearchResult result : newResults) {
                 // Show all results that are relevant if no filter is set or show results that are
@@ -1489,7 +1607,7 @@ public class SearchActivity extends Activity
                 if (result.getRelevance() > INVALID_RELEVANCE && (MimeTypeHelper.MimeTypeCategory
                         .NONE.equals(category) || MimeTypeHelper.getCategory(SearchActivity.this,
                         result.getFso()).equals(category))) {
-                    results.add(generateDataHolder(result));
+                    results.add(generateDataHolder(result, compiledQuery));
                 }
             }
             return results;
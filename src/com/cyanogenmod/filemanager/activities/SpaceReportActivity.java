@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.activities;
+
+import android.app.ActionBar;
+import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Bundle;
+import android.text.Html;
+import android.util.Log;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.AdapterView.OnItemClickListener;
+import android.widget.ListView;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import com.cyanogenmod.filemanager.R;
+import com.cyanogenmod.filemanager.adapters.SpaceReportAdapter;
+import com.cyanogenmod.filemanager.commands.AsyncResultListener;
+import com.cyanogenmod.filemanager.commands.SpaceReportExecutable;
+import com.cyanogenmod.filemanager.model.DiskUsage;
+import com.cyanogenmod.filemanager.model.FileSystemObject;
+import com.cyanogenmod.filemanager.model.SpaceReport;
+import com.cyanogenmod.filemanager.preferences.FileManagerSettings;
+import com.cyanogenmod.filemanager.preferences.Preferences;
+import com.cyanogenmod.filemanager.ui.IconHolder;
+import com.cyanogenmod.filemanager.ui.ThemeManager;
+import com.cyanogenmod.filemanager.ui.ThemeManager.Theme;
+import com.cyanogenmod.filemanager.ui.widgets.DiskUsageGraph;
+import com.cyanogenmod.filemanager.util.CommandHelper;
+import com.cyanogenmod.filemanager.util.ExceptionUtil;
+import com.cyanogenmod.filemanager.util.FileHelper;
+
+/**
+ * An activity for display what uses the space of a directory tree: its largest
+ * files, folders and file types. The rankings are updated while the tree is
+ * analyzed.
+ */
+public class SpaceReportActivity extends Activity implements OnItemClickListener {
+
+    private static final String TAG = "SpaceReportActivity"; //$NON-NLS-1$
+
+    private static boolean DEBUG = false;
+
+    /**
+     * The directory to analyze.
+     */
+    public static final String EXTRA_SPACE_REPORT_DIRECTORY =
+            "extra_space_report_directory";  //$NON-NLS-1$
+
+    /**
+     * The disk usage of the mount point of the directory (optional).
+     */
+    public static final String EXTRA_SPACE_REPORT_DISK_USAGE =
+            "extra_space_report_disk_usage";  //$NON-NLS-1$
+
+    private final BroadcastReceiver mNotificationReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (intent != null && intent.getAction().compareTo(
+                    FileManagerSettings.INTENT_THEME_CHANGED) == 0) {
+                applyTheme();
+            }
+        }
+    };
+
+    private final AsyncResultListener mAsyncListener = new AsyncResultListener() {
+        @Override
+        public void onAsyncStart() {
+            /**NON BLOCK**/
+        }
+
+        @Override
+        public void onAsyncEnd(boolean cancelled) {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    SpaceReportActivity.this.mInProgress = false;
+                    SpaceReportActivity.this.mProgress.setVisibility(View.INVISIBLE);
+                    updateStatus();
+                }
+            });
+        }
+
+        @Override
+        public void onAsyncExitCode(int exitCode) {
+            /**NON BLOCK**/
+        }
+
+        @Override
+        public void onPartialResult(final Object result) {
+            if (!(result instanceof SpaceReport)) {
+                return;
+            }
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    SpaceReportActivity.this.mReport = (SpaceReport)result;
+                    SpaceReportActivity.this.mAdapter.setReport((SpaceReport)result);
+                    updateStatus();
+                }
+            });
+        }
+
+        @Override
+        public void onException(final Exception cause) {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    ExceptionUtil.translateException(SpaceReportActivity.this, cause);
+                }
+            });
+        }
+    };
+
+    /**
+     * @hide
+     */
+    ListView mListView;
+    /**
+     * @hide
+     */
+    SpaceReportAdapter mAdapter;
+    /**
+     * @hide
+     */
+    ProgressBar mProgress;
+    /**
+     * @hide
+     */
+    boolean mInProgress;
+    /**
+     * @hide
+     */
+    SpaceReport mReport;
+    /**
+     * @hide
+     */
+    DiskUsageGraph mDiskUsageGraph;
+    private View mEmptyListMsg;
+    private TextView mFiles;
+    private TextView mTotalSize;
+    private SpaceReportExecutable mExecutable;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onCreate(Bundle state) {
+        if (DEBUG) {
+            Log.d(TAG, "SpaceReportActivity.onCreate"); //$NON-NLS-1$
+        }
+
+        // Register the broadcast receiver
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(FileManagerSettings.INTENT_THEME_CHANGED);
+        registerReceiver(this.mNotificationReceiver, filter);
+
+        // Set the theme before setContentView
+        Theme theme = ThemeManager.getCurrentTheme(this);
+        theme.setBaseTheme(this, false);
+
+        //Set in transition
+        overridePendingTransition(R.anim.translate_to_right_in, R.anim.hold_out);
+
+        //Set the main layout of the activity
+        setContentView(R.layout.space_report);
+
+        //Initialize action bars and components
+        initTitleActionBar();
+        initComponents();
+
+        // Apply current theme
+        applyTheme();
+
+        // Analyze the directory
+        String directory = getIntent().getStringExtra(EXTRA_SPACE_REPORT_DIRECTORY);
+        if (directory != null) {
+            analyze(directory);
+        }
+
+        //Save state
+        super.onCreate(state);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onDestroy() {
+        if (DEBUG) {
+            Log.d(TAG, "SpaceReportActivity.onDestroy"); //$NON-NLS-1$
+        }
+
+        // Unregister the receiver
+        try {
+            unregisterReceiver(this.mNotificationReceiver);
+        } catch (Throwable ex) {
+            /**NON BLOCK**/
+        }
+
+        // Stop the command and release the adapter
+        cancel();
+        this.mAdapter.dispose();
+
+        //All destroy. Continue
+        super.onDestroy();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onPause() {
+        //Set out transition
+        overridePendingTransition(R.anim.hold_in, R.anim.translate_to_left_out);
+        super.onPause();
+    }
+
+    /**
+     * Method that initializes the titlebar of the activity.
+     */
+    private void initTitleActionBar() {
+        //Configure the action bar options
+        final ActionBar actionBar = getActionBar();
+        actionBar.setDisplayShowTitleEnabled(false);
+        actionBar.setBackgroundDrawable(
+                getResources().getDrawable(R.drawable.bg_material_titlebar));
+        actionBar.setDisplayOptions(ActionBar.DISPLAY_SHOW_CUSTOM);
+        actionBar.setDisplayHomeAsUpEnabled(true);
+
+        View customTitle = getLayoutInflater().inflate(R.layout.simple_customtitle, null, false);
+        TextView title = (TextView)customTitle.findViewById(R.id.customtitle_title);
+        title.setText(R.string.space_report_title);
+        title.setContentDescription(getString(R.string.space_report_title));
+        actionBar.setCustomView(customTitle);
+    }
+
+    /**
+     * Method that initializes the component of the activity.
+     */
+    private void initComponents() {
+        this.mAdapter = new SpaceReportAdapter(this, new IconHolder(this, false));
+
+        this.mEmptyListMsg = findViewById(R.id.space_report_empty_msg);
+        this.mListView = (ListView)findViewById(R.id.space_report_listview);
+        this.mListView.setAdapter(this.mAdapter);
+        this.mListView.setOnItemClickListener(this);
+        this.mProgress = (ProgressBar)findViewById(R.id.space_report_progress_bar);
+        this.mFiles = (TextView)findViewById(R.id.space_report_status_files);
+        this.mTotalSize = (TextView)findViewById(R.id.space_report_status_total_size);
+
+        // The disk usage of the mount point
+        final DiskUsage diskUsage =
+                (DiskUsage)getIntent().getSerializableExtra(EXTRA_SPACE_REPORT_DISK_USAGE);
+        if (diskUsage != null) {
+            findViewById(R.id.space_report_disk_usage).setVisibility(View.VISIBLE);
+            TextView tvUsed = (TextView)findViewById(R.id.space_report_used_disk_usage);
+            TextView tvFree = (TextView)findViewById(R.id.space_report_free_disk_usage);
+            tvUsed.setText(getString(R.string.filesystem_info_dialog_used_disk_usage)
+                    + " " + FileHelper.getHumanReadableSize(diskUsage.getUsed())); //$NON-NLS-1$
+            tvFree.setText(getString(R.string.filesystem_info_dialog_free_disk_usage)
+                    + " " + FileHelper.getHumanReadableSize(diskUsage.getFree())); //$NON-NLS-1$
+
+            this.mDiskUsageGraph =
+                    (DiskUsageGraph)findViewById(R.id.space_report_disk_usage_graph);
+            String fds = Preferences.getSharedPreferences().getString(
+                    FileManagerSettings.SETTINGS_DISK_USAGE_WARNING_LEVEL.getId(),
+                    (String)FileManagerSettings.
+                        SETTINGS_DISK_USAGE_WARNING_LEVEL.getDefaultValue());
+            this.mDiskUsageGraph.setFreeDiskSpaceWarningLevel(Integer.parseInt(fds));
+            this.mDiskUsageGraph.post(new Runnable() {
+                @Override
+                public void run() {
+                    //Animate disk usage graph
+                    SpaceReportActivity.this.mDiskUsageGraph.drawDiskUsage(diskUsage);
+                }
+            });
+        }
+        updateStatus();
+    }
+
+    /**
+     * Method that starts the analysis of the directory.
+     *
+     * @param directory The directory to analyze
+     */
+    private void analyze(String directory) {
+        try {
+            this.mInProgress = true;
+            this.mProgress.setVisibility(View.VISIBLE);
+            this.mExecutable =
+                    CommandHelper.getSpaceReport(this, directory, this.mAsyncListener, null);
+        } catch (Exception e) {
+            this.mInProgress = false;
+            this.mProgress.setVisibility(View.INVISIBLE);
+            updateStatus();
+            ExceptionUtil.translateException(this, e);
+        }
+    }
+
+    /**
+     * Method that cancels the analysis of the directory, if it's running.
+     */
+    private void cancel() {
+        try {
+            if (this.mExecutable != null && this.mInProgress
+                    && this.mExecutable.isCancellable() && !this.mExecutable.isCancelled()) {
+                this.mExecutable.cancel();
+            }
+        } catch (Exception e) {/**NON BLOCK**/}
+    }
+
+    /**
+     * Method that updates the status bar and the empty message.
+     *
+     * @hide
+     */
+    void updateStatus() {
+        int files = this.mReport != null ? this.mReport.getNumberOfFiles() : 0;
+        long size = this.mReport != null ? this.mReport.getTotalSize() : 0;
+        this.mFiles.setText(getResources().getQuantityString(
+                R.plurals.space_report_files, files, Integer.valueOf(files)));
+        this.mTotalSize.setText(Html.fromHtml(getString(R.string.space_report_total_size,
+                FileHelper.getHumanReadableSize(size))));
+        this.mEmptyListMsg.setVisibility(
+                !this.mInProgress && files == 0 ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                finish();
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+        FileSystemObject fso = this.mAdapter.getItem(position).getFso();
+        if (fso == null) {
+            return;
+        }
+
+        // Navigate to the folder, or to the folder of the file
+        Intent intent = new Intent(this, NavigationActivity.class);
+        intent.putExtra(NavigationActivity.EXTRA_NAVIGATE_TO,
+                FileHelper.isDirectory(fso) ? fso.getFullPath() : fso.getParent());
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        startActivity(intent);
+        finish();
+    }
+
+    /**
+     * Method that applies the current theme to the activity
+     * @hide
+     */
+    void applyTheme() {
+        Theme theme = ThemeManager.getCurrentTheme(this);
+        theme.setBaseTheme(this, false);
+
+        //- ActionBar
+        View v = getActionBar().getCustomView().findViewById(R.id.customtitle_title);
+        theme.setTextColor(this, (TextView)v, "action_bar_text_color"); //$NON-NLS-1$
+        // ContentView
+        theme.setBackgroundDrawable(
+                this, getWindow().getDecorView(), "background_drawable"); //$NON-NLS-1$
+        //- Disk usage
+        v = findViewById(R.id.space_report_used_disk_usage);
+        theme.setTextColor(this, (TextView)v, "text_color"); //$NON-NLS-1$
+        v = findViewById(R.id.space_report_free_disk_usage);
+        theme.setTextColor(this, (TextView)v, "text_color"); //$NON-NLS-1$
+        //- StatusBar
+        v = findViewById(R.id.space_report_status);
+        theme.setBackgroundDrawable(this, v, "statusbar_drawable"); //$NON-NLS-1$
+        v = findViewById(R.id.space_report_status_files);
+        theme.setTextColor(this, (TextView)v, "action_bar_text_color"); //$NON-NLS-1$
+        v = findViewById(R.id.space_report_status_total_size);
+        theme.setTextColor(this, (TextView)v, "action_bar_text_color"); //$NON-NLS-1$
+
+        //ListView
+        this.mAdapter.notifyDataSetChanged();
+        this.mListView.setDivider(
+                theme.getDrawable(this, "horizontal_divider_drawable")); //$NON-NLS-1$
+        this.mListView.invalidate();
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.adapters;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.cyanogenmod.filemanager.R;
+import com.cyanogenmod.filemanager.model.DuplicateGroup;
+import com.cyanogenmod.filemanager.model.FileSystemObject;
+import com.cyanogenmod.filemanager.ui.IconHolder;
+import com.cyanogenmod.filemanager.ui.ThemeManager;
+import com.cyanogenmod.filemanager.ui.ThemeManager.Theme;
+import com.cyanogenmod.filemanager.util.FileHelper;
+import com.cyanogenmod.filemanager.util.MimeTypeHelper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An implementation of {@link ArrayAdapter} for display groups of duplicated files.
+ * Every group is displayed as a header followed by its files. The groups are sorted
+ * by the space that could be freed.
+ */
+public class DuplicatesAdapter extends ArrayAdapter<DuplicatesAdapter.Item> {
+
+    private static final int VIEW_TYPE_GROUP = 0;
+    private static final int VIEW_TYPE_FILE = 1;
+
+    //The resource of the group description
+    private static final int RESOURCE_GROUP_DESCRIPTION = R.id.duplicates_group_description;
+    //The resource of the item icon
+    private static final int RESOURCE_ITEM_ICON = R.id.duplicates_item_icon;
+    //The resource of the item name
+    private static final int RESOURCE_ITEM_NAME = R.id.duplicates_item_name;
+    //The resource of the item path
+    private static final int RESOURCE_ITEM_PARENT_DIR = R.id.duplicates_item_parent_dir;
+
+    /**
+     * An item of the adapter: the header of a group or a file of a group.
+     */
+    public static class Item {
+        final DuplicateGroup mGroup;
+        final FileSystemObject mFso;
+
+        Item(DuplicateGroup group, FileSystemObject fso) {
+            this.mGroup = group;
+            this.mFso = fso;
+        }
+
+        /**
+         * Method that returns the file of the item.
+         *
+         * @return FileSystemObject The file, or null if the item is a group header
+         */
+        public FileSystemObject getFso() {
+            return this.mFso;
+        }
+    }
+
+    /**
+     * A class that conforms with the ViewHolder pattern to performance
+     * the list view rendering.
+     */
+    private static class ViewHolder {
+        /**
+         * @hide
+         */
+        public ViewHolder() {
+            super();
+        }
+        ImageView mIvIcon;
+        TextView mTvName;
+        TextView mTvParentDir;
+    }
+
+    private IconHolder mIconHolder;
+    private final List<Item> mItems;
+    private boolean mDisposed;
+
+    /**
+     * Constructor of <code>DuplicatesAdapter</code>.
+     *
+     * @param context The current context
+     * @param iconHolder The holder of the icons
+     */
+    public DuplicatesAdapter(Context context, IconHolder iconHolder) {
+        this(context, new ArrayList<Item>(), iconHolder);
+    }
+
+    private DuplicatesAdapter(Context context, List<Item> items, IconHolder iconHolder) {
+        super(context, RESOURCE_ITEM_NAME, items);
+        this.mItems = items;
+        this.mIconHolder = iconHolder;
+        this.mDisposed = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyDataSetChanged() {
+        if (this.mDisposed) {
+            return;
+        }
+        super.notifyDataSetChanged();
+    }
+
+    /**
+     * Method that adds a group of duplicates, keeping the groups sorted by the
+     * space that could be freed.
+     *
+     * @param group The group
+     */
+    public void addGroup(DuplicateGroup group) {
+        if (this.mDisposed) {
+            return;
+        }
+        int pos = this.mItems.size();
+        int cc = this.mItems.size();
+        for (int i = 0; i < cc; i++) {
+            Item item = this.mItems.get(i);
+            if (item.mFso == null && item.mGroup.getWastedSize() < group.getWastedSize()) {
+                pos = i;
+                break;
+            }
+        }
+        List<Item> items = new ArrayList<Item>(group.getFiles().size() + 1);
+        items.add(new Item(group, null));
+        for (FileSystemObject fso : group.getFiles()) {
+            items.add(new Item(group, fso));
+        }
+        this.mItems.addAll(pos, items);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Method that removes a file. A group with only one file is removed.
+     *
+     * @param fso The file to remove
+     */
+    public void removeFile(FileSystemObject fso) {
+        int pos = getPosition(fso);
+        if (pos == -1) {
+            return;
+        }
+        DuplicateGroup group = this.mItems.remove(pos).mGroup;
+        if (getFilesCount(group) < 2) {
+            int cc = this.mItems.size();
+            for (int i = cc - 1; i >= 0; i--) {
+                if (this.mItems.get(i).mGroup == group) {
+                    this.mItems.remove(i);
+                }
+            }
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Method that returns the position of a file.
+     *
+     * @param fso The file
+     * @return int The position of the file, or -1 if the file isn't in the adapter
+     */
+    public int getPosition(FileSystemObject fso) {
+        int cc = this.mItems.size();
+        for (int i = 0; i < cc; i++) {
+            FileSystemObject item = this.mItems.get(i).mFso;
+            if (item != null && item.compareTo(fso) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method that returns the number of groups of the adapter.
+     *
+     * @return int The number of groups
+     */
+    public int getGroupsCount() {
+        int groups = 0;
+        for (Item item : this.mItems) {
+            if (item.mFso == null) {
+                groups++;
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Method that returns the space that could be freed keeping only one file of
+     * every group.
+     *
+     * @return long The wasted space
+     */
+    public long getWastedSize() {
+        long wasted = 0;
+        for (Item item : this.mItems) {
+            if (item.mFso == null) {
+                wasted += item.mGroup.getSize() * (getFilesCount(item.mGroup) - 1);
+            }
+        }
+        return wasted;
+    }
+
+    /**
+     * Method that returns the number of files of a group still in the adapter.
+     *
+     * @param group The group
+     * @return int The number of files
+     */
+    private int getFilesCount(DuplicateGroup group) {
+        int count = 0;
+        for (Item item : this.mItems) {
+            if (item.mGroup == group && item.mFso != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Method that dispose the elements of the adapter.
+     */
+    public void dispose() {
+        if (this.mIconHolder != null) {
+            this.mIconHolder.cleanup();
+        }
+        this.mDisposed = true;
+        clear();
+        this.mIconHolder = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getViewTypeCount() {
+        return 2;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return getItem(position).mFso == null ? VIEW_TYPE_GROUP : VIEW_TYPE_FILE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean areAllItemsEnabled() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled(int position) {
+        return getItem(position).mFso != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        final Item item = getItem(position);
+        final Theme theme = ThemeManager.getCurrentTheme(getContext());
+
+        //Check to reuse view
+        View v = convertView;
+        if (item.mFso == null) {
+            if (v == null) {
+                LayoutInflater li = (LayoutInflater) getContext().getSystemService(
+                        Context.LAYOUT_INFLATER_SERVICE);
+                v = li.inflate(R.layout.duplicates_group_item, parent, false);
+                theme.setTextColor(getContext(),
+                        (TextView)v.findViewById(RESOURCE_GROUP_DESCRIPTION),
+                        "text_color"); //$NON-NLS-1$
+            }
+            TextView tvDescription = (TextView)v.findViewById(RESOURCE_GROUP_DESCRIPTION);
+            int files = getFilesCount(item.mGroup);
+            tvDescription.setText(getContext().getResources().getQuantityString(
+                    R.plurals.duplicates_group_description, files, Integer.valueOf(files),
+                    FileHelper.getHumanReadableSize(item.mGroup.getSize())));
+            return v;
+        }
+
+        if (v == null) {
+            //Create the view holder
+            LayoutInflater li =
+                    (LayoutInflater) getContext().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+            v = li.inflate(R.layout.duplicates_item, parent, false);
+            ViewHolder viewHolder = new DuplicatesAdapter.ViewHolder();
+            viewHolder.mIvIcon = (ImageView) v.findViewById(RESOURCE_ITEM_ICON);
+            viewHolder.mTvName = (TextView) v.findViewById(RESOURCE_ITEM_NAME);
+            viewHolder.mTvParentDir = (TextView) v.findViewById(RESOURCE_ITEM_PARENT_DIR);
+
+            // Apply the current theme
+            theme.setTextColor(
+                    getContext(), viewHolder.mTvName, "text_color"); //$NON-NLS-1$
+            theme.setTextColor(
+                    getContext(), viewHolder.mTvParentDir, "text_color"); //$NON-NLS-1$
+            v.setTag(viewHolder);
+        }
+
+        //Retrieve the view holder
+        ViewHolder viewHolder = (ViewHolder) v.getTag();
+
+        //Set the data
+        FileSystemObject fso = item.mFso;
+        this.mIconHolder.loadDrawable(viewHolder.mIvIcon, fso,
+                this.mIconHolder.getDrawable(MimeTypeHelper.getIcon(getContext(), fso)));
+        viewHolder.mTvName.setText(fso.getName());
+        viewHolder.mTvParentDir.setText(new File(fso.getFullPath()).getParent());
+
+        //Return the view
+        return v;
+    }
+}
@@ -38,6 +38,7 @@ import com.cyanogenmod.filemanager.ui.IconHolder;
 import com.cyanogenmod.filemanager.ui.ThemeManager;
 import com.cyanogenmod.filemanager.ui.ThemeManager.Theme;
 import com.cyanogenmod.filemanager.util.FileHelper;
+import com.cyanogenmod.filemanager.util.FolderSizeCache;
 import com.cyanogenmod.filemanager.util.MimeTypeHelper;
 
 import java.util.ArrayList;
@@ -236,7 +237,11 @@ public class FileSystemObjectAdapter
             theme.setTextColor(getContext(), viewHolder.mTvSummary, "text_color"); //$NON-NLS-1$
         }
         if (viewHolder.mTvSize != null) {
-            viewHolder.mTvSize.setText(FileHelper.getHumanReadableSize(fso));
+            // Directories show the size of its tree, if it was computed before
+            long folderSize = FolderSizeCache.getFolderSize(fso);
+            viewHolder.mTvSize.setText(folderSize >= 0 ?
+                    FileHelper.getHumanReadableSize(folderSize) :
+                    FileHelper.getHumanReadableSize(fso));
             theme.setTextColor(getContext(), viewHolder.mTvSize, "text_color"); //$NON-NLS-1$
         }
         if (!this.mPickable) {
@@ -19,7 +19,6 @@ package com.cyanogenmod.filemanager.adapters;
 import android.content.Context;
 import android.graphics.drawable.Drawable;
 import android.os.AsyncTask;
-import android.os.Handler;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -45,12 +44,14 @@ import com.cyanogenmod.filemanager.ui.IconHolder;
 import com.cyanogenmod.filemanager.ui.ThemeManager;
 import com.cyanogenmod.filemanager.ui.ThemeManager.Theme;
 import com.cyanogenmod.filemanager.ui.widgets.RelevanceView;
+import com.cyanogenmod.filemanager.util.CompiledQuery;
 import com.cyanogenmod.filemanager.util.FileHelper;
 import com.cyanogenmod.filemanager.util.MimeTypeHelper;
 import com.cyanogenmod.filemanager.util.SearchHelper;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -90,32 +91,19 @@ public class SearchResultAdapter extends ArrayAdapter<SearchActivity.DataHolder>
         TextView mMimeType;
     }
 
-    // delay for when the new items, if any, will be incorporated
-    // used to ensure that UI remains responsive
-    private final int STREAMING_MODE_REFRESH_DELAY = 500;   // in ms
-
     private IconHolder mIconHolder;
     private final int mItemViewResourceId;
 
     private final List<String> mQueries;
+    private final CompiledQuery mCompiledQuery;
+    private final List<SearchActivity.DataHolder> mItems;
 
     private boolean mDisposed;
 
-    private Handler mHandler;
     private boolean mInStreamingMode;
     private SearchSortResultMode mSearchSortResultMode;
     private Comparator<SearchActivity.DataHolder> mSearchResultComparator;
 
-    private Runnable mParseNewResults = new Runnable() {
-        @Override
-        public void run() {
-            sort(mSearchResultComparator);
-            if (mInStreamingMode) {
-                mHandler.postDelayed(mParseNewResults, STREAMING_MODE_REFRESH_DELAY);
-            }
-        }
-    };
-
     /**
      * Constructor of <code>SearchResultAdapter</code>.
      *
@@ -129,12 +117,13 @@ public class SearchResultAdapter extends ArrayAdapter<SearchActivity.DataHolder>
             Context context, List<SearchActivity.DataHolder> files, int itemViewResourceId,
             Query queries, IconHolder iconHolder) {
         super(context, RESOURCE_ITEM_NAME, files);
-        mHandler = new Handler(context.getMainLooper());
+        this.mItems = files;
 
         this.mDisposed = false;
         this.mIconHolder = iconHolder;
         this.mItemViewResourceId = itemViewResourceId;
         this.mQueries = queries.getQueries();
+        this.mCompiledQuery = new CompiledQuery(queries);
 
         // determine the sort order of search results
         setSortResultMode();
@@ -147,7 +136,6 @@ public class SearchResultAdapter extends ArrayAdapter<SearchActivity.DataHolder>
      */
     public void startStreaming() {
         mInStreamingMode = true;
-        mHandler.postDelayed(mParseNewResults, STREAMING_MODE_REFRESH_DELAY);
     }
 
     /**
@@ -178,13 +166,59 @@ public class SearchResultAdapter extends ArrayAdapter<SearchActivity.DataHolder>
             return;
         }
 
-        add(data);
+        List<SearchActivity.DataHolder> items = new ArrayList<SearchActivity.DataHolder>(1);
+        items.add(data);
+        addNewItems(items);
     }
 
     /**
-     * Adds search results in the buffer to the adapter list
+     * Method that sorts a batch of search results with the sort order of the adapter. This
+     * method can be called from any thread.
+     *
+     * @param items The items to sort
      */
-    public synchronized void addPendingSearchResults() {
+    public void sortItems(List<SearchActivity.DataHolder> items) {
+        if (mSearchResultComparator != null) {
+            Collections.sort(items, mSearchResultComparator);
+        }
+    }
+
+    /**
+     * Merges a batch of search results (already sorted with {@link #sortItems(List)}) into
+     * the sorted items of the adapter, and notifies the change once.
+     *
+     * @param items The sorted items to add
+     */
+    public void addNewItems(List<SearchActivity.DataHolder> items) {
+        if (mDisposed || items.isEmpty()) {
+            return;
+        }
+
+        if (mSearchResultComparator == null || mItems.isEmpty()) {
+            mItems.addAll(items);
+        } else {
+            int cc = mItems.size();
+            int ccc = items.size();
+            List<SearchActivity.DataHolder> merged =
+                    new ArrayList<SearchActivity.DataHolder>(cc + ccc);
+            int i = 0, j = 0;
+            while (i < cc && j < ccc) {
+                if (mSearchResultComparator.compare(mItems.get(i), items.get(j)) <= 0) {
+                    merged.add(mItems.get(i++));
+                } else {
+                    merged.add(items.get(j++));
+                }
+            }
+            while (i < cc) {
+                merged.add(mItems.get(i++));
+            }
+            while (j < ccc) {
+                merged.add(items.get(j++));
+            }
+            mItems.clear();
+            mItems.addAll(merged);
+        }
+        notifyDataSetChanged();
     }
 
     /**
@@ -199,12 +233,13 @@ public class SearchResultAdapter extends ArrayAdapter<SearchActivity.DataHolder>
         mSearchSortResultMode = SearchSortResultMode.fromId(currValue);
 
         if (mSearchSortResultMode.compareTo(SearchSortResultMode.NAME) == 0) {
+            final boolean caseSensitive = FileHelper.isCaseSensitiveSort();
             mSearchResultComparator = new Comparator<SearchActivity.DataHolder>() {
                 @Override
                 public int compare(SearchActivity.DataHolder lhs, SearchActivity.DataHolder rhs) {
                     return FileHelper.doCompare(
                             lhs.getSearchResult().getFso(), rhs.getSearchResult().getFso(),
-                            NavigationSortMode.NAME_ASC);
+                            NavigationSortMode.NAME_ASC, caseSensitive);
                 }
             };
 
@@ -218,6 +253,16 @@ public class SearchResultAdapter extends ArrayAdapter<SearchActivity.DataHolder>
         }
     }
 
+    /**
+     * Method that returns the query of the results compiled, for compute the relevance
+     * and the highlight of new results. It can be used from any thread.
+     *
+     * @return CompiledQuery The compiled query
+     */
+    public CompiledQuery getCompiledQuery() {
+        return this.mCompiledQuery;
+    }
+
     /**
      * Size of the search results list
      */
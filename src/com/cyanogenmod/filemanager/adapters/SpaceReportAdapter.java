@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.adapters;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.cyanogenmod.filemanager.R;
+import com.cyanogenmod.filemanager.model.FileSystemObject;
+import com.cyanogenmod.filemanager.model.SpaceReport;
+import com.cyanogenmod.filemanager.ui.IconHolder;
+import com.cyanogenmod.filemanager.ui.ThemeManager;
+import com.cyanogenmod.filemanager.ui.ThemeManager.Theme;
+import com.cyanogenmod.filemanager.util.FileHelper;
+import com.cyanogenmod.filemanager.util.MimeTypeHelper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An implementation of {@link ArrayAdapter} for display a {@link SpaceReport}. Every
+ * ranking of the report (files, folders and file types) is displayed as a header
+ * followed by its entries, from the largest.
+ */
+public class SpaceReportAdapter extends ArrayAdapter<SpaceReportAdapter.Item> {
+
+    private static final int VIEW_TYPE_HEADER = 0;
+    private static final int VIEW_TYPE_ENTRY = 1;
+
+    //The resource of the header title
+    private static final int RESOURCE_HEADER_TITLE = R.id.space_report_header_title;
+    //The resource of the item icon
+    private static final int RESOURCE_ITEM_ICON = R.id.space_report_item_icon;
+    //The resource of the item name
+    private static final int RESOURCE_ITEM_NAME = R.id.space_report_item_name;
+    //The resource of the item size
+    private static final int RESOURCE_ITEM_SIZE = R.id.space_report_item_size;
+    //The resource of the item description
+    private static final int RESOURCE_ITEM_DESCRIPTION = R.id.space_report_item_description;
+
+    /**
+     * An item of the adapter: the header of a ranking or an entry of a ranking.
+     */
+    public static class Item {
+        final int mTitle;
+        final SpaceReport.Entry mEntry;
+        final FileSystemObject mFso;
+        final boolean mIsExtension;
+
+        Item(int title) {
+            this.mTitle = title;
+            this.mEntry = null;
+            this.mFso = null;
+            this.mIsExtension = false;
+        }
+
+        Item(SpaceReport.Entry entry, FileSystemObject fso, boolean isExtension) {
+            this.mTitle = 0;
+            this.mEntry = entry;
+            this.mFso = fso;
+            this.mIsExtension = isExtension;
+        }
+
+        /**
+         * Method that returns the file or folder of the item.
+         *
+         * @return FileSystemObject The file or folder, or null if the item is a header
+         * or a file type
+         */
+        public FileSystemObject getFso() {
+            return this.mIsExtension ? null : this.mFso;
+        }
+    }
+
+    /**
+     * A class that conforms with the ViewHolder pattern to performance
+     * the list view rendering.
+     */
+    private static class ViewHolder {
+        /**
+         * @hide
+         */
+        public ViewHolder() {
+            super();
+        }
+        ImageView mIvIcon;
+        TextView mTvName;
+        TextView mTvSize;
+        TextView mTvDescription;
+    }
+
+    private IconHolder mIconHolder;
+    private final List<Item> mItems;
+    private boolean mDisposed;
+
+    /**
+     * Constructor of <code>SpaceReportAdapter</code>.
+     *
+     * @param context The current context
+     * @param iconHolder The holder of the icons
+     */
+    public SpaceReportAdapter(Context context, IconHolder iconHolder) {
+        this(context, new ArrayList<Item>(), iconHolder);
+    }
+
+    private SpaceReportAdapter(Context context, List<Item> items, IconHolder iconHolder) {
+        super(context, RESOURCE_ITEM_NAME, items);
+        this.mItems = items;
+        this.mIconHolder = iconHolder;
+        this.mDisposed = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyDataSetChanged() {
+        if (this.mDisposed) {
+            return;
+        }
+        super.notifyDataSetChanged();
+    }
+
+    /**
+     * Method that displays a report, replacing the previous one. The report is
+     * bounded, so it's cheap to rebuild the items on every partial result.
+     *
+     * @param report The report
+     */
+    public void setReport(SpaceReport report) {
+        if (this.mDisposed) {
+            return;
+        }
+        this.mItems.clear();
+        if (!report.getFiles().isEmpty()) {
+            this.mItems.add(new Item(R.string.space_report_largest_files));
+            for (SpaceReport.Entry entry : report.getFiles()) {
+                this.mItems.add(new Item(entry, createFso(entry.getName(), entry, false), false));
+            }
+        }
+        if (!report.getFolders().isEmpty()) {
+            this.mItems.add(new Item(R.string.space_report_largest_folders));
+            for (SpaceReport.Entry entry : report.getFolders()) {
+                this.mItems.add(new Item(entry, createFso(entry.getName(), entry, true), false));
+            }
+        }
+        if (!report.getExtensions().isEmpty()) {
+            this.mItems.add(new Item(R.string.space_report_file_types));
+            for (SpaceReport.Entry entry : report.getExtensions()) {
+                // A file of the type, just for resolve the icon of the type
+                String name = isKnownExtension(entry.getName())
+                        ? "*." + entry.getName() : "*"; //$NON-NLS-1$ //$NON-NLS-2$
+                this.mItems.add(new Item(entry, createFso(name, entry, false), true));
+            }
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Method that creates the file system object of an entry, from the data known.
+     *
+     * @param path The path of the entry
+     * @param entry The entry
+     * @param isDirectory If the entry is a directory
+     * @return FileSystemObject The file system object
+     */
+    private static FileSystemObject createFso(
+            String path, SpaceReport.Entry entry, boolean isDirectory) {
+        File file = new File(path);
+        return FileHelper.createFileSystemObject(
+                file.getName(), file.getParent(), isDirectory, entry.getSize(), 0);
+    }
+
+    /**
+     * Method that returns if an extension of the report is a real extension.
+     *
+     * @param extension The extension
+     * @return boolean If the extension is real (not the extension of the files without
+     * extension or of the rest of file types)
+     */
+    private static boolean isKnownExtension(String extension) {
+        return extension.compareTo(SpaceReport.NO_EXTENSION) != 0
+                && extension.compareTo(SpaceReport.OTHER_EXTENSIONS) != 0;
+    }
+
+    /**
+     * Method that dispose the elements of the adapter.
+     */
+    public void dispose() {
+        if (this.mIconHolder != null) {
+            this.mIconHolder.cleanup();
+        }
+        this.mDisposed = true;
+        clear();
+        this.mIconHolder = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getViewTypeCount() {
+        return 2;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return getItem(position).mEntry == null ? VIEW_TYPE_HEADER : VIEW_TYPE_ENTRY;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean areAllItemsEnabled() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled(int position) {
+        return getItem(position).getFso() != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        final Item item = getItem(position);
+        final Theme theme = ThemeManager.getCurrentTheme(getContext());
+
+        //Check to reuse view
+        View v = convertView;
+        if (item.mEntry == null) {
+            if (v == null) {
+                LayoutInflater li = (LayoutInflater) getContext().getSystemService(
+                        Context.LAYOUT_INFLATER_SERVICE);
+                v = li.inflate(R.layout.space_report_header_item, parent, false);
+                theme.setTextColor(getContext(),
+                        (TextView)v.findViewById(RESOURCE_HEADER_TITLE),
+                        "text_color"); //$NON-NLS-1$
+            }
+            ((TextView)v.findViewById(RESOURCE_HEADER_TITLE)).setText(item.mTitle);
+            return v;
+        }
+
+        if (v == null) {
+            //Create the view holder
+            LayoutInflater li =
+                    (LayoutInflater) getContext().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+            v = li.inflate(R.layout.space_report_item, parent, false);
+            ViewHolder viewHolder = new SpaceReportAdapter.ViewHolder();
+            viewHolder.mIvIcon = (ImageView) v.findViewById(RESOURCE_ITEM_ICON);
+            viewHolder.mTvName = (TextView) v.findViewById(RESOURCE_ITEM_NAME);
+            viewHolder.mTvSize = (TextView) v.findViewById(RESOURCE_ITEM_SIZE);
+            viewHolder.mTvDescription = (TextView) v.findViewById(RESOURCE_ITEM_DESCRIPTION);
+
+            // Apply the current theme
+            theme.setTextColor(
+                    getContext(), viewHolder.mTvName, "text_color"); //$NON-NLS-1$
+            theme.setTextColor(
+                    getContext(), viewHolder.mTvSize, "text_color"); //$NON-NLS-1$
+            theme.setTextColor(
+                    getContext(), viewHolder.mTvDescription, "text_color"); //$NON-NLS-1$
+            v.setTag(viewHolder);
+        }
+
+        //Retrieve the view holder
+        ViewHolder viewHolder = (ViewHolder) v.getTag();
+
+        //Set the data
+        FileSystemObject fso = item.mFso;
+        viewHolder.mIvIcon.setImageDrawable(
+                this.mIconHolder.getDrawable(MimeTypeHelper.getIcon(getContext(), fso)));
+        viewHolder.mTvSize.setText(FileHelper.getHumanReadableSize(item.mEntry.getSize()));
+        if (item.mIsExtension) {
+            String extension = item.mEntry.getName();
+            if (extension.compareTo(SpaceReport.NO_EXTENSION) == 0) {
+                viewHolder.mTvName.setText(R.string.space_report_no_extension);
+            } else if (extension.compareTo(SpaceReport.OTHER_EXTENSIONS) == 0) {
+                viewHolder.mTvName.setText(R.string.space_report_other_extensions);
+            } else {
+                viewHolder.mTvName.setText("." + extension); //$NON-NLS-1$
+            }
+            int files = item.mEntry.getCount();
+            viewHolder.mTvDescription.setText(getContext().getResources().getQuantityString(
+                    R.plurals.space_report_extension_files, files, Integer.valueOf(files)));
+        } else {
+            viewHolder.mTvName.setText(fso.getName());
+            viewHolder.mTvDescription.setText(fso.getParent());
+        }
+
+        //Return the view
+        return v;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.commands;
+
+/**
+ * An interface that represents an executable for execute a list of file operations
+ * in only one invocation of the console.<br/>
+ * <br/>
+ * The operations are executed in order, and a failed operation doesn't stop the
+ * next operations. The result of every operation is returned in the same position
+ * of the list of operations.
+ */
+public interface BatchExecutable extends WritableExecutable {
+
+    /**
+     * The types of operations of a batch
+     */
+    public enum OPERATION {
+        /**
+         * Delete a file
+         */
+        DELETE_FILE("f"), //$NON-NLS-1$
+        /**
+         * Delete a directory (recursively)
+         */
+        DELETE_DIR("d"), //$NON-NLS-1$
+        /**
+         * Copy a file or directory (recursively)
+         */
+        COPY("c"), //$NON-NLS-1$
+        /**
+         * Move a file or directory
+         */
+        MOVE("m"); //$NON-NLS-1$
+
+        private final String mId;
+
+        private OPERATION(String id) {
+            this.mId = id;
+        }
+
+        /**
+         * Method that returns the identifier of the operation
+         *
+         * @return String The identifier of the operation
+         */
+        public String getId() {
+            return this.mId;
+        }
+
+        /**
+         * Method that returns if the operation writes a destination
+         *
+         * @return boolean If the operation has a destination
+         */
+        public boolean hasDestination() {
+            return this == COPY || this == MOVE;
+        }
+    }
+
+    /**
+     * An operation of a batch
+     */
+    public static final class Operation {
+        private final OPERATION mOperation;
+        private final String mSrc;
+        private final String mDst;
+
+        /**
+         * Constructor of <code>Operation</code>.
+         *
+         * @param operation The type of operation
+         * @param src The source file or directory
+         * @param dst The destination file or directory (only for copy and move operations)
+         */
+        public Operation(OPERATION operation, String src, String dst) {
+            super();
+            this.mOperation = operation;
+            this.mSrc = src;
+            this.mDst = dst;
+        }
+
+        /**
+         * Method that returns the type of the operation
+         *
+         * @return OPERATION The type of the operation
+         */
+        public OPERATION getOperation() {
+            return this.mOperation;
+        }
+
+        /**
+         * Method that returns the source file or directory
+         *
+         * @return String The source file or directory
+         */
+        public String getSrc() {
+            return this.mSrc;
+        }
+
+        /**
+         * Method that returns the destination file or directory
+         *
+         * @return String The destination file or directory, or null if the
+         * operation has no destination
+         */
+        public String getDst() {
+            return this.mDst;
+        }
+    }
+
+    /**
+     * A listener for the progress of a batch
+     */
+    public interface OnOperationCompletedListener {
+        /**
+         * Method invoked when an operation of the batch completes
+         *
+         * @param index The position of the operation in the list of operations
+         * @param success If the operation complete successfully
+         */
+        void onOperationCompleted(int index, boolean success);
+    }
+
+    /**
+     * Method that sets the listener notified every time an operation completes
+     *
+     * @param listener The listener (may be null)
+     */
+    void setOnOperationCompletedListener(OnOperationCompletedListener listener);
+
+    /**
+     * Method that returns the result of every operation
+     *
+     * @return boolean[] If every operation complete successfully (in the order
+     * of the operations)
+     */
+    @Override
+    boolean[] getResult();
+}
@@ -17,10 +17,19 @@
 package com.cyanogenmod.filemanager.commands;
 
 /**
- * An interface that represents an executable for calculate checksum of file system objects.
+ * An interface that represents an executable for calculate checksum of file system objects.<br/>
+ * <br/>
+ * The digests are returned as <code>String</code> partial results, in the order of
+ * {@link CHECKSUMS}. The executables that read the file by themselves also return the
+ * number of bytes read as <code>Long</code> partial results.
  */
 public interface ChecksumExecutable extends AsyncResultExecutable {
 
+    /**
+     * The digest returned for a checksum that the executable can't calculate
+     */
+    public static final String UNAVAILABLE = "-"; //$NON-NLS-1$
+
     /**
      * Checksum enumerations
      */
@@ -28,17 +37,46 @@ public interface ChecksumExecutable extends AsyncResultExecutable {
         /**
          * MD5 digest algorithm
          */
-        MD5,
+        MD5("MD5"), //$NON-NLS-1$
         /**
          * SHA-1 digest algorithm
          */
-        SHA1
+        SHA1("SHA-1"), //$NON-NLS-1$
+        /**
+         * SHA-256 digest algorithm
+         */
+        SHA256("SHA-256"), //$NON-NLS-1$
+        /**
+         * SHA-512 digest algorithm
+         */
+        SHA512("SHA-512"), //$NON-NLS-1$
+        /**
+         * CRC32 checksum (as zip and gzip)
+         */
+        CRC32(null);
+
+        private final String mAlgorithm;
+
+        private CHECKSUMS(String algorithm) {
+            this.mAlgorithm = algorithm;
+        }
+
+        /**
+         * Method that returns the name of the {@link java.security.MessageDigest}
+         * algorithm of the checksum
+         *
+         * @return String The name of the algorithm, or null if the checksum isn't
+         * a message digest
+         */
+        public String getAlgorithm() {
+            return this.mAlgorithm;
+        }
     }
 
     /**
-     * Method that returns the calculated MD5 [0] and SHA-1 [1] digests
+     * Method that returns the calculated digests, in the order of {@link CHECKSUMS}
      *
-     * @return String[] The calculated MD5 [0] and SHA-1 [1] digests
+     * @return String[] The calculated digests
      */
     String[] getResult();
 
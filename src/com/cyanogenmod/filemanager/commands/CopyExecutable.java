@@ -16,6 +16,9 @@
 
 package com.cyanogenmod.filemanager.commands;
 
+import com.cyanogenmod.filemanager.util.CopyProgress;
+import com.cyanogenmod.filemanager.util.CopyVerifier;
+
 /**
  * An interface that represents an executable for copy a file system object to
  * other file system object.
@@ -27,4 +30,21 @@ public interface CopyExecutable extends WritableExecutable {
      */
     @Override
     Boolean getResult();
+
+    /**
+     * Method that sets the progress where the executable reports the bytes and files
+     * copied while it is executed. Executables that can't report partial progress
+     * ignore it.
+     *
+     * @param progress The progress (may be null)
+     */
+    void setProgress(CopyProgress progress);
+
+    /**
+     * Method that sets the verifier of the files copied by the executable. Executables
+     * that can't verify the copied files ignore it.
+     *
+     * @param verifier The verifier (may be null)
+     */
+    void setVerifier(CopyVerifier verifier);
 }
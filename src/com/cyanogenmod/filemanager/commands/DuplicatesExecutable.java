@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.commands;
+
+import com.cyanogenmod.filemanager.model.DuplicateGroup;
+
+import java.util.List;
+
+/**
+ * An interface that represents an executable for find the files with the same
+ * content of a directory tree.<br />
+ * <br />
+ * Every group of duplicates is returned as a {@link DuplicateGroup} partial result
+ * as soon as it's found.
+ */
+public interface DuplicatesExecutable extends AsyncResultExecutable {
+
+    /**
+     * Method that returns the groups of duplicates found.
+     *
+     * @return List<DuplicateGroup> The groups of duplicates
+     */
+    List<DuplicateGroup> getResult();
+}
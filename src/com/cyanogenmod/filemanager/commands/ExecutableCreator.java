@@ -27,6 +27,8 @@ import com.cyanogenmod.filemanager.model.Query;
 import com.cyanogenmod.filemanager.model.User;
 import com.cyanogenmod.filemanager.preferences.CompressionMode;
 
+import java.util.List;
+
 /**
  * A interface that defines methods for create {@link Executable} objects.
  */
@@ -533,4 +535,71 @@ public interface ExecutableCreator {
             throws CommandNotFoundException,
             NoSuchFileOrDirectory, InsufficientPermissionsException;
 
+    /**
+     * Method that creates an executable for synchronize a directory with other directory.
+     *
+     * @param src The source directory
+     * @param dst The destination directory
+     * @param compareContents Compare the content of the files, instead of their
+     * modification time
+     * @param deleteExtras Delete the files of the destination that don't exist in the source
+     * @param asyncResultListener The listener where to return partial results
+     * @return SyncExecutable A {@link SyncExecutable} executable implementation reference
+     * @throws CommandNotFoundException If the executable can't be created
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     */
+    SyncExecutable createSyncExecutable(
+            String src, String dst, boolean compareContents, boolean deleteExtras,
+            AsyncResultListener asyncResultListener)
+            throws CommandNotFoundException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException;
+
+    /**
+     * Method that creates an executable for execute a list of file operations in only
+     * one invocation.
+     *
+     * @param operations The operations to execute
+     * @return BatchExecutable A {@link BatchExecutable} executable implementation reference
+     * @throws CommandNotFoundException If the executable can't be created
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     */
+    BatchExecutable createBatchExecutable(List<BatchExecutable.Operation> operations)
+            throws CommandNotFoundException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException;
+
+    /**
+     * Method that creates an executable for find the files with the same content of
+     * a directory tree.
+     *
+     * @param directory The directory where to search
+     * @param asyncResultListener The listener where to return partial results
+     * @return DuplicatesExecutable A {@link DuplicatesExecutable} executable
+     * implementation reference
+     * @throws CommandNotFoundException If the executable can't be created
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     */
+    DuplicatesExecutable createDuplicatesExecutable(
+            String directory, AsyncResultListener asyncResultListener)
+            throws CommandNotFoundException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException;
+
+    /**
+     * Method that creates an executable for find the largest files, folders and
+     * file extensions of a directory tree.
+     *
+     * @param directory The directory to analyze
+     * @param asyncResultListener The listener where to return partial results
+     * @return SpaceReportExecutable A {@link SpaceReportExecutable} executable
+     * implementation reference
+     * @throws CommandNotFoundException If the executable can't be created
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     */
+    SpaceReportExecutable createSpaceReportExecutable(
+            String directory, AsyncResultListener asyncResultListener)
+            throws CommandNotFoundException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException;
 }
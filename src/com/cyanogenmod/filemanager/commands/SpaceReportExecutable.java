@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.commands;
+
+import com.cyanogenmod.filemanager.model.SpaceReport;
+
+/**
+ * An interface that represents an executable for find the largest files, folders
+ * and file extensions of a directory tree.<br />
+ * <br />
+ * The rankings found so far are returned periodically as {@link SpaceReport}
+ * partial results, while the tree is walked.
+ */
+public interface SpaceReportExecutable extends AsyncResultExecutable {
+
+    /**
+     * The maximum number of entries of every ranking of the report.
+     */
+    int MAX_ENTRIES = 25;
+
+    /**
+     * Method that returns the report of the tree.
+     *
+     * @return SpaceReport The report (the last one computed, if the executable
+     * didn't end), or null if no report was computed yet
+     */
+    SpaceReport getSpaceReport();
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.commands;
+
+/**
+ * An interface that represents an executable for synchronize a destination directory
+ * with a source directory (mirror).<br/>
+ * <br/>
+ * Only the files that are new or that changed (size or modification time, or content
+ * if requested) are copied, and the files of the destination that don't exist in the
+ * source are deleted if requested. Every change is returned as a partial result with
+ * the format <code>&lt;symbol&gt; &lt;path relative to the directories&gt;</code>, where
+ * the symbol is one of {@link CHANGES} (the paths of the directories end with a
+ * separator).
+ */
+public interface SyncExecutable extends AsyncResultExecutable {
+
+    /**
+     * The changes of the synchronization
+     */
+    public enum CHANGES {
+        /**
+         * The file or directory was added to the destination
+         */
+        ADDED('+'),
+        /**
+         * The file was updated in the destination
+         */
+        UPDATED('*'),
+        /**
+         * The file or directory was deleted from the destination
+         */
+        DELETED('-'),
+        /**
+         * The file or directory couldn't be synchronized
+         */
+        FAILED('!');
+
+        private final char mSymbol;
+
+        private CHANGES(char symbol) {
+            this.mSymbol = symbol;
+        }
+
+        /**
+         * Method that returns the symbol of the change in the report
+         *
+         * @return char The symbol
+         */
+        public char getSymbol() {
+            return this.mSymbol;
+        }
+
+        /**
+         * Method that returns the change of a line of the report
+         *
+         * @param line The line of the report
+         * @return CHANGES The change, or null if the line isn't a change
+         */
+        public static CHANGES fromReport(String line) {
+            if (line == null || line.length() < 3 || line.charAt(1) != ' ') {
+                return null;
+            }
+            char symbol = line.charAt(0);
+            CHANGES[] changes = values();
+            for (int i = 0; i < changes.length; i++) {
+                if (changes[i].mSymbol == symbol) {
+                    return changes[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Method that returns the result of the operation
+     *
+     * @return Boolean If all the files were synchronized
+     */
+    Boolean getResult();
+
+    /**
+     * Method that returns the number of changes of a type
+     *
+     * @param change The type of change
+     * @return int The number of changes
+     */
+    int getChanges(CHANGES change);
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.commands.java;
+
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.commands.BatchExecutable;
+import com.cyanogenmod.filemanager.console.CancelledOperationException;
+import com.cyanogenmod.filemanager.console.ExecutionException;
+import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
+import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
+import com.cyanogenmod.filemanager.model.MountPoint;
+import com.cyanogenmod.filemanager.util.CopyEngine;
+import com.cyanogenmod.filemanager.util.FileHelper;
+import com.cyanogenmod.filemanager.util.MountPointHelper;
+
+import java.io.File;
+import java.util.List;
+
+
+/**
+ * A class for execute a list of file operations in one pass.
+ */
+public class BatchCommand extends Program implements BatchExecutable {
+
+    private static final String TAG = "BatchCommand"; //$NON-NLS-1$
+
+    private final List<Operation> mOperations;
+    private final boolean[] mResult;
+    private OnOperationCompletedListener mListener;
+
+    /**
+     * Constructor of <code>BatchCommand</code>.
+     *
+     * @param operations The operations to execute
+     */
+    public BatchCommand(List<Operation> operations) {
+        super();
+        this.mOperations = operations;
+        this.mResult = new boolean[operations.size()];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOnOperationCompletedListener(OnOperationCompletedListener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean[] getResult() {
+        return this.mResult;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute()
+            throws InsufficientPermissionsException, NoSuchFileOrDirectory, ExecutionException,
+                   CancelledOperationException {
+        if (isTrace()) {
+            Log.v(TAG,
+                    String.format("Executing %d operations", //$NON-NLS-1$
+                            Integer.valueOf(this.mOperations.size())));
+        }
+
+        int failed = 0;
+        int cc = this.mOperations.size();
+        for (int i = 0; i < cc; i++) {
+            if (isCancelled()) {
+                throw new CancelledOperationException();
+            }
+            Operation op = this.mOperations.get(i);
+            try {
+                this.mResult[i] = execute(op);
+            } catch (ExecutionException e) {
+                Log.w(TAG, String.format("Failed to execute %s over %s", //$NON-NLS-1$
+                        op.getOperation(), op.getSrc()), e);
+                this.mResult[i] = false;
+            }
+            if (!this.mResult[i]) {
+                failed++;
+            }
+            if (this.mListener != null) {
+                this.mListener.onOperationCompleted(i, this.mResult[i]);
+            }
+        }
+
+        if (isTrace()) {
+            Log.v(TAG, String.format("Result: OK. %d failed", //$NON-NLS-1$
+                    Integer.valueOf(failed)));
+        }
+    }
+
+    /**
+     * Method that executes an operation
+     *
+     * @param op The operation
+     * @return boolean If the operation complete successfully
+     * @throws ExecutionException If a problem was detected in the operation
+     * @throws CancelledOperationException If the operation was cancelled
+     */
+    private boolean execute(Operation op)
+            throws ExecutionException, CancelledOperationException {
+        File s = new File(op.getSrc());
+        if (!s.exists()) {
+            return false;
+        }
+        switch (op.getOperation()) {
+            case DELETE_FILE:
+                return s.isFile() && s.delete();
+            case DELETE_DIR:
+                return s.isDirectory() && FileHelper.deleteFolder(s);
+            case COPY:
+                return CopyEngine.copy(s, new File(op.getDst()), this, null);
+            case MOVE:
+                File d = new File(op.getDst());
+                if (!d.exists() && s.renameTo(d)) {
+                    return true;
+                }
+                // Move between filesystem is not allow. Copy and then delete
+                return CopyEngine.copy(s, d, this, null) && FileHelper.deleteFolder(s);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MountPoint getSrcWritableMountPoint() {
+        for (Operation op : this.mOperations) {
+            if (op.getOperation().compareTo(OPERATION.MOVE) == 0) {
+                return MountPointHelper.getMountPointFromDirectory(op.getSrc());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MountPoint getDstWritableMountPoint() {
+        if (this.mOperations.isEmpty()) {
+            return null;
+        }
+        Operation op = this.mOperations.get(0);
+        return MountPointHelper.getMountPointFromDirectory(
+                op.getOperation().hasDestination() ? op.getDst() : op.getSrc());
+    }
+}
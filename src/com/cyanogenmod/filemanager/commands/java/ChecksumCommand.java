@@ -18,23 +18,26 @@ package com.cyanogenmod.filemanager.commands.java;
 
 import android.util.Log;
 
-import com.android.internal.util.HexDump;
 import com.cyanogenmod.filemanager.commands.AsyncResultListener;
 import com.cyanogenmod.filemanager.commands.ChecksumExecutable;
 import com.cyanogenmod.filemanager.console.ExecutionException;
 import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
 import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
+import com.cyanogenmod.filemanager.util.ChecksumCache;
+import com.cyanogenmod.filemanager.util.ChecksumEngine;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
-import java.security.MessageDigest;
-import java.util.Locale;
 
 /**
- * A class for calculate MD5 and SHA-1 checksums of a file system object.<br />
+ * A class for calculate the checksums of a file system object, in only one read
+ * of the file.<br />
  * <br />
- * Partial results are returned in order (MD5 -> SHA1)
+ * Partial results are returned in order (MD5 -> SHA1 -> SHA256 -> SHA512 -> CRC32),
+ * after the number of bytes read.
+ *
+ * @see ChecksumEngine
  */
 public class ChecksumCommand extends Program implements ChecksumExecutable {
 
@@ -57,7 +60,7 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
             String src, AsyncResultListener asyncResultListener) {
         super();
         this.mAsyncResultListener = asyncResultListener;
-        this.mChecksums = new String[]{null, null};
+        this.mChecksums = new String[CHECKSUMS.values().length];
         this.mSrc = new File(src);
     }
 
@@ -89,16 +92,32 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
             throw new NoSuchFileOrDirectory(this.mSrc.getAbsolutePath());
         }
 
-        CHECKSUMS checksum = CHECKSUMS.MD5;
+        InputStream is = null;
         try {
             if (this.mAsyncResultListener != null) {
                 this.mAsyncResultListener.onAsyncStart();
             }
 
-            // Calculate digests
-            calculateDigest(checksum);
-            checksum = CHECKSUMS.SHA1;
-            calculateDigest(checksum);
+            // Reuse the checksums of the file if it didn't change since they
+            // were calculated. Otherwise, calculate all the digests in one read
+            ChecksumCache.Key key = ChecksumCache.getKey(this.mSrc);
+            String[] checksums = ChecksumCache.get(key);
+            if (checksums != null) {
+                if (isTrace()) {
+                    Log.v(TAG, "Checksums found in the cache"); //$NON-NLS-1$
+                }
+                if (this.mAsyncResultListener != null) {
+                    this.mAsyncResultListener.onPartialResult(Long.valueOf(this.mSrc.length()));
+                    for (String checksum : checksums) {
+                        this.mAsyncResultListener.onPartialResult(checksum);
+                    }
+                }
+            } else {
+                is = new FileInputStream(this.mSrc);
+                checksums = ChecksumEngine.compute(is, this, this.mAsyncResultListener);
+                ChecksumCache.put(key, checksums);
+            }
+            System.arraycopy(checksums, 0, this.mChecksums, 0, checksums.length);
 
             if (this.mAsyncResultListener != null) {
                 this.mAsyncResultListener.onAsyncEnd(false);
@@ -126,8 +145,7 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
         } catch (Exception e) {
             Log.e(TAG,
                     String.format(
-                            "Fail to calculate %s checksum of file %s", //$NON-NLS-1$
-                            checksum.name(),
+                            "Fail to calculate checksums of file %s", //$NON-NLS-1$
                             this.mSrc.getAbsolutePath()),
                     e);
             if (this.mAsyncResultListener != null) {
@@ -136,6 +154,12 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
             if (isTrace()) {
                 Log.v(TAG, "Result: FAIL"); //$NON-NLS-1$
             }
+        } finally {
+            try {
+                if (is != null) {
+                    is.close();
+                }
+            } catch (Exception e) {/**NON BLOCK**/}
         }
     }
 
@@ -217,57 +241,4 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
     public AsyncResultListener getAsyncResultListener() {
         return this.mAsyncResultListener;
     }
-
-    /**
-     * Method that calculate a digest of the file for the source file
-     *
-     * @param type The type of digest to obtain
-     * @throws InterruptedException If the operation was cancelled
-     * @throws Exception If an error occurs
-     */
-    private void calculateDigest(CHECKSUMS type) throws InterruptedException, Exception {
-
-        InputStream is = null;
-        try {
-            MessageDigest md = MessageDigest.getInstance(type.name());
-            is = new FileInputStream(this.mSrc);
-
-            // Start digesting
-            byte[] data = new byte[getBufferSize()];
-            int read = 0;
-            while ((read = is.read(data, 0, getBufferSize())) != -1) {
-                checkCancelled();
-                md.update(data, 0, read);
-            }
-            checkCancelled();
-
-            // Finally digest
-            this.mChecksums[type.ordinal()] =
-                    HexDump.toHexString(md.digest()).toLowerCase(Locale.ROOT);
-            checkCancelled();
-            if (this.mAsyncResultListener != null) {
-                this.mAsyncResultListener.onPartialResult(this.mChecksums[type.ordinal()]);
-            }
-
-        } finally {
-            try {
-                if (is != null) {
-                    is.close();
-                }
-            } catch (Exception e) {/**NON BLOCK**/}
-        }
-    }
-
-    /**
-     * Checks if the operation was cancelled
-     *
-     * @throws InterruptedException If the operation was cancelled
-     */
-    private void checkCancelled() throws InterruptedException {
-        synchronized (this.mSync) {
-            if (this.mCancelled) {
-                throw new InterruptedException();
-            }
-        }
-    }
 }
@@ -18,13 +18,17 @@ package com.cyanogenmod.filemanager.commands.java;
 
 import android.util.Log;
 
+import com.cyanogenmod.filemanager.R;
 import com.cyanogenmod.filemanager.commands.CopyExecutable;
 import com.cyanogenmod.filemanager.console.CancelledOperationException;
 import com.cyanogenmod.filemanager.console.ExecutionException;
 import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
 import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
 import com.cyanogenmod.filemanager.model.MountPoint;
-import com.cyanogenmod.filemanager.util.FileHelper;
+import com.cyanogenmod.filemanager.util.CopyEngine;
+import com.cyanogenmod.filemanager.util.CopyJournal;
+import com.cyanogenmod.filemanager.util.CopyProgress;
+import com.cyanogenmod.filemanager.util.CopyVerifier;
 import com.cyanogenmod.filemanager.util.MountPointHelper;
 
 import java.io.File;
@@ -39,6 +43,8 @@ public class CopyCommand extends Program implements CopyExecutable {
 
     private final String mSrc;
     private final String mDst;
+    private CopyProgress mProgress;
+    private CopyVerifier mVerifier;
 
     /**
      * Constructor of <code>CopyCommand</code>.
@@ -60,6 +66,22 @@ public class CopyCommand extends Program implements CopyExecutable {
         return Boolean.TRUE;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setProgress(CopyProgress progress) {
+        this.mProgress = progress;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setVerifier(CopyVerifier verifier) {
+        this.mVerifier = verifier;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -82,12 +104,33 @@ public class CopyCommand extends Program implements CopyExecutable {
             throw new NoSuchFileOrDirectory(this.mSrc);
         }
 
-        //Copy recursively
-        if (!FileHelper.copyRecursive(s, d, this)) {
-            if (isTrace()) {
-                Log.v(TAG, "Result: FAIL. InsufficientPermissionsException"); //$NON-NLS-1$
+        //Copy recursively (the journal is kept on failure for resume the copy)
+        CopyJournal journal = CopyJournal.open(s, d, false);
+        try {
+            if (!CopyEngine.copy(s, d, this, this.mProgress, journal, this.mVerifier)) {
+                if (isTrace()) {
+                    Log.v(TAG, "Result: FAIL. InsufficientPermissionsException"); //$NON-NLS-1$
+                }
+                throw new InsufficientPermissionsException();
+            }
+            if (this.mVerifier != null && this.mVerifier.hasMismatches()) {
+                if (isTrace()) {
+                    Log.v(TAG, "Result: FAIL. Copy doesn't match the source"); //$NON-NLS-1$
+                }
+                throw new ExecutionException(R.string.msgs_copy_verification_failed);
+            }
+            if (journal != null) {
+                journal.delete();
+            }
+        } catch (CancelledOperationException e) {
+            if (journal != null) {
+                journal.delete();
+            }
+            throw e;
+        } finally {
+            if (journal != null) {
+                journal.close();
             }
-            throw new InsufficientPermissionsException();
         }
 
         if (isTrace()) {
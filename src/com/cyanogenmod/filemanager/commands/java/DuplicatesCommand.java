@@ -0,0 +1,551 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.commands.java;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+import android.util.Log;
+
+import com.android.internal.util.HexDump;
+import com.cyanogenmod.filemanager.commands.AsyncResultListener;
+import com.cyanogenmod.filemanager.commands.ChecksumExecutable.CHECKSUMS;
+import com.cyanogenmod.filemanager.commands.DuplicatesExecutable;
+import com.cyanogenmod.filemanager.console.ExecutionException;
+import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
+import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
+import com.cyanogenmod.filemanager.model.DuplicateGroup;
+import com.cyanogenmod.filemanager.model.FileSystemObject;
+import com.cyanogenmod.filemanager.util.ChecksumCache;
+import com.cyanogenmod.filemanager.util.ChecksumEngine;
+import com.cyanogenmod.filemanager.util.FileHelper;
+import com.cyanogenmod.filemanager.util.ParallelFileWalker;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A class for find the files with the same content of a directory tree.<br/>
+ * <br/>
+ * The files are compared in stages, so only the files that could be duplicates are
+ * read completely:
+ * <ol>
+ * <li>The tree is walked in parallel (see {@link ParallelFileWalker}) and the files
+ * are grouped by size. Hard links of the same file are counted only once.</li>
+ * <li>The files with the same size are grouped by the digest of their first and
+ * last blocks.</li>
+ * <li>The files that still collide are grouped by the digest of their full content.
+ * A group is returned as soon as all its files are hashed, so the duplicates are
+ * returned while the rest of the files are being compared.</li>
+ * </ol>
+ * The digests are calculated on a pool of threads, starting with the biggest files.
+ */
+public class DuplicatesCommand extends Program implements DuplicatesExecutable {
+
+    private static final String TAG = "DuplicatesCommand"; //$NON-NLS-1$
+
+    private static final String ALGORITHM = "SHA-1"; //$NON-NLS-1$
+
+    // The size of the blocks of the head and the tail of a file used by the partial
+    // digest. Files up to twice this size are fully read by the partial digest
+    private static final int PARTIAL_SIZE = 4096;
+
+    // The maximum number of threads that read files, whatever the number of cores
+    private static final int MAX_PARALLELISM = 4;
+
+    /**
+     * A file that could be duplicated.
+     */
+    private static final class Candidate {
+        final File mFile;
+        final long mSize;
+        String mDigest;
+        int mGroup;
+
+        Candidate(File file, long size) {
+            this.mFile = file;
+            this.mSize = size;
+        }
+    }
+
+    private final String mDirectory;
+    private final AsyncResultListener mAsyncResultListener;
+    private final List<DuplicateGroup> mGroups;
+
+    private boolean mCancelled;
+    private final Object mSync = new Object();
+
+    /**
+     * Constructor of <code>DuplicatesCommand</code>.
+     *
+     * @param directory The absolute directory where to search
+     * @param asyncResultListener The partial result listener
+     */
+    public DuplicatesCommand(String directory, AsyncResultListener asyncResultListener) {
+        super();
+        this.mDirectory = directory;
+        this.mAsyncResultListener = asyncResultListener;
+        this.mGroups = Collections.synchronizedList(new ArrayList<DuplicateGroup>());
+        this.mCancelled = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAsynchronous() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DuplicateGroup> getResult() {
+        return this.mGroups;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute()
+            throws InsufficientPermissionsException, NoSuchFileOrDirectory, ExecutionException {
+        if (isTrace()) {
+            Log.v(TAG,
+                    String.format("Finding duplicates in %s", this.mDirectory)); //$NON-NLS-1$
+        }
+
+        File root = new File(this.mDirectory);
+        if (!root.isDirectory()) {
+            if (isTrace()) {
+                Log.v(TAG, "Result: FAIL. NoSuchFileOrDirectory"); //$NON-NLS-1$
+            }
+            throw new NoSuchFileOrDirectory(this.mDirectory);
+        }
+
+        if (this.mAsyncResultListener != null) {
+            this.mAsyncResultListener.onAsyncStart();
+        }
+
+        ExecutorService pool = null;
+        try {
+            // Stage 1: group by size
+            List<List<Candidate>> bySize = groupBySize(root);
+            if (isTrace()) {
+                Log.v(TAG, String.format("%d sizes with collisions", //$NON-NLS-1$
+                        Integer.valueOf(bySize.size())));
+            }
+
+            // Stage 2: group by partial digest. The small files are completely read, so
+            // their groups are already final
+            pool = Executors.newFixedThreadPool(Math.max(1,
+                    Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARALLELISM)));
+            List<Candidate> all = new ArrayList<Candidate>();
+            for (List<Candidate> bucket : bySize) {
+                all.addAll(bucket);
+            }
+            hashPartial(pool, all);
+            List<List<Candidate>> collisions = new ArrayList<List<Candidate>>();
+            for (List<Candidate> bucket : bySize) {
+                for (List<Candidate> group : groupByDigest(bucket)) {
+                    if (group.get(0).mSize <= PARTIAL_SIZE * 2) {
+                        onGroupFound(group);
+                    } else {
+                        collisions.add(group);
+                    }
+                }
+            }
+
+            // Stage 3: group by full digest
+            hashFull(pool, collisions);
+
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncEnd(false);
+            }
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncExitCode(0);
+            }
+            if (isTrace()) {
+                Log.v(TAG, String.format("Result: OK. %d groups", //$NON-NLS-1$
+                        Integer.valueOf(this.mGroups.size())));
+            }
+
+        } catch (InterruptedException ie) {
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncEnd(true);
+            }
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncExitCode(143);
+            }
+            if (isTrace()) {
+                Log.v(TAG, "Result: CANCELLED"); //$NON-NLS-1$
+            }
+
+        } catch (Exception e) {
+            Log.e(TAG,
+                    String.format("Fail to find duplicates in %s", //$NON-NLS-1$
+                            this.mDirectory), e);
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onException(e);
+            }
+            if (isTrace()) {
+                Log.v(TAG, "Result: FAIL"); //$NON-NLS-1$
+            }
+
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Method that walks the tree and returns the files grouped by size. Only the
+     * sizes of more than one file are returned, starting with the biggest files.
+     *
+     * @param root The root directory
+     * @return List<List<Candidate>> The files grouped by size
+     * @throws InterruptedException If the operation was cancelled
+     */
+    private List<List<Candidate>> groupBySize(File root) throws InterruptedException {
+        final Map<Long, List<Candidate>> sizes = new HashMap<Long, List<Candidate>>();
+        final Set<String> inodes = new HashSet<String>();
+        ParallelFileWalker.walk(root, new ParallelFileWalker.Visitor() {
+            @Override
+            public void onVisit(File file, boolean isDirectory) {
+                if (isDirectory) {
+                    return;
+                }
+                StructStat st;
+                try {
+                    st = Os.lstat(file.getAbsolutePath());
+                } catch (ErrnoException e) {
+                    return;
+                }
+                // Symlinks and empty files are not duplicates
+                if (!OsConstants.S_ISREG(st.st_mode) || st.st_size == 0) {
+                    return;
+                }
+                Long size = Long.valueOf(st.st_size);
+                synchronized (sizes) {
+                    if (!inodes.add(st.st_dev + ":" + st.st_ino)) { //$NON-NLS-1$
+                        return;
+                    }
+                    List<Candidate> bucket = sizes.get(size);
+                    if (bucket == null) {
+                        bucket = new ArrayList<Candidate>(2);
+                        sizes.put(size, bucket);
+                    }
+                    bucket.add(new Candidate(file, st.st_size));
+                }
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return DuplicatesCommand.this.isCancelled();
+            }
+        });
+        if (isCancelled()) {
+            throw new InterruptedException();
+        }
+
+        List<Long> keys = new ArrayList<Long>();
+        for (Map.Entry<Long, List<Candidate>> e : sizes.entrySet()) {
+            if (e.getValue().size() > 1) {
+                keys.add(e.getKey());
+            }
+        }
+        Collections.sort(keys, Collections.reverseOrder());
+        List<List<Candidate>> buckets = new ArrayList<List<Candidate>>(keys.size());
+        for (Long key : keys) {
+            buckets.add(sizes.get(key));
+        }
+        return buckets;
+    }
+
+    /**
+     * Method that calculates the partial digests of some files in the pool, and waits
+     * for all of them.
+     *
+     * @param pool The pool of threads
+     * @param candidates The files
+     * @throws InterruptedException If the operation was cancelled
+     */
+    private void hashPartial(ExecutorService pool, List<Candidate> candidates)
+            throws InterruptedException {
+        List<Callable<Candidate>> tasks = new ArrayList<Callable<Candidate>>(candidates.size());
+        for (final Candidate candidate : candidates) {
+            tasks.add(new Callable<Candidate>() {
+                @Override
+                public Candidate call() throws Exception {
+                    candidate.mDigest = partialDigest(candidate);
+                    return candidate;
+                }
+            });
+        }
+        pool.invokeAll(tasks);
+        if (isCancelled()) {
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Method that calculates the full digests of groups of files in the pool, and
+     * returns every group as soon as all its files are hashed.
+     *
+     * @param pool The pool of threads
+     * @param groups The groups of files (all the files of a group have the same size)
+     * @throws Exception If the digests can't be calculated
+     */
+    private void hashFull(ExecutorService pool, List<List<Candidate>> groups)
+            throws Exception {
+        CompletionService<Candidate> service = new ExecutorCompletionService<Candidate>(pool);
+        int[] pending = new int[groups.size()];
+        int total = 0;
+        for (int i = 0; i < groups.size(); i++) {
+            for (final Candidate candidate : groups.get(i)) {
+                candidate.mGroup = i;
+                service.submit(new Callable<Candidate>() {
+                    @Override
+                    public Candidate call() throws Exception {
+                        candidate.mDigest = fullDigest(candidate);
+                        return candidate;
+                    }
+                });
+                pending[i]++;
+                total++;
+            }
+        }
+        for (int i = 0; i < total; i++) {
+            Future<Candidate> future = service.take();
+            if (isCancelled()) {
+                throw new InterruptedException();
+            }
+            Candidate candidate = future.get();
+            int group = candidate.mGroup;
+            pending[group]--;
+            if (pending[group] == 0) {
+                for (List<Candidate> duplicates : groupByDigest(groups.get(group))) {
+                    onGroupFound(duplicates);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method that groups files by their digest. Only the groups of more than one
+     * file are returned.
+     *
+     * @param candidates The files
+     * @return List<List<Candidate>> The groups
+     */
+    private static List<List<Candidate>> groupByDigest(List<Candidate> candidates) {
+        Map<String, List<Candidate>> digests = new LinkedHashMap<String, List<Candidate>>();
+        for (Candidate candidate : candidates) {
+            if (candidate.mDigest == null) {
+                // The file couldn't be read
+                continue;
+            }
+            List<Candidate> group = digests.get(candidate.mDigest);
+            if (group == null) {
+                group = new ArrayList<Candidate>(2);
+                digests.put(candidate.mDigest, group);
+            }
+            group.add(candidate);
+        }
+        List<List<Candidate>> groups = new ArrayList<List<Candidate>>();
+        for (List<Candidate> group : digests.values()) {
+            if (group.size() > 1) {
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Method that calculates the digest of the first and the last blocks of a file.
+     *
+     * @param candidate The file
+     * @return String The digest, or null if the file can't be read
+     */
+    private String partialDigest(Candidate candidate) {
+        RandomAccessFile raf = null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance(ALGORITHM);
+            raf = new RandomAccessFile(candidate.mFile, "r"); //$NON-NLS-1$
+            long size = Math.min(raf.length(), PARTIAL_SIZE * 2);
+            byte[] data = new byte[(int)size];
+            if (raf.length() <= PARTIAL_SIZE * 2) {
+                raf.readFully(data);
+            } else {
+                raf.readFully(data, 0, PARTIAL_SIZE);
+                raf.seek(raf.length() - PARTIAL_SIZE);
+                raf.readFully(data, PARTIAL_SIZE, PARTIAL_SIZE);
+            }
+            digest.update(data);
+            return HexDump.toHexString(digest.digest()).toLowerCase(Locale.ROOT);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to read " + candidate.mFile, e); //$NON-NLS-1$
+            return null;
+        } finally {
+            try {
+                if (raf != null) {
+                    raf.close();
+                }
+            } catch (Exception e) {/**NON BLOCK**/}
+        }
+    }
+
+    /**
+     * Method that calculates the digest of the full content of a file, or takes it
+     * from the cache of checksums.
+     *
+     * @param candidate The file
+     * @return String The digest, or null if the file can't be read or the operation
+     * was cancelled
+     */
+    private String fullDigest(Candidate candidate) {
+        ChecksumCache.Key key = ChecksumCache.getKey(candidate.mFile);
+        String[] cached = ChecksumCache.get(key);
+        if (cached != null) {
+            return cached[CHECKSUMS.SHA1.ordinal()];
+        }
+        InputStream is = null;
+        try {
+            is = new FileInputStream(candidate.mFile);
+            return ChecksumEngine.digest(is, ALGORITHM, this);
+        } catch (InterruptedException ie) {
+            return null;
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to read " + candidate.mFile, e); //$NON-NLS-1$
+            return null;
+        } finally {
+            try {
+                if (is != null) {
+                    is.close();
+                }
+            } catch (Exception e) {/**NON BLOCK**/}
+        }
+    }
+
+    /**
+     * Method that returns a group of duplicates.
+     *
+     * @param duplicates The files of the group
+     */
+    private void onGroupFound(List<Candidate> duplicates) {
+        List<FileSystemObject> files = new ArrayList<FileSystemObject>(duplicates.size());
+        for (Candidate candidate : duplicates) {
+            FileSystemObject fso = FileHelper.createFileSystemObject(candidate.mFile);
+            if (fso != null) {
+                files.add(fso);
+            }
+        }
+        if (files.size() < 2) {
+            return;
+        }
+        DuplicateGroup group =
+                new DuplicateGroup(duplicates.get(0).mSize, duplicates.get(0).mDigest, files);
+        this.mGroups.add(group);
+        if (this.mAsyncResultListener != null) {
+            this.mAsyncResultListener.onPartialResult(group);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCancelled() {
+        synchronized (this.mSync) {
+            return this.mCancelled;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel() {
+        try {
+            synchronized (this.mSync) {
+                this.mCancelled = true;
+            }
+        } catch (Throwable _throw) {/**NON BLOCK**/}
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean end() {
+        return cancel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOnEndListener(OnEndListener onEndListener) {
+        //Ignore. Java console don't use this
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOnCancelListener(OnCancelListener onCancelListener) {
+        //Ignore. Java console don't use this
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCancellable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncResultListener getAsyncResultListener() {
+        return this.mAsyncResultListener;
+    }
+}
@@ -27,10 +27,12 @@ import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
 import com.cyanogenmod.filemanager.model.FileSystemObject;
 import com.cyanogenmod.filemanager.model.Query;
 import com.cyanogenmod.filemanager.util.FileHelper;
-import com.cyanogenmod.filemanager.util.SearchHelper;
+import com.cyanogenmod.filemanager.util.FileNameIndex;
+import com.cyanogenmod.filemanager.util.FileNameMatcher;
+import com.cyanogenmod.filemanager.util.ParallelFileWalker;
 
 import java.io.File;
-import java.util.Arrays;
+import java.util.List;
 
 /**
  * A class for search files.
@@ -40,7 +42,7 @@ public class FindCommand extends Program implements FindExecutable {
     private static final String TAG = "FindCommand"; //$NON-NLS-1$
 
     private final String mDirectory;
-    private final String[] mQueryRegExp;
+    private final FileNameMatcher mMatcher;
     private final ConcurrentAsyncResultListener mAsyncResultListener;
 
     private volatile boolean mCancelled;
@@ -58,7 +60,7 @@ public class FindCommand extends Program implements FindExecutable {
             ConcurrentAsyncResultListener asyncResultListener) {
         super();
         this.mDirectory = directory;
-        this.mQueryRegExp = createRegexp(directory, query);
+        this.mMatcher = new FileNameMatcher(query);
         this.mAsyncResultListener = asyncResultListener;
         if (mAsyncResultListener instanceof ConcurrentAsyncResultListener) {
             ((ConcurrentAsyncResultListener) mAsyncResultListener).onRegister();
@@ -84,7 +86,7 @@ public class FindCommand extends Program implements FindExecutable {
         if (isTrace()) {
             Log.v(TAG,
                     String.format("Finding in %s the query %s", //$NON-NLS-1$
-                            this.mDirectory, Arrays.toString(this.mQueryRegExp)));
+                            this.mDirectory, this.mMatcher));
         }
         if (this.mAsyncResultListener != null) {
             this.mAsyncResultListener.onAsyncStart();
@@ -106,8 +108,11 @@ public class FindCommand extends Program implements FindExecutable {
         }
 
         // Find the data
-        if (ready) {
-            findRecursive(f);
+        if (ready && !this.mMatcher.isEmpty()) {
+            // Try first with the index. Walk the filesystem if isn't indexed
+            if (!findInIndex()) {
+                findRecursive(f);
+            }
         }
 
         // record program's execution termination
@@ -132,51 +137,75 @@ public class FindCommand extends Program implements FindExecutable {
     }
 
     /**
-     * Method that search files recursively
+     * Method that search files in the filename index.
+     *
+     * @return boolean If the directory is indexed (and the results were reported)
+     */
+    private boolean findInIndex() {
+        FileNameIndex index = FileNameIndex.peekInstance();
+        if (index == null) {
+            return false;
+        }
+        List<FileSystemObject> result = index.query(this.mDirectory, this.mMatcher);
+        if (result == null) {
+            return false;
+        }
+        if (isTrace()) {
+            Log.v(TAG, String.format("Found %d indexed files", //$NON-NLS-1$
+                    Integer.valueOf(result.size())));
+        }
+        int cc = result.size();
+        for (int i = 0; i < cc; i++) {
+            if (this.mCancelled || this.mEnded || (this.mAsyncResultListener != null
+                    && this.mAsyncResultListener.isCancelled())) {
+                break;
+            }
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onPartialResult(result.get(i));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method that search files recursively. The subtrees are searched in parallel
      *
      * @param folder The folder where to start the search
      */
     private void findRecursive(File folder) {
-        // Obtains the files and folders of the folders
-        File[] files = folder.listFiles();
-        if (files != null) {
-            int cc = files.length;
-            for (int i = 0; i < cc; i++) {
-                if (files[i].isDirectory()) {
-                    findRecursive(files[i]);
+        ParallelFileWalker.walk(folder, new ParallelFileWalker.Visitor() {
+            @Override
+            public void onVisit(File file, boolean isDirectory) {
+                // Check if the file or folder matches the query. The fso is only
+                // created for the matched files
+                if (!FindCommand.this.mMatcher.matches(file.getName())) {
+                    return;
                 }
-
-                // Check if the file or folder matches the regexp
-                try {
-                    int ccc = this.mQueryRegExp.length;
-                    for (int j = 0; j < ccc; j++) {
-                        if (files[i].getName().matches(this.mQueryRegExp[j])) {
-                            FileSystemObject fso =
-                                    FileHelper.createFileSystemObject(files[i]);
-                            if (fso != null) {
-                                if (isTrace()) {
-                                    Log.v(TAG, String.valueOf(fso));
-                                }
-                                if (this.mAsyncResultListener != null) {
-                                    this.mAsyncResultListener.onPartialResult(fso);
-                                }
-                            }
-                        }
+                FileSystemObject fso = FileHelper.createFileSystemObject(file, isDirectory);
+                if (fso != null) {
+                    if (isTrace()) {
+                        Log.v(TAG, String.valueOf(fso));
                     }
-                } catch (Exception e) {/**NON-BLOCK**/}
+                    if (FindCommand.this.mAsyncResultListener != null) {
+                        FindCommand.this.mAsyncResultListener.onPartialResult(fso);
+                    }
+                }
+            }
 
+            @Override
+            public boolean isCancelled() {
                 // Check if the process was cancelled
-                try {
-                    synchronized (this.mSync) {
-                        if (this.mCancelled  || this.mEnded || (mAsyncResultListener != null
-                                && mAsyncResultListener.isCancelled())) {
-                            this.mSync.notify();
-                            break;
-                        }
+                if (FindCommand.this.mCancelled || FindCommand.this.mEnded
+                        || (FindCommand.this.mAsyncResultListener != null
+                            && FindCommand.this.mAsyncResultListener.isCancelled())) {
+                    synchronized (FindCommand.this.mSync) {
+                        FindCommand.this.mSync.notify();
                     }
-                } catch (Exception e) {/**NON BLOCK**/}
+                    return true;
+                }
+                return false;
             }
-        }
+        });
     }
 
     /**
@@ -255,21 +284,4 @@ public class FindCommand extends Program implements FindExecutable {
     public AsyncResultListener getAsyncResultListener() {
         return this.mAsyncResultListener;
     }
-
-    /**
-     * Method that create the regexp of this command, using the directory and
-     * arguments and creating the regular expressions of the search.
-     *
-     * @param directory The directory where to search
-     * @param query The query make for user
-     * @return String[] The regexp for filtering files
-     */
-    private static String[] createRegexp(String directory, Query query) {
-        String[] args = new String[query.getSlotsCount()];
-        int cc = query.getSlotsCount();
-        for (int i = 0; i < cc; i++) {
-            args[i] = SearchHelper.toRegExp(query.getSlot(i), true);
-        }
-        return args;
-    }
 }
@@ -24,9 +24,7 @@ import com.cyanogenmod.filemanager.console.ExecutionException;
 import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
 import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
 import com.cyanogenmod.filemanager.model.FolderUsage;
-import com.cyanogenmod.filemanager.util.FileHelper;
-import com.cyanogenmod.filemanager.util.MimeTypeHelper;
-import com.cyanogenmod.filemanager.util.MimeTypeHelper.MimeTypeCategory;
+import com.cyanogenmod.filemanager.util.FolderUsageEngine;
 
 import java.io.File;
 
@@ -40,6 +38,7 @@ public class FolderUsageCommand extends Program implements FolderUsageExecutable
     private final String mDirectory;
     private final AsyncResultListener mAsyncResultListener;
     private final FolderUsage mFolderUsage;
+    private final FolderUsageEngine mEngine;
 
     private boolean mCancelled;
     private boolean mEnded;
@@ -57,6 +56,7 @@ public class FolderUsageCommand extends Program implements FolderUsageExecutable
         this.mDirectory = directory;
         this.mAsyncResultListener = asyncResultListener;
         this.mFolderUsage = new FolderUsage(directory);
+        this.mEngine = new FolderUsageEngine(this.mFolderUsage, asyncResultListener);
         this.mCancelled = false;
         this.mEnded = false;
     }
@@ -111,8 +111,8 @@ public class FolderUsageCommand extends Program implements FolderUsageExecutable
             }
         }
 
-        // Compute data recursively
-        computeRecursive(f);
+        // Compute data (in parallel, and only for the directories that changed)
+        this.mEngine.computeCached(f);
 
         synchronized (this.mSync) {
             this.mEnded = true;
@@ -131,62 +131,6 @@ public class FolderUsageCommand extends Program implements FolderUsageExecutable
         }
     }
 
-    /**
-     * Method that computes the folder usage recursively
-     *
-     * @param folder The folder where to start the computation
-     */
-    private void computeRecursive(File folder) {
-        // Obtains the files and folders of the folders
-        try {
-            File[] files = folder.listFiles();
-            int c = 0;
-            if (files != null) {
-                int cc = files.length;
-                for (int i = 0; i < cc; i++) {
-                    if (files[i].isDirectory()) {
-                        this.mFolderUsage.addFolder();
-                        computeRecursive(files[i]);
-                    } else {
-                        this.mFolderUsage.addFile();
-                        // Compute statistics and size
-                        File file = files[i];
-                        String ext = FileHelper.getExtension(file.getName());
-                        MimeTypeCategory category =
-                                MimeTypeHelper.getCategoryFromExt(null,
-                                                                  ext,
-                                                                  file.getAbsolutePath());
-                        this.mFolderUsage.addFileToCategory(category);
-                        this.mFolderUsage.addSize(files[i].length());
-                    }
-
-                    // Partial notification
-                    if (c % 5 == 0) {
-                        //If a listener is defined, then send the partial result
-                        if (getAsyncResultListener() != null) {
-                            getAsyncResultListener().onPartialResult(this.mFolderUsage);
-                        }
-                    }
-
-                    // Check if the process was cancelled
-                    try {
-                        synchronized (this.mSync) {
-                            if (this.mCancelled  || this.mEnded) {
-                                this.mSync.notify();
-                                break;
-                            }
-                        }
-                    } catch (Exception e) {/**NON BLOCK**/}
-                }
-            }
-        } finally {
-            //If a listener is defined, then send the partial result
-            if (getAsyncResultListener() != null) {
-                getAsyncResultListener().onPartialResult(this.mFolderUsage);
-            }
-        }
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -209,6 +153,7 @@ public class FolderUsageCommand extends Program implements FolderUsageExecutable
                     return true;
                 }
                 this.mCancelled = true;
+                this.mEngine.stop();
                 this.mSync.wait(5000L);
             }
         } catch (Exception e) {/**NON BLOCK**/}
@@ -223,6 +168,7 @@ public class FolderUsageCommand extends Program implements FolderUsageExecutable
         try {
             synchronized (this.mSync) {
                 this.mEnded = true;
+                this.mEngine.stop();
                 this.mSync.wait(5000L);
             }
         } catch (Exception e) {/**NON BLOCK**/}
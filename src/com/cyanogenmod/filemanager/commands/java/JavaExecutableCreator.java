@@ -18,6 +18,7 @@ package com.cyanogenmod.filemanager.commands.java;
 
 import com.cyanogenmod.filemanager.R;
 import com.cyanogenmod.filemanager.commands.AsyncResultListener;
+import com.cyanogenmod.filemanager.commands.BatchExecutable;
 import com.cyanogenmod.filemanager.commands.ChangeOwnerExecutable;
 import com.cyanogenmod.filemanager.commands.ChangePermissionsExecutable;
 import com.cyanogenmod.filemanager.commands.ChecksumExecutable;
@@ -29,6 +30,7 @@ import com.cyanogenmod.filemanager.commands.CreateFileExecutable;
 import com.cyanogenmod.filemanager.commands.DeleteDirExecutable;
 import com.cyanogenmod.filemanager.commands.DeleteFileExecutable;
 import com.cyanogenmod.filemanager.commands.DiskUsageExecutable;
+import com.cyanogenmod.filemanager.commands.DuplicatesExecutable;
 import com.cyanogenmod.filemanager.commands.EchoExecutable;
 import com.cyanogenmod.filemanager.commands.ExecExecutable;
 import com.cyanogenmod.filemanager.commands.ExecutableCreator;
@@ -49,6 +51,8 @@ import com.cyanogenmod.filemanager.commands.ReadExecutable;
 import com.cyanogenmod.filemanager.commands.ResolveLinkExecutable;
 import com.cyanogenmod.filemanager.commands.SIGNAL;
 import com.cyanogenmod.filemanager.commands.SendSignalExecutable;
+import com.cyanogenmod.filemanager.commands.SpaceReportExecutable;
+import com.cyanogenmod.filemanager.commands.SyncExecutable;
 import com.cyanogenmod.filemanager.commands.UncompressExecutable;
 import com.cyanogenmod.filemanager.commands.WriteExecutable;
 import com.cyanogenmod.filemanager.console.CommandNotFoundException;
@@ -60,6 +64,8 @@ import com.cyanogenmod.filemanager.model.Query;
 import com.cyanogenmod.filemanager.model.User;
 import com.cyanogenmod.filemanager.preferences.CompressionMode;
 
+import java.util.List;
+
 /**
  * A class for create shell {@link "Executable"} objects.
  */
@@ -402,4 +408,43 @@ public class JavaExecutableCreator implements ExecutableCreator {
         return new ChecksumCommand(src, asyncResultListener);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SyncExecutable createSyncExecutable(
+            String src, String dst, boolean compareContents, boolean deleteExtras,
+            AsyncResultListener asyncResultListener)
+            throws CommandNotFoundException {
+        return new SyncCommand(src, dst, compareContents, deleteExtras, asyncResultListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BatchExecutable createBatchExecutable(List<BatchExecutable.Operation> operations)
+            throws CommandNotFoundException {
+        return new BatchCommand(operations);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DuplicatesExecutable createDuplicatesExecutable(
+            String directory, AsyncResultListener asyncResultListener)
+            throws CommandNotFoundException {
+        return new DuplicatesCommand(directory, asyncResultListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SpaceReportExecutable createSpaceReportExecutable(
+            String directory, AsyncResultListener asyncResultListener)
+            throws CommandNotFoundException {
+        return new SpaceReportCommand(directory, asyncResultListener);
+    }
 }
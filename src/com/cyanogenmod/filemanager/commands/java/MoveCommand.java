@@ -18,12 +18,17 @@ package com.cyanogenmod.filemanager.commands.java;
 
 import android.util.Log;
 
+import com.cyanogenmod.filemanager.R;
 import com.cyanogenmod.filemanager.commands.MoveExecutable;
 import com.cyanogenmod.filemanager.console.CancelledOperationException;
 import com.cyanogenmod.filemanager.console.ExecutionException;
 import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
 import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
 import com.cyanogenmod.filemanager.model.MountPoint;
+import com.cyanogenmod.filemanager.util.CopyEngine;
+import com.cyanogenmod.filemanager.util.CopyJournal;
+import com.cyanogenmod.filemanager.util.CopyProgress;
+import com.cyanogenmod.filemanager.util.CopyVerifier;
 import com.cyanogenmod.filemanager.util.FileHelper;
 import com.cyanogenmod.filemanager.util.MountPointHelper;
 
@@ -39,6 +44,8 @@ public class MoveCommand extends Program implements MoveExecutable {
 
     private final String mSrc;
     private final String mDst;
+    private CopyProgress mProgress;
+    private CopyVerifier mVerifier;
 
     /**
      * Constructor of <code>MoveCommand</code>.
@@ -60,6 +67,22 @@ public class MoveCommand extends Program implements MoveExecutable {
         return Boolean.TRUE;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setProgress(CopyProgress progress) {
+        this.mProgress = progress;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setVerifier(CopyVerifier verifier) {
+        this.mVerifier = verifier;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -83,36 +106,71 @@ public class MoveCommand extends Program implements MoveExecutable {
 
         //Move or copy recursively
         if (d.exists()) {
-            if (!FileHelper.copyRecursive(s, d, this)) {
-                if (isTrace()) {
-                    Log.v(TAG, "Result: FAIL. InsufficientPermissionsException"); //$NON-NLS-1$
-                }
-                throw new InsufficientPermissionsException();
-            }
-            if (!FileHelper.deleteFolder(s)) {
-                if (isTrace()) {
-                    Log.v(TAG, "Result: OK. WARNING. Source not deleted."); //$NON-NLS-1$
-                }
-            }
+            copyAndDelete(s, d);
         } else {
             // Move between filesystem is not allow. If rename fails then use copy operation
             if (!s.renameTo(d)) {
-                if (!FileHelper.copyRecursive(s, d, this)) {
+                copyAndDelete(s, d);
+            }
+        }
+
+        if (isTrace()) {
+            Log.v(TAG, "Result: OK"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Method that copies the source to the destination and then deletes the source.
+     * The copy is journaled, so the source is only deleted when the destination is
+     * complete, and a failed move can be resumed.
+     *
+     * @param s The source file or directory
+     * @param d The destination file or directory
+     * @throws InsufficientPermissionsException If the copy failed
+     * @throws ExecutionException If a problem was detected in the operation
+     * @throws CancelledOperationException If the operation was cancelled
+     */
+    private void copyAndDelete(File s, File d)
+            throws InsufficientPermissionsException, ExecutionException,
+                   CancelledOperationException {
+        CopyJournal journal = CopyJournal.open(s, d, true);
+        try {
+            // A resumed move could have completed the copy yet
+            if (journal == null || !journal.isCompleted()) {
+                if (!CopyEngine.copy(s, d, this, this.mProgress, journal, this.mVerifier)) {
                     if (isTrace()) {
                         Log.v(TAG, "Result: FAIL. InsufficientPermissionsException"); //$NON-NLS-1$
                     }
                     throw new InsufficientPermissionsException();
                 }
-                if (!FileHelper.deleteFolder(s)) {
+                if (this.mVerifier != null && this.mVerifier.hasMismatches()) {
+                    // Don't delete the source if the copy doesn't match
                     if (isTrace()) {
-                        Log.v(TAG, "Result: OK. WARNING. Source not deleted."); //$NON-NLS-1$
+                        Log.v(TAG, "Result: FAIL. Copy doesn't match the source"); //$NON-NLS-1$
                     }
+                    throw new ExecutionException(R.string.msgs_copy_verification_failed);
+                }
+                if (journal != null) {
+                    journal.onCompleted();
                 }
             }
-        }
-
-        if (isTrace()) {
-            Log.v(TAG, "Result: OK"); //$NON-NLS-1$
+            if (!FileHelper.deleteFolder(s)) {
+                if (isTrace()) {
+                    Log.v(TAG, "Result: OK. WARNING. Source not deleted."); //$NON-NLS-1$
+                }
+            }
+            if (journal != null) {
+                journal.delete();
+            }
+        } catch (CancelledOperationException e) {
+            if (journal != null) {
+                journal.delete();
+            }
+            throw e;
+        } finally {
+            if (journal != null) {
+                journal.close();
+            }
         }
     }
 
@@ -30,7 +30,7 @@ public abstract class Program implements Executable {
 
     private boolean mTrace;
     private int mBufferSize;
-    private boolean mCancelled = false;
+    private volatile boolean mCancelled = false;
 
     /**
      * Constructor of <code>Program</code>
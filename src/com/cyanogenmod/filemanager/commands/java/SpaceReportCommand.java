@@ -0,0 +1,470 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.commands.java;
+
+import android.os.SystemClock;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.commands.AsyncResultListener;
+import com.cyanogenmod.filemanager.commands.SpaceReportExecutable;
+import com.cyanogenmod.filemanager.console.ExecutionException;
+import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
+import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
+import com.cyanogenmod.filemanager.model.SpaceReport;
+import com.cyanogenmod.filemanager.util.FileHelper;
+import com.cyanogenmod.filemanager.util.ParallelFileWalker;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A class for find the largest files, folders and file extensions of a directory
+ * tree.<br/>
+ * <br/>
+ * The tree is walked once, in parallel (see {@link ParallelFileWalker}). The largest
+ * files and folders are kept in bounded min-heaps of {@link SpaceReportExecutable#MAX_ENTRIES}
+ * entries, so the memory used doesn't depend on the size of the tree. The rankings
+ * found so far are returned as {@link SpaceReport} partial results, at most every
+ * {@link #PARTIAL_INTERVAL} milliseconds. Symbolic links are not followed nor
+ * counted, and hard links are counted once per link.
+ */
+public class SpaceReportCommand extends Program implements SpaceReportExecutable {
+
+    private static final String TAG = "SpaceReportCommand"; //$NON-NLS-1$
+
+    /**
+     * The minimum time between two partial results (in milliseconds).
+     */
+    public static final long PARTIAL_INTERVAL = 500L;
+
+    // The maximum number of distinct extensions counted (the rest are counted
+    // as SpaceReport.OTHER_EXTENSIONS), and the maximum length of an extension
+    private static final int MAX_EXTENSIONS = 512;
+    private static final int MAX_EXTENSION_LENGTH = 16;
+
+    private static final Comparator<SpaceReport.Entry> SMALLEST_FIRST =
+            new Comparator<SpaceReport.Entry>() {
+                @Override
+                public int compare(SpaceReport.Entry lhs, SpaceReport.Entry rhs) {
+                    if (lhs.getSize() == rhs.getSize()) {
+                        return rhs.getName().compareTo(lhs.getName());
+                    }
+                    return lhs.getSize() < rhs.getSize() ? -1 : 1;
+                }
+            };
+
+    /**
+     * A ranking of the largest entries, backed by a bounded min-heap. The smallest
+     * entry of the ranking is evicted when a larger one is found.
+     */
+    private static final class Ranking {
+        private final PriorityQueue<SpaceReport.Entry> mHeap =
+                new PriorityQueue<SpaceReport.Entry>(MAX_ENTRIES + 1, SMALLEST_FIRST);
+        // The size of the smallest entry of a full ranking. Entries not larger than
+        // this are rejected without lock
+        private volatile long mThreshold = -1;
+
+        void offer(String name, long size) {
+            if (size <= this.mThreshold) {
+                return;
+            }
+            synchronized (this.mHeap) {
+                this.mHeap.offer(new SpaceReport.Entry(name, size, 1));
+                if (this.mHeap.size() > MAX_ENTRIES) {
+                    this.mHeap.poll();
+                }
+                if (this.mHeap.size() == MAX_ENTRIES) {
+                    this.mThreshold = this.mHeap.peek().getSize();
+                }
+            }
+        }
+
+        List<SpaceReport.Entry> snapshot() {
+            List<SpaceReport.Entry> entries;
+            synchronized (this.mHeap) {
+                entries = new ArrayList<SpaceReport.Entry>(this.mHeap);
+            }
+            Collections.sort(entries, Collections.reverseOrder(SMALLEST_FIRST));
+            return entries;
+        }
+    }
+
+    private final String mDirectory;
+    private final AsyncResultListener mAsyncResultListener;
+
+    private final Ranking mFiles = new Ranking();
+    private final Ranking mFolders = new Ranking();
+    // The total size and number of files of every extension
+    private final Map<String, long[]> mExtensions = new HashMap<String, long[]>();
+    private final AtomicInteger mNumberOfFolders = new AtomicInteger();
+    private final AtomicInteger mNumberOfFiles = new AtomicInteger();
+    private final AtomicLong mTotalSize = new AtomicLong();
+    private final AtomicLong mNextPartial = new AtomicLong();
+    private volatile SpaceReport mReport;
+
+    private boolean mCancelled;
+    private final Object mSync = new Object();
+
+    /**
+     * Constructor of <code>SpaceReportCommand</code>.
+     *
+     * @param directory The absolute directory to analyze
+     * @param asyncResultListener The partial result listener
+     */
+    public SpaceReportCommand(String directory, AsyncResultListener asyncResultListener) {
+        super();
+        this.mDirectory = directory;
+        this.mAsyncResultListener = asyncResultListener;
+        this.mCancelled = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAsynchronous() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SpaceReport getSpaceReport() {
+        return this.mReport;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute()
+            throws InsufficientPermissionsException, NoSuchFileOrDirectory, ExecutionException {
+        if (isTrace()) {
+            Log.v(TAG,
+                    String.format("Analyzing space of %s", this.mDirectory)); //$NON-NLS-1$
+        }
+
+        File root = new File(this.mDirectory);
+        if (!root.isDirectory()) {
+            if (isTrace()) {
+                Log.v(TAG, "Result: FAIL. NoSuchFileOrDirectory"); //$NON-NLS-1$
+            }
+            throw new NoSuchFileOrDirectory(this.mDirectory);
+        }
+
+        if (this.mAsyncResultListener != null) {
+            this.mAsyncResultListener.onAsyncStart();
+        }
+
+        try {
+            this.mNextPartial.set(SystemClock.elapsedRealtime() + PARTIAL_INTERVAL);
+            ParallelFileWalker.invoke(new SizeTask(root, true));
+            if (isCancelled()) {
+                throw new InterruptedException();
+            }
+            publish(true);
+
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncEnd(false);
+            }
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncExitCode(0);
+            }
+            if (isTrace()) {
+                Log.v(TAG, String.format("Result: OK. %s", this.mReport)); //$NON-NLS-1$
+            }
+
+        } catch (InterruptedException ie) {
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncEnd(true);
+            }
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncExitCode(143);
+            }
+            if (isTrace()) {
+                Log.v(TAG, "Result: CANCELLED"); //$NON-NLS-1$
+            }
+
+        } catch (Exception e) {
+            Log.e(TAG,
+                    String.format("Fail to analyze the space of %s", //$NON-NLS-1$
+                            this.mDirectory), e);
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onException(e);
+            }
+            if (isTrace()) {
+                Log.v(TAG, "Result: FAIL"); //$NON-NLS-1$
+            }
+        }
+    }
+
+    /**
+     * The task that sums the size of a directory tree, forking a new task for every
+     * child directory. The files of the directory are ranked while it's listed, and
+     * the directory is ranked when the size of all its subtrees is known.
+     */
+    private class SizeTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = -2771365402855409418L;
+
+        private final File mDir;
+        private final boolean mRoot;
+
+        /**
+         * Constructor of <code>SizeTask</code>.
+         *
+         * @param dir The directory to walk
+         * @param root If the directory is the root of the report (it isn't ranked)
+         */
+        SizeTask(File dir, boolean root) {
+            super();
+            this.mDir = dir;
+            this.mRoot = root;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected Long compute() {
+            String[] names = this.mDir.list();
+            if (names == null) {
+                return Long.valueOf(0);
+            }
+
+            long size = 0;
+            int files = 0;
+            Map<String, long[]> extensions = null;
+            List<SizeTask> subtasks = null;
+            for (String name : names) {
+                if (isCancelled()) {
+                    break;
+                }
+                File file = new File(this.mDir, name);
+                StructStat st;
+                try {
+                    st = Os.lstat(file.getAbsolutePath());
+                } catch (ErrnoException e) {
+                    continue;
+                }
+                if (OsConstants.S_ISDIR(st.st_mode)) {
+                    if (subtasks == null) {
+                        subtasks = new ArrayList<SizeTask>();
+                    }
+                    SizeTask task = new SizeTask(file, false);
+                    task.fork();
+                    subtasks.add(task);
+                } else if (OsConstants.S_ISREG(st.st_mode)) {
+                    size += st.st_size;
+                    files++;
+                    mFiles.offer(file.getAbsolutePath(), st.st_size);
+                    if (extensions == null) {
+                        extensions = new HashMap<String, long[]>();
+                    }
+                    String extension = getExtensionOf(name);
+                    long[] totals = extensions.get(extension);
+                    if (totals == null) {
+                        totals = new long[2];
+                        extensions.put(extension, totals);
+                    }
+                    totals[0] += st.st_size;
+                    totals[1]++;
+                }
+            }
+            mNumberOfFiles.addAndGet(files);
+            mTotalSize.addAndGet(size);
+            if (extensions != null) {
+                mergeExtensions(extensions);
+            }
+
+            // Wait for the subtrees (or walk them here if nobody stole them)
+            if (subtasks != null) {
+                mNumberOfFolders.addAndGet(subtasks.size());
+                for (int i = subtasks.size() - 1; i >= 0; i--) {
+                    size += subtasks.get(i).join().longValue();
+                }
+            }
+            if (!this.mRoot && !isCancelled()) {
+                mFolders.offer(this.mDir.getAbsolutePath(), size);
+            }
+            publish(false);
+            return Long.valueOf(size);
+        }
+    }
+
+    /**
+     * Method that returns the extension used to count a file.
+     *
+     * @param name The name of the file
+     * @return String The lower case extension, or {@link SpaceReport#NO_EXTENSION}
+     */
+    private static String getExtensionOf(String name) {
+        String extension = FileHelper.getExtension(name);
+        if (extension == null || extension.length() == 0) {
+            return SpaceReport.NO_EXTENSION;
+        }
+        if (extension.length() > MAX_EXTENSION_LENGTH) {
+            return SpaceReport.OTHER_EXTENSIONS;
+        }
+        return extension.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Method that adds the totals of the extensions of a directory to the report.
+     * Once the report has {@link #MAX_EXTENSIONS} extensions, the files of new
+     * extensions are counted as {@link SpaceReport#OTHER_EXTENSIONS}.
+     *
+     * @param extensions The totals (size and number of files) of every extension
+     */
+    private void mergeExtensions(Map<String, long[]> extensions) {
+        synchronized (this.mExtensions) {
+            for (Map.Entry<String, long[]> entry : extensions.entrySet()) {
+                String extension = entry.getKey();
+                long[] totals = this.mExtensions.get(extension);
+                if (totals == null) {
+                    if (this.mExtensions.size() >= MAX_EXTENSIONS) {
+                        extension = SpaceReport.OTHER_EXTENSIONS;
+                        totals = this.mExtensions.get(extension);
+                    }
+                    if (totals == null) {
+                        totals = new long[2];
+                        this.mExtensions.put(extension, totals);
+                    }
+                }
+                totals[0] += entry.getValue()[0];
+                totals[1] += entry.getValue()[1];
+            }
+        }
+    }
+
+    /**
+     * Method that builds the report with the rankings found so far, and sends it as
+     * a partial result.
+     *
+     * @param force If the report must be sent now. Otherwise, it's only sent if the
+     * last partial result is older than {@link #PARTIAL_INTERVAL}
+     */
+    private void publish(boolean force) {
+        long now = SystemClock.elapsedRealtime();
+        if (force) {
+            this.mNextPartial.set(now + PARTIAL_INTERVAL);
+        } else {
+            long next = this.mNextPartial.get();
+            if (now < next || !this.mNextPartial.compareAndSet(next, now + PARTIAL_INTERVAL)) {
+                // Too soon, or other thread is publishing it
+                return;
+            }
+        }
+
+        List<SpaceReport.Entry> extensions = new ArrayList<SpaceReport.Entry>();
+        synchronized (this.mExtensions) {
+            for (Map.Entry<String, long[]> entry : this.mExtensions.entrySet()) {
+                extensions.add(new SpaceReport.Entry(entry.getKey(),
+                        entry.getValue()[0], (int)entry.getValue()[1]));
+            }
+        }
+        Collections.sort(extensions, Collections.reverseOrder(SMALLEST_FIRST));
+        if (extensions.size() > MAX_ENTRIES) {
+            extensions = extensions.subList(0, MAX_ENTRIES);
+        }
+        SpaceReport report = new SpaceReport(this.mDirectory,
+                this.mNumberOfFolders.get(), this.mNumberOfFiles.get(),
+                this.mTotalSize.get(), this.mFiles.snapshot(), this.mFolders.snapshot(),
+                extensions);
+        this.mReport = report;
+        if (this.mAsyncResultListener != null) {
+            this.mAsyncResultListener.onPartialResult(report);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCancelled() {
+        synchronized (this.mSync) {
+            return this.mCancelled;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel() {
+        try {
+            synchronized (this.mSync) {
+                this.mCancelled = true;
+            }
+        } catch (Throwable _throw) {/**NON BLOCK**/}
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean end() {
+        return cancel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOnEndListener(OnEndListener onEndListener) {
+        //Ignore. Java console don't use this
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOnCancelListener(OnCancelListener onCancelListener) {
+        //Ignore. Java console don't use this
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCancellable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncResultListener getAsyncResultListener() {
+        return this.mAsyncResultListener;
+    }
+}
@@ -0,0 +1,482 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.commands.java;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.commands.AsyncResultListener;
+import com.cyanogenmod.filemanager.commands.SyncExecutable;
+import com.cyanogenmod.filemanager.console.CancelledOperationException;
+import com.cyanogenmod.filemanager.console.ExecutionException;
+import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
+import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
+import com.cyanogenmod.filemanager.util.FileHelper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A class for synchronize a destination directory with a source directory.
+ */
+public class SyncCommand extends Program implements SyncExecutable {
+
+    private static final String TAG = "SyncCommand"; //$NON-NLS-1$
+
+    // The granularity of the modification time of the filesystems (vfat stores the
+    // modification time with a resolution of 2 seconds)
+    private static final long MTIME_GRANULARITY = 2000L;
+
+    // The size of the buffers used to compare the content of the files
+    private static final int COMPARE_BUFFER_SIZE = 65536;
+
+    private final File mSrc;
+    private final File mDst;
+    private final boolean mCompareContents;
+    private final boolean mDeleteExtras;
+    private final AsyncResultListener mAsyncResultListener;
+
+    private final int[] mChanges = new int[CHANGES.values().length];
+
+    /**
+     * Constructor of <code>SyncCommand</code>.
+     *
+     * @param src The source directory
+     * @param dst The destination directory
+     * @param compareContents Compare the content of the files with the same size,
+     * instead of their modification time
+     * @param deleteExtras Delete the files of the destination that don't exist in
+     * the source
+     * @param asyncResultListener The partial result listener
+     */
+    public SyncCommand(String src, String dst, boolean compareContents, boolean deleteExtras,
+            AsyncResultListener asyncResultListener) {
+        super();
+        this.mSrc = new File(src);
+        this.mDst = new File(dst);
+        this.mCompareContents = compareContents;
+        this.mDeleteExtras = deleteExtras;
+        this.mAsyncResultListener = asyncResultListener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAsynchronous() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute() throws InsufficientPermissionsException,
+            NoSuchFileOrDirectory, ExecutionException {
+
+        if (isTrace()) {
+            Log.v(TAG,
+                    String.format("Synchronizing %s with %s", //$NON-NLS-1$
+                            this.mDst, this.mSrc));
+        }
+
+        // Check that the source exists
+        if (!this.mSrc.isDirectory()) {
+            if (isTrace()) {
+                Log.v(TAG, "Result: FAIL. NoSuchFileOrDirectory"); //$NON-NLS-1$
+            }
+            throw new NoSuchFileOrDirectory(this.mSrc.getAbsolutePath());
+        }
+
+        Arrays.fill(this.mChanges, 0);
+        try {
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncStart();
+            }
+
+            // Transfer the changes, and then delete the extra files
+            if (!this.mDst.isDirectory() && !this.mDst.mkdirs()) {
+                throw new InsufficientPermissionsException();
+            }
+            sync(this.mSrc, this.mDst, ""); //$NON-NLS-1$
+            if (this.mDeleteExtras) {
+                deleteExtras(this.mSrc, this.mDst, ""); //$NON-NLS-1$
+            }
+
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncEnd(false);
+            }
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncExitCode(0);
+            }
+
+            if (isTrace()) {
+                Log.v(TAG, "Result: OK"); //$NON-NLS-1$
+            }
+
+        } catch (CancelledOperationException e) {
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncEnd(true);
+            }
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onAsyncExitCode(143);
+            }
+
+            if (isTrace()) {
+                Log.v(TAG, "Result: CANCELLED"); //$NON-NLS-1$
+            }
+
+        } catch (Exception e) {
+            Log.e(TAG,
+                    String.format(
+                            "Fail to synchronize %s with %s", //$NON-NLS-1$
+                            this.mDst, this.mSrc),
+                    e);
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onException(e);
+            }
+            if (isTrace()) {
+                Log.v(TAG, "Result: FAIL"); //$NON-NLS-1$
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel() {
+        requestCancel();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean end() {
+        return cancel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOnEndListener(OnEndListener onEndListener) {
+        //Ignore. Java console don't use this
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOnCancelListener(OnCancelListener onCancelListener) {
+        //Ignore. Java console don't use this
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCancellable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncResultListener getAsyncResultListener() {
+        return this.mAsyncResultListener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Boolean getResult() {
+        return Boolean.valueOf(getChanges(CHANGES.FAILED) == 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getChanges(CHANGES change) {
+        return this.mChanges[change.ordinal()];
+    }
+
+    /**
+     * Method that transfers the new and changed files of a source directory.
+     *
+     * @param src The source directory
+     * @param dst The destination directory (it exists)
+     * @param path The path of the directories, relative to the synchronized directories
+     * @throws CancelledOperationException If the operation was cancelled
+     * @throws ExecutionException If the operation failed
+     */
+    private void sync(File src, File dst, String path)
+            throws CancelledOperationException, ExecutionException {
+        File[] files = src.listFiles();
+        if (files == null) {
+            onChange(CHANGES.FAILED, path);
+            return;
+        }
+        for (File s : files) {
+            if (isCancelled()) {
+                throw new CancelledOperationException();
+            }
+
+            // Symbolic links are neither followed nor transferred (as the shell command
+            // does), so a link can't take the synchronization out of the tree or into a cycle
+            int srcMode = getMode(s);
+            if (srcMode == -1 || OsConstants.S_ISLNK(srcMode)) {
+                continue;
+            }
+
+            File d = new File(dst, s.getName());
+            int dstMode = getMode(d);
+            String p = path + s.getName();
+            if (OsConstants.S_ISDIR(srcMode)) {
+                p += File.separator;
+                if (!OsConstants.S_ISDIR(dstMode)) {
+                    if (dstMode != -1 && !delete(d, dstMode) || !d.mkdir()) {
+                        onChange(CHANGES.FAILED, p);
+                        continue;
+                    }
+                    onChange(CHANGES.ADDED, p);
+                }
+                sync(s, d, p);
+                continue;
+            }
+            if (!OsConstants.S_ISREG(srcMode)) {
+                continue;
+            }
+
+            CHANGES change;
+            if (dstMode == -1) {
+                change = CHANGES.ADDED;
+            } else if (!OsConstants.S_ISREG(dstMode)) {
+                // Replace the directory or link, instead of writing through it
+                if (!delete(d, dstMode)) {
+                    onChange(CHANGES.FAILED, p);
+                    continue;
+                }
+                change = CHANGES.UPDATED;
+            } else if (hasChanged(s, d)) {
+                change = CHANGES.UPDATED;
+            } else {
+                continue;
+            }
+
+            // Transfer the file, and keep its modification time, so the next
+            // synchronization finds the file unchanged
+            if (FileHelper.copyFileWithNio(s, d, this)
+                    && d.setLastModified(s.lastModified())) {
+                onChange(change, p);
+            } else {
+                onChange(CHANGES.FAILED, p);
+            }
+        }
+    }
+
+    /**
+     * Method that deletes the files of a destination directory that don't exist in
+     * the source directory.
+     *
+     * @param src The source directory
+     * @param dst The destination directory
+     * @param path The path of the directories, relative to the synchronized directories
+     * @throws CancelledOperationException If the operation was cancelled
+     */
+    private void deleteExtras(File src, File dst, String path)
+            throws CancelledOperationException {
+        File[] files = dst.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File d : files) {
+            if (isCancelled()) {
+                throw new CancelledOperationException();
+            }
+
+            int dstMode = getMode(d);
+            if (dstMode == -1) {
+                continue;
+            }
+            File s = new File(src, d.getName());
+            int srcMode = getMode(s);
+            boolean isDirectory = OsConstants.S_ISDIR(dstMode);
+            String p = path + d.getName() + (isDirectory ? File.separator : ""); //$NON-NLS-1$
+            if (srcMode == -1) {
+                onChange(delete(d, dstMode) ? CHANGES.DELETED : CHANGES.FAILED, p);
+            } else if (isDirectory && OsConstants.S_ISDIR(srcMode)) {
+                deleteExtras(s, d, p);
+            }
+        }
+    }
+
+    /**
+     * Method that returns the mode of a file, without following symbolic links.
+     *
+     * @param file The file
+     * @return int The mode of the file (see {@link OsConstants}), or -1 if it doesn't exist
+     */
+    private static int getMode(File file) {
+        try {
+            return Os.lstat(file.getAbsolutePath()).st_mode;
+        } catch (ErrnoException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Method that deletes a file or a directory tree. Symbolic links are deleted, but
+     * never followed, so nothing outside the tree is deleted.
+     *
+     * @param file The file to delete
+     * @param mode The mode of the file
+     * @return boolean If the file was deleted
+     */
+    private static boolean delete(File file, int mode) {
+        if (OsConstants.S_ISDIR(mode)) {
+            File[] files = file.listFiles();
+            if (files == null) {
+                return false;
+            }
+            for (File f : files) {
+                if (!delete(f, getMode(f))) {
+                    return false;
+                }
+            }
+        }
+        return file.delete();
+    }
+
+    /**
+     * Method that checks if a file was changed since its last synchronization.
+     *
+     * @param src The source file
+     * @param dst The destination file
+     * @return boolean If the file was changed
+     * @throws CancelledOperationException If the operation was cancelled
+     */
+    private boolean hasChanged(File src, File dst) throws CancelledOperationException {
+        if (src.length() != dst.length()) {
+            return true;
+        }
+        if (this.mCompareContents) {
+            return !hasSameContent(src, dst);
+        }
+        return Math.abs(src.lastModified() - dst.lastModified()) >= MTIME_GRANULARITY;
+    }
+
+    /**
+     * Method that compares the content of two files of the same size.
+     *
+     * @param src The source file
+     * @param dst The destination file
+     * @return boolean If the files have the same content
+     * @throws CancelledOperationException If the operation was cancelled
+     */
+    private boolean hasSameContent(File src, File dst) throws CancelledOperationException {
+        FileInputStream is1 = null;
+        FileInputStream is2 = null;
+        try {
+            is1 = new FileInputStream(src);
+            is2 = new FileInputStream(dst);
+            FileChannel c1 = is1.getChannel();
+            FileChannel c2 = is2.getChannel();
+            ByteBuffer b1 = ByteBuffer.allocate(COMPARE_BUFFER_SIZE);
+            ByteBuffer b2 = ByteBuffer.allocate(COMPARE_BUFFER_SIZE);
+            while (true) {
+                if (isCancelled()) {
+                    throw new CancelledOperationException();
+                }
+                b1.clear();
+                b2.clear();
+                int r1 = fill(c1, b1);
+                int r2 = fill(c2, b2);
+                if (r1 != r2) {
+                    return false;
+                }
+                if (r1 <= 0) {
+                    return true;
+                }
+                b1.flip();
+                b2.flip();
+                if (!b1.equals(b2)) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            // Copy the file again
+            return false;
+        } finally {
+            try {
+                if (is1 != null) {
+                    is1.close();
+                }
+            } catch (Exception e) {/**NON BLOCK**/}
+            try {
+                if (is2 != null) {
+                    is2.close();
+                }
+            } catch (Exception e) {/**NON BLOCK**/}
+        }
+    }
+
+    /**
+     * Method that fills a buffer from a channel, until the buffer is full or the
+     * channel reaches its end.
+     *
+     * @param channel The channel
+     * @param buffer The buffer
+     * @return int The number of bytes read
+     * @throws IOException If the channel can't be read
+     */
+    private static int fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Method that records a change and reports it.
+     *
+     * @param change The change
+     * @param path The path of the changed file, relative to the synchronized directories
+     */
+    private void onChange(CHANGES change, String path) {
+        this.mChanges[change.ordinal()]++;
+        if (this.mAsyncResultListener != null) {
+            this.mAsyncResultListener.onPartialResult(change.getSymbol() + " " + path); //$NON-NLS-1$
+        }
+    }
+}
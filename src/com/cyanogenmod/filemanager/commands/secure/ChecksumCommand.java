@@ -18,25 +18,27 @@ package com.cyanogenmod.filemanager.commands.secure;
 
 import android.util.Log;
 
-import com.android.internal.util.HexDump;
 import com.cyanogenmod.filemanager.commands.AsyncResultListener;
 import com.cyanogenmod.filemanager.commands.ChecksumExecutable;
 import com.cyanogenmod.filemanager.console.ExecutionException;
 import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
 import com.cyanogenmod.filemanager.console.secure.SecureConsole;
+import com.cyanogenmod.filemanager.util.ChecksumEngine;
 
 import de.schlichtherle.truezip.file.TFile;
 import de.schlichtherle.truezip.file.TFileInputStream;
 
 import java.io.File;
 import java.io.InputStream;
-import java.security.MessageDigest;
-import java.util.Locale;
 
 /**
- * A class for calculate MD5 and SHA-1 checksums of a file system object.<br />
+ * A class for calculate the checksums of a file system object, in only one read
+ * of the file.<br />
  * <br />
- * Partial results are returned in order (MD5 -> SHA1)
+ * Partial results are returned in order (MD5 -> SHA1 -> SHA256 -> SHA512 -> CRC32),
+ * after the number of bytes read.
+ *
+ * @see ChecksumEngine
  */
 public class ChecksumCommand extends Program implements ChecksumExecutable {
 
@@ -60,7 +62,7 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
             AsyncResultListener asyncResultListener) {
         super(console);
         this.mAsyncResultListener = asyncResultListener;
-        this.mChecksums = new String[]{null, null};
+        this.mChecksums = new String[CHECKSUMS.values().length];
         this.mSrc = new File(src);
     }
 
@@ -92,16 +94,17 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
             throw new NoSuchFileOrDirectory(this.mSrc.getAbsolutePath());
         }
 
-        CHECKSUMS checksum = CHECKSUMS.MD5;
+        InputStream is = null;
         try {
             if (this.mAsyncResultListener != null) {
                 this.mAsyncResultListener.onAsyncStart();
             }
 
-            // Calculate digests
-            calculateDigest(checksum, f);
-            checksum = CHECKSUMS.SHA1;
-            calculateDigest(checksum, f);
+            // Calculate all the digests in one read
+            is = new TFileInputStream(f);
+            String[] checksums =
+                    ChecksumEngine.compute(is, this, this.mAsyncResultListener);
+            System.arraycopy(checksums, 0, this.mChecksums, 0, checksums.length);
 
             if (this.mAsyncResultListener != null) {
                 this.mAsyncResultListener.onAsyncEnd(false);
@@ -129,8 +132,7 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
         } catch (Exception e) {
             Log.e(TAG,
                     String.format(
-                            "Fail to calculate %s checksum of file %s", //$NON-NLS-1$
-                            checksum.name(),
+                            "Fail to calculate checksums of file %s", //$NON-NLS-1$
                             this.mSrc.getAbsolutePath()),
                     e);
             if (this.mAsyncResultListener != null) {
@@ -139,6 +141,12 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
             if (isTrace()) {
                 Log.v(TAG, "Result: FAIL"); //$NON-NLS-1$
             }
+        } finally {
+            try {
+                if (is != null) {
+                    is.close();
+                }
+            } catch (Exception e) {/**NON BLOCK**/}
         }
     }
 
@@ -220,59 +228,4 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
     public AsyncResultListener getAsyncResultListener() {
         return this.mAsyncResultListener;
     }
-
-    /**
-     * Method that calculate a digest of the file for the source file
-     *
-     * @param type The type of digest to obtain
-     * @pa
-     * @throws InterruptedException If the operation was cancelled
-     * @throws Exception If an error occurs
-     */
-    private void calculateDigest(CHECKSUMS type, TFile file)
-            throws InterruptedException, Exception {
-
-        InputStream is = null;
-        try {
-            MessageDigest md = MessageDigest.getInstance(type.name());
-            is = new TFileInputStream(file);
-
-            // Start digesting
-            byte[] data = new byte[getBufferSize()];
-            int read = 0;
-            while ((read = is.read(data, 0, getBufferSize())) != -1) {
-                checkCancelled();
-                md.update(data, 0, read);
-            }
-            checkCancelled();
-
-            // Finally digest
-            this.mChecksums[type.ordinal()] =
-                    HexDump.toHexString(md.digest()).toLowerCase(Locale.ROOT);
-            checkCancelled();
-            if (this.mAsyncResultListener != null) {
-                this.mAsyncResultListener.onPartialResult(this.mChecksums[type.ordinal()]);
-            }
-
-        } finally {
-            try {
-                if (is != null) {
-                    is.close();
-                }
-            } catch (Exception e) {/**NON BLOCK**/}
-        }
-    }
-
-    /**
-     * Checks if the operation was cancelled
-     *
-     * @throws InterruptedException If the operation was cancelled
-     */
-    private void checkCancelled() throws InterruptedException {
-        synchronized (this.mSync) {
-            if (this.mCancelled) {
-                throw new InterruptedException();
-            }
-        }
-    }
 }
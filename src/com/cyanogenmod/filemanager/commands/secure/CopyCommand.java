@@ -23,6 +23,8 @@ import com.cyanogenmod.filemanager.console.ExecutionException;
 import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
 import com.cyanogenmod.filemanager.console.secure.SecureConsole;
 import com.cyanogenmod.filemanager.model.MountPoint;
+import com.cyanogenmod.filemanager.util.CopyProgress;
+import com.cyanogenmod.filemanager.util.CopyVerifier;
 
 import de.schlichtherle.truezip.file.TFile;
 
@@ -68,6 +70,22 @@ public class CopyCommand extends Program implements CopyExecutable {
         return Boolean.TRUE;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setProgress(CopyProgress progress) {
+        // The secure storage copies through TrueZIP, so it can't report partial progress
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setVerifier(CopyVerifier verifier) {
+        // The secure storage copies through TrueZIP, so it can't verify the copy
+    }
+
     /**
      * {@inheritDoc}
      */
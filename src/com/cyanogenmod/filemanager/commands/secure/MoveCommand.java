@@ -23,6 +23,8 @@ import com.cyanogenmod.filemanager.console.ExecutionException;
 import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
 import com.cyanogenmod.filemanager.console.secure.SecureConsole;
 import com.cyanogenmod.filemanager.model.MountPoint;
+import com.cyanogenmod.filemanager.util.CopyProgress;
+import com.cyanogenmod.filemanager.util.CopyVerifier;
 import com.cyanogenmod.filemanager.util.FileHelper;
 
 import java.io.IOException;
@@ -70,6 +72,22 @@ public class MoveCommand extends Program implements MoveExecutable {
         return Boolean.TRUE;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setProgress(CopyProgress progress) {
+        // The secure storage copies through TrueZIP, so it can't report partial progress
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setVerifier(CopyVerifier verifier) {
+        // The secure storage copies through TrueZIP, so it can't verify the copy
+    }
+
     /**
      * {@inheritDoc}
      */
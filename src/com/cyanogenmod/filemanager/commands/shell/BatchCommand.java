@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.commands.shell;
+
+import com.cyanogenmod.filemanager.commands.BatchExecutable;
+import com.cyanogenmod.filemanager.console.CommandNotFoundException;
+import com.cyanogenmod.filemanager.console.ExecutionException;
+import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
+import com.cyanogenmod.filemanager.model.MountPoint;
+import com.cyanogenmod.filemanager.util.MountPointHelper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.List;
+
+
+/**
+ * A class for execute a list of file operations in one shell script.<br />
+ * <br />
+ * Every operation is passed to the script as a triplet of arguments (operation,
+ * source and destination), and the script prints the exit code of every operation
+ * in a line. The lines are notified as they are printed, for report the progress
+ * of the batch.
+ *
+ * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?rm"}
+ * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?cp"}
+ * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?mv"}
+ */
+public class BatchCommand extends SyncResultProgram implements BatchExecutable {
+
+    private static final String ID = "batch";  //$NON-NLS-1$
+
+    private final List<Operation> mOperations;
+    private final boolean[] mResult;
+    private OnOperationCompletedListener mListener;
+    // The output line being printed, and the number of operations notified
+    private final StringBuilder mLine = new StringBuilder();
+    private int mCompleted;
+
+    /**
+     * Constructor of <code>BatchCommand</code>.
+     *
+     * @param operations The operations to execute
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     */
+    public BatchCommand(List<Operation> operations) throws InvalidCommandDefinitionException {
+        super(ID);
+        this.mOperations = operations;
+        this.mResult = new boolean[operations.size()];
+
+        int cc = operations.size();
+        String[] args = new String[cc * 3];
+        for (int i = 0; i < cc; i++) {
+            Operation op = operations.get(i);
+            args[i * 3] = op.getOperation().getId();
+            args[i * 3 + 1] = op.getSrc();
+            args[i * 3 + 2] = op.getDst() == null ? "" : op.getDst(); //$NON-NLS-1$
+        }
+        addExpandedArguments(args, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void parse(String in, String err) throws ParseException {
+        // Every line is the exit code of an operation
+        BufferedReader br = null;
+        int line = 0;
+        try {
+            br = new BufferedReader(new StringReader(in));
+            String szLine = null;
+            while ((szLine = br.readLine()) != null && line < this.mResult.length) {
+                //Checks that there is some text in the line. Otherwise ignore it
+                szLine = szLine.trim();
+                if (szLine.length() == 0) {
+                    continue;
+                }
+                this.mResult[line] = szLine.equals("0"); //$NON-NLS-1$
+                line++;
+            }
+
+        } catch (IOException ioEx) {
+            throw new ParseException(ioEx.getMessage(), line);
+
+        } finally {
+            try {
+                if (br != null) {
+                    br.close();
+                }
+            } catch (Throwable ex) {
+                /**NON BLOCK**/
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onNewOutput(byte[] data, int offset, int count) {
+        if (this.mListener == null) {
+            return;
+        }
+        for (int i = offset; i < offset + count; i++) {
+            char c = (char)data[i];
+            if (c != '\n') {
+                this.mLine.append(c);
+                continue;
+            }
+
+            // Only the exit codes are notified (not the control codes of the console)
+            String line = this.mLine.toString().trim();
+            this.mLine.setLength(0);
+            if (line.length() > 0 && isNumber(line)
+                    && this.mCompleted < this.mResult.length) {
+                this.mListener.onOperationCompleted(
+                        this.mCompleted, line.equals("0")); //$NON-NLS-1$
+                this.mCompleted++;
+            }
+        }
+    }
+
+    /**
+     * Method that returns if a line of the output is a number.
+     *
+     * @param line The line
+     * @return boolean If the line is a number
+     */
+    private static boolean isNumber(String line) {
+        int cc = line.length();
+        for (int i = 0; i < cc; i++) {
+            if (!Character.isDigit(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOnOperationCompletedListener(OnOperationCompletedListener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean[] getResult() {
+        return this.mResult;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void checkExitCode(int exitCode)
+            throws InsufficientPermissionsException, CommandNotFoundException, ExecutionException {
+        // The status of every operation is returned in the output
+        if (exitCode != 0) {
+            throw new ExecutionException("exitcode != 0"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MountPoint getSrcWritableMountPoint() {
+        for (Operation op : this.mOperations) {
+            if (op.getOperation().compareTo(OPERATION.MOVE) == 0) {
+                return MountPointHelper.getMountPointFromDirectory(op.getSrc());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MountPoint getDstWritableMountPoint() {
+        if (this.mOperations.isEmpty()) {
+            return null;
+        }
+        Operation op = this.mOperations.get(0);
+        return MountPointHelper.getMountPointFromDirectory(
+                op.getOperation().hasDestination() ? op.getDst() : op.getSrc());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isIndefinitelyWait() {
+        return true;
+    }
+}
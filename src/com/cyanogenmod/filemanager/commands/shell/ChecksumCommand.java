@@ -22,13 +22,17 @@ import com.cyanogenmod.filemanager.commands.SIGNAL;
 import com.cyanogenmod.filemanager.console.CommandNotFoundException;
 import com.cyanogenmod.filemanager.console.ExecutionException;
 import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
+import com.cyanogenmod.filemanager.util.ChecksumCache;
 
 import java.io.File;
 
 /**
- * A class for calculate MD5 and SHA-1 checksums of a file system object.<br />
+ * A class for calculate the checksums of a file system object.<br />
  * <br />
- * Partial results are returned in order (MD5 -> SHA1)
+ * Partial results are returned in order (MD5 -> SHA1). Every tool reads the whole
+ * file, so only these checksums are calculated, and the rest are returned as
+ * {@link ChecksumExecutable#UNAVAILABLE}. The files readable by the app are
+ * read once by the java console instead.
  *
  * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?md5sum"}
  * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?sha1sum"}
@@ -39,6 +43,7 @@ public class ChecksumCommand extends AsyncResultProgram implements ChecksumExecu
     private static final String ID = "checksum";  //$NON-NLS-1$
 
     private final String mName;
+    private final ChecksumCache.Key mKey;
     private final String[] mChecksums;
     private int mChecksumsCounter;
     private String mPartial;
@@ -53,8 +58,9 @@ public class ChecksumCommand extends AsyncResultProgram implements ChecksumExecu
     public ChecksumCommand(String src, AsyncResultListener asyncResultListener)
             throws InvalidCommandDefinitionException {
         super(ID, asyncResultListener, src);
-        this.mChecksums = new String[]{null, null};
+        this.mChecksums = new String[CHECKSUMS.values().length];
         this.mName = new File(src).getName();
+        this.mKey = ChecksumCache.getKey(new File(src));
     }
 
     /**
@@ -62,8 +68,9 @@ public class ChecksumCommand extends AsyncResultProgram implements ChecksumExecu
      */
     @Override
     public void onStartParsePartialResult() {
-        this.mChecksums[0] = null;
-        this.mChecksums[1] = null;
+        for (int i = 0; i < this.mChecksums.length; i++) {
+            this.mChecksums[i] = null;
+        }
         this.mChecksumsCounter = 0;
         this.mPartial = ""; //$NON-NLS-1$
     }
@@ -83,6 +90,22 @@ public class ChecksumCommand extends AsyncResultProgram implements ChecksumExecu
             }
         }
         this.mPartial = ""; //$NON-NLS-1$
+
+        // The rest of the checksums aren't calculated by the shell
+        if (!cancelled && this.mChecksumsCounter > CHECKSUMS.SHA1.ordinal()) {
+            for (int i = this.mChecksumsCounter; i < this.mChecksums.length; i++) {
+                this.mChecksums[i] = UNAVAILABLE;
+                if (getAsyncResultListener() != null) {
+                    getAsyncResultListener().onPartialResult(UNAVAILABLE);
+                }
+            }
+            this.mChecksumsCounter = this.mChecksums.length;
+        }
+
+        // Share the checksums with the other consoles
+        if (!cancelled) {
+            ChecksumCache.put(this.mKey, this.mChecksums);
+        }
     }
 
     /**
@@ -168,7 +191,7 @@ public class ChecksumCommand extends AsyncResultProgram implements ChecksumExecu
      * @return String The processed line
      */
     private String processPartialResult(String line) {
-        // MD5 and SHA-1 return both the digest and the name of the file
+        // All the checksums return both the digest and the name of the file
         // 4c044b884cf2ff3839713da0e81dced19f099b09  boot.zip
         int pos = line.indexOf(" "); //$NON-NLS-1$
         if (line.endsWith(this.mName) && pos != -1) {
@@ -21,6 +21,8 @@ import com.cyanogenmod.filemanager.console.CommandNotFoundException;
 import com.cyanogenmod.filemanager.console.ExecutionException;
 import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
 import com.cyanogenmod.filemanager.model.MountPoint;
+import com.cyanogenmod.filemanager.util.CopyProgress;
+import com.cyanogenmod.filemanager.util.CopyVerifier;
 import com.cyanogenmod.filemanager.util.MountPointHelper;
 
 import java.text.ParseException;
@@ -66,6 +68,22 @@ public class CopyCommand extends SyncResultProgram implements CopyExecutable {
         return this.mRet;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setProgress(CopyProgress progress) {
+        // The command runs as a single shell command, so it can't report partial progress
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setVerifier(CopyVerifier verifier) {
+        // The command runs as a single shell command, so it can't verify the copy
+    }
+
     /**
      * {@inheritDoc}
      */
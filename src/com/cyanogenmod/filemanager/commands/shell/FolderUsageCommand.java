@@ -32,6 +32,7 @@ import com.cyanogenmod.filemanager.model.FolderUsage;
 import com.cyanogenmod.filemanager.model.NamedPipe;
 import com.cyanogenmod.filemanager.model.Symlink;
 import com.cyanogenmod.filemanager.util.FileHelper;
+import com.cyanogenmod.filemanager.util.FolderUsageEngine;
 import com.cyanogenmod.filemanager.util.MimeTypeHelper;
 import com.cyanogenmod.filemanager.util.MimeTypeHelper.MimeTypeCategory;
 
@@ -54,6 +55,7 @@ public class FolderUsageCommand extends AsyncResultProgram implements FolderUsag
 
     private final String mDirectory;
     private FolderUsage mFolderUsage;
+    private FolderUsageEngine mEngine;
 
     /**
      * Constructor of <code>FolderUsageCommand</code>.
@@ -67,6 +69,7 @@ public class FolderUsageCommand extends AsyncResultProgram implements FolderUsag
             throws InvalidCommandDefinitionException {
         super(ID, asyncResultListener, new String[]{directory});
         this.mFolderUsage = new FolderUsage(directory);
+        this.mEngine = new FolderUsageEngine(this.mFolderUsage, asyncResultListener);
         this.mDirectory = directory;
     }
 
@@ -76,6 +79,7 @@ public class FolderUsageCommand extends AsyncResultProgram implements FolderUsag
     @Override
     public void onStartParsePartialResult() {
         this.mFolderUsage = new FolderUsage(this.mDirectory);
+        this.mEngine = new FolderUsageEngine(this.mFolderUsage, getAsyncResultListener());
     }
 
     /**
@@ -83,7 +87,8 @@ public class FolderUsageCommand extends AsyncResultProgram implements FolderUsag
      */
     @Override
     public void onEndParsePartialResult(boolean cancelled) {
-        //$NON-NLS-1$
+        // Send the final totals
+        this.mEngine.publish(true);
     }
 
     /**
@@ -124,7 +129,6 @@ public class FolderUsageCommand extends AsyncResultProgram implements FolderUsag
                 lines.add(line);
             }
 
-            int c = 0;
             try {
                 while (lines.size() > 0) {
                     // Retrieve the info
@@ -142,7 +146,6 @@ public class FolderUsageCommand extends AsyncResultProgram implements FolderUsag
                         if (szLine.length() == 0 ||
                             szLine.endsWith(" " + FileHelper.CURRENT_DIRECTORY) || //$NON-NLS-1$
                             szLine.endsWith(" " + FileHelper.PARENT_DIRECTORY)) { //$NON-NLS-1$
-                            c++;
                             continue;
                         }
 
@@ -153,16 +156,15 @@ public class FolderUsageCommand extends AsyncResultProgram implements FolderUsag
                                 type == DomainSocket.UNIX_ID ||
                                 type == NamedPipe.UNIX_ID) {
                             // File + Category
-                            this.mFolderUsage.addFile();
                             if (type == Symlink.UNIX_ID) {
-                                this.mFolderUsage.addFileToCategory(MimeTypeCategory.NONE);
+                                this.mEngine.addFile(MimeTypeCategory.NONE, 0);
                             } else {
-                                this.mFolderUsage.addFileToCategory(MimeTypeCategory.SYSTEM);
+                                this.mEngine.addFile(MimeTypeCategory.SYSTEM, 0);
                             }
 
                         } else if (type == Directory.UNIX_ID) {
                             // Folder
-                            this.mFolderUsage.addFolder();
+                            this.mEngine.addFolder();
 
                         } else {
                             // File + Category + Size
@@ -181,31 +183,19 @@ public class FolderUsageCommand extends AsyncResultProgram implements FolderUsag
                                         MimeTypeHelper.getCategoryFromExt(null,
                                                                           ext,
                                                                           file.getAbsolutePath());
-                                this.mFolderUsage.addFile();
-                                this.mFolderUsage.addFileToCategory(category);
-                                this.mFolderUsage.addSize(size);
+                                this.mEngine.addFile(category, size);
                             } catch (Exception e) {/**NON BLOCK**/}
                         }
-                        c++;
 
                     } catch (Exception e) {
                         // Ignore.
                     }
 
-                    // Partial notification
-                    if (c % 5 == 0) {
-                        //If a listener is defined, then send the partial result
-                        if (getAsyncResultListener() != null) {
-                            getAsyncResultListener().onPartialResult(this.mFolderUsage);
-                        }
-                    }
                 }
             } catch (Exception ex) { /**NON BLOCK **/ }
 
-            //If a listener is defined, then send the partial result
-            if (getAsyncResultListener() != null) {
-                getAsyncResultListener().onPartialResult(this.mFolderUsage);
-            }
+            // Partial notification (not more often than the engine interval)
+            this.mEngine.publish(false);
 
         } catch (Exception ex) {
             Log.w(TAG, "Partial result fails", ex); //$NON-NLS-1$
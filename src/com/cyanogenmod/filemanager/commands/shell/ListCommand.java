@@ -25,6 +25,7 @@ import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
 import com.cyanogenmod.filemanager.console.shell.ShellConsole;
 import com.cyanogenmod.filemanager.model.FileSystemObject;
 import com.cyanogenmod.filemanager.model.ParentDirectory;
+import com.cyanogenmod.filemanager.model.Symlink;
 import com.cyanogenmod.filemanager.util.FileHelper;
 import com.cyanogenmod.filemanager.util.ParseHelper;
 
@@ -35,7 +36,9 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -50,12 +53,25 @@ public class ListCommand extends SyncResultProgram implements ListExecutable {
     private static final String ID_LS = "ls";  //$NON-NLS-1$
     private static final String ID_FILEINFO = "fileinfo";  //$NON-NLS-1$
 
+    // The line that separates the records of the listing from the records
+    // of the references of the symlinks
+    private static final String LINKS_MARKER = "--links--";  //$NON-NLS-1$
+    // The stat format of the target of a symlink ("path -> target")
+    private static final String LINKS_TARGET_FORMAT = "%N";  //$NON-NLS-1$
+    private static final String LINKS_TARGET_SEPARATOR = " -> ";  //$NON-NLS-1$
+
     private final LIST_MODE mMode;
     private final List<FileSystemObject> mFiles;
     private String mParentDir;
 
     /**
-     * Constructor of <code>ListCommand</code>. List mode.
+     * Constructor of <code>ListCommand</code>. List mode.<br/>
+     * <br/>
+     * The listing is done by a single stat process that emits a compact record per
+     * entry (see {@link ParseHelper#parseListOutput(String, String)}), followed by the
+     * target of all the symlinks and the records of their references, emitted by two
+     * stat processes that resolve all the symlinks at once, so the symlinks doesn't
+     * need to be resolved later.
      *
      * @param src The file system object to be listed
      * @param console The console in which retrieve the parent directory information.
@@ -64,9 +80,12 @@ public class ListCommand extends SyncResultProgram implements ListExecutable {
      */
     public ListCommand(String src, ShellConsole console)
             throws InvalidCommandDefinitionException {
-        // Always add backslash for list the files of the directory, instead of
-        // the directory.
-        super(ID_LS, new String[]{ FileHelper.addTrailingSlash(src) });
+        super(ID_LS,
+                new String[]{
+                    FileHelper.addTrailingSlash(src),
+                    LINKS_MARKER,
+                    ParseHelper.LIST_OUTPUT_FORMAT,
+                    LINKS_TARGET_FORMAT});
 
         //Initialize files to something distinct of null
         this.mFiles = new ArrayList<FileSystemObject>();
@@ -123,6 +142,11 @@ public class ListCommand extends SyncResultProgram implements ListExecutable {
      */
     @Override
     public void parse(String in, String err) throws ParseException {
+        if (this.mMode.compareTo(LIST_MODE.DIRECTORY) == 0) {
+            parseListing(in);
+            return;
+        }
+
         //Release the array
         this.mFiles.clear();
 
@@ -175,6 +199,130 @@ public class ListCommand extends SyncResultProgram implements ListExecutable {
         }
     }
 
+    /**
+     * Method that parses the compact records of a directory listing. The records of
+     * the entries are followed by the {@link #LINKS_MARKER}, a
+     * <code>/path -&gt; target</code> line for every symlink, and the record of the
+     * reference of every symlink (named as the symlink, the reference of a broken
+     * symlink has no record).
+     *
+     * @param in The standard output of the program
+     * @throws ParseException If the output can't be parsed
+     */
+    private void parseListing(String in) throws ParseException {
+        //Release the array
+        this.mFiles.clear();
+
+        final String dir = this.mParentDir == null ? FileHelper.ROOT_DIRECTORY : this.mParentDir;
+        Map<String, Symlink> symlinks = new HashMap<String, Symlink>();
+        Map<String, String> targets = new HashMap<String, String>();
+        boolean links = false;
+        int start = 0;
+        final int len = in.length();
+        try {
+            while (start < len) {
+                int end = in.indexOf('\n', start);
+                if (end == -1) {
+                    end = len;
+                }
+                final String line = in.substring(start, end);
+                start = end + 1;
+                if (line.length() == 0) {
+                    continue;
+                }
+                if (line.compareTo(LINKS_MARKER) == 0) {
+                    links = true;
+                    continue;
+                }
+
+                // The target of a symlink
+                if (links && !isRecord(line)) {
+                    int pos = line.indexOf(LINKS_TARGET_SEPARATOR);
+                    if (pos != -1) {
+                        String path = unquote(line.substring(0, pos));
+                        String target = unquote(
+                                line.substring(pos + LINKS_TARGET_SEPARATOR.length()));
+                        if (!target.startsWith(File.separator)) {
+                            target = new File(dir, target).getAbsolutePath();
+                        }
+                        targets.put(new File(path).getName(), FileHelper.getAbsPath(target));
+                    }
+                    continue;
+                }
+
+                // Parse and add to result files (or to its symlink)
+                try {
+                    if (!links) {
+                        FileSystemObject fso = ParseHelper.parseListOutput(line, dir);
+                        this.mFiles.add(fso);
+                        if (fso instanceof Symlink) {
+                            symlinks.put(fso.getName(), (Symlink)fso);
+                        }
+                    } else {
+                        // The record of the reference is named as its symlink
+                        FileSystemObject ref = ParseHelper.parseListOutput(line, dir);
+                        Symlink symlink = symlinks.get(ref.getName());
+                        String target = targets.get(ref.getName());
+                        if (symlink != null && target != null) {
+                            File file = new File(target);
+                            ref.setName(file.getName());
+                            ref.setParent(FileHelper.getParentDir(file));
+                            symlink.setLink(ref.getParent());
+                            symlink.setLinkRef(ref);
+                        }
+                    }
+                } catch (ParseException pEx) {
+                    // Log the parsing error
+                    if (isTrace()) {
+                        Log.w(TAG,
+                            String.format(
+                                    "Failed to parse output: %s", //$NON-NLS-1$
+                                    String.valueOf(line)));
+                    }
+                }
+            }
+
+            // Add the parent directory
+            if (this.mParentDir != null &&
+                    this.mParentDir.compareTo(FileHelper.ROOT_DIRECTORY) != 0) {
+                this.mFiles.add(0, new ParentDirectory(new File(this.mParentDir).getParent()));
+            }
+
+        } catch (Exception ex) {
+            throw new ParseException(ex.getMessage(), 0);
+        }
+    }
+
+    /**
+     * Method that returns if a line of the listing is a compact record (that starts
+     * with the raw mode in hexadecimal).
+     *
+     * @param line The line
+     * @return boolean If the line is a compact record
+     */
+    private static boolean isRecord(String line) {
+        return Character.digit(line.charAt(0), 16) != -1;
+    }
+
+    /**
+     * Method that removes the quotes that some stat implementations add to the
+     * paths of the <code>%N</code> format.
+     *
+     * @param path The path
+     * @return String The path without quotes
+     */
+    private static String unquote(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && "'`\"".indexOf(path.charAt(start)) != -1) { //$NON-NLS-1$
+            start++;
+        }
+        while (end > start && "'`\"".indexOf(path.charAt(end - 1)) != -1) { //$NON-NLS-1$
+            end--;
+        }
+        return path.substring(start, end);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.commands.shell;
+
+import com.cyanogenmod.filemanager.commands.AsyncResultListener;
+import com.cyanogenmod.filemanager.commands.SIGNAL;
+import com.cyanogenmod.filemanager.commands.SyncExecutable;
+import com.cyanogenmod.filemanager.console.CommandNotFoundException;
+import com.cyanogenmod.filemanager.console.ExecutionException;
+import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
+
+import java.util.Arrays;
+
+/**
+ * A class for synchronize a destination directory with a source directory.<br />
+ * <br />
+ * The files are compared by size and modification time (with a tolerance of the
+ * 2 seconds of resolution of vfat), or by content with <code>cmp</code>, and copied
+ * with <code>cp -p</code> to keep their modification time.
+ *
+ * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?find"}
+ * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?cmp"}
+ * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?cp"}
+ */
+public class SyncCommand extends AsyncResultProgram implements SyncExecutable {
+
+    private static final String ID = "sync";  //$NON-NLS-1$
+
+    private static final String SIZE_FORMAT = "%s"; //$NON-NLS-1$
+    private static final String MTIME_FORMAT = "%Y"; //$NON-NLS-1$
+
+    private final int[] mChanges = new int[CHANGES.values().length];
+    private String mPartial;
+
+    /**
+     * Constructor of <code>SyncCommand</code>.
+     *
+     * @param src The source directory
+     * @param dst The destination directory
+     * @param compareContents Compare the content of the files, instead of their
+     * modification time
+     * @param deleteExtras Delete the files of the destination that don't exist in
+     * the source
+     * @param asyncResultListener The partial result listener
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     */
+    public SyncCommand(String src, String dst, boolean compareContents, boolean deleteExtras,
+            AsyncResultListener asyncResultListener)
+            throws InvalidCommandDefinitionException {
+        super(ID, asyncResultListener, src, dst,
+                compareContents ? "1" : "0", //$NON-NLS-1$ //$NON-NLS-2$
+                deleteExtras ? "1" : "0", //$NON-NLS-1$ //$NON-NLS-2$
+                SIZE_FORMAT, MTIME_FORMAT);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStartParsePartialResult() {
+        Arrays.fill(this.mChanges, 0);
+        this.mPartial = ""; //$NON-NLS-1$
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onEndParsePartialResult(boolean cancelled) {
+        // Send the last partial data
+        if (this.mPartial != null && this.mPartial.length() > 0) {
+            processPartialResult(this.mPartial);
+        }
+        this.mPartial = ""; //$NON-NLS-1$
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onParsePartialResult(final byte[] in) {
+        String partialIn = new String(in);
+        if (partialIn == null || partialIn.length() == 0) return;
+        boolean endsWithNewLine = partialIn.endsWith("\n"); //$NON-NLS-1$
+        String[] lines = partialIn.split("\n"); //$NON-NLS-1$
+
+        // Append the pending data to the first line
+        lines[0] = this.mPartial + lines[0];
+
+        // Return all the lines, except the last
+        for (int i = 0; i < lines.length - 1; i++) {
+            processPartialResult(lines[i]);
+        }
+
+        // Return the last line?
+        if (endsWithNewLine) {
+            processPartialResult(lines[lines.length - 1]);
+            this.mPartial = ""; //$NON-NLS-1$
+        } else {
+            // Save the partial for next calls
+            this.mPartial = lines[lines.length - 1];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onParseErrorPartialResult(byte[] partialErr) {/**NON BLOCK**/}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SIGNAL onRequestEnd() {
+        try {
+            if (this.getProgramListener().getOutputStream() != null) {
+                this.getProgramListener().getOutputStream().flush();
+            }
+        } catch (Exception ex) {/**NON BLOCK**/}
+        try {
+            Thread.yield();
+        } catch (Exception ex) {/**NON BLOCK**/}
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Boolean getResult() {
+        return Boolean.valueOf(getChanges(CHANGES.FAILED) == 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getChanges(CHANGES change) {
+        return this.mChanges[change.ordinal()];
+    }
+
+    /**
+     * Method that processes a line of the report, and returns it if it's a change
+     *
+     * @param line The line to process
+     */
+    private void processPartialResult(String line) {
+        CHANGES change = CHANGES.fromReport(line);
+        if (change == null) {
+            return;
+        }
+        this.mChanges[change.ordinal()]++;
+        if (getAsyncResultListener() != null) {
+            getAsyncResultListener().onPartialResult(line);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void checkExitCode(int exitCode)
+            throws InsufficientPermissionsException, CommandNotFoundException, ExecutionException {
+        //Ignore exit code 143 (cancelled)
+        //Ignore exit code 137 (kill -9)
+        if (exitCode != 0 && exitCode != 143 && exitCode != 137) {
+            throw new ExecutionException(
+                        "exitcode != 0 && != 143 && != 137"); //$NON-NLS-1$
+        }
+    }
+
+}
@@ -48,4 +48,17 @@ public abstract class SyncResultProgram extends Program implements SyncResultPro
         super(id, prepare, args);
     }
 
+    /**
+     * Method invoked when the program writes new data to the standard output, before
+     * it ends. The output is parsed when the program ends, so by default the data is
+     * ignored.
+     *
+     * @param data The buffer with the new data
+     * @param offset The offset of the new data in the buffer
+     * @param count The length of the new data
+     */
+    public void onNewOutput(byte[] data, int offset, int count) {
+        /**NON BLOCK**/
+    }
+
 }
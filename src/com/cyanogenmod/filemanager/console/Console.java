@@ -131,4 +131,14 @@ public abstract class Console
            OperationTimeoutException, ExecutionException, CommandNotFoundException,
            ReadOnlyFilesystemException, CancelledOperationException, AuthenticationFailedException;
 
+   /**
+    * Method that cancels the programs that a thread is executing in this console.
+    *
+    * @param caller The thread that requested the programs
+    * @return boolean If some program was cancelled
+    */
+   public boolean onCancel(Thread caller) {
+       return onCancel();
+   }
+
 }
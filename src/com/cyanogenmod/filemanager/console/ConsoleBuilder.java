@@ -26,6 +26,8 @@ import com.cyanogenmod.filemanager.commands.shell.InvalidCommandDefinitionExcept
 import com.cyanogenmod.filemanager.console.java.JavaConsole;
 import com.cyanogenmod.filemanager.console.shell.NonPriviledgeConsole;
 import com.cyanogenmod.filemanager.console.shell.PrivilegedConsole;
+import com.cyanogenmod.filemanager.console.shell.ShellConsole;
+import com.cyanogenmod.filemanager.console.shell.ShellConsolePool;
 import com.cyanogenmod.filemanager.preferences.AccessMode;
 import com.cyanogenmod.filemanager.preferences.FileManagerSettings;
 import com.cyanogenmod.filemanager.preferences.Preferences;
@@ -118,7 +120,7 @@ public final class ConsoleBuilder {
         try {
             //Create the console, destroy the current console, and marks as current
             holder = new ConsoleHolder(
-                    createNonPrivilegedConsole(context));
+                    createPool(context, createNonPrivilegedConsole(context)));
             destroyConsole();
             sHolder = holder;
             return true;
@@ -150,7 +152,7 @@ public final class ConsoleBuilder {
         try {
             //Create the console, destroy the current console, and marks as current
             holder = new ConsoleHolder(
-                    createAndCheckPrivilegedConsole(context));
+                    createPool(context, createAndCheckPrivilegedConsole(context)));
             destroyConsole();
             sHolder = holder;
 
@@ -248,8 +250,10 @@ public final class ConsoleBuilder {
             //Is there a console allocated
             if (sHolder == null) {
                 sHolder = (superuserMode)
-                        ? new ConsoleHolder(createAndCheckPrivilegedConsole(context))
-                        : new ConsoleHolder(createNonPrivilegedConsole(context));
+                        ? new ConsoleHolder(
+                                createPool(context, createAndCheckPrivilegedConsole(context)))
+                        : new ConsoleHolder(
+                                createPool(context, createNonPrivilegedConsole(context)));
                 if (superuserMode) {
                     // Change also the background console to privileged
                     FileManagerApplication.changeBackgroundConsoleToPriviligedConsole();
@@ -273,6 +277,27 @@ public final class ConsoleBuilder {
         sHolder = null;
     }
 
+    /**
+     * Method that attaches a pool of shells to a shell console, so the console can
+     * execute programs concurrently. Other consoles are returned as is.
+     *
+     * @param context The current context
+     * @param console The allocated console
+     * @return Console The same console
+     * @see ShellConsolePool
+     */
+    private static Console createPool(Context context, Console console) {
+        if (console instanceof ShellConsole) {
+            ShellConsolePool pool = new ShellConsolePool(
+                    (ShellConsole)console,
+                    context.getResources().getInteger(R.integer.console_pool_size),
+                    context.getResources().getInteger(R.integer.console_pool_async_size));
+            ((ShellConsole)console).setPool(pool);
+            pool.warmUp();
+        }
+        return console;
+    }
+
     /**
      * Method that creates a new non privileged console.
      *
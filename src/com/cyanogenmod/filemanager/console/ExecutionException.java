@@ -44,6 +44,17 @@ public class ExecutionException extends Exception {
         mDetailMessageResId = detailMessageResId;
     }
 
+    /**
+     * Constructor of <code>ExecutionException</code>.
+     *
+     * @param detailMessageResId Res ID for Message associated to the exception
+     * @param details The details of the error, shown after the message
+     */
+    public ExecutionException(int detailMessageResId, String details) {
+        super(details);
+        mDetailMessageResId = detailMessageResId;
+    }
+
     /**
      * Constructor of <code>ExecutionException</code>.
      *
@@ -241,6 +241,8 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
 
     private final ShellExecutableFactory mExecutableFactory;
 
+    private ShellConsolePool mPool;
+
     /**
      * Constructor of <code>ShellConsole</code>.
      *
@@ -302,6 +304,26 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
         this.mBufferSize = bufferSize;
     }
 
+    /**
+     * Method that returns the pool that dispatches the executions of this console
+     *
+     * @return ShellConsolePool The pool of this console, or <code>null</code> if the
+     * console executes all the commands by itself
+     */
+    public ShellConsolePool getPool() {
+        return this.mPool;
+    }
+
+    /**
+     * Method that sets the pool that dispatches the executions of this console
+     *
+     * @param pool The pool of this console, <code>null</code> to execute all the
+     * commands in this console
+     */
+    public void setPool(ShellConsolePool pool) {
+        this.mPool = pool;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -393,7 +415,7 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
             //Retrieve identity
             IdentityExecutable identityCmd =
                     getExecutableFactory().newCreator().createIdentityExecutable();
-            execute(identityCmd, null);
+            execute(identityCmd, false);
             this.mIdentity = identityCmd.getResult();
             // Identity command is required for root console detection,
             // but Groups command is not used for now. Also, this command is causing
@@ -404,7 +426,7 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
                     //Try with groups
                     GroupsExecutable groupsCmd =
                             getExecutableFactory().newCreator().createGroupsExecutable();
-                    execute(groupsCmd, null);
+                    execute(groupsCmd, false);
                     this.mIdentity.setGroups(groupsCmd.getResult());
                 }
             } catch (Exception ex) {
@@ -427,6 +449,18 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
      */
     @Override
     public final void dealloc() {
+        deallocShell();
+
+        // Release the rest of the shells of the pool
+        if (this.mPool != null) {
+            this.mPool.dispose();
+        }
+    }
+
+    /**
+     * Method that deallocates the shell process of this console.
+     */
+    private void deallocShell() {
         synchronized (this.mSync) {
             if (this.mActive) {
                 this.mActive = false;
@@ -471,7 +505,8 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
      */
     @Override
     public final void realloc() throws ConsoleAllocException {
-        dealloc();
+        // Only the shell of this console. Other shells of the pool are still working
+        deallocShell();
         alloc();
     }
 
@@ -479,18 +514,67 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
      * {@inheritDoc}
      */
     @Override
-    public synchronized void execute(Executable executable, Context ctx)
+    public void execute(Executable executable, Context ctx)
             throws ConsoleAllocException, InsufficientPermissionsException, NoSuchFileOrDirectory,
             OperationTimeoutException, ExecutionException, CommandNotFoundException,
             ReadOnlyFilesystemException {
+        // If the console has a pool, let the pool choose a free shell for the program
+        final ShellConsolePool pool = this.mPool;
+        if (pool != null) {
+            pool.execute(executable);
+            return;
+        }
         execute(executable, false);
     }
 
+    /**
+     * Method for execute a command in this console, bypassing the pool.
+     *
+     * @param executable The executable command to be executed
+     * @param onAsyncEnd A callback invoked when an asynchronous program ends
+     * (or fails). Not invoked for synchronous programs
+     * @throws ConsoleAllocException If the console is not allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws CommandNotFoundException If the executable program was not found
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
+     * @hide
+     */
+    void executeInShell(final Executable executable, final Runnable onAsyncEnd)
+            throws ConsoleAllocException, InsufficientPermissionsException,
+            CommandNotFoundException, NoSuchFileOrDirectory,
+            OperationTimeoutException, ExecutionException, ReadOnlyFilesystemException {
+        execute(executable, false, onAsyncEnd);
+    }
+
+    /**
+     * Method for execute a command in the operating system layer.
+     *
+     * @param executable The executable command to be executed
+     * @param waitForSu Wait for su (do not used timeout)
+     * @throws ConsoleAllocException If the console is not allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws CommandNotFoundException If the executable program was not found
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
+     */
+    private void execute(final Executable executable, final boolean waitForSu)
+            throws ConsoleAllocException, InsufficientPermissionsException,
+            CommandNotFoundException, NoSuchFileOrDirectory,
+            OperationTimeoutException, ExecutionException, ReadOnlyFilesystemException {
+        execute(executable, waitForSu, null);
+    }
+
     /**
      * Method for execute a command in the operating system layer.
      *
      * @param executable The executable command to be executed
      * @param waitForSu Wait for su (do not used timeout)
+     * @param onAsyncEnd A callback invoked when an asynchronous program ends. Can be null
      * @throws ConsoleAllocException If the console is not allocated
      * @throws InsufficientPermissionsException If an operation requires elevated permissions
      * @throws NoSuchFileOrDirectory If the file or directory was not found
@@ -499,7 +583,8 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
      * @throws ExecutionException If the operation returns a invalid exit code
      * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
      */
-    private synchronized void execute(final Executable executable, final boolean waitForSu)
+    private synchronized void execute(final Executable executable, final boolean waitForSu,
+            final Runnable onAsyncEnd)
             throws ConsoleAllocException, InsufficientPermissionsException,
             CommandNotFoundException, NoSuchFileOrDirectory,
             OperationTimeoutException, ExecutionException, ReadOnlyFilesystemException {
@@ -531,6 +616,10 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
                             //Capture exception
                             Log.e(TAG, "Fail asynchronous execution", ex); //$NON-NLS-1$
                         }
+                    } finally {
+                        if (onAsyncEnd != null) {
+                            onAsyncEnd.run();
+                        }
                     }
                 }
             });
@@ -812,6 +901,8 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
                                                     shell.mActiveCommand).
                                                     onRequestStartParsePartialResult();
                                         }
+                                    } else {
+                                        notifyNewOutput(bytes, 0, bytes.length);
                                     }
                                 } else {
                                     byte[] data = shell.mSbIn.toByteArray();
@@ -819,6 +910,9 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
                                 }
                             } else {
                                 sb.write(r);
+                                if (!async) {
+                                    notifyNewOutput(new byte[]{(byte)r}, 0, 1);
+                                }
                             }
 
                             // New data received
@@ -898,6 +992,8 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
                                                 p.onRequestStartParsePartialResult();
                                             }
                                         }
+                                    } else {
+                                        notifyNewOutput(bytes, 0, bytes.length);
                                     }
                                 } else {
                                     byte[] bytes = shell.mSbIn.toByteArray();
@@ -905,6 +1001,9 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
                                 }
                             } else {
                                 sb.write(data, 0, read);
+                                if (!async) {
+                                    notifyNewOutput(data, 0, read);
+                                }
                             }
 
                             // New data received
@@ -1254,6 +1353,22 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
         }
     }
 
+    /**
+     * Method that notifies the new output of the active synchronous program.
+     *
+     * @param data The buffer with the new data
+     * @param offset The offset of the new data in the buffer
+     * @param count The length of the new data
+     */
+    void notifyNewOutput(byte[] data, int offset, int count) {
+        Program program = this.mActiveCommand;
+        if (program instanceof SyncResultProgram && count > 0) {
+            try {
+                ((SyncResultProgram)program).onNewOutput(data, offset, count);
+            } catch (Exception e) {/**NON BLOCK**/}
+        }
+    }
+
     /**
      * Method that returns the exit code of the last executed command.
      *
@@ -1436,6 +1551,50 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
         return false;
     }
 
+    /**
+     * Method that kill a command, only if it is still the current command of this shell.
+     *
+     * @param executable The command to kill
+     * @return boolean If the program was killed
+     */
+    boolean killCommand(Executable executable) {
+        synchronized (this.mSync) {
+            if (this.mActiveCommand != executable) {
+                return false;
+            }
+            return killCurrentCommand();
+        }
+    }
+
+    /**
+     * Method that send a signal to a command, only if it is still the current command
+     * of this shell.
+     *
+     * @param executable The command
+     * @param signal The signal to send
+     * @return boolean If the signal was sent
+     */
+    boolean sendSignalToCommand(Executable executable, SIGNAL signal) {
+        synchronized (this.mSync) {
+            if (this.mActiveCommand != executable) {
+                return false;
+            }
+            return sendSignalToCurrentCommand(signal);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onCancel(Thread caller) {
+        // The programs of a pool could be running in any of its shells
+        if (this.mPool != null) {
+            return this.mPool.onCancel(caller);
+        }
+        return onCancel();
+    }
+
     /**
      * {@inheritDoc}
      */
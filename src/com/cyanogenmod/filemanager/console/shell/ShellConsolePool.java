@@ -0,0 +1,502 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.console.shell;
+
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.commands.AsyncResultExecutable;
+import com.cyanogenmod.filemanager.commands.Executable;
+import com.cyanogenmod.filemanager.commands.SIGNAL;
+import com.cyanogenmod.filemanager.console.CommandNotFoundException;
+import com.cyanogenmod.filemanager.console.ConsoleAllocException;
+import com.cyanogenmod.filemanager.console.ExecutionException;
+import com.cyanogenmod.filemanager.console.InsufficientPermissionsException;
+import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
+import com.cyanogenmod.filemanager.console.OperationTimeoutException;
+import com.cyanogenmod.filemanager.console.ReadOnlyFilesystemException;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pool of {@link ShellConsole} processes of the same type (privileged or not) that
+ * allows to execute programs concurrently.<br/>
+ * <br/>
+ * Every {@link ShellConsole} executes only one program at a time. The pool dispatches
+ * every synchronous {@link Executable} to a free interactive shell (the primary
+ * console is one of them), and routes the long-running {@link AsyncResultExecutable}
+ * programs to a set of dedicated shells, so interactive operations (listings, file info,
+ * ...) are not locked behind a search or a copy. The shells are allocated on demand
+ * and are kept alive until the pool is disposed.<br/>
+ * <br/>
+ * The pool knows which shell executes every program (and which thread requested it), so
+ * a cancellation is sent to the shell that is actually running the program, and not to
+ * the primary console.
+ */
+public final class ShellConsolePool {
+
+    private static final String TAG = "ShellConsolePool"; //$NON-NLS-1$
+
+    private final ShellConsole mPrimary;
+    private final int mBufferSize;
+    private final int mMaxInteractive;
+    private final int mMaxDedicated;
+
+    private final Object mLock = new Object();
+    // All the allocated interactive shells (including the primary) and the free ones
+    private final List<ShellConsole> mInteractive;
+    private final LinkedList<ShellConsole> mIdle;
+    private int mPendingAllocs;
+    // The dedicated shells for asynchronous programs and the number of programs
+    // that every shell has in its queue
+    private final List<ShellConsole> mDedicated;
+    private final List<int[]> mDedicatedLoad;
+    // The programs being executed, with the shell that executes them and the thread
+    // that requested them
+    private final Map<Executable, ShellConsole> mRunning =
+            new IdentityHashMap<Executable, ShellConsole>();
+    private final Map<Executable, Thread> mCallers = new IdentityHashMap<Executable, Thread>();
+    private boolean mDisposed;
+
+    /**
+     * Constructor of <code>ShellConsolePool</code>.
+     *
+     * @param primary The allocated console that leads the pool
+     * @param maxInteractive The maximum number of shells for synchronous programs,
+     * including the primary console
+     * @param maxDedicated The maximum number of shells for asynchronous programs
+     */
+    public ShellConsolePool(ShellConsole primary, int maxInteractive, int maxDedicated) {
+        super();
+        this.mPrimary = primary;
+        this.mBufferSize = primary.getBufferSize();
+        this.mMaxInteractive = Math.max(1, maxInteractive);
+        this.mMaxDedicated = Math.max(0, maxDedicated);
+        this.mInteractive = new ArrayList<ShellConsole>(this.mMaxInteractive);
+        this.mIdle = new LinkedList<ShellConsole>();
+        this.mDedicated = new ArrayList<ShellConsole>(this.mMaxDedicated);
+        this.mDedicatedLoad = new ArrayList<int[]>(this.mMaxDedicated);
+        this.mInteractive.add(primary);
+        this.mIdle.add(primary);
+        this.mDisposed = false;
+    }
+
+    /**
+     * Method that returns the primary console of the pool
+     *
+     * @return ShellConsole The primary console
+     */
+    public ShellConsole getPrimary() {
+        return this.mPrimary;
+    }
+
+    /**
+     * Method that allocates in background the rest of interactive shells of the pool,
+     * so they are warm when the user needs them.
+     */
+    public void warmUp() {
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i < ShellConsolePool.this.mMaxInteractive; i++) {
+                    synchronized (ShellConsolePool.this.mLock) {
+                        if (ShellConsolePool.this.mDisposed ||
+                            ShellConsolePool.this.mInteractive.size() +
+                            ShellConsolePool.this.mPendingAllocs >=
+                                ShellConsolePool.this.mMaxInteractive) {
+                            return;
+                        }
+                        ShellConsolePool.this.mPendingAllocs++;
+                    }
+                    ShellConsole console = null;
+                    try {
+                        console = createShell();
+                    } catch (Exception ex) {
+                        Log.w(TAG, "Failed to warm up a pooled shell", ex); //$NON-NLS-1$
+                    }
+                    synchronized (ShellConsolePool.this.mLock) {
+                        ShellConsolePool.this.mPendingAllocs--;
+                        if (console != null) {
+                            ShellConsolePool.this.mInteractive.add(console);
+                            release(console);
+                        } else {
+                            ShellConsolePool.this.mLock.notifyAll();
+                            return;
+                        }
+                    }
+                }
+            }
+        });
+        t.setName(TAG);
+        t.start();
+    }
+
+    /**
+     * Method that executes a program in a shell of the pool.
+     *
+     * @param executable The executable command to be executed
+     * @throws ConsoleAllocException If the console is not allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws CommandNotFoundException If the executable program was not found
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
+     */
+    public void execute(Executable executable)
+            throws ConsoleAllocException, InsufficientPermissionsException,
+            CommandNotFoundException, NoSuchFileOrDirectory,
+            OperationTimeoutException, ExecutionException, ReadOnlyFilesystemException {
+        if (!this.mPrimary.isActive()) {
+            throw new ConsoleAllocException("No console allocated"); //$NON-NLS-1$
+        }
+
+        // Asynchronous programs are routed to the dedicated shells
+        if (executable instanceof AsyncResultExecutable && this.mMaxDedicated > 0) {
+            executeAsync(executable);
+            return;
+        }
+
+        // Synchronous programs use the first free interactive shell
+        ShellConsole console = acquire();
+        register(executable, console);
+        try {
+            console.executeInShell(executable, null);
+        } finally {
+            unregister(executable);
+            release(console);
+        }
+    }
+
+    /**
+     * Method that returns the shell that is executing a program.
+     *
+     * @param executable The program
+     * @return ShellConsole The shell, or <code>null</code> if the program isn't being
+     * executed by the pool
+     */
+    public ShellConsole getShell(Executable executable) {
+        synchronized (this.mLock) {
+            return this.mRunning.get(executable);
+        }
+    }
+
+    /**
+     * Method that cancels the programs requested by a thread, in the shells that are
+     * executing them.
+     *
+     * @param caller The thread that requested the programs
+     * @return boolean If some program was cancelled
+     */
+    public boolean onCancel(Thread caller) {
+        boolean ret = false;
+        for (Executable executable : getExecutables(caller)) {
+            ret |= onCancel(executable);
+        }
+        return ret;
+    }
+
+    /**
+     * Method that cancels a program in the shell that is executing it.
+     *
+     * @param executable The program
+     * @return boolean If the program was cancelled
+     */
+    public boolean onCancel(Executable executable) {
+        ShellConsole shell = getShell(executable);
+        return shell != null && shell.killCommand(executable);
+    }
+
+    /**
+     * Method that ends a program in the shell that is executing it.
+     *
+     * @param executable The program
+     * @return boolean If the program was ended
+     */
+    public boolean onEnd(Executable executable) {
+        ShellConsole shell = getShell(executable);
+        return shell != null && shell.killCommand(executable);
+    }
+
+    /**
+     * Method that sends a signal to a program in the shell that is executing it.
+     *
+     * @param executable The program
+     * @param signal The signal to send
+     * @return boolean If the signal was sent
+     */
+    public boolean onSendSignal(Executable executable, SIGNAL signal) {
+        ShellConsole shell = getShell(executable);
+        return shell != null && shell.sendSignalToCommand(executable, signal);
+    }
+
+    /**
+     * Method that deallocates all the shells of the pool, except the primary console.
+     */
+    public void dispose() {
+        List<ShellConsole> consoles = new ArrayList<ShellConsole>();
+        synchronized (this.mLock) {
+            this.mDisposed = true;
+            consoles.addAll(this.mInteractive);
+            consoles.addAll(this.mDedicated);
+            consoles.remove(this.mPrimary);
+            this.mInteractive.clear();
+            this.mIdle.clear();
+            this.mDedicated.clear();
+            this.mDedicatedLoad.clear();
+            this.mLock.notifyAll();
+        }
+        for (ShellConsole console : consoles) {
+            try {
+                console.dealloc();
+            } catch (Throwable ex) {
+                /**NON BLOCK**/
+            }
+        }
+    }
+
+    /**
+     * Method that executes an asynchronous program in the less loaded dedicated shell.
+     *
+     * @param executable The executable command to be executed
+     * @throws ConsoleAllocException If the console is not allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws CommandNotFoundException If the executable program was not found
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
+     */
+    private void executeAsync(final Executable executable)
+            throws ConsoleAllocException, InsufficientPermissionsException,
+            CommandNotFoundException, NoSuchFileOrDirectory,
+            OperationTimeoutException, ExecutionException, ReadOnlyFilesystemException {
+        ShellConsole console = null;
+        int[] load = null;
+        synchronized (this.mLock) {
+            checkDisposed();
+            int min = Integer.MAX_VALUE;
+            int count = this.mDedicated.size();
+            for (int i = 0; i < count; i++) {
+                int[] l = this.mDedicatedLoad.get(i);
+                if (l[0] < min && this.mDedicated.get(i).isActive()) {
+                    min = l[0];
+                    console = this.mDedicated.get(i);
+                    load = l;
+                }
+            }
+            // Only grow the pool if all the dedicated shells are busy
+            if (console != null && (min == 0 || count >= this.mMaxDedicated)) {
+                load[0]++;
+            } else {
+                console = null;
+            }
+        }
+
+        if (console == null) {
+            ShellConsole created = createShell();
+            synchronized (this.mLock) {
+                if (this.mDisposed) {
+                    created.dealloc();
+                    checkDisposed();
+                }
+                // Replace a dead shell or add a new one
+                load = new int[]{1};
+                for (int i = this.mDedicated.size() - 1; i >= 0; i--) {
+                    if (!this.mDedicated.get(i).isActive() && this.mDedicatedLoad.get(i)[0] == 0) {
+                        this.mDedicated.remove(i);
+                        this.mDedicatedLoad.remove(i);
+                    }
+                }
+                this.mDedicated.add(created);
+                this.mDedicatedLoad.add(load);
+                console = created;
+            }
+        }
+
+        final int[] l = load;
+        register(executable, console);
+        try {
+            console.executeInShell(executable, new Runnable() {
+                @Override
+                public void run() {
+                    unregister(executable);
+                    synchronized (ShellConsolePool.this.mLock) {
+                        l[0]--;
+                    }
+                }
+            });
+        } catch (ConsoleAllocException caEx) {
+            unregister(executable);
+            synchronized (this.mLock) {
+                l[0]--;
+            }
+            throw caEx;
+        } catch (RuntimeException rEx) {
+            unregister(executable);
+            synchronized (this.mLock) {
+                l[0]--;
+            }
+            throw rEx;
+        }
+    }
+
+    /**
+     * Method that records the shell that executes a program, and the current thread as
+     * the thread that requested it.
+     *
+     * @param executable The program
+     * @param console The shell that executes the program
+     */
+    private void register(Executable executable, ShellConsole console) {
+        synchronized (this.mLock) {
+            this.mRunning.put(executable, console);
+            this.mCallers.put(executable, Thread.currentThread());
+        }
+    }
+
+    /**
+     * Method that forgets a program that ended.
+     *
+     * @param executable The program
+     */
+    private void unregister(Executable executable) {
+        synchronized (this.mLock) {
+            this.mRunning.remove(executable);
+            this.mCallers.remove(executable);
+        }
+    }
+
+    /**
+     * Method that returns the programs being executed that were requested by a thread.
+     *
+     * @param caller The thread
+     * @return List<Executable> The programs
+     */
+    private List<Executable> getExecutables(Thread caller) {
+        List<Executable> executables = new ArrayList<Executable>();
+        synchronized (this.mLock) {
+            for (Map.Entry<Executable, Thread> e : this.mCallers.entrySet()) {
+                if (e.getValue() == caller) {
+                    executables.add(e.getKey());
+                }
+            }
+        }
+        return executables;
+    }
+
+    /**
+     * Method that acquires a free interactive shell, allocating a new one if all are
+     * busy and the pool isn't full. Otherwise waits for a free one.
+     *
+     * @return ShellConsole A free shell
+     * @throws ConsoleAllocException If the shell can't be allocated
+     */
+    private ShellConsole acquire() throws ConsoleAllocException {
+        synchronized (this.mLock) {
+            while (true) {
+                checkDisposed();
+                while (!this.mIdle.isEmpty()) {
+                    ShellConsole console = this.mIdle.removeFirst();
+                    if (console.isActive() || console == this.mPrimary) {
+                        return console;
+                    }
+                    // A dead shell. Drop it
+                    this.mInteractive.remove(console);
+                }
+                if (this.mInteractive.size() + this.mPendingAllocs < this.mMaxInteractive) {
+                    this.mPendingAllocs++;
+                    break;
+                }
+                try {
+                    this.mLock.wait();
+                } catch (InterruptedException iEx) {
+                    throw new ConsoleAllocException("Interrupted while waiting a shell", iEx); //$NON-NLS-1$
+                }
+            }
+        }
+
+        // Allocate the new shell outside the lock
+        ShellConsole console = null;
+        try {
+            console = createShell();
+            return console;
+        } finally {
+            synchronized (this.mLock) {
+                this.mPendingAllocs--;
+                if (console != null) {
+                    this.mInteractive.add(console);
+                }
+                this.mLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Method that returns a shell to the pool.
+     *
+     * @param console The shell to release
+     */
+    private void release(ShellConsole console) {
+        synchronized (this.mLock) {
+            if (!this.mDisposed || console == this.mPrimary) {
+                // The primary console is preferred, it's always in the head
+                if (console == this.mPrimary) {
+                    this.mIdle.addFirst(console);
+                } else {
+                    this.mIdle.addLast(console);
+                }
+            }
+            this.mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Method that allocates a new shell of the same type of the primary console.
+     *
+     * @return ShellConsole The new allocated shell
+     * @throws ConsoleAllocException If the shell can't be allocated
+     */
+    private ShellConsole createShell() throws ConsoleAllocException {
+        try {
+            ShellConsole console = this.mPrimary.isPrivileged()
+                    ? new PrivilegedConsole()
+                    : new NonPriviledgeConsole();
+            console.setBufferSize(this.mBufferSize);
+            console.alloc();
+            return console;
+        } catch (ConsoleAllocException caEx) {
+            throw caEx;
+        } catch (Exception ex) {
+            throw new ConsoleAllocException("Pooled shell allocation error.", ex); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Method that checks that the pool wasn't disposed.
+     *
+     * @throws ConsoleAllocException If the pool was disposed
+     */
+    private void checkDisposed() throws ConsoleAllocException {
+        if (this.mDisposed) {
+            throw new ConsoleAllocException("No console allocated"); //$NON-NLS-1$
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class that holds a group of files with the same content.
+ */
+public class DuplicateGroup implements Serializable {
+
+    private static final long serialVersionUID = 3380420145231765712L;
+
+    private final long mSize;
+    private final String mDigest;
+    private final List<FileSystemObject> mFiles;
+
+    /**
+     * Constructor of <code>DuplicateGroup</code>.
+     *
+     * @param size The size of every file of the group
+     * @param digest The digest of the content of the files
+     * @param files The files of the group
+     */
+    public DuplicateGroup(long size, String digest, List<FileSystemObject> files) {
+        super();
+        this.mSize = size;
+        this.mDigest = digest;
+        this.mFiles = Collections.unmodifiableList(new ArrayList<FileSystemObject>(files));
+    }
+
+    /**
+     * Method that returns the size of every file of the group.
+     *
+     * @return long The size of a file
+     */
+    public long getSize() {
+        return this.mSize;
+    }
+
+    /**
+     * Method that returns the digest of the content of the files.
+     *
+     * @return String The digest
+     */
+    public String getDigest() {
+        return this.mDigest;
+    }
+
+    /**
+     * Method that returns the files of the group.
+     *
+     * @return List<FileSystemObject> The files (at least two)
+     */
+    public List<FileSystemObject> getFiles() {
+        return this.mFiles;
+    }
+
+    /**
+     * Method that returns the space that could be freed keeping only one file
+     * of the group.
+     *
+     * @return long The wasted space
+     */
+    public long getWastedSize() {
+        return this.mSize * (this.mFiles.size() - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "DuplicateGroup [size=" + this.mSize + ", digest=" + //$NON-NLS-1$ //$NON-NLS-2$
+                this.mDigest + ", files=" + this.mFiles + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
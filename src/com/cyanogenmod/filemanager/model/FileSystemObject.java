@@ -47,6 +47,7 @@ public abstract class FileSystemObject implements Serializable, Comparable<FileS
     private Group mGroup;
     private Permissions mPermissions;
     private long mSize;
+    private long mSortSize = -1;
     private Date mLastAccessedTime;
     private Date mLastModifiedTime;
     private Date mLastChangedTime;
@@ -199,6 +200,25 @@ public abstract class FileSystemObject implements Serializable, Comparable<FileS
         this.mSize = size;
     }
 
+    /**
+     * Method that returns the size used to sort the object by size.
+     *
+     * @return long The size taken when the object was sorted (the size of the tree
+     * of a directory, if it was known), or the size in bytes of the object
+     */
+    public long getSortSize() {
+        return this.mSortSize >= 0 ? this.mSortSize : this.mSize;
+    }
+
+    /**
+     * Method that sets the size used to sort the object by size.
+     *
+     * @param sortSize The size used to sort the object, or -1 to use its size
+     */
+    public void setSortSize(long sortSize) {
+        this.mSortSize = sortSize;
+    }
+
     /**
      * Method that returns the last time that the object was accessed.
      *
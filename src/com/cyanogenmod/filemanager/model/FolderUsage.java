@@ -16,11 +16,10 @@
 
 package com.cyanogenmod.filemanager.model;
 
-import android.util.SparseArray;
-
 import com.cyanogenmod.filemanager.util.MimeTypeHelper.MimeTypeCategory;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * A class that holds information about the usage of a folder (space and number of files/folders).
@@ -33,7 +32,7 @@ public class FolderUsage implements Serializable, Cloneable {
     private int mNumberOfFolders;
     private int mNumberOfFiles;
     private long mTotalSize;
-    private SparseArray<Long> mStatistics;
+    private long[] mStatistics;
 
     /**
      * Constructor of <code>FolderUsage</code>.
@@ -49,13 +48,8 @@ public class FolderUsage implements Serializable, Cloneable {
         this.mNumberOfFiles = 0;
         this.mTotalSize = 0;
 
-        // Fill the array of statistics
-        MimeTypeCategory[] categories = MimeTypeCategory.values();
-        this.mStatistics = new SparseArray<Long>(categories.length-1);
-        int cc = categories.length;
-        for (int i = 0; i < cc; i++) {
-            this.mStatistics.put(categories[i].ordinal(), Long.valueOf(0));
-        }
+        // The statistics are indexed by the ordinal of the category
+        this.mStatistics = new long[MimeTypeCategory.values().length];
     }
 
     /**
@@ -87,9 +81,25 @@ public class FolderUsage implements Serializable, Cloneable {
      * @param category The category
      */
     public void addFileToCategory(MimeTypeCategory category) {
-        long count = this.mStatistics.get(category.ordinal()).longValue();
-        count++;
-        this.mStatistics.put(category.ordinal(), Long.valueOf(count));
+        this.mStatistics[category.ordinal()]++;
+    }
+
+    /**
+     * Method that replaces the whole usage at once (for publish the merged totals
+     * of a computation).
+     *
+     * @param numberOfFolders The total number of folders
+     * @param numberOfFiles The total number of files
+     * @param totalSize The total size
+     * @param statistics The number of files of every category, indexed by the ordinal
+     * of the {@link MimeTypeCategory}
+     */
+    public synchronized void setUsage(
+            int numberOfFolders, int numberOfFiles, long totalSize, long[] statistics) {
+        this.mNumberOfFolders = numberOfFolders;
+        this.mNumberOfFiles = numberOfFiles;
+        this.mTotalSize = totalSize;
+        System.arraycopy(statistics, 0, this.mStatistics, 0, this.mStatistics.length);
     }
 
     /**
@@ -144,7 +154,7 @@ public class FolderUsage implements Serializable, Cloneable {
      * @return long The number of files for the category
      */
     public long getStatisticsForCategory(MimeTypeCategory category) {
-        return this.mStatistics.get(category.ordinal()).longValue();
+        return this.mStatistics[category.ordinal()];
     }
 
     /**
@@ -157,8 +167,7 @@ public class FolderUsage implements Serializable, Cloneable {
         result = prime * result + ((this.mFolder == null) ? 0 : this.mFolder.hashCode());
         result = prime * result + this.mNumberOfFiles;
         result = prime * result + this.mNumberOfFolders;
-        result = prime * result
-                + ((this.mStatistics == null) ? 0 : this.mStatistics.hashCode());
+        result = prime * result + Arrays.hashCode(this.mStatistics);
         result = prime * result + (int) (this.mTotalSize ^ (this.mTotalSize >>> 32));
         return result;
     }
@@ -184,10 +193,7 @@ public class FolderUsage implements Serializable, Cloneable {
             return false;
         if (this.mNumberOfFolders != other.mNumberOfFolders)
             return false;
-        if (this.mStatistics == null) {
-            if (other.mStatistics != null)
-                return false;
-        } else if (!this.mStatistics.equals(other.mStatistics))
+        if (!Arrays.equals(this.mStatistics, other.mStatistics))
             return false;
         if (this.mTotalSize != other.mTotalSize)
             return false;
@@ -198,13 +204,10 @@ public class FolderUsage implements Serializable, Cloneable {
      * {@inheritDoc}
      */
     @Override
-    public Object clone() throws CloneNotSupportedException {
-        FolderUsage other = new FolderUsage(this.mFolder);
-        other.mNumberOfFolders = this.mNumberOfFolders;
-        other.mNumberOfFiles = this.mNumberOfFiles;
-        other.mTotalSize = this.mTotalSize;
+    public synchronized Object clone() throws CloneNotSupportedException {
+        FolderUsage other = (FolderUsage)super.clone();
         other.mStatistics = this.mStatistics.clone();
-        return super.clone();
+        return other;
     }
 
     /**
@@ -216,6 +219,7 @@ public class FolderUsage implements Serializable, Cloneable {
                 ", numberOfFolders=" + this.mNumberOfFolders + //$NON-NLS-1$
                 ", numberOfFiles=" + this.mNumberOfFiles + //$NON-NLS-1$
                 ", totalSize=" + this.mTotalSize + //$NON-NLS-1$
-                ", statistics=" + this.mStatistics + "]"; //$NON-NLS-1$//$NON-NLS-2$
+                ", statistics=" + Arrays.toString(this.mStatistics) + //$NON-NLS-1$
+                "]"; //$NON-NLS-1$
     }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class that holds the largest files, folders and file extensions of a
+ * directory tree (the space hogs of the tree). Reports are immutable.
+ */
+public class SpaceReport implements Serializable {
+
+    private static final long serialVersionUID = -4203167452711375286L;
+
+    /**
+     * The extension of the files that don't have extension.
+     */
+    public static final String NO_EXTENSION = ""; //$NON-NLS-1$
+
+    /**
+     * The extension where are counted the files of the extensions that don't fit
+     * in the report.
+     */
+    public static final String OTHER_EXTENSIONS = "*"; //$NON-NLS-1$
+
+    /**
+     * An entry of a ranking of the report.
+     */
+    public static class Entry implements Serializable {
+        private static final long serialVersionUID = 6624818389171592054L;
+
+        private final String mName;
+        private final long mSize;
+        private final int mCount;
+
+        /**
+         * Constructor of <code>Entry</code>.
+         *
+         * @param name The absolute path of the file or folder, or the extension
+         * @param size The size (the size of the tree for a folder, or the total size
+         * of the files for an extension)
+         * @param count The number of files (for extensions)
+         */
+        public Entry(String name, long size, int count) {
+            super();
+            this.mName = name;
+            this.mSize = size;
+            this.mCount = count;
+        }
+
+        /**
+         * Method that returns the name of the entry.
+         *
+         * @return String The absolute path of the file or folder, or the extension
+         */
+        public String getName() {
+            return this.mName;
+        }
+
+        /**
+         * Method that returns the size of the entry.
+         *
+         * @return long The size
+         */
+        public long getSize() {
+            return this.mSize;
+        }
+
+        /**
+         * Method that returns the number of files of the entry.
+         *
+         * @return int The number of files
+         */
+        public int getCount() {
+            return this.mCount;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "Entry [name=" + this.mName + ", size=" + //$NON-NLS-1$ //$NON-NLS-2$
+                    this.mSize + ", count=" + this.mCount + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    private final String mDirectory;
+    private final int mNumberOfFolders;
+    private final int mNumberOfFiles;
+    private final long mTotalSize;
+    private final List<Entry> mFiles;
+    private final List<Entry> mFolders;
+    private final List<Entry> mExtensions;
+
+    /**
+     * Constructor of <code>SpaceReport</code>.
+     *
+     * @param directory The directory of the report
+     * @param numberOfFolders The number of folders walked
+     * @param numberOfFiles The number of files walked
+     * @param totalSize The total size of the files walked
+     * @param files The largest files, from the largest
+     * @param folders The largest folders, from the largest
+     * @param extensions The extensions that use more space, from the largest
+     */
+    public SpaceReport(String directory, int numberOfFolders, int numberOfFiles,
+            long totalSize, List<Entry> files, List<Entry> folders, List<Entry> extensions) {
+        super();
+        this.mDirectory = directory;
+        this.mNumberOfFolders = numberOfFolders;
+        this.mNumberOfFiles = numberOfFiles;
+        this.mTotalSize = totalSize;
+        this.mFiles = Collections.unmodifiableList(new ArrayList<Entry>(files));
+        this.mFolders = Collections.unmodifiableList(new ArrayList<Entry>(folders));
+        this.mExtensions = Collections.unmodifiableList(new ArrayList<Entry>(extensions));
+    }
+
+    /**
+     * Method that returns the directory of the report.
+     *
+     * @return String The directory
+     */
+    public String getDirectory() {
+        return this.mDirectory;
+    }
+
+    /**
+     * Method that returns the number of folders walked.
+     *
+     * @return int The number of folders
+     */
+    public int getNumberOfFolders() {
+        return this.mNumberOfFolders;
+    }
+
+    /**
+     * Method that returns the number of files walked.
+     *
+     * @return int The number of files
+     */
+    public int getNumberOfFiles() {
+        return this.mNumberOfFiles;
+    }
+
+    /**
+     * Method that returns the total size of the files walked.
+     *
+     * @return long The total size
+     */
+    public long getTotalSize() {
+        return this.mTotalSize;
+    }
+
+    /**
+     * Method that returns the largest files.
+     *
+     * @return List<Entry> The largest files, from the largest
+     */
+    public List<Entry> getFiles() {
+        return this.mFiles;
+    }
+
+    /**
+     * Method that returns the largest folders (by the size of its tree).
+     *
+     * @return List<Entry> The largest folders, from the largest
+     */
+    public List<Entry> getFolders() {
+        return this.mFolders;
+    }
+
+    /**
+     * Method that returns the file extensions that use more space.
+     *
+     * @return List<Entry> The extensions, from the largest (see {@link #NO_EXTENSION}
+     * and {@link #OTHER_EXTENSIONS})
+     */
+    public List<Entry> getExtensions() {
+        return this.mExtensions;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "SpaceReport [directory=" + this.mDirectory + //$NON-NLS-1$
+                ", numberOfFolders=" + this.mNumberOfFolders + //$NON-NLS-1$
+                ", numberOfFiles=" + this.mNumberOfFiles + //$NON-NLS-1$
+                ", totalSize=" + this.mTotalSize + //$NON-NLS-1$
+                ", files=" + this.mFiles + //$NON-NLS-1$
+                ", folders=" + this.mFolders + //$NON-NLS-1$
+                ", extensions=" + this.mExtensions + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -115,6 +115,16 @@ public enum FileManagerSettings {
      * @hide
      */
     SETTINGS_USE_FLINGER("cm_filemanager_use_flinger", Boolean.FALSE),  //$NON-NLS-1$
+    /**
+     * Whether verify the copied files against their source
+     * @hide
+     */
+    SETTINGS_VERIFY_COPY("cm_filemanager_verify_copy", Boolean.FALSE),  //$NON-NLS-1$
+    /**
+     * Whether stage the deleted items, so they can be restored, and purge them later
+     * @hide
+     */
+    SETTINGS_DEFERRED_DELETE("cm_filemanager_deferred_delete", Boolean.FALSE),  //$NON-NLS-1$
 
 
     /**
@@ -17,18 +17,24 @@
 package com.cyanogenmod.filemanager.providers;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.net.Uri;
+import android.os.RemoteException;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.util.ArrayList;
+
 import static android.content.UriMatcher.NO_MATCH;
 
 /**
@@ -135,6 +141,20 @@ public class MimeTypeIndexProvider extends ContentProvider {
         throw new RuntimeException("MimeTypeIndexProvider::update(): Not implemented!");
     }
 
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        // All the operations are applied or none, so readers never see a partial index
+        mSQLiteDatabase.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            mSQLiteDatabase.setTransactionSuccessful();
+            return results;
+        } finally {
+            mSQLiteDatabase.endTransaction();
+        }
+    }
+
     private static class DatabaseHelper extends SQLiteOpenHelper {
 
         // Constants
@@ -219,4 +239,43 @@ public class MimeTypeIndexProvider extends ContentProvider {
         return context.getContentResolver().delete(MimeTypeIndexProvider.getContentUri(), selection, selectionArgs);
     }
 
+    /**
+     * Replace the mount point usage data for the file root in one transaction
+     *
+     * @param context  {@link android.content.Context} not null
+     * @param fileRoot {@link java.lang.String} not null or empty
+     * @param values   {@link android.content.ContentValues} the new rows of the file root
+     *
+     * @return {@link java.lang.Boolean} if the usage data was replaced
+     *
+     * @throws IllegalArgumentException {@link java.lang.IllegalArgumentException}
+     */
+    public static boolean replaceMountPointUsages(Context context, String fileRoot,
+            ContentValues[] values) throws IllegalArgumentException {
+        if (context == null) {
+            throw new IllegalArgumentException("'context' cannot be null!");
+        }
+        if (TextUtils.isEmpty(fileRoot)) {
+            throw new IllegalArgumentException("'fileRoot' cannot be null or empty!");
+        }
+        Uri uri = getContentUri();
+        ArrayList<ContentProviderOperation> operations =
+                new ArrayList<ContentProviderOperation>(values.length + 1);
+        operations.add(ContentProviderOperation.newDelete(uri)
+                .withSelection(COLUMN_FILE_ROOT + " = ?", new String[] { fileRoot })
+                .build());
+        for (ContentValues value : values) {
+            operations.add(ContentProviderOperation.newInsert(uri).withValues(value).build());
+        }
+        try {
+            context.getContentResolver().applyBatch(AUTHORITY, operations);
+            return true;
+        } catch (RemoteException e) {
+            Log.e(TAG, "Failed to replace the usage of " + fileRoot, e);
+        } catch (OperationApplicationException e) {
+            Log.e(TAG, "Failed to replace the usage of " + fileRoot, e);
+        }
+        return false;
+    }
+
 }
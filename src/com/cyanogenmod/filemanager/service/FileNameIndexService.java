@@ -0,0 +1,89 @@
+/*
+* Copyright (C) 2014 The CyanogenMod Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.cyanogenmod.filemanager.service;
+
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+import android.text.TextUtils;
+import android.util.Log;
+import com.cyanogenmod.filemanager.util.FileNameIndex;
+
+/**
+ * FileNameIndexService
+ * <pre>
+ *    Service intended to build (or revalidate) the filename index of a file root
+ * </pre>
+ *
+ * @see {@link android.app.IntentService}
+ * @see {@link com.cyanogenmod.filemanager.util.FileNameIndex}
+ */
+public class FileNameIndexService extends IntentService {
+
+    // Constants
+    private static final String TAG = FileNameIndexService.class.getSimpleName();
+    public static final String ACTION_START_NAME_INDEX = "com.cyanogenmod.filemanager" +
+            ".ACTION_START_NAME_INDEX";
+    public static final String EXTRA_FILE_ROOT = "extra_file_root";
+
+    /**
+     * Constructor
+     */
+    public FileNameIndexService() {
+        super(TAG);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (intent == null) {
+            Log.w(TAG, "Intent passed was null");
+            return;
+        }
+        String action = intent.getAction();
+        if (!ACTION_START_NAME_INDEX.equalsIgnoreCase(action)) {
+            Log.w(TAG, "Failed to parse action");
+            return;
+        }
+        String fileRoot = intent.getStringExtra(EXTRA_FILE_ROOT);
+        if (TextUtils.isEmpty(fileRoot)) {
+            Log.w(TAG, "Empty file root, bailing out");
+            return;
+        }
+        Log.i(TAG, "Starting filename indexing on '" + fileRoot.trim() + "'");
+        FileNameIndex.getInstance(this).index(fileRoot.trim());
+    }
+
+    /**
+     * Kick off an indexing job for the provided file root or mount point root
+     *
+     * @param context  {@link android.content.Context}
+     * @param fileRoot {@link java.lang.String}
+     *
+     * @throws IllegalArgumentException {@link java.lang.IllegalArgumentException}
+     */
+    public static void indexFileRoot(Context context, String fileRoot) throws
+            IllegalArgumentException {
+        if (context == null) {
+            throw new IllegalArgumentException("'context' cannot be null");
+        }
+        Intent intent = new Intent(context, FileNameIndexService.class);
+        intent.setAction(FileNameIndexService.ACTION_START_NAME_INDEX);
+        intent.putExtra(FileNameIndexService.EXTRA_FILE_ROOT, fileRoot);
+        context.startService(intent);
+    }
+
+}
@@ -22,14 +22,16 @@ import android.content.Context;
 import android.content.Intent;
 import android.text.TextUtils;
 import android.util.Log;
+import com.cyanogenmod.filemanager.model.FolderUsage;
 import com.cyanogenmod.filemanager.providers.MimeTypeIndexProvider;
+import com.cyanogenmod.filemanager.util.FolderSizeCache.Summary;
+import com.cyanogenmod.filemanager.util.FolderUsageEngine;
 import com.cyanogenmod.filemanager.util.MimeTypeHelper;
 import com.cyanogenmod.filemanager.util.MimeTypeHelper.MimeTypeCategory;
 
 import java.io.File;
-import java.io.FileFilter;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * MimeTypeIndexService
@@ -86,67 +88,44 @@ public class MimeTypeIndexService extends IntentService {
         Log.i(TAG, "Starting mime type usage indexing on '" + fileRoot + "'");
         fileRoot = fileRoot.trim();
         File rootFile = new File(fileRoot);
-        Map<MimeTypeCategory, Long> spaceCalculationMap =
-                new HashMap<MimeTypeCategory, Long>();
-        calculateUsageByType(rootFile, spaceCalculationMap);
-        ContentValues[] valuesList = new ContentValues[spaceCalculationMap.keySet().size()];
-        int i = 0;
-        for (MimeTypeCategory category : spaceCalculationMap.keySet()) {
-            Log.d(TAG, "" + category + " = " + spaceCalculationMap.get(category));
+        Summary summary = calculateUsageByType(rootFile);
+        if (summary == null) {
+            Log.w(TAG, "Mime type usage indexing of '" + fileRoot + "' was stopped");
+            return;
+        }
+        List<ContentValues> valuesList = new ArrayList<ContentValues>();
+        for (MimeTypeCategory category : MimeTypeCategory.values()) {
+            long size = summary.getTotalSize(category);
+            if (size == 0 && summary.getTotalFiles(category) == 0) {
+                continue;
+            }
+            Log.d(TAG, "" + category + " = " + size);
             ContentValues values = new ContentValues();
             values.put(MimeTypeIndexProvider.COLUMN_FILE_ROOT, fileRoot);
             values.put(MimeTypeIndexProvider.COLUMN_CATEGORY, category.name());
-            values.put(MimeTypeIndexProvider.COLUMN_SIZE, spaceCalculationMap.get(category));
-            valuesList[i] = values;
-            i++;
-        }
-        MimeTypeIndexProvider.clearMountPointUsages(this, fileRoot); // Clear old data
-        getContentResolver().bulkInsert(MimeTypeIndexProvider.getContentUri(), valuesList);
-    }
-
-    private class FileOnlyFileFilter implements FileFilter {
-        @Override
-        public boolean accept(File file) {
-            return file != null && !file.isDirectory() && file.isFile();
-        }
-    }
-
-    private class DirectoryOnlyFileFilter implements FileFilter {
-        @Override
-        public boolean accept(File file) {
-            return file != null && file.isDirectory();
+            values.put(MimeTypeIndexProvider.COLUMN_SIZE, size);
+            valuesList.add(values);
         }
+        // Swap the old data by the new one at once
+        MimeTypeIndexProvider.replaceMountPointUsages(this, fileRoot,
+                valuesList.toArray(new ContentValues[valuesList.size()]));
     }
 
-    private void calculateUsageByType(File root, Map<MimeTypeCategory, Long> groupUsageMap) {
-        File[] dirs = root.listFiles(new DirectoryOnlyFileFilter());
-        File[] files = root.listFiles(new FileOnlyFileFilter());
-        if (dirs != null) {
-            // Recurse directories
-            for (File dir : dirs) {
-                long size = dir.length();
-                if (!groupUsageMap.containsKey(MimeTypeCategory.NONE)) {
-                    groupUsageMap.put(MimeTypeCategory.NONE, size);
-                } else {
-                    long newSum = groupUsageMap.get(MimeTypeCategory.NONE) + size;
-                    groupUsageMap.put(MimeTypeCategory.NONE, newSum);
-                }
-                calculateUsageByType(dir, groupUsageMap);
-            }
-        }
-        if (files != null) {
-            // Iterate every file
-            for (File file : files) {
-                MimeTypeCategory category = MimeTypeHelper.getCategory(this, file);
-                long size = file.length();
-                if (!groupUsageMap.containsKey(category)) {
-                    groupUsageMap.put(category, size);
-                } else {
-                    long newSum = groupUsageMap.get(category) + size;
-                    groupUsageMap.put(category, newSum);
-                }
-            }
-        }
+    /**
+     * Calculate the space used by every mime type category. The tree is walked in
+     * parallel, and only the directories changed since the last run are listed again
+     *
+     * @param root {@link java.io.File} the root of the tree
+     *
+     * @return {@link com.cyanogenmod.filemanager.util.FolderSizeCache.Summary} the usage
+     * of the tree, or null if it couldn't be calculated
+     */
+    private Summary calculateUsageByType(File root) {
+        // The categories are resolved without context
+        MimeTypeHelper.loadMimeTypes(this);
+        FolderUsageEngine engine =
+                new FolderUsageEngine(new FolderUsage(root.getAbsolutePath()), null);
+        return engine.computeCached(root);
     }
 
     /**
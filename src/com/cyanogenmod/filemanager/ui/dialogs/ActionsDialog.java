@@ -19,6 +19,7 @@ package com.cyanogenmod.filemanager.ui.dialogs;
 import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
+import android.content.Intent;
 import android.view.HapticFeedbackConstants;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -34,6 +35,7 @@ import android.widget.Toast;
 
 import com.cyanogenmod.filemanager.FileManagerApplication;
 import com.cyanogenmod.filemanager.R;
+import com.cyanogenmod.filemanager.activities.DuplicatesActivity;
 import com.cyanogenmod.filemanager.activities.NavigationActivity;
 import com.cyanogenmod.filemanager.adapters.TwoColumnsMenuListAdapter;
 import com.cyanogenmod.filemanager.console.VirtualMountPointConsole;
@@ -422,6 +424,14 @@ public class ActionsDialog implements OnItemClickListener, OnItemLongClickListen
                 IntentsActionPolicy.createShortcut(this.mContext, this.mFso);
                 break;
 
+            //- Find duplicates
+            case R.id.mnu_actions_find_duplicates_current_folder:
+                Intent duplicatesIntent = new Intent(this.mContext, DuplicatesActivity.class);
+                duplicatesIntent.putExtra(
+                        DuplicatesActivity.EXTRA_DUPLICATES_DIRECTORY, this.mFso.getFullPath());
+                this.mContext.startActivity(duplicatesIntent);
+                break;
+
             //- Compute checksum
             case R.id.mnu_actions_compute_checksum:
                 InfoActionPolicy.showComputeChecksumDialog(this.mContext, this.mFso);
@@ -789,6 +799,11 @@ public class ActionsDialog implements OnItemClickListener, OnItemLongClickListen
             if (mFso != null && mFso.isSecure()) {
                 menu.removeItem(R.id.mnu_actions_add_shortcut_current_folder);
             }
+            // Duplicates are only searched in the local filesystem
+            if (mFso == null || mFso.isSecure() || mFso.isRemote()
+                    || !FileHelper.isDirectory(mFso)) {
+                menu.removeItem(R.id.mnu_actions_find_duplicates_current_folder);
+            }
             if (selection != null && selection.size() > 0) {
                 for (FileSystemObject fso : selection) {
                     if (fso.isSecure() || fso.isRemote()) {
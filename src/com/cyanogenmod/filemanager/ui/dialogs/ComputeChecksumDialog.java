@@ -33,6 +33,8 @@ import android.widget.Toast;
 import com.cyanogenmod.filemanager.R;
 import com.cyanogenmod.filemanager.commands.AsyncResultExecutable;
 import com.cyanogenmod.filemanager.commands.AsyncResultListener;
+import com.cyanogenmod.filemanager.commands.ChecksumExecutable;
+import com.cyanogenmod.filemanager.commands.ChecksumExecutable.CHECKSUMS;
 import com.cyanogenmod.filemanager.model.FileSystemObject;
 import com.cyanogenmod.filemanager.ui.ThemeManager;
 import com.cyanogenmod.filemanager.ui.ThemeManager.Theme;
@@ -72,7 +74,7 @@ public class ComputeChecksumDialog implements
     /**
      * @hide
      */
-    EditText[] mChecksums = new EditText[2];
+    EditText[] mChecksums = new EditText[CHECKSUMS.values().length];
 
     /**
      * @hide
@@ -107,10 +109,19 @@ public class ComputeChecksumDialog implements
         tvFileName.setText(fso.getFullPath());
         this.mChecksums[0] = (EditText)layout.findViewById(R.id.checksum_md5);
         this.mChecksums[1] = (EditText)layout.findViewById(R.id.checksum_sha1);
+        this.mChecksums[2] = (EditText)layout.findViewById(R.id.checksum_sha256);
+        this.mChecksums[3] = (EditText)layout.findViewById(R.id.checksum_sha512);
+        this.mChecksums[4] = (EditText)layout.findViewById(R.id.checksum_crc32);
         View btMD5 = layout.findViewById(R.id.bt_md5_clipboard);
         btMD5.setOnClickListener(this);
         View btSHA1 = layout.findViewById(R.id.bt_sha1_clipboard);
         btSHA1.setOnClickListener(this);
+        View btSHA256 = layout.findViewById(R.id.bt_sha256_clipboard);
+        btSHA256.setOnClickListener(this);
+        View btSHA512 = layout.findViewById(R.id.bt_sha512_clipboard);
+        btSHA512.setOnClickListener(this);
+        View btCRC32 = layout.findViewById(R.id.bt_crc32_clipboard);
+        btCRC32.setOnClickListener(this);
 
         // Apply the theme
         applyTheme(context, layout);
@@ -186,6 +197,20 @@ public class ComputeChecksumDialog implements
                 digest = this.mChecksums[1].getText().toString();
                 label = String.format("SHA-1 Checksum - %s", this.mFso.getFullPath()); //$NON-NLS-1$
                 break;
+            case R.id.bt_sha256_clipboard:
+                digest = this.mChecksums[2].getText().toString();
+                label = String.format(
+                        "SHA-256 Checksum - %s", this.mFso.getFullPath()); //$NON-NLS-1$
+                break;
+            case R.id.bt_sha512_clipboard:
+                digest = this.mChecksums[3].getText().toString();
+                label = String.format(
+                        "SHA-512 Checksum - %s", this.mFso.getFullPath()); //$NON-NLS-1$
+                break;
+            case R.id.bt_crc32_clipboard:
+                digest = this.mChecksums[4].getText().toString();
+                label = String.format("CRC32 Checksum - %s", this.mFso.getFullPath()); //$NON-NLS-1$
+                break;
 
             default:
                 break;
@@ -241,7 +266,11 @@ public class ComputeChecksumDialog implements
         this.mHandler.post(new Runnable() {
             @Override
             public void run() {
-                setChecksum(String.valueOf(result));
+                if (result instanceof Long) {
+                    setProgress(((Long)result).longValue());
+                } else {
+                    setChecksum(String.valueOf(result));
+                }
             }
         });
     }
@@ -261,10 +290,35 @@ public class ComputeChecksumDialog implements
      * @hide
      */
     synchronized void setChecksum(String digest) {
-        this.mChecksums[this.mComputeStatus].setText(digest);
+        if (ChecksumExecutable.UNAVAILABLE.equals(digest)) {
+            this.mChecksums[this.mComputeStatus].setText(
+                    R.string.compute_checksum_unavailable_msg);
+        } else {
+            this.mChecksums[this.mComputeStatus].setText(digest);
+        }
         this.mComputeStatus++;
     }
 
+    /**
+     * Method that shows the number of bytes read in the pending checksums
+     *
+     * @param read The number of bytes read
+     * @hide
+     */
+    synchronized void setProgress(long read) {
+        long size = this.mFso.getSize();
+        if (size <= 0) {
+            return;
+        }
+        int progress = (int)Math.min(100L, (read * 100L) / size);
+        String msg = this.mContext.getString(
+                R.string.compute_checksum_computing_checksum_progress_msg,
+                Integer.valueOf(progress));
+        for (int i = this.mComputeStatus; i < this.mChecksums.length; i++) {
+            this.mChecksums[i].setText(msg);
+        }
+    }
+
     /**
      * Method that applies the current theme to the dialog
      *
@@ -287,9 +341,27 @@ public class ComputeChecksumDialog implements
         theme.setTextColor(ctx, (TextView)v, "text_color"); //$NON-NLS-1$
         theme.setBackgroundColor(ctx, this.mChecksums[1], "console_bg_color"); //$NON-NLS-1$
         theme.setTextColor(ctx, this.mChecksums[1], "console_fg_color"); //$NON-NLS-1$
+        v = root.findViewById(R.id.checksum_sha256_label);
+        theme.setTextColor(ctx, (TextView)v, "text_color"); //$NON-NLS-1$
+        theme.setBackgroundColor(ctx, this.mChecksums[2], "console_bg_color"); //$NON-NLS-1$
+        theme.setTextColor(ctx, this.mChecksums[2], "console_fg_color"); //$NON-NLS-1$
+        v = root.findViewById(R.id.checksum_sha512_label);
+        theme.setTextColor(ctx, (TextView)v, "text_color"); //$NON-NLS-1$
+        theme.setBackgroundColor(ctx, this.mChecksums[3], "console_bg_color"); //$NON-NLS-1$
+        theme.setTextColor(ctx, this.mChecksums[3], "console_fg_color"); //$NON-NLS-1$
+        v = root.findViewById(R.id.checksum_crc32_label);
+        theme.setTextColor(ctx, (TextView)v, "text_color"); //$NON-NLS-1$
+        theme.setBackgroundColor(ctx, this.mChecksums[4], "console_bg_color"); //$NON-NLS-1$
+        theme.setTextColor(ctx, this.mChecksums[4], "console_fg_color"); //$NON-NLS-1$
         v = root.findViewById(R.id.bt_md5_clipboard);
         theme.setImageDrawable(ctx, (ImageView)v, "ic_copy_drawable"); //$NON-NLS-1$
         v = root.findViewById(R.id.bt_sha1_clipboard);
         theme.setImageDrawable(ctx, (ImageView)v, "ic_copy_drawable"); //$NON-NLS-1$
+        v = root.findViewById(R.id.bt_sha256_clipboard);
+        theme.setImageDrawable(ctx, (ImageView)v, "ic_copy_drawable"); //$NON-NLS-1$
+        v = root.findViewById(R.id.bt_sha512_clipboard);
+        theme.setImageDrawable(ctx, (ImageView)v, "ic_copy_drawable"); //$NON-NLS-1$
+        v = root.findViewById(R.id.bt_crc32_clipboard);
+        theme.setImageDrawable(ctx, (ImageView)v, "ic_copy_drawable"); //$NON-NLS-1$
     }
 }
@@ -19,6 +19,7 @@ package com.cyanogenmod.filemanager.ui.dialogs;
 import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
+import android.content.Intent;
 import android.database.Cursor;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -31,6 +32,7 @@ import android.widget.Switch;
 import android.widget.TextView;
 import com.cyanogenmod.filemanager.FileManagerApplication;
 import com.cyanogenmod.filemanager.R;
+import com.cyanogenmod.filemanager.activities.SpaceReportActivity;
 import com.cyanogenmod.filemanager.console.Console;
 import com.cyanogenmod.filemanager.console.ConsoleBuilder;
 import com.cyanogenmod.filemanager.model.DiskUsage;
@@ -342,6 +344,14 @@ public class FilesystemInfoDialog implements OnClickListener, OnCheckedChangeLis
         // Add the listener after set the value to avoid raising triggers
         this.mSwStatus.setOnCheckedChangeListener(this);
 
+        //Configure the report of the space (virtual filesystems don't use disk space)
+        View vSpaceReport = contentView.findViewById(R.id.filesystem_info_space_report);
+        if (isVirtual) {
+            vSpaceReport.setVisibility(View.GONE);
+        } else {
+            vSpaceReport.setOnClickListener(this);
+        }
+
         //Change the tab
         onClick(this.mInfoViewTab);
     }
@@ -429,6 +439,22 @@ public class FilesystemInfoDialog implements OnClickListener, OnCheckedChangeLis
                 mLegendLayout.setVisibility(View.INVISIBLE);
                 break;
 
+            case R.id.filesystem_info_space_report:
+                //Open the largest files and folders of the mount point. The usage
+                //categories can't be serialized, so they are not passed
+                Intent intent = new Intent(this.mContext, SpaceReportActivity.class);
+                intent.putExtra(SpaceReportActivity.EXTRA_SPACE_REPORT_DIRECTORY,
+                        this.mMountPoint.getMountPoint());
+                if (this.mDiskUsage != null) {
+                    intent.putExtra(SpaceReportActivity.EXTRA_SPACE_REPORT_DISK_USAGE,
+                            new DiskUsage(this.mDiskUsage.getMountPoint(),
+                                    this.mDiskUsage.getTotal(), this.mDiskUsage.getUsed(),
+                                    this.mDiskUsage.getFree()));
+                }
+                this.mContext.startActivity(intent);
+                this.mDialog.dismiss();
+                break;
+
             default:
                 mIsInUsageTab = false;
                 mLegendLayout.setVisibility(View.INVISIBLE);
@@ -543,6 +569,8 @@ public class FilesystemInfoDialog implements OnClickListener, OnCheckedChangeLis
         theme.setTextColor(this.mContext, (TextView)v, "text_color"); //$NON-NLS-1$
         v = this.mContentView.findViewById(R.id.filesystem_info_free_disk_usage);
         theme.setTextColor(this.mContext, (TextView)v, "text_color"); //$NON-NLS-1$
+        v = this.mContentView.findViewById(R.id.filesystem_info_space_report);
+        theme.setTextColor(this.mContext, (TextView)v, "text_color"); //$NON-NLS-1$
     }
 
     /**
@@ -41,6 +41,7 @@ import com.cyanogenmod.filemanager.util.ExceptionUtil;
 import com.cyanogenmod.filemanager.util.ExceptionUtil.OnRelaunchCommandResult;
 import com.cyanogenmod.filemanager.util.FileHelper;
 import com.cyanogenmod.filemanager.util.FixedQueue;
+import com.cyanogenmod.filemanager.util.ListingCache;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -410,6 +411,7 @@ public final class CompressActionPolicy extends ActionsPolicy {
 
                 // Any exception?
                 Thread.sleep(100L);
+                ListingCache.invalidate(out);
                 if (this.mListener.mCause != null) {
                     throw this.mListener.mCause;
                 }
@@ -670,6 +672,7 @@ public final class CompressActionPolicy extends ActionsPolicy {
 
                 // Any exception?
                 Thread.sleep(100L);
+                ListingCache.invalidate(out);
                 if (this.mListener.mCause != null) {
                     throw this.mListener.mCause;
                 }
@@ -21,10 +21,12 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.text.Html;
 import android.text.Spanned;
+import android.text.format.DateUtils;
 import android.util.Log;
 
 import com.cyanogenmod.filemanager.R;
 import com.cyanogenmod.filemanager.console.Console;
+import com.cyanogenmod.filemanager.console.ExecutionException;
 import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
 import com.cyanogenmod.filemanager.console.RelaunchableException;
 import com.cyanogenmod.filemanager.console.secure.SecureConsole;
@@ -32,11 +34,16 @@ import com.cyanogenmod.filemanager.listeners.OnRequestRefreshListener;
 import com.cyanogenmod.filemanager.listeners.OnSelectionListener;
 import com.cyanogenmod.filemanager.model.FileSystemObject;
 import com.cyanogenmod.filemanager.preferences.Bookmarks;
+import com.cyanogenmod.filemanager.preferences.FileManagerSettings;
+import com.cyanogenmod.filemanager.preferences.Preferences;
 import com.cyanogenmod.filemanager.util.CommandHelper;
+import com.cyanogenmod.filemanager.util.CopyProgress;
+import com.cyanogenmod.filemanager.util.CopyVerifier;
 import com.cyanogenmod.filemanager.util.DialogHelper;
 import com.cyanogenmod.filemanager.util.ExceptionUtil;
 import com.cyanogenmod.filemanager.util.ExceptionUtil.OnRelaunchCommandResult;
 import com.cyanogenmod.filemanager.util.FileHelper;
+import com.cyanogenmod.filemanager.util.ListingCache;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -272,6 +279,8 @@ public final class CopyMoveActionPolicy extends ActionsPolicy {
 
             final Object mSync = new Object();
             Throwable mCause;
+            CopyProgress mProgress;
+            CopyVerifier mVerifier;
 
             @Override
             public int getDialogTitle() {
@@ -305,6 +314,24 @@ public final class CopyMoveActionPolicy extends ActionsPolicy {
                                   R.string.waiting_dialog_copying_msg,
                               src.getAbsolutePath(),
                               dst.getAbsolutePath());
+                CopyProgress copyProgress = this.mProgress;
+                if (copyProgress != null && copyProgress.getTotalBytes() > 0) {
+                    long eta = copyProgress.getEta();
+                    progress += "<br/><br/>" + //$NON-NLS-1$
+                            this.mCtx.getResources().getString(
+                                    R.string.waiting_dialog_copy_progress,
+                                    FileHelper.getHumanReadableSize(
+                                            copyProgress.getCopiedBytes()),
+                                    FileHelper.getHumanReadableSize(
+                                            copyProgress.getTotalBytes()),
+                                    Integer.valueOf(copyProgress.getPercentage()),
+                                    FileHelper.getHumanReadableSize(
+                                            copyProgress.getBytesPerSecond()),
+                                    String.format("%.1f", //$NON-NLS-1$
+                                            Double.valueOf(copyProgress.getFilesPerSecond())),
+                                    eta < 0 ? "-" : //$NON-NLS-1$
+                                            DateUtils.formatElapsedTime(eta / 1000L));
+                }
                 return Html.fromHtml(progress);
             }
 
@@ -345,14 +372,44 @@ public final class CopyMoveActionPolicy extends ActionsPolicy {
 
                 // This method expect to receive
                 // 1.- BackgroundAsyncTask
-                BackgroundAsyncTask task = (BackgroundAsyncTask)params[0];
+                final BackgroundAsyncTask task = (BackgroundAsyncTask)params[0];
+
+                // Size the operation, for report its progress
+                CopyProgress progress = new CopyProgress(new CopyProgress.OnProgressListener() {
+                    @Override
+                    public void onProgress(CopyProgress p) {
+                        task.onRequestProgress();
+                    }
+                });
+                for (LinkedResource linkedRes : this.mFiles) {
+                    progress.addItem(linkedRes.mSrc);
+                }
+                this.mProgress = progress;
+
+                // Verify the copied files?
+                boolean verify = Preferences.getSharedPreferences().getBoolean(
+                        FileManagerSettings.SETTINGS_VERIFY_COPY.getId(),
+                        ((Boolean)FileManagerSettings.SETTINGS_VERIFY_COPY.
+                                getDefaultValue()).booleanValue());
+                this.mVerifier = verify ?
+                        new CopyVerifier(CopyVerifier.DEFAULT_ALGORITHM) : null;
 
                 int cc2 = this.mFiles.size();
                 for (int i = 0; i < cc2; i++) {
                     File src = this.mFiles.get(i).mSrc;
                     File dst = this.mFiles.get(i).mDst;
 
-                    doOperation(this.mCtx, src, dst, this.mOperation);
+                    try {
+                        doOperation(this.mCtx, src, dst, this.mOperation);
+                        progress.onItemCompleted();
+                    } finally {
+                        // The cached listings of the source (if moved) and destination
+                        // are not valid anymore
+                        if (!this.mOperation.equals(COPY_MOVE_OPERATION.COPY)) {
+                            ListingCache.invalidate(src.getAbsolutePath());
+                        }
+                        ListingCache.invalidate(dst.getAbsolutePath());
+                    }
 
                     // Next file
                     this.mCurrent++;
@@ -365,10 +422,10 @@ public final class CopyMoveActionPolicy extends ActionsPolicy {
             @Override
             public void onCancel() {
                 if (mSrcConsole != null) {
-                    mSrcConsole.onCancel();
+                    mSrcConsole.onCancel(mWorker);
                 }
-                if (mDstConsole != null) {
-                    mDstConsole.onCancel();
+                if (mDstConsole != null && mDstConsole != mSrcConsole) {
+                    mDstConsole.onCancel(mWorker);
                 }
                 if (mOnRequestRefreshListener != null) {
                     mOnRequestRefreshListener.onCancel();
@@ -376,9 +433,25 @@ public final class CopyMoveActionPolicy extends ActionsPolicy {
                 refreshUIAfterCompletion();
             }
 
+            /**
+             * Method that returns if an operation failed because some copied files don't
+             * match their source.
+             *
+             * @param e The exception of the operation
+             * @return boolean If the verification of the copy failed
+             */
+            private boolean isVerificationFailure(Exception e) {
+                return mVerifier != null && mVerifier.hasMismatches()
+                        && e instanceof ExecutionException
+                        && ((ExecutionException)e).getDetailMessageResId()
+                                == R.string.msgs_copy_verification_failed;
+            }
+
             // Handles required for issuing command death to the consoles
             private Console mSrcConsole;
             private Console mDstConsole;
+            // The thread that executes the operation in the consoles
+            private Thread mWorker;
 
             /**
              * Method that copy or move the file to another location
@@ -411,6 +484,7 @@ public final class CopyMoveActionPolicy extends ActionsPolicy {
                         may explicitly kill the actions happening in both consoles.
                      */
                     // Need to derive the console for the source
+                    mWorker = Thread.currentThread();
                     mSrcConsole = CommandHelper.ensureConsoleForFile(ctx, null, source);
                     // Need to derive the console for the destination
                     mDstConsole = CommandHelper.ensureConsoleForFile(ctx, null, dest);
@@ -422,13 +496,17 @@ public final class CopyMoveActionPolicy extends ActionsPolicy {
                                 ctx,
                                 source,
                                 dst.getAbsolutePath(),
-                                mSrcConsole);
+                                mSrcConsole,
+                                mProgress,
+                                mVerifier);
                     } else {
                         CommandHelper.copy(
                                 ctx,
                                 source,
                                 dst.getAbsolutePath(),
-                                mSrcConsole);
+                                mSrcConsole,
+                                mProgress,
+                                mVerifier);
                     }
                 } catch (Exception e) {
                     // Need to be relaunched?
@@ -471,6 +549,18 @@ public final class CopyMoveActionPolicy extends ActionsPolicy {
                             throw this.mCause;
                         }
 
+                    } else if (isVerificationFailure(e)) {
+                        // Show the files that don't match their copies
+                        StringBuilder mismatches = new StringBuilder();
+                        for (String mismatch : mVerifier.getMismatches()) {
+                            if (mismatches.length() > 0) {
+                                mismatches.append('\n');
+                            }
+                            mismatches.append(mismatch);
+                        }
+                        throw new ExecutionException(
+                                R.string.msgs_copy_verification_failed, mismatches.toString());
+
                     } else {
                         // The exception must be elevated
                         throw e;
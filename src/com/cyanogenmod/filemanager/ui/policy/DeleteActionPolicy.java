@@ -16,30 +16,45 @@
 
 package com.cyanogenmod.filemanager.ui.policy;
 
+import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.text.Html;
 import android.text.Spanned;
+import android.view.View;
+import android.view.View.OnClickListener;
+import android.view.ViewGroup;
+import android.widget.Toast;
 
 import com.cyanogenmod.filemanager.R;
+import com.cyanogenmod.filemanager.commands.BatchExecutable.OnOperationCompletedListener;
+import com.cyanogenmod.filemanager.commands.BatchExecutable.OPERATION;
+import com.cyanogenmod.filemanager.commands.BatchExecutable.Operation;
 import com.cyanogenmod.filemanager.console.ExecutionException;
 import com.cyanogenmod.filemanager.console.RelaunchableException;
 import com.cyanogenmod.filemanager.listeners.OnRequestRefreshListener;
 import com.cyanogenmod.filemanager.listeners.OnSelectionListener;
 import com.cyanogenmod.filemanager.model.FileSystemObject;
 import com.cyanogenmod.filemanager.preferences.Bookmarks;
+import com.cyanogenmod.filemanager.preferences.FileManagerSettings;
+import com.cyanogenmod.filemanager.preferences.Preferences;
 import com.cyanogenmod.filemanager.ui.widgets.FlingerListView.OnItemFlingerResponder;
 import com.cyanogenmod.filemanager.util.CommandHelper;
 import com.cyanogenmod.filemanager.util.DialogHelper;
 import com.cyanogenmod.filemanager.util.ExceptionUtil;
 import com.cyanogenmod.filemanager.util.ExceptionUtil.OnRelaunchCommandResult;
 import com.cyanogenmod.filemanager.util.FileHelper;
+import com.cyanogenmod.filemanager.util.ListingCache;
+import com.cyanogenmod.filemanager.util.TrashStaging;
+import com.cyngn.uicommon.view.Snackbar;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 
 /**
@@ -161,14 +176,16 @@ public final class DeleteActionPolicy extends ActionsPolicy {
 
         // The callable interface
         final BackgroundCallable callable = new BackgroundCallable() {
-            // The current items
-            private int mCurrent = 0;
+            // The current items (updated by the batch while deleting)
+            private volatile int mCurrent = 0;
+            private volatile List<FileSystemObject> mDeleting = sortedFsos;
             final Context mCtx = ctx;
             final List<FileSystemObject> mFiles = sortedFsos;
             final OnRequestRefreshListener mOnRequestRefreshListener = onRequestRefreshListener;
 
             final Object mSync = new Object();
             Throwable mCause;
+            TrashStaging.Batch mStaged;
 
             @Override
             public int getDialogTitle() {
@@ -185,7 +202,9 @@ public final class DeleteActionPolicy extends ActionsPolicy {
 
             @Override
             public Spanned requestProgress() {
-                FileSystemObject fso = this.mFiles.get(this.mCurrent);
+                List<FileSystemObject> deleting = this.mDeleting;
+                FileSystemObject fso =
+                        deleting.get(Math.min(this.mCurrent, deleting.size() - 1));
 
                 // Return the current operation
                 String progress =
@@ -221,7 +240,11 @@ public final class DeleteActionPolicy extends ActionsPolicy {
                         this.mOnRequestRefreshListener.onRequestRemove(null, true);
                     }
                 }
-                ActionsPolicy.showOperationSuccessMsg(ctx);
+                if (this.mStaged != null && !this.mStaged.isEmpty()) {
+                    showUndo(ctx, this.mStaged, this.mOnRequestRefreshListener);
+                } else {
+                    ActionsPolicy.showOperationSuccessMsg(ctx);
+                }
             }
 
             @Override
@@ -232,40 +255,104 @@ public final class DeleteActionPolicy extends ActionsPolicy {
             @Override
             public void doInBackground(Object... params) throws Throwable {
                 this.mCause = null;
+                this.mStaged = null;
+                List<FileSystemObject> files = this.mFiles;
 
                 // This method expect to receive
                 // 1.- BackgroundAsyncTask
-                BackgroundAsyncTask task = (BackgroundAsyncTask)params[0];
+                final BackgroundAsyncTask task = (BackgroundAsyncTask)params[0];
+
+                // Stage the items if the delete can be undone. The items that can't be
+                // staged are deleted now
+                boolean deferred = Preferences.getSharedPreferences().getBoolean(
+                        FileManagerSettings.SETTINGS_DEFERRED_DELETE.getId(),
+                        ((Boolean)FileManagerSettings.SETTINGS_DEFERRED_DELETE.
+                                getDefaultValue()).booleanValue());
+                if (deferred) {
+                    List<String> paths = new ArrayList<String>(files.size());
+                    for (FileSystemObject fso : files) {
+                        paths.add(fso.getFullPath());
+                    }
+                    this.mStaged = TrashStaging.stage(this.mCtx, paths);
+                    Set<String> notStaged = new HashSet<String>(this.mStaged.getNotStaged());
+                    files = new ArrayList<FileSystemObject>();
+                    for (FileSystemObject fso : this.mFiles) {
+                        if (notStaged.contains(fso.getFullPath())) {
+                            files.add(fso);
+                        }
+                    }
+                }
 
-                int cc = this.mFiles.size();
+                // Delete all the items in one batch
+                int cc = files.size();
+                List<Operation> operations = new ArrayList<Operation>(cc);
                 for (int i = 0; i < cc; i++) {
-                    FileSystemObject fso = this.mFiles.get(i);
+                    FileSystemObject fso = files.get(i);
+                    operations.add(new Operation(
+                            FileHelper.isDirectory(fso)
+                                    ? OPERATION.DELETE_DIR : OPERATION.DELETE_FILE,
+                            fso.getFullPath(), null));
+                }
+                if (operations.isEmpty()) {
+                    return;
+                }
 
-                    doOperation(this.mCtx, fso);
+                // Report the item being deleted, every time the batch deletes an item
+                this.mDeleting = files;
+                this.mCurrent = 0;
+                task.onRequestProgress();
+                final int count = cc;
+                OnOperationCompletedListener listener = new OnOperationCompletedListener() {
+                    @Override
+                    @SuppressWarnings("unqualified-field-access")
+                    public void onOperationCompleted(int index, boolean success) {
+                        if (index + 1 < count) {
+                            mCurrent = index + 1;
+                            task.onRequestProgress();
+                        }
+                    }
+                };
+                boolean[] result;
+                try {
+                    result = doOperation(this.mCtx, operations, listener);
+                } finally {
+                    for (int i = 0; i < cc; i++) {
+                        ListingCache.invalidate(files.get(i).getFullPath());
+                    }
+                }
 
-                    // Next file
-                    this.mCurrent++;
-                    if (this.mCurrent < this.mFiles.size()) {
-                        task.onRequestProgress();
+                // Check that the operation was completed for every item
+                for (int i = 0; i < cc; i++) {
+                    FileSystemObject fso = files.get(i);
+                    boolean failed = result != null ? !result[i] : exists(this.mCtx, fso);
+                    if (failed) {
+                        // Cancels the flinger
+                        if (onItemFlingerResponder != null) {
+                            onItemFlingerResponder.cancel();
+                        }
+
+                        throw new ExecutionException(
+                                String.format(
+                                        "Failed to delete file: %s", //$NON-NLS-1$
+                                        fso.getFullPath()));
                     }
                 }
             }
 
             /**
-             * Method that deletes the file or directory
+             * Method that deletes the files and directories
              *
              * @param ctx The current context
-             * @param fso The file or folder to be deleted
+             * @param operations The delete operations
+             * @param listener The listener notified every time an item is deleted
+             * @return boolean[] The result of every operation, or null if the operations
+             * were relaunched and the result is unknown
              */
-            private void doOperation(
-                    final Context ctx, final FileSystemObject fso) throws Throwable {
+            private boolean[] doOperation(final Context ctx, final List<Operation> operations,
+                    OnOperationCompletedListener listener) throws Throwable {
                 try {
-                    // Remove the item
-                    if (FileHelper.isDirectory(fso)) {
-                        CommandHelper.deleteDirectory(ctx, fso.getFullPath(), null);
-                    } else {
-                        CommandHelper.deleteFile(ctx, fso.getFullPath(), null);
-                    }
+                    // Remove the items
+                    return CommandHelper.batch(ctx, operations, listener, null);
                 } catch (Exception e) {
                     // Need to be relaunched?
                     if (e instanceof RelaunchableException) {
@@ -311,42 +398,37 @@ public final class DeleteActionPolicy extends ActionsPolicy {
                             // The exception must be elevated
                             throw this.mCause;
                         }
+                        return null;
 
-                    } else {
-                        // Cancels the flinger
-                        if (onItemFlingerResponder != null) {
-                            onItemFlingerResponder.cancel();
-                        }
+                    }
 
-                        // The exception must be elevated
-                        throw e;
+                    // Cancels the flinger
+                    if (onItemFlingerResponder != null) {
+                        onItemFlingerResponder.cancel();
                     }
+
+                    // The exception must be elevated
+                    throw e;
                 }
+            }
 
-                // Check that the operation was completed retrieving the deleted fso
-                boolean failed = false;
+            /**
+             * Method that checks if a deleted file or directory still exists
+             *
+             * @param ctx The current context
+             * @param fso The deleted file or folder
+             * @return boolean If the file or folder still exists
+             */
+            private boolean exists(final Context ctx, final FileSystemObject fso) {
                 try {
                     CommandHelper.getFileInfo(ctx, fso.getFullPath(), false, null);
                     FileSystemObject fso2 =
                             CommandHelper.getFileInfo(ctx, fso.getFullPath(), false, null);
-                    if (fso2 != null) {
-                        // Failed. The file still exists
-                        failed = true;
-                    }
-
+                    return fso2 != null;
                 } catch (Throwable e) {
                     // Operation complete successfully
                 }
-                if (failed) {
-                    // Cancels the flinger
-                    if (onItemFlingerResponder != null) {
-                        onItemFlingerResponder.cancel();
-                    }
-
-                    throw new ExecutionException(
-                            String.format(
-                                    "Failed to delete file: %s", fso.getFullPath())); //$NON-NLS-1$
-                }
+                return false;
             }
         };
         final BackgroundAsyncTask task = new BackgroundAsyncTask(ctx, callable);
@@ -355,6 +437,43 @@ public final class DeleteActionPolicy extends ActionsPolicy {
         task.execute(task);
     }
 
+    /**
+     * Method that shows a message that allows restore the staged items.
+     *
+     * @param ctx The current context
+     * @param staged The staged items
+     * @param onRequestRefreshListener The listener for request a refresh (optional)
+     */
+    static void showUndo(final Context ctx, final TrashStaging.Batch staged,
+            final OnRequestRefreshListener onRequestRefreshListener) {
+        ViewGroup viewGroup = null;
+        if (ctx instanceof Activity) {
+            ViewGroup content = (ViewGroup)((Activity)ctx).findViewById(android.R.id.content);
+            if (content != null) {
+                viewGroup = (ViewGroup)content.getChildAt(0);
+            }
+        }
+        if (viewGroup == null) {
+            ActionsPolicy.showOperationSuccessMsg(ctx);
+            return;
+        }
+
+        Snackbar snackbar = Snackbar.make(viewGroup, ctx.getString(R.string.msgs_deleted_undo),
+                Snackbar.LENGTH_LONG, 1);
+        snackbar.setAction(R.string.msgs_undo, new OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (!TrashStaging.restore(ctx, staged)) {
+                    DialogHelper.showToast(ctx, R.string.msgs_unknown, Toast.LENGTH_SHORT);
+                }
+                if (onRequestRefreshListener != null) {
+                    onRequestRefreshListener.onRequestRefresh(null, true);
+                }
+            }
+        });
+        snackbar.show();
+    }
+
     /**
      * Method that check the consistency of delete operations.<br/>
      * <br/>
@@ -21,6 +21,7 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.res.TypedArray;
 import android.os.AsyncTask;
+import android.os.FileObserver;
 import android.os.storage.StorageVolume;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -67,13 +68,18 @@ import com.cyanogenmod.filemanager.util.DialogHelper;
 import com.cyanogenmod.filemanager.util.ExceptionUtil;
 import com.cyanogenmod.filemanager.util.ExceptionUtil.OnRelaunchCommandResult;
 import com.cyanogenmod.filemanager.util.FileHelper;
+import com.cyanogenmod.filemanager.util.ListingCache;
 import com.cyanogenmod.filemanager.util.StorageHelper;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The file manager implementation view (contains the graphical representation and the input
@@ -86,6 +92,18 @@ BreadcrumbListener, OnSelectionChangedListener, OnSelectionListener, OnRequestRe
 
     private static final String TAG = "NavigationView"; //$NON-NLS-1$
 
+    // The delay for coalesce the changes of the current directory
+    private static final long DIRECTORY_CHANGES_DELAY = 500L;
+
+    // The maximum number of changed files that are applied one by one. More changes
+    // are applied with a refresh of the directory
+    private static final int MAX_DIRECTORY_CHANGES = 128;
+
+    private static final int DIRECTORY_OBSERVER_EVENTS =
+            FileObserver.CREATE | FileObserver.DELETE | FileObserver.MOVED_FROM |
+            FileObserver.MOVED_TO | FileObserver.CLOSE_WRITE | FileObserver.MODIFY |
+            FileObserver.ATTRIB;
+
     /**
      * An interface to communicate selection changes events.
      */
@@ -222,6 +240,7 @@ BreadcrumbListener, OnSelectionChangedListener, OnSelectionListener, OnRequestRe
         private final FileSystemObject mScrollTo;
         private final Map<DisplayRestrictions, Object> mRestrictions;
         private final boolean mChRooted;
+        private List<FileSystemObject> mCachedFiles;
 
         public NavigationTask(boolean useCurrent, boolean addToHistory, boolean reload,
                 SearchInfoParcelable searchInfo, FileSystemObject scrollTo,
@@ -278,7 +297,20 @@ BreadcrumbListener, OnSelectionChangedListener, OnSelectionListener, OnRequestRe
                 //(sort, hidden, ...)
                 List<FileSystemObject> files = NavigationView.this.mFiles;
                 if (!mUseCurrent) {
-                    files = CommandHelper.listFiles(getContext(), mNewDirChecked, null);
+                    // Use the cached listing, unless a reload is requested. It will be
+                    // refreshed in background once it is displayed
+                    files = null;
+                    if (!mReload) {
+                        mCachedFiles = ListingCache.get(mNewDirChecked);
+                        if (mCachedFiles != null) {
+                            files = new ArrayList<FileSystemObject>(mCachedFiles);
+                        }
+                    }
+                    if (files == null) {
+                        long lastModified = ListingCache.stat(mNewDirChecked);
+                        files = CommandHelper.listFiles(getContext(), mNewDirChecked, null);
+                        ListingCache.put(mNewDirChecked, files, lastModified);
+                    }
                 }
 
                 //Apply user preferences
@@ -382,6 +414,13 @@ BreadcrumbListener, OnSelectionChangedListener, OnSelectionListener, OnRequestRe
             onPostExecuteTask(files, mAddToHistory, mIsNewHistory, mHasChanged,
                         mSearchInfo, mNewDirChecked, mScrollTo);
 
+            // Check for changes of a cached listing
+            if (files != null && mCachedFiles != null) {
+                mRevalidateTask = new RevalidateTask(
+                        mNewDirChecked, mCachedFiles, this.mRestrictions, this.mChRooted);
+                mRevalidateTask.executeOnExecutor(AsyncTask.SERIAL_EXECUTOR);
+            }
+
             // Do animation
             fadeEfect(false);
         }
@@ -408,6 +447,161 @@ BreadcrumbListener, OnSelectionChangedListener, OnSelectionListener, OnRequestRe
         }
     };
 
+    /**
+     * A task that lists again a directory displayed from the listing cache, and
+     * displays the new listing if the directory was changed.
+     */
+    private class RevalidateTask extends AsyncTask<Void, Void, List<FileSystemObject>> {
+        private final String mDirectory;
+        private final List<FileSystemObject> mCachedFiles;
+        private final Map<DisplayRestrictions, Object> mRestrictions;
+        private final boolean mChRooted;
+
+        public RevalidateTask(String directory, List<FileSystemObject> cachedFiles,
+                Map<DisplayRestrictions, Object> restrictions, boolean chRooted) {
+            super();
+            this.mDirectory = directory;
+            this.mCachedFiles = cachedFiles;
+            this.mRestrictions = restrictions;
+            this.mChRooted = chRooted;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected List<FileSystemObject> doInBackground(Void... params) {
+            if (isCancelled()) {
+                return null;
+            }
+            try {
+                long lastModified = ListingCache.stat(this.mDirectory);
+                List<FileSystemObject> files =
+                        CommandHelper.listFiles(getContext(), this.mDirectory, null);
+                if (!ListingCache.hasChanged(this.mCachedFiles, files)) {
+                    return null;
+                }
+                ListingCache.put(this.mDirectory, files, lastModified);
+                return FileHelper.applyUserPreferences(files, this.mRestrictions, this.mChRooted);
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to revalidate the listing of " + this.mDirectory, e); //$NON-NLS-1$
+            }
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void onPostExecute(List<FileSystemObject> files) {
+            if (mRevalidateTask == this) {
+                mRevalidateTask = null;
+            }
+
+            // Only if the user is still in the same directory
+            if (files == null || mNavigationTask != null
+                    || mCurrentDir == null || mCurrentDir.compareTo(this.mDirectory) != 0) {
+                return;
+            }
+
+            //Remove parent directory if we are in the root of a chrooted environment
+            if (this.mChRooted && StorageHelper.isStorageVolume(this.mDirectory)) {
+                if (files.size() > 0 && files.get(0) instanceof ParentDirectory) {
+                    files.remove(0);
+                }
+            }
+            loadData(files);
+            NavigationView.this.mFiles = files;
+        }
+    }
+
+    /**
+     * The observer of the changes of the current directory.
+     */
+    private class DirectoryObserver extends FileObserver {
+        private final String mDirectory;
+
+        public DirectoryObserver(String directory) {
+            super(directory, DIRECTORY_OBSERVER_EVENTS);
+            this.mDirectory = directory;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onEvent(int event, String path) {
+            if (path == null) {
+                return;
+            }
+            ListingCache.invalidate(new File(this.mDirectory, path).getAbsolutePath());
+            onDirectoryChanged(this, path);
+        }
+    }
+
+    /**
+     * A task that retrieves the changed files of the current directory and applies
+     * them over the displayed files.
+     */
+    private class DirectoryChangesTask
+            extends AsyncTask<Void, Void, Map<String, FileSystemObject>> {
+        private final String mDirectory;
+        private final List<String> mNames;
+        private final Map<DisplayRestrictions, Object> mRestrictions;
+        private final boolean mChRooted;
+
+        public DirectoryChangesTask(String directory, List<String> names,
+                Map<DisplayRestrictions, Object> restrictions, boolean chRooted) {
+            super();
+            this.mDirectory = directory;
+            this.mNames = names;
+            this.mRestrictions = restrictions;
+            this.mChRooted = chRooted;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected Map<String, FileSystemObject> doInBackground(Void... params) {
+            // A null value means that the file must be removed
+            Map<String, FileSystemObject> changes = new HashMap<String, FileSystemObject>();
+            List<FileSystemObject> files = new ArrayList<FileSystemObject>();
+            for (String name : this.mNames) {
+                FileSystemObject fso = null;
+                try {
+                    fso = CommandHelper.getFileInfo(getContext(),
+                            new File(this.mDirectory, name).getAbsolutePath(), false, null);
+                } catch (Exception e) {/**NON BLOCK**/}
+                changes.put(name, null);
+                if (fso != null) {
+                    files.add(fso);
+                }
+            }
+            FileHelper.resolveSymlinks(getContext(), files);
+            for (FileSystemObject fso : files) {
+                if (FileHelper.compliesWithDisplayPreferences(
+                        fso, this.mRestrictions, this.mChRooted)) {
+                    changes.put(fso.getName(), fso);
+                }
+            }
+            return changes;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void onPostExecute(Map<String, FileSystemObject> changes) {
+            // Only if the user is still in the same directory
+            if (mNavigationTask != null || mFiles == null
+                    || mCurrentDir == null || mCurrentDir.compareTo(this.mDirectory) != 0) {
+                return;
+            }
+            applyDirectoryChanges(changes);
+        }
+    }
+
     private int mId;
     private String mCurrentDir;
     private String mPreviousDir;
@@ -432,6 +626,33 @@ BreadcrumbListener, OnSelectionChangedListener, OnSelectionListener, OnRequestRe
     private Map<DisplayRestrictions, Object> mRestrictions;
 
     private NavigationTask mNavigationTask;
+    private RevalidateTask mRevalidateTask;
+
+    private DirectoryObserver mDirectoryObserver;
+    private final Object mDirectoryChangesSync = new Object();
+    private final Set<String> mDirectoryChanges = new HashSet<String>();
+    private boolean mDirectoryChangesScheduled;
+    private final Runnable mApplyDirectoryChanges = new Runnable() {
+        @Override
+        public void run() {
+            List<String> names;
+            synchronized (mDirectoryChangesSync) {
+                names = new ArrayList<String>(mDirectoryChanges);
+                mDirectoryChanges.clear();
+                mDirectoryChangesScheduled = false;
+            }
+            if (names.isEmpty() || mNavigationTask != null
+                    || mCurrentDir == null || mFiles == null) {
+                return;
+            }
+            if (names.size() > MAX_DIRECTORY_CHANGES) {
+                refresh(true);
+                return;
+            }
+            new DirectoryChangesTask(mCurrentDir, names, mRestrictions, mChRooted)
+                    .executeOnExecutor(AsyncTask.SERIAL_EXECUTOR);
+        }
+    };
 
     /**
      * @hide
@@ -837,6 +1058,7 @@ BreadcrumbListener, OnSelectionChangedListener, OnSelectionListener, OnRequestRe
      * Method that recycles this object
      */
     public void recycle() {
+        stopDirectoryObserver();
         if (this.mAdapter != null) {
             this.mAdapter.dispose();
         }
@@ -1047,6 +1269,11 @@ BreadcrumbListener, OnSelectionChangedListener, OnSelectionListener, OnRequestRe
             final String newDir, final boolean addToHistory,
             final boolean reload, final boolean useCurrent,
             final SearchInfoParcelable searchInfo, final FileSystemObject scrollTo) {
+        stopDirectoryObserver();
+        if (mRevalidateTask != null) {
+            mRevalidateTask.cancel(false);
+            mRevalidateTask = null;
+        }
         if (mNavigationTask != null) {
             this.mCurrentDir = this.mPreviousDir;
             this.mPreviousDir = null;
@@ -1083,6 +1310,102 @@ BreadcrumbListener, OnSelectionChangedListener, OnSelectionListener, OnRequestRe
     }
 
 
+    /**
+     * Method that starts to observe the changes of the current directory.
+     *
+     * @param directory The current directory
+     */
+    private void startDirectoryObserver(String directory) {
+        stopDirectoryObserver();
+        if (VirtualMountPointConsole.getVirtualConsoleForPath(directory) != null) {
+            // Virtual filesystems can't be observed
+            return;
+        }
+        DirectoryObserver observer = new DirectoryObserver(directory);
+        synchronized (this.mDirectoryChangesSync) {
+            this.mDirectoryObserver = observer;
+        }
+        observer.startWatching();
+    }
+
+    /**
+     * Method that stops to observe the changes of the current directory, and discards
+     * the changes not applied yet.
+     */
+    private void stopDirectoryObserver() {
+        DirectoryObserver observer;
+        synchronized (this.mDirectoryChangesSync) {
+            observer = this.mDirectoryObserver;
+            this.mDirectoryObserver = null;
+            this.mDirectoryChanges.clear();
+            this.mDirectoryChangesScheduled = false;
+        }
+        removeCallbacks(this.mApplyDirectoryChanges);
+        if (observer != null) {
+            observer.stopWatching();
+        }
+    }
+
+    /**
+     * Method invoked when a file of the current directory changes. The changes are
+     * coalesced and applied together after a delay.
+     *
+     * @param observer The observer that generates the event
+     * @param name The name of the changed file
+     * @hide
+     */
+    void onDirectoryChanged(DirectoryObserver observer, String name) {
+        synchronized (this.mDirectoryChangesSync) {
+            if (observer != this.mDirectoryObserver) {
+                return;
+            }
+            this.mDirectoryChanges.add(name);
+            if (this.mDirectoryChangesScheduled) {
+                return;
+            }
+            this.mDirectoryChangesScheduled = true;
+        }
+        postDelayed(this.mApplyDirectoryChanges, DIRECTORY_CHANGES_DELAY);
+    }
+
+    /**
+     * Method that applies the changed files of the current directory over the displayed
+     * files, removing, inserting or updating every changed file in its sorted position.
+     *
+     * @param changes The changed files by name. A null value means that the file
+     * must be removed
+     * @hide
+     */
+    void applyDirectoryChanges(Map<String, FileSystemObject> changes) {
+        Comparator<FileSystemObject> comparator = FileHelper.getUserPreferencesComparator();
+        this.mAdapter.setNotifyOnChange(false);
+        for (Map.Entry<String, FileSystemObject> change : changes.entrySet()) {
+            // Remove the old item
+            String name = change.getKey();
+            int cc = this.mFiles.size();
+            for (int i = 0; i < cc; i++) {
+                FileSystemObject f = this.mFiles.get(i);
+                if (!(f instanceof ParentDirectory) && name.equals(f.getName())) {
+                    this.mFiles.remove(i);
+                    this.mAdapter.remove(f);
+                    break;
+                }
+            }
+
+            // And insert the new one in its position
+            FileSystemObject fso = change.getValue();
+            if (fso != null) {
+                int pos = Collections.binarySearch(this.mFiles, fso, comparator);
+                if (pos < 0) {
+                    pos = -(pos + 1);
+                }
+                this.mFiles.add(pos, fso);
+                this.mAdapter.insert(fso, pos);
+            }
+        }
+        this.mAdapter.notifyDataSetChanged();
+    }
+
     /**
      * Method invoked when a execution ends.
      *
@@ -1124,6 +1447,7 @@ BreadcrumbListener, OnSelectionChangedListener, OnSelectionListener, OnRequestRe
             //Load the data
             loadData(files);
             this.mFiles = files;
+            startDirectoryObserver(newDir);
             if (searchInfo != null) {
                 searchInfo.setSuccessNavigation(true);
             }
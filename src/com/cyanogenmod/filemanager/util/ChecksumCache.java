@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.FileManagerApplication;
+import com.cyanogenmod.filemanager.commands.ChecksumExecutable;
+import com.cyanogenmod.filemanager.commands.ChecksumExecutable.CHECKSUMS;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent cache of the checksums of the files, so the checksums of a file that
+ * didn't change are not calculated again.<br/>
+ * <br/>
+ * The checksums are stored by path, together with the identity of the file when they
+ * were calculated (size, modification time and inode). An entry is only returned if
+ * the file still has the same identity. The cache holds the most recently used
+ * entries (up to {@link #MAX_ENTRIES}), and it's written to the data directory of
+ * the app a while after it changes. This class is thread-safe.
+ */
+public final class ChecksumCache {
+
+    private static final String TAG = "ChecksumCache"; //$NON-NLS-1$
+
+    private static final String CACHE_FILE = "checksum_cache.bin"; //$NON-NLS-1$
+    private static final int MAGIC = 0x434d4353;
+    private static final int VERSION = 1;
+
+    /**
+     * The maximum number of files in the cache.
+     */
+    public static final int MAX_ENTRIES = 256;
+
+    // Delay between a change of the cache and its write to disk
+    private static final long SAVE_DELAY = 10000L;
+
+    /**
+     * The identity of a file, to know if the file changed since its checksums were
+     * calculated.
+     */
+    public static final class Key {
+        final String mPath;
+        final long mSize;
+        final long mLastModified;
+        final long mInode;
+
+        Key(String path, long size, long lastModified, long inode) {
+            this.mPath = path;
+            this.mSize = size;
+            this.mLastModified = lastModified;
+            this.mInode = inode;
+        }
+
+        boolean isSameFile(Key other) {
+            return other != null
+                    && this.mPath.equals(other.mPath)
+                    && this.mSize == other.mSize
+                    && this.mLastModified == other.mLastModified
+                    && this.mInode == other.mInode;
+        }
+    }
+
+    /**
+     * An entry of the cache.
+     */
+    private static final class Entry {
+        final Key mKey;
+        final String[] mChecksums;
+
+        Entry(Key key, String[] checksums) {
+            this.mKey = key;
+            this.mChecksums = checksums;
+        }
+    }
+
+    // The entries in access order (the eldest is the least recently used)
+    private static final LinkedHashMap<String, Entry> sEntries =
+            new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+    private static boolean sLoaded;
+    private static boolean sSaveScheduled;
+    private static ScheduledExecutorService sExecutor;
+
+    /**
+     * Constructor of <code>ChecksumCache</code>.
+     */
+    private ChecksumCache() {
+        super();
+    }
+
+    /**
+     * Method that returns the current identity of a file.
+     *
+     * @param file The file
+     * @return Key The identity of the file, or null if the file isn't a regular file
+     * or can't be accessed
+     */
+    public static Key getKey(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        long inode = -1;
+        try {
+            inode = Os.stat(file.getAbsolutePath()).st_ino;
+        } catch (ErrnoException e) {
+            // The inode is not needed to identify the file, just more precise
+        }
+        return new Key(file.getAbsolutePath(), file.length(), file.lastModified(), inode);
+    }
+
+    /**
+     * Method that returns the cached checksums of a file.
+     *
+     * @param key The current identity of the file (see {@link #getKey(File)})
+     * @return String[] The checksums (in the order of {@link CHECKSUMS}), or null
+     * if the file isn't cached or it changed since its checksums were calculated
+     */
+    public static String[] get(Key key) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (sEntries) {
+            ensureLoaded();
+            Entry entry = sEntries.get(key.mPath);
+            if (entry == null) {
+                return null;
+            }
+            if (!entry.mKey.isSameFile(key)) {
+                // The file changed. Its checksums are not valid anymore
+                sEntries.remove(key.mPath);
+                scheduleSave();
+                return null;
+            }
+            return entry.mChecksums.clone();
+        }
+    }
+
+    /**
+     * Method that stores the checksums of a file. The checksums are ignored if the
+     * file changed while they were calculated.
+     *
+     * @param key The identity of the file before its checksums were calculated
+     * @param checksums The checksums, in the order of {@link CHECKSUMS}
+     */
+    public static void put(Key key, String[] checksums) {
+        if (key == null || checksums == null
+                || checksums.length != CHECKSUMS.values().length) {
+            return;
+        }
+        for (String checksum : checksums) {
+            // Don't store incomplete results
+            if (checksum == null || checksum.length() == 0
+                    || checksum.equals(ChecksumExecutable.UNAVAILABLE)) {
+                return;
+            }
+        }
+        if (!key.isSameFile(getKey(new File(key.mPath)))) {
+            return;
+        }
+        synchronized (sEntries) {
+            ensureLoaded();
+            sEntries.put(key.mPath, new Entry(key, checksums.clone()));
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Method that returns the file of the cache.
+     *
+     * @return File The file of the cache
+     */
+    private static File getCacheFile() {
+        return new File(FileManagerApplication.getInstance().getFilesDir(), CACHE_FILE);
+    }
+
+    /**
+     * Method that reads the cache from disk, if it wasn't read yet (lock held).
+     */
+    private static void ensureLoaded() {
+        if (sLoaded) {
+            return;
+        }
+        sLoaded = true;
+        File file = getCacheFile();
+        if (!file.isFile()) {
+            return;
+        }
+        final int count = CHECKSUMS.values().length;
+        DataInputStream is = null;
+        try {
+            is = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (is.readInt() != MAGIC || is.readInt() != VERSION || is.readInt() != count) {
+                return;
+            }
+            int entries = is.readInt();
+            for (int i = 0; i < entries; i++) {
+                Key key = new Key(is.readUTF(), is.readLong(), is.readLong(), is.readLong());
+                String[] checksums = new String[count];
+                for (int j = 0; j < count; j++) {
+                    checksums[j] = is.readUTF();
+                }
+                // Entries are stored from the least to the most recently used
+                sEntries.put(key.mPath, new Entry(key, checksums));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read the checksum cache " + file, e); //$NON-NLS-1$
+            sEntries.clear();
+        } finally {
+            try {
+                if (is != null) {
+                    is.close();
+                }
+            } catch (Throwable ex) {/**NON BLOCK**/}
+        }
+    }
+
+    /**
+     * Method that schedules the write of the cache to disk (lock held).
+     */
+    private static void scheduleSave() {
+        if (sSaveScheduled) {
+            return;
+        }
+        sSaveScheduled = true;
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadScheduledExecutor();
+        }
+        sExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                List<Entry> entries;
+                synchronized (sEntries) {
+                    sSaveScheduled = false;
+                    entries = new ArrayList<Entry>(sEntries.values());
+                }
+                save(entries);
+            }
+        }, SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method that writes the cache to disk.
+     *
+     * @param entries The entries, from the least to the most recently used
+     */
+    private static void save(List<Entry> entries) {
+        File file = getCacheFile();
+        File tmp = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+        DataOutputStream os = null;
+        try {
+            os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            os.writeInt(MAGIC);
+            os.writeInt(VERSION);
+            os.writeInt(CHECKSUMS.values().length);
+            os.writeInt(entries.size());
+            for (Entry entry : entries) {
+                os.writeUTF(entry.mKey.mPath);
+                os.writeLong(entry.mKey.mSize);
+                os.writeLong(entry.mKey.mLastModified);
+                os.writeLong(entry.mKey.mInode);
+                for (String checksum : entry.mChecksums) {
+                    os.writeUTF(checksum);
+                }
+            }
+            os.close();
+            os = null;
+            if (!tmp.renameTo(file)) {
+                Log.w(TAG, "Can't write the checksum cache " + file); //$NON-NLS-1$
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write the checksum cache " + file, e); //$NON-NLS-1$
+        } finally {
+            try {
+                if (os != null) {
+                    os.close();
+                }
+            } catch (Throwable ex) {/**NON BLOCK**/}
+            tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.os.SystemClock;
+
+import com.android.internal.util.HexDump;
+import com.cyanogenmod.filemanager.commands.AsyncResultExecutable;
+import com.cyanogenmod.filemanager.commands.AsyncResultListener;
+import com.cyanogenmod.filemanager.commands.ChecksumExecutable.CHECKSUMS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * A helper class that calculates all the {@link CHECKSUMS} of a file in only one
+ * read of the file. Every block read is fed to all the digests, so the file is read
+ * from the storage once, whatever the number of checksums.
+ */
+public final class ChecksumEngine {
+
+    /**
+     * The size of the buffer used to read the files.
+     */
+    public static final int BUFFER_SIZE = 262144;
+
+    // The minimum time between two reports of progress (in milliseconds)
+    private static final long PROGRESS_INTERVAL = 250L;
+
+    /**
+     * Constructor of <code>ChecksumEngine</code>.
+     */
+    private ChecksumEngine() {
+        super();
+    }
+
+    /**
+     * Method that calculates all the checksums of a stream. The number of bytes read
+     * is reported as <code>Long</code> partial results, and then the checksums are
+     * reported as <code>String</code> partial results, in the order of {@link CHECKSUMS}.
+     *
+     * @param in The stream to read (it isn't closed)
+     * @param program The program that calculates (for check if it was cancelled)
+     * @param listener The listener where to report the partial results (may be null)
+     * @return String[] The checksums, in the order of {@link CHECKSUMS}
+     * @throws IOException If the stream can't be read
+     * @throws NoSuchAlgorithmException If a digest algorithm isn't supported
+     * @throws InterruptedException If the operation was cancelled
+     */
+    public static String[] compute(InputStream in, AsyncResultExecutable program,
+            AsyncResultListener listener)
+            throws IOException, NoSuchAlgorithmException, InterruptedException {
+        CHECKSUMS[] checksums = CHECKSUMS.values();
+        MessageDigest[] digests = new MessageDigest[checksums.length];
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < checksums.length; i++) {
+            if (checksums[i].getAlgorithm() != null) {
+                digests[i] = MessageDigest.getInstance(checksums[i].getAlgorithm());
+            }
+        }
+
+        // Feed every block to all the digests
+        byte[] data = new byte[BUFFER_SIZE];
+        long total = 0;
+        long lastProgress = SystemClock.elapsedRealtime();
+        int read;
+        while ((read = in.read(data, 0, data.length)) != -1) {
+            if (program.isCancelled()) {
+                throw new InterruptedException();
+            }
+            for (int i = 0; i < checksums.length; i++) {
+                if (digests[i] != null) {
+                    digests[i].update(data, 0, read);
+                }
+            }
+            crc.update(data, 0, read);
+            total += read;
+
+            long now = SystemClock.elapsedRealtime();
+            if (listener != null && now - lastProgress >= PROGRESS_INTERVAL) {
+                listener.onPartialResult(Long.valueOf(total));
+                lastProgress = now;
+            }
+        }
+        if (program.isCancelled()) {
+            throw new InterruptedException();
+        }
+        if (listener != null) {
+            listener.onPartialResult(Long.valueOf(total));
+        }
+
+        // Report the checksums in order
+        String[] result = new String[checksums.length];
+        for (int i = 0; i < checksums.length; i++) {
+            if (digests[i] != null) {
+                result[i] = HexDump.toHexString(digests[i].digest()).toLowerCase(Locale.ROOT);
+            } else {
+                result[i] = String.format(Locale.ROOT, "%08x", //$NON-NLS-1$
+                        Long.valueOf(crc.getValue()));
+            }
+            if (listener != null) {
+                listener.onPartialResult(result[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Method that calculates one digest of a stream.
+     *
+     * @param in The stream to read (it isn't closed)
+     * @param algorithm The digest algorithm (see {@link MessageDigest})
+     * @param program The program that calculates (for check if it was cancelled)
+     * @return String The digest
+     * @throws IOException If the stream can't be read
+     * @throws NoSuchAlgorithmException If the digest algorithm isn't supported
+     * @throws InterruptedException If the operation was cancelled
+     */
+    public static String digest(InputStream in, String algorithm, AsyncResultExecutable program)
+            throws IOException, NoSuchAlgorithmException, InterruptedException {
+        MessageDigest digest = MessageDigest.getInstance(algorithm);
+        byte[] data = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(data, 0, data.length)) != -1) {
+            if (program.isCancelled()) {
+                throw new InterruptedException();
+            }
+            digest.update(data, 0, read);
+        }
+        return HexDump.toHexString(digest.digest()).toLowerCase(Locale.ROOT);
+    }
+}
@@ -24,7 +24,9 @@ import android.media.MediaScannerConnection;
 import android.net.Uri;
 
 import android.util.Log;
+import com.cyanogenmod.filemanager.R;
 import com.cyanogenmod.filemanager.commands.AsyncResultListener;
+import com.cyanogenmod.filemanager.commands.BatchExecutable;
 import com.cyanogenmod.filemanager.commands.ChangeOwnerExecutable;
 import com.cyanogenmod.filemanager.commands.ChangePermissionsExecutable;
 import com.cyanogenmod.filemanager.commands.ChecksumExecutable;
@@ -36,6 +38,7 @@ import com.cyanogenmod.filemanager.commands.CreateFileExecutable;
 import com.cyanogenmod.filemanager.commands.DeleteDirExecutable;
 import com.cyanogenmod.filemanager.commands.DeleteFileExecutable;
 import com.cyanogenmod.filemanager.commands.DiskUsageExecutable;
+import com.cyanogenmod.filemanager.commands.DuplicatesExecutable;
 import com.cyanogenmod.filemanager.commands.EchoExecutable;
 import com.cyanogenmod.filemanager.commands.ExecExecutable;
 import com.cyanogenmod.filemanager.commands.Executable;
@@ -55,6 +58,8 @@ import com.cyanogenmod.filemanager.commands.ReadExecutable;
 import com.cyanogenmod.filemanager.commands.ResolveLinkExecutable;
 import com.cyanogenmod.filemanager.commands.SIGNAL;
 import com.cyanogenmod.filemanager.commands.SendSignalExecutable;
+import com.cyanogenmod.filemanager.commands.SpaceReportExecutable;
+import com.cyanogenmod.filemanager.commands.SyncExecutable;
 import com.cyanogenmod.filemanager.commands.SyncResultExecutable;
 import com.cyanogenmod.filemanager.commands.UncompressExecutable;
 import com.cyanogenmod.filemanager.commands.WritableExecutable;
@@ -72,9 +77,12 @@ import com.cyanogenmod.filemanager.console.NoSuchFileOrDirectory;
 import com.cyanogenmod.filemanager.console.OperationTimeoutException;
 import com.cyanogenmod.filemanager.console.ReadOnlyFilesystemException;
 import com.cyanogenmod.filemanager.console.VirtualMountPointConsole;
+import com.cyanogenmod.filemanager.console.java.JavaConsole;
 import com.cyanogenmod.filemanager.console.secure.SecureConsole;
+import com.cyanogenmod.filemanager.console.shell.ShellConsole;
 import com.cyanogenmod.filemanager.model.Directory;
 import com.cyanogenmod.filemanager.model.DiskUsage;
+import com.cyanogenmod.filemanager.model.DuplicateGroup;
 import com.cyanogenmod.filemanager.model.FileSystemObject;
 import com.cyanogenmod.filemanager.model.FolderUsage;
 import com.cyanogenmod.filemanager.model.Group;
@@ -84,6 +92,7 @@ import com.cyanogenmod.filemanager.model.ParentDirectory;
 import com.cyanogenmod.filemanager.model.Permissions;
 import com.cyanogenmod.filemanager.model.Query;
 import com.cyanogenmod.filemanager.model.SearchResult;
+import com.cyanogenmod.filemanager.model.SpaceReport;
 import com.cyanogenmod.filemanager.model.User;
 import com.cyanogenmod.filemanager.preferences.CompressionMode;
 import com.cyanogenmod.filemanager.preferences.FileManagerSettings;
@@ -318,6 +327,7 @@ public final class CommandHelper {
         // Do media scan
         MediaScannerConnection.scanFile(context, new String[]{
                 MediaHelper.normalizeMediaPath(directory)}, null, null);
+        notifyIndex(context, directory);
 
         return executable.getResult().booleanValue();
     }
@@ -357,6 +367,7 @@ public final class CommandHelper {
         // Do media scan
         MediaScannerConnection.scanFile(context, new String[]{
                 MediaHelper.normalizeMediaPath(file)}, null, null);
+        notifyIndex(context, file);
 
         return executable.getResult().booleanValue();
     }
@@ -439,6 +450,7 @@ public final class CommandHelper {
 
         // Remove from mediascanner
         MediaScannerConnection.scanFile(context, pathsToScan, null, null);
+        notifyIndex(context, directory);
 
         return executable.getResult().booleanValue();
     }
@@ -480,6 +492,7 @@ public final class CommandHelper {
 
         // Remove from mediascanner
         MediaScannerConnection.scanFile(context, pathsToScan, null, null);
+        notifyIndex(context, file);
 
         return executable.getResult().booleanValue();
     }
@@ -798,6 +811,20 @@ public final class CommandHelper {
         recursiveScan(context, srcPath, destPath, -1);
     }
 
+    /**
+     * Method that notifies the filename index and the folder size cache that a path
+     * was changed by the app.
+     *
+     * @param context The current context
+     * @param path The changed path (may be null)
+     */
+    private static void notifyIndex(Context context, String path) {
+        if (path != null) {
+            FileNameIndex.getInstance(context).notifyChanged(path);
+            FolderSizeCache.invalidate(path);
+        }
+    }
+
     private static class FileSystemObjectWithDepth {
         public FileSystemObject fso;
         public int depth;
@@ -818,6 +845,10 @@ public final class CommandHelper {
                                       @Nullable String srcPath,
                                       @NonNull String destPath,
                                       int maxDepth) {
+        // Update the filename index with the changed paths
+        notifyIndex(context, srcPath);
+        notifyIndex(context, destPath);
+
         ArrayList<String> paths = new ArrayList<>();
         Stack<FileSystemObjectWithDepth> pathsToScan = new Stack<>();
         try {
@@ -908,6 +939,40 @@ public final class CommandHelper {
             CommandNotFoundException, OperationTimeoutException,
             ExecutionException, InvalidCommandDefinitionException, ReadOnlyFilesystemException,
             CancelledOperationException {
+        return move(context, src, dst, console, null, null);
+    }
+
+    /**
+     * Method that moves a file system object.
+     *
+     * @param context The current context (needed if console == null)
+     * @param src The file system object to move
+     * @param dst The destination file system object
+     * @param console The console in which execute the program. <code>null</code>
+     * to attach to the default console
+     * @param progress The progress where report the copied bytes and files (may be null)
+     * @param verifier The verifier of the copied files (may be null)
+     * @return boolean The operation result
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
+     * @throws CancelledOperationException If the operation was cancelled
+     * @see MoveExecutable
+     */
+    public static boolean move(Context context, String src, String dst, Console console,
+            CopyProgress progress, CopyVerifier verifier)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException, ReadOnlyFilesystemException,
+            CancelledOperationException {
 
         Console cSrc = ensureConsoleForFile(context, console, src);
         Console cDst = ensureConsoleForFile(context, console, dst);
@@ -917,6 +982,8 @@ public final class CommandHelper {
             // Is safe to use the same console
             MoveExecutable executable =
                     cSrc.getExecutableFactory().newCreator().createMoveExecutable(src, dst);
+            executable.setProgress(progress);
+            executable.setVerifier(verifier);
             writableExecute(context, executable, cSrc);
             ret = executable.getResult().booleanValue();
         } else {
@@ -930,6 +997,8 @@ public final class CommandHelper {
                 MoveExecutable moveExecutable =
                         cSrc.getExecutableFactory().newCreator().createMoveExecutable(
                                 src, tmp.getAbsolutePath());
+                moveExecutable.setProgress(progress);
+                moveExecutable.setVerifier(verifier);
                 writableExecute(context, moveExecutable, cSrc);
                 if (!moveExecutable.getResult().booleanValue()) {
                     ret = false;
@@ -960,6 +1029,7 @@ public final class CommandHelper {
                 // Scan source
                 MediaScannerConnection.scanFile(context, new String[] {
                         MediaHelper.normalizeMediaPath(src) }, null, null);
+                notifyIndex(context, src);
 
                 // Recursive scan of the parent dir of the dest. This mitigates a VFAT
                 // issue where a file named "foo." will silently be renamed as "foo".
@@ -1000,6 +1070,40 @@ public final class CommandHelper {
             CommandNotFoundException, OperationTimeoutException,
             ExecutionException, InvalidCommandDefinitionException, ReadOnlyFilesystemException,
             CancelledOperationException {
+        return copy(context, src, dst, console, null, null);
+    }
+
+    /**
+     * Method that copies a file system object.
+     *
+     * @param context The current context (needed if console == null)
+     * @param src The file system object to copy
+     * @param dst The destination file system object
+     * @param console The console in which execute the program. <code>null</code>
+     * to attach to the default console
+     * @param progress The progress where report the copied bytes and files (may be null)
+     * @param verifier The verifier of the copied files (may be null)
+     * @return boolean The operation result
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
+     * @throws CancelledOperationException If the operation was cancelled
+     * @see CopyExecutable
+     */
+    public static boolean copy(Context context, String src, String dst, Console console,
+            CopyProgress progress, CopyVerifier verifier)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException, ReadOnlyFilesystemException,
+            CancelledOperationException {
 
         Console cSrc = ensureConsoleForFile(context, console, src);
         Console cDst = ensureConsoleForFile(context, console, dst);
@@ -1008,6 +1112,8 @@ public final class CommandHelper {
             // Is safe to use the same console
             CopyExecutable executable =
                     cSrc.getExecutableFactory().newCreator().createCopyExecutable(src, dst);
+            executable.setProgress(progress);
+            executable.setVerifier(verifier);
             writableExecute(context, executable, cSrc);
             ret = executable.getResult().booleanValue();
         } else {
@@ -1021,6 +1127,8 @@ public final class CommandHelper {
                 CopyExecutable copyExecutable =
                         cSrc.getExecutableFactory().newCreator().createCopyExecutable(
                                 src, tmp.getAbsolutePath());
+                copyExecutable.setProgress(progress);
+                copyExecutable.setVerifier(verifier);
                 writableExecute(context, copyExecutable, cSrc);
                 if (!copyExecutable.getResult().booleanValue()) {
                     ret = false;
@@ -1151,7 +1259,10 @@ public final class CommandHelper {
     }
 
     /**
-     * Method that compute the disk usage of a folder.
+     * Method that compute the disk usage of a folder.<br/>
+     * <br/>
+     * A non privileged shell console is replaced by a java console, which reuses the
+     * usage of the directories that didn't change (see {@link FolderSizeCache}).
      *
      * @param context The current context (needed if console == null)
      * @param directory The "absolute" directory where start the search
@@ -1180,6 +1291,13 @@ public final class CommandHelper {
             CommandNotFoundException, OperationTimeoutException,
             ExecutionException, InvalidCommandDefinitionException, CancelledOperationException {
         Console c = ensureConsoleForFile(context, console, directory);
+        if (c instanceof ShellConsole && !c.isPrivileged()) {
+            // A non privileged shell has the same permissions of the app, so use the
+            // java console, which reuses the usage of the directories that didn't change
+            c = new JavaConsole(context,
+                    context.getResources().getInteger(R.integer.buffer_size));
+            c.alloc();
+        }
         FolderUsageExecutable executable =
                 c.getExecutableFactory().newCreator().
                     createFolderUsageExecutable(directory, asyncResultListener);
@@ -1187,6 +1305,97 @@ public final class CommandHelper {
         return executable;
     }
 
+    /**
+     * Method that finds the files with the same content of a directory tree.<br/>
+     * <br/>
+     * Only the java console implements this command, so a shell console is replaced by
+     * a java console.
+     *
+     * @param context The current context (needed if console == null)
+     * @param directory The "absolute" directory where start the search
+     * @param asyncResultListener The partial result listener
+     * @param console The console in which execute the program.
+     * <code>null</code> to attach to the default console
+     * @return DuplicatesExecutable The command executed in background
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws CancelledOperationException If the operation was cancelled
+     * @see DuplicateGroup
+     * @see DuplicatesExecutable
+     */
+    public static DuplicatesExecutable findDuplicates(
+            Context context, String directory,
+            AsyncResultListener asyncResultListener, Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException, CancelledOperationException {
+        Console c = ensureConsoleForFile(context, console, directory);
+        if (c instanceof ShellConsole) {
+            c = new JavaConsole(context,
+                    context.getResources().getInteger(R.integer.buffer_size));
+            c.alloc();
+        }
+        DuplicatesExecutable executable =
+                c.getExecutableFactory().newCreator().
+                    createDuplicatesExecutable(directory, asyncResultListener);
+        execute(context, executable, c);
+        return executable;
+    }
+
+    /**
+     * Method that finds the largest files, folders and file extensions of a directory
+     * tree.<br/>
+     * <br/>
+     * Only the java console implements this command, so a shell console is replaced by
+     * a java console.
+     *
+     * @param context The current context (needed if console == null)
+     * @param directory The "absolute" directory to analyze
+     * @param asyncResultListener The partial result listener
+     * @param console The console in which execute the program.
+     * <code>null</code> to attach to the default console
+     * @return SpaceReportExecutable The command executed in background
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws CancelledOperationException If the operation was cancelled
+     * @see SpaceReport
+     * @see SpaceReportExecutable
+     */
+    public static SpaceReportExecutable getSpaceReport(
+            Context context, String directory,
+            AsyncResultListener asyncResultListener, Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException, CancelledOperationException {
+        Console c = ensureConsoleForFile(context, console, directory);
+        if (c instanceof ShellConsole) {
+            c = new JavaConsole(context,
+                    context.getResources().getInteger(R.integer.buffer_size));
+            c.alloc();
+        }
+        SpaceReportExecutable executable =
+                c.getExecutableFactory().newCreator().
+                    createSpaceReportExecutable(directory, asyncResultListener);
+        execute(context, executable, c);
+        return executable;
+    }
+
     /**
      * Method that retrieves the disk usage of all the mount points.
      *
@@ -1842,7 +2051,10 @@ public final class CommandHelper {
     }
 
     /**
-     * Method that calculates the checksum of a file system object.
+     * Method that calculates the checksum of a file system object.<br/>
+     * <br/>
+     * A file readable by the app is read by the java console (in a single read for all
+     * the checksums), instead of by a shell console.
      *
      * @param context The current context (needed if console == null)
      * @param src The source file
@@ -1869,6 +2081,11 @@ public final class CommandHelper {
             CommandNotFoundException, OperationTimeoutException,
             ExecutionException, InvalidCommandDefinitionException, CancelledOperationException {
         Console c = ensureConsoleForFile(context, console, src);
+        if (c instanceof ShellConsole && new File(src).canRead()) {
+            c = new JavaConsole(context,
+                    context.getResources().getInteger(R.integer.buffer_size));
+            c.alloc();
+        }
         ChecksumExecutable executable =
                 c.getExecutableFactory().newCreator().
                     createChecksumExecutable(src, asyncResultListener);
@@ -1876,6 +2093,292 @@ public final class CommandHelper {
         return executable;
     }
 
+    /**
+     * Method that synchronizes a directory with other directory (only the new and
+     * changed files are transferred).
+     *
+     * @param context The current context (needed if console == null)
+     * @param src The source directory
+     * @param dst The destination directory
+     * @param compareContents Compare the content of the files, instead of their
+     * modification time
+     * @param deleteExtras Delete the files of the destination that don't exist in the source
+     * @param asyncResultListener The partial result listener
+     * @param console The console in which execute the program.
+     * <code>null</code> to attach to the default console
+     * @return SyncExecutable The command executed in background
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws CancelledOperationException If the operation was cancelled
+     * @see SyncExecutable
+     */
+    public static SyncExecutable sync(Context context, String src, String dst,
+            boolean compareContents, boolean deleteExtras,
+            AsyncResultListener asyncResultListener, Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException, CancelledOperationException {
+        Console c = ensureConsoleForFile(context, console, src);
+        SyncExecutable executable =
+                c.getExecutableFactory().newCreator().
+                    createSyncExecutable(
+                            src, dst, compareContents, deleteExtras, asyncResultListener);
+        execute(context, executable, c);
+
+        // The listings of the destination are not valid anymore
+        ListingCache.invalidate(dst);
+        return executable;
+    }
+
+    /**
+     * Method that executes a list of file operations. The consecutive operations over
+     * the same console are executed in only one invocation of the console. The
+     * operations that the console can't execute in a batch (or a copy or move between
+     * consoles) are executed one by one.
+     *
+     * @param context The current context (needed if console == null)
+     * @param operations The operations to execute
+     * @param console The console in which execute the program. <code>null</code>
+     * to attach to the default console
+     * @return boolean[] If every operation complete successfully (in the order of
+     * the operations)
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
+     * @throws CancelledOperationException If the operation was cancelled
+     * @see BatchExecutable
+     */
+    public static boolean[] batch(Context context, List<BatchExecutable.Operation> operations,
+            Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException, ReadOnlyFilesystemException,
+            CancelledOperationException {
+        return batch(context, operations, null, console);
+    }
+
+    /**
+     * Method that executes a list of file operations. The consecutive operations over
+     * the same console are executed in only one invocation of the console. The
+     * operations that the console can't execute in a batch (or a copy or move between
+     * consoles) are executed one by one.
+     *
+     * @param context The current context (needed if console == null)
+     * @param operations The operations to execute
+     * @param listener The listener notified every time an operation completes (may
+     * be null)
+     * @param console The console in which execute the program. <code>null</code>
+     * to attach to the default console
+     * @return boolean[] If every operation complete successfully (in the order of
+     * the operations)
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
+     * @throws CancelledOperationException If the operation was cancelled
+     * @see BatchExecutable
+     */
+    public static boolean[] batch(Context context, List<BatchExecutable.Operation> operations,
+            final BatchExecutable.OnOperationCompletedListener listener, Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException, ReadOnlyFilesystemException,
+            CancelledOperationException {
+
+        int cc = operations.size();
+        boolean[] ret = new boolean[cc];
+        int i = 0;
+        while (i < cc) {
+            // Group the consecutive operations of the same console
+            Console c = ensureConsoleForFile(context, console, operations.get(i).getSrc());
+            int end = i;
+            while (end < cc && isBatchable(context, operations.get(end), c, console)) {
+                end++;
+            }
+            if (end == i) {
+                ret[i] = executeOperation(context, operations.get(i), console);
+                if (listener != null) {
+                    listener.onOperationCompleted(i, ret[i]);
+                }
+                i++;
+                continue;
+            }
+
+            List<BatchExecutable.Operation> group = operations.subList(i, end);
+            BatchExecutable executable = null;
+            try {
+                executable = c.getExecutableFactory().newCreator().createBatchExecutable(group);
+            } catch (CommandNotFoundException cnfe) {
+                // The console can't execute batches. Execute the operations one by one
+                for (int j = i; j < end; j++) {
+                    ret[j] = executeOperation(context, operations.get(j), console);
+                    if (listener != null) {
+                        listener.onOperationCompleted(j, ret[j]);
+                    }
+                }
+                i = end;
+                continue;
+            }
+
+            if (listener != null) {
+                // The batch notifies the position of the operation in the group
+                final int first = i;
+                executable.setOnOperationCompletedListener(
+                        new BatchExecutable.OnOperationCompletedListener() {
+                    @Override
+                    public void onOperationCompleted(int index, boolean success) {
+                        listener.onOperationCompleted(first + index, success);
+                    }
+                });
+            }
+            String[] pathsToScan = collectBatchScanPaths(context, group);
+            writableExecute(context, executable, c);
+            System.arraycopy(executable.getResult(), 0, ret, i, end - i);
+            scanBatch(context, group, pathsToScan);
+            i = end;
+        }
+        return ret;
+    }
+
+    /**
+     * Method that returns if an operation can be executed in a batch of a console.
+     *
+     * @param context The current context (needed if console == null)
+     * @param op The operation
+     * @param c The console of the batch
+     * @param console The console in which execute the program. <code>null</code>
+     * to attach to the default console
+     * @return boolean If the operation can be executed in the batch
+     */
+    private static boolean isBatchable(Context context, BatchExecutable.Operation op,
+            Console c, Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            InsufficientPermissionsException, InvalidCommandDefinitionException {
+        if (!ensureConsoleForFile(context, console, op.getSrc()).equals(c)) {
+            return false;
+        }
+        if (op.getOperation().hasDestination()) {
+            return ensureConsoleForFile(context, console, op.getDst()).equals(c)
+                    && !FileHelper.isSamePath(op.getSrc(), op.getDst());
+        }
+        return true;
+    }
+
+    /**
+     * Method that executes an operation alone.
+     *
+     * @param context The current context (needed if console == null)
+     * @param op The operation
+     * @param console The console in which execute the program. <code>null</code>
+     * to attach to the default console
+     * @return boolean If the operation complete successfully
+     */
+    private static boolean executeOperation(Context context, BatchExecutable.Operation op,
+            Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException, ReadOnlyFilesystemException,
+            CancelledOperationException {
+        try {
+            switch (op.getOperation()) {
+                case DELETE_FILE:
+                    return deleteFile(context, op.getSrc(), console);
+                case DELETE_DIR:
+                    return deleteDirectory(context, op.getSrc(), console);
+                case COPY:
+                    return copy(context, op.getSrc(), op.getDst(), console);
+                case MOVE:
+                    return move(context, op.getSrc(), op.getDst(), console);
+                default:
+                    return false;
+            }
+        } catch (NoSuchFileOrDirectory nsfod) {
+            return false;
+        } catch (ExecutionException ee) {
+            return false;
+        }
+    }
+
+    /**
+     * Method that collects the paths to remove from the media scanner before execute
+     * a batch.
+     *
+     * @param context The current context
+     * @param operations The operations of the batch
+     * @return String[] The paths to scan after execute the batch
+     */
+    private static String[] collectBatchScanPaths(Context context,
+            List<BatchExecutable.Operation> operations) {
+        ArrayList<String> paths = new ArrayList<>();
+        for (BatchExecutable.Operation op : operations) {
+            switch (op.getOperation()) {
+                case DELETE_FILE:
+                    // A file don't need to be listed
+                    paths.add(MediaHelper.normalizeMediaPath(op.getSrc()));
+                    break;
+                case DELETE_DIR:
+                    for (String path : collectScanPaths(context, op.getSrc())) {
+                        paths.add(path);
+                    }
+                    break;
+                case MOVE:
+                    paths.add(MediaHelper.normalizeMediaPath(op.getSrc()));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return paths.toArray(new String[paths.size()]);
+    }
+
+    /**
+     * Method that notifies the media scanner and the index of the changes of a batch.
+     *
+     * @param context The current context
+     * @param operations The executed operations
+     * @param pathsToScan The paths collected before execute the batch
+     */
+    private static void scanBatch(Context context,
+            List<BatchExecutable.Operation> operations, String[] pathsToScan) {
+        if (pathsToScan.length > 0) {
+            MediaScannerConnection.scanFile(context, pathsToScan, null, null);
+        }
+        for (BatchExecutable.Operation op : operations) {
+            notifyIndex(context, op.getSrc());
+            ListingCache.invalidate(op.getSrc());
+            if (op.getOperation().hasDestination()) {
+                ListingCache.invalidate(op.getDst());
+                if (!VirtualMountPointConsole.isVirtualStorageResource(op.getDst())) {
+                    recursiveScan(context, null, op.getDst());
+                }
+            }
+        }
+    }
+
     /**
      * Method that re-execute the command.
      *
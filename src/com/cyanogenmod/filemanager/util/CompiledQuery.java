@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.model.Query;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The terms of a {@link Query} compiled once, for score and highlight the names of
+ * the search results.<br/>
+ * <br/>
+ * The patterns of the terms are compiled when the object is created, and every name is
+ * matched once per term to obtain both its relevance and the range of the name to
+ * highlight (see {@link SearchHelper#calculateRelevance(
+ * com.cyanogenmod.filemanager.model.FileSystemObject, Query)}). This class is thread-safe.
+ */
+public final class CompiledQuery {
+
+    private static final String TAG = "CompiledQuery"; //$NON-NLS-1$
+
+    /**
+     * The result of match a name against the query.
+     */
+    public static final class Match {
+        double mRelevance;
+        int mHighlightStart;
+        int mHighlightEnd;
+
+        /**
+         * Constructor of <code>Match</code>.
+         */
+        public Match() {
+            super();
+        }
+
+        /**
+         * Method that returns the relevance of the name.
+         *
+         * @return double A value from 1 to 10 where 10 has more relevance
+         */
+        public double getRelevance() {
+            return this.mRelevance;
+        }
+
+        /**
+         * Method that returns if some term matches the name.
+         *
+         * @return boolean If some term matches the name
+         */
+        public boolean hasHighlight() {
+            return this.mHighlightStart >= 0;
+        }
+
+        /**
+         * Method that returns the start of the text matched by the first matched term.
+         *
+         * @return int The start index, or -1 if no term matches
+         */
+        public int getHighlightStart() {
+            return this.mHighlightStart;
+        }
+
+        /**
+         * Method that returns the end of the text matched by the first matched term.
+         *
+         * @return int The end index (exclusive), or -1 if no term matches
+         */
+        public int getHighlightEnd() {
+            return this.mHighlightEnd;
+        }
+    }
+
+    private final Query mQuery;
+    private final Pattern[] mPatterns;
+
+    // The matchers of the patterns, reused by every thread
+    private final ThreadLocal<Matcher[]> mMatchers = new ThreadLocal<Matcher[]>() {
+        @Override
+        protected Matcher[] initialValue() {
+            Matcher[] matchers = new Matcher[mPatterns.length];
+            for (int i = 0; i < matchers.length; i++) {
+                matchers[i] = mPatterns[i].matcher(""); //$NON-NLS-1$
+            }
+            return matchers;
+        }
+    };
+
+    /**
+     * Constructor of <code>CompiledQuery</code>.
+     *
+     * @param query The query of the search
+     */
+    public CompiledQuery(Query query) {
+        super();
+        this.mQuery = query;
+        List<String> terms = query.getQueries();
+        int cc = terms.size();
+        this.mPatterns = new Pattern[cc];
+        for (int i = 0; i < cc; i++) {
+            this.mPatterns[i] = compile(terms.get(i));
+        }
+    }
+
+    /**
+     * Method that returns the query.
+     *
+     * @return Query The query
+     */
+    public Query getQuery() {
+        return this.mQuery;
+    }
+
+    /**
+     * Method that matches a name against the terms of the query.
+     *
+     * @param name The name to match
+     * @return Match The relevance and the highlight range of the name
+     */
+    public Match match(String name) {
+        Match match = new Match();
+        match(name, match);
+        return match;
+    }
+
+    /**
+     * Method that matches a name against the terms of the query.<br/>
+     * <br/>
+     * The relevance is computed as {@link SearchHelper#calculateRelevance(
+     * com.cyanogenmod.filemanager.model.FileSystemObject, Query)} describes, and the
+     * highlight range is the text matched by the first term that matches the name.
+     *
+     * @param name The name to match
+     * @param match The match where to return the result
+     */
+    public void match(String name, Match match) {
+        double relevance = 1.0;  //Minimum relevance (is in the result so has some relevance)
+        int start = -1;
+        int end = -1;
+        Matcher[] matchers = this.mMatchers.get();
+        int cc = matchers.length;
+        for (int i = 0; i < cc; i++) {
+            Matcher matcher = matchers[i].reset(name);
+            if (!matcher.find()) {
+                continue;
+            }
+            int s = matcher.start();
+            int e = matcher.end();
+            if (start == -1) {
+                start = s;
+                end = e;
+            }
+
+            //By name
+            double byNameRelevance = 1.0;
+            int len = e - s;
+            if (len == name.length()) {
+                byNameRelevance = 3.0;
+            } else if (name.regionMatches(0, name, s, len)
+                    || name.regionMatches(name.length() - len, name, s, len)) {
+                byNameRelevance = 2.0;
+            }
+
+            //By accuracy
+            double byNameAccuracy = 1.0;
+            if (i == 0) {
+                byNameAccuracy = 3.0;
+            } else if (i != cc) {
+                byNameAccuracy = 2.0;
+            }
+
+            //Calculate the relevance
+            relevance += byNameRelevance * byNameAccuracy;
+        }
+        match.mRelevance = relevance;
+        match.mHighlightStart = start;
+        match.mHighlightEnd = end;
+    }
+
+    /**
+     * Method that compiles a term of the query.
+     *
+     * @param term The term
+     * @return Pattern The pattern
+     */
+    private static Pattern compile(String term) {
+        String query =
+                term.replace(".", "[.]") //$NON-NLS-1$//$NON-NLS-2$
+                    .replace("*", ".*"); //$NON-NLS-1$//$NON-NLS-2$
+        try {
+            return Pattern.compile(query, Pattern.CASE_INSENSITIVE);
+        } catch (PatternSyntaxException e) {
+            Log.w(TAG, "Invalid regex syntax. Using literal query. Error=" + e); //$NON-NLS-1$
+            return Pattern.compile(query, Pattern.CASE_INSENSITIVE | Pattern.LITERAL);
+        }
+    }
+}
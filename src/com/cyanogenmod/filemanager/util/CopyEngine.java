@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.commands.java.Program;
+import com.cyanogenmod.filemanager.console.CancelledOperationException;
+import com.cyanogenmod.filemanager.console.ExecutionException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A helper class that copies a file or a directory tree.<br/>
+ * <br/>
+ * The tree is scanned first to build a manifest of the directories and files to copy.
+ * Then all the directories are created, and the files are copied: the small files
+ * concurrently in a bounded pool of workers (the copy of a small file is dominated
+ * by the latency of open and close it), and the large files one by one in the calling
+ * thread (see {@link FileHelper#copyFileWithNio(File, File, Program, CopyProgress)}).<br/>
+ * <br/>
+ * The operation is cancelled when {@link Program#isCancelled()} returns true.
+ */
+public final class CopyEngine {
+
+    private static final String TAG = "CopyEngine"; //$NON-NLS-1$
+
+    // The files smaller than this size are copied in the workers
+    private static final long SMALL_FILE_SIZE = 4194304L;
+
+    // The maximum number of workers, whatever the number of cores
+    private static final int MAX_WORKERS = 4;
+
+    // The time that an idle worker is kept alive (in seconds)
+    private static final long WORKER_KEEP_ALIVE = 10L;
+
+    private static ThreadPoolExecutor sWorkers;
+
+    /**
+     * A file or directory to copy.
+     */
+    private static class Item {
+        final File mSrc;
+        final File mDst;
+        final long mSize;
+
+        Item(File src, File dst, long size) {
+            super();
+            this.mSrc = src;
+            this.mDst = dst;
+            this.mSize = size;
+        }
+    }
+
+    /**
+     * The directories and files to copy.
+     */
+    private static class Manifest {
+        final List<Item> mDirectories = new ArrayList<Item>();
+        final List<Item> mSmallFiles = new ArrayList<Item>();
+        final List<Item> mLargeFiles = new ArrayList<Item>();
+    }
+
+    /**
+     * Constructor of <code>CopyEngine</code>.
+     */
+    private CopyEngine() {
+        super();
+    }
+
+    /**
+     * Method that copies recursively to the destination
+     *
+     * @param src The source file or folder
+     * @param dst The destination file or folder
+     * @param program The program that copies (for check if it was cancelled)
+     * @param progress The progress where report the copied bytes and files (may be null)
+     * @return boolean If the operation complete successfully
+     * @throws ExecutionException If a problem was detected in the operation
+     * @throws CancelledOperationException If the operation was cancelled
+     */
+    public static boolean copy(final File src, final File dst, final Program program,
+            final CopyProgress progress)
+            throws ExecutionException, CancelledOperationException {
+        return copy(src, dst, program, progress, null, null);
+    }
+
+    /**
+     * Method that copies recursively to the destination, recording the copy in a
+     * journal and verifying the copied files. The files already copied in the journal
+     * are skipped.
+     *
+     * @param src The source file or folder
+     * @param dst The destination file or folder
+     * @param program The program that copies (for check if it was cancelled)
+     * @param progress The progress where report the copied bytes and files (may be null)
+     * @param journal The journal of the copy (may be null)
+     * @param verifier The verifier of the copy (may be null)
+     * @return boolean If the operation complete successfully
+     * @throws ExecutionException If a problem was detected in the operation
+     * @throws CancelledOperationException If the operation was cancelled
+     */
+    public static boolean copy(final File src, final File dst, final Program program,
+            final CopyProgress progress, final CopyJournal journal,
+            final CopyVerifier verifier)
+            throws ExecutionException, CancelledOperationException {
+        if (!src.isDirectory()) {
+            return copyFile(src, dst, program, progress, journal, verifier);
+        }
+
+        // Scan ahead the tree
+        Manifest manifest = new Manifest();
+        scan(src, dst, manifest, program);
+
+        // Create the directories (parents always come before its children)
+        int cc = manifest.mDirectories.size();
+        for (int i = 0; i < cc; i++) {
+            File dir = manifest.mDirectories.get(i).mDst;
+            if (dir.exists() && !dir.isDirectory()) {
+                Log.e(TAG,
+                        String.format("Failed to check destionation dir: %s", dir)); //$NON-NLS-1$
+                throw new ExecutionException("the path exists but is not a folder"); //$NON-NLS-1$
+            }
+            if (!dir.exists()) {
+                if (!dir.mkdir()) {
+                    Log.e(TAG, String.format("Failed to create directory: %s", dir)); //$NON-NLS-1$
+                    return false;
+                }
+            }
+        }
+
+        // Copy the small files in the workers
+        final AtomicBoolean failed = new AtomicBoolean();
+        List<Future<Boolean>> tasks = new ArrayList<Future<Boolean>>();
+        ThreadPoolExecutor workers = getWorkers();
+        for (final Item item : manifest.mSmallFiles) {
+            tasks.add(workers.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    if (failed.get() || program.isCancelled()) {
+                        return Boolean.FALSE;
+                    }
+                    boolean ret = copyFile(
+                            item.mSrc, item.mDst, program, progress, journal, verifier);
+                    if (!ret) {
+                        failed.set(true);
+                    }
+                    return Boolean.valueOf(ret);
+                }
+            }));
+        }
+
+        // And meanwhile, stream the large files in this thread
+        boolean ret = true;
+        Exception cause = null;
+        try {
+            for (Item item : manifest.mLargeFiles) {
+                if (failed.get()) {
+                    break;
+                }
+                if (program.isCancelled()) {
+                    throw new CancelledOperationException();
+                }
+                if (!copyFile(item.mSrc, item.mDst, program, progress, journal, verifier)) {
+                    failed.set(true);
+                    ret = false;
+                }
+            }
+        } catch (ExecutionException e) {
+            failed.set(true);
+            cause = e;
+        } catch (CancelledOperationException e) {
+            failed.set(true);
+            cause = e;
+        }
+
+        // Wait for the workers
+        for (Future<Boolean> task : tasks) {
+            try {
+                if (!task.get().booleanValue()) {
+                    ret = false;
+                }
+            } catch (InterruptedException e) {
+                // This thread was interrupted (the user cancelled the operation)
+                failed.set(true);
+                for (Future<Boolean> t : tasks) {
+                    t.cancel(false);
+                }
+                throw new CancelledOperationException();
+            } catch (java.util.concurrent.ExecutionException e) {
+                ret = false;
+                if (cause == null && e.getCause() instanceof Exception) {
+                    cause = (Exception)e.getCause();
+                }
+            }
+        }
+
+        // Rethrow the first relevant error
+        if (cause instanceof ExecutionException) {
+            throw (ExecutionException)cause;
+        }
+        if (cause instanceof CancelledOperationException || program.isCancelled()) {
+            throw new CancelledOperationException();
+        }
+        return ret;
+    }
+
+    /**
+     * Method that copies a file, unless the journal says it was already copied.
+     *
+     * @param src The source file
+     * @param dst The destination file
+     * @param program The program that copies (for check if it was cancelled)
+     * @param progress The progress where report the copied bytes and files (may be null)
+     * @param journal The journal of the copy (may be null)
+     * @param verifier The verifier of the copy (may be null)
+     * @return boolean If the operation complete successfully
+     * @throws ExecutionException If a problem was detected in the operation
+     * @throws CancelledOperationException If the operation was cancelled
+     */
+    private static boolean copyFile(File src, File dst, Program program,
+            CopyProgress progress, CopyJournal journal, CopyVerifier verifier)
+            throws ExecutionException, CancelledOperationException {
+        if (journal != null && journal.isCopied(src, dst) && dst.exists()) {
+            if (progress != null) {
+                progress.onBytesCopied(src.length());
+                progress.onFileCopied();
+            }
+            return true;
+        }
+        return FileHelper.copyFileWithNio(src, dst, program, progress, journal, verifier);
+    }
+
+    /**
+     * Method that scans a directory tree and adds its directories and files
+     * to the manifest.
+     *
+     * @param src The source directory
+     * @param dst The destination directory
+     * @param manifest The manifest
+     * @param program The program that copies (for check if it was cancelled)
+     * @throws CancelledOperationException If the operation was cancelled
+     */
+    private static void scan(File src, File dst, Manifest manifest, Program program)
+            throws CancelledOperationException {
+        manifest.mDirectories.add(new Item(src, dst, 0));
+        File[] files = src.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (int i = 0; i < files.length; i++) {
+            // Short circuit if we've been cancelled. Show's over :(
+            if (program.isCancelled()) {
+                throw new CancelledOperationException();
+            }
+
+            File d = new File(dst, files[i].getName());
+            if (files[i].isDirectory()) {
+                scan(files[i], d, manifest, program);
+            } else {
+                long size = files[i].length();
+                Item item = new Item(files[i], d, size);
+                if (size < SMALL_FILE_SIZE) {
+                    manifest.mSmallFiles.add(item);
+                } else {
+                    manifest.mLargeFiles.add(item);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method that returns the shared pool of workers, creating it the first time. The
+     * workers are released when they are idle.
+     *
+     * @return ThreadPoolExecutor The pool of workers
+     */
+    private static synchronized ThreadPoolExecutor getWorkers() {
+        if (sWorkers == null) {
+            int workers = Math.max(1,
+                    Math.min(Runtime.getRuntime().availableProcessors(), MAX_WORKERS));
+            sWorkers = new ThreadPoolExecutor(workers, workers,
+                    WORKER_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+            sWorkers.allowCoreThreadTimeOut(true);
+        }
+        return sWorkers;
+    }
+}
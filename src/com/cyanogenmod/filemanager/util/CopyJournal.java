@@ -0,0 +1,468 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.FileManagerApplication;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The journal of a copy or move operation, for resume it if the process dies.<br/>
+ * <br/>
+ * The journal is stored in the data directory of the app, and records the large files
+ * started, the files already copied and the checkpoints of the files being copied (the
+ * offset up to which the data was flushed to the storage). The large files are copied
+ * to a temporary name (see {@link #getTempFile(File)}) that is renamed to the final
+ * name when the copy completes, so a destination file is never partial. The files
+ * smaller than {@link FileHelper#NIO_COPY_CHECKPOINT_SIZE} aren't journaled, and
+ * are copied again. When the same operation is started again, the copied files are
+ * skipped and the partial files continue from the last checkpoint, unless the size
+ * or the modification time of their source file changed since they were recorded.
+ * A move operation records also when all the files were copied, so the source is
+ * only deleted once the destination is complete.<br/>
+ * <br/>
+ * The journal is deleted when the operation completes or is cancelled by the user,
+ * and an abandoned journal is deleted along with the partial files of all the files
+ * that were started and not copied.
+ * This class is thread-safe.
+ */
+public final class CopyJournal {
+
+    private static final String TAG = "CopyJournal"; //$NON-NLS-1$
+
+    private static final String JOURNAL_DIR = "copy_journal"; //$NON-NLS-1$
+    private static final String JOURNAL_EXT = ".jnl"; //$NON-NLS-1$
+    private static final String TEMP_EXT = ".part"; //$NON-NLS-1$
+
+    private static final int MAGIC = 0x434d464a;
+    private static final int VERSION = 2;
+
+    // The type of the records
+    private static final byte RECORD_STARTED = 'S';
+    private static final byte RECORD_FILE = 'F';
+    private static final byte RECORD_CHECKPOINT = 'P';
+    private static final byte RECORD_COMPLETED = 'C';
+
+    // The journals not used for this time are considered abandoned and are deleted
+    private static final long MAX_JOURNAL_AGE = 7L * 24L * 60L * 60L * 1000L;
+
+    /**
+     * A copied file or a checkpoint, with the state of its source file when it was
+     * recorded.
+     */
+    private static class Entry {
+        final long mOffset;
+        final long mSize;
+        final long mModified;
+
+        Entry(long offset, long size, long modified) {
+            super();
+            this.mOffset = offset;
+            this.mSize = size;
+            this.mModified = modified;
+        }
+
+        Entry(File src, long offset) {
+            this(offset, src.length(), src.lastModified());
+        }
+
+        boolean isSourceOf(File src) {
+            return this.mSize == src.length() && this.mModified == src.lastModified();
+        }
+    }
+
+    private final File mFile;
+    private final Map<String, Entry> mCopiedFiles = new HashMap<String, Entry>();
+    private final Map<String, Entry> mCheckpoints = new HashMap<String, Entry>();
+    private final Set<String> mStarted = new HashSet<String>();
+    private boolean mCompleted;
+    private FileOutputStream mOut;
+
+    /**
+     * Constructor of <code>CopyJournal</code>.
+     *
+     * @param file The file of the journal
+     */
+    private CopyJournal(File file) {
+        super();
+        this.mFile = file;
+    }
+
+    /**
+     * Method that opens the journal of an operation, loading the journal of a
+     * previous execution of the same operation if it exists.
+     *
+     * @param src The source file or directory
+     * @param dst The destination file or directory
+     * @param move If the operation is a move
+     * @return CopyJournal The journal, or null if it can't be created
+     */
+    public static CopyJournal open(File src, File dst, boolean move) {
+        File dir = new File(FileManagerApplication.getInstance().getFilesDir(), JOURNAL_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Failed to create the journal directory " + dir); //$NON-NLS-1$
+            return null;
+        }
+        purge(dir);
+
+        String srcPath = src.getAbsolutePath();
+        String dstPath = dst.getAbsolutePath();
+        String name = Integer.toHexString((srcPath + '\0' + dstPath).hashCode())
+                + (move ? "m" : "c") + JOURNAL_EXT; //$NON-NLS-1$ //$NON-NLS-2$
+        CopyJournal journal = new CopyJournal(new File(dir, name));
+        try {
+            if (!journal.load(srcPath, dstPath, move)) {
+                journal.create(srcPath, dstPath, move);
+            }
+            return journal;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to open the journal " + journal.mFile, e); //$NON-NLS-1$
+            journal.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Method that returns the temporary file where a file is copied.
+     *
+     * @param dst The destination file
+     * @return File The temporary file
+     */
+    public static File getTempFile(File dst) {
+        return new File(dst.getParentFile(), "." + dst.getName() + TEMP_EXT); //$NON-NLS-1$
+    }
+
+    /**
+     * Method that returns if a file was already copied, and its source didn't change
+     * since then.
+     *
+     * @param src The source file
+     * @param dst The destination file
+     * @return boolean If the file was copied
+     */
+    public synchronized boolean isCopied(File src, File dst) {
+        String path = dst.getAbsolutePath();
+        Entry copied = this.mCopiedFiles.get(path);
+        if (copied == null) {
+            return false;
+        }
+        if (!copied.isSourceOf(src) || dst.length() != copied.mSize) {
+            this.mCopiedFiles.remove(path);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method that returns the offset from where continue the copy of a file.
+     *
+     * @param src The source file
+     * @param dst The destination file
+     * @return long The offset of the last checkpoint of the file that is still in
+     * its temporary file, or 0 to copy the file from the start (there is no checkpoint
+     * or the source changed since it was recorded)
+     */
+    public synchronized long getResumeOffset(File src, File dst) {
+        String path = dst.getAbsolutePath();
+        Entry checkpoint = this.mCheckpoints.get(path);
+        if (checkpoint == null) {
+            return 0;
+        }
+        if (!checkpoint.isSourceOf(src)) {
+            this.mCheckpoints.remove(path);
+            return 0;
+        }
+        return Math.min(checkpoint.mOffset, getTempFile(dst).length());
+    }
+
+    /**
+     * Method that records that a file started to be copied to its temporary file, so
+     * the temporary file is deleted if the journal is abandoned.
+     *
+     * @param src The source file
+     * @param dst The destination file
+     */
+    public synchronized void onFileStarted(File src, File dst) {
+        String path = dst.getAbsolutePath();
+        this.mStarted.add(path);
+        write(RECORD_STARTED, path, new Entry(src, 0), true);
+    }
+
+    /**
+     * Method that records that the data of a file up to an offset was flushed to the
+     * storage.
+     *
+     * @param src The source file
+     * @param dst The destination file
+     * @param offset The offset
+     */
+    public synchronized void onCheckpoint(File src, File dst, long offset) {
+        String path = dst.getAbsolutePath();
+        Entry checkpoint = new Entry(src, offset);
+        this.mCopiedFiles.remove(path);
+        this.mCheckpoints.put(path, checkpoint);
+        write(RECORD_CHECKPOINT, path, checkpoint, true);
+    }
+
+    /**
+     * Method that records that a file was copied (and renamed to its final name).
+     *
+     * @param src The source file
+     * @param dst The destination file
+     */
+    public synchronized void onFileCopied(File src, File dst) {
+        String path = dst.getAbsolutePath();
+        Entry copied = new Entry(src, 0);
+        this.mStarted.remove(path);
+        this.mCheckpoints.remove(path);
+        this.mCopiedFiles.put(path, copied);
+        write(RECORD_FILE, path, copied, false);
+    }
+
+    /**
+     * Method that returns if all the files of the operation were copied.
+     *
+     * @return boolean If all the files were copied
+     */
+    public synchronized boolean isCompleted() {
+        return this.mCompleted;
+    }
+
+    /**
+     * Method that records that all the files of the operation were copied.
+     */
+    public synchronized void onCompleted() {
+        this.mCompleted = true;
+        write(RECORD_COMPLETED, "", new Entry(0, 0, 0), true); //$NON-NLS-1$
+    }
+
+    /**
+     * Method that deletes the journal (the operation was completed or cancelled).
+     */
+    public synchronized void delete() {
+        close();
+        if (this.mFile.exists() && !this.mFile.delete()) {
+            Log.w(TAG, "Failed to delete the journal " + this.mFile); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Method that closes the journal, keeping it for resume the operation.
+     */
+    public synchronized void close() {
+        if (this.mOut != null) {
+            try {
+                this.mOut.close();
+            } catch (IOException e) {/**NON BLOCK**/}
+            this.mOut = null;
+        }
+    }
+
+    /**
+     * Method that loads the journal of a previous execution of the operation.
+     *
+     * @param src The source path
+     * @param dst The destination path
+     * @param move If the operation is a move
+     * @return boolean If the journal was loaded
+     * @throws IOException If the journal can't be opened for append
+     */
+    private boolean load(String src, String dst, boolean move) throws IOException {
+        if (!this.mFile.exists()) {
+            return false;
+        }
+        long valid;
+        try {
+            valid = read(src, dst, move);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read the journal " + this.mFile, e); //$NON-NLS-1$
+            return false;
+        }
+
+        // Discard the record not completely written, and continue the journal
+        if (valid <= 0) {
+            return false;
+        }
+        this.mOut = new FileOutputStream(this.mFile, true);
+        this.mOut.getChannel().truncate(valid);
+        Log.i(TAG, String.format("Resuming from %s to %s: %d files copied", //$NON-NLS-1$
+                src, dst, Integer.valueOf(this.mCopiedFiles.size())));
+        return true;
+    }
+
+    /**
+     * Method that reads the records of the journal, until the end of the file or a
+     * record not completely written (the process died while writing it).
+     *
+     * @param src The source path, or null to read the journal of any operation
+     * @param dst The destination path
+     * @param move If the operation is a move
+     * @return long The length of the valid part of the journal, or 0 if the journal
+     * isn't of the operation
+     * @throws IOException If the journal can't be read
+     */
+    private long read(String src, String dst, boolean move) throws IOException {
+        long length = this.mFile.length();
+        long valid = 0;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.mFile)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return 0;
+            }
+            boolean isMove = in.readBoolean();
+            String srcPath = in.readUTF();
+            String dstPath = in.readUTF();
+            if (src != null
+                    && (isMove != move || !srcPath.equals(src) || !dstPath.equals(dst))) {
+                return 0;
+            }
+            valid = length - in.available();
+            while (true) {
+                byte type = in.readByte();
+                String path = in.readUTF();
+                Entry entry = new Entry(in.readLong(), in.readLong(), in.readLong());
+                if (type == RECORD_STARTED) {
+                    this.mStarted.add(path);
+                } else if (type == RECORD_FILE) {
+                    this.mStarted.remove(path);
+                    this.mCheckpoints.remove(path);
+                    this.mCopiedFiles.put(path, entry);
+                } else if (type == RECORD_CHECKPOINT) {
+                    this.mCopiedFiles.remove(path);
+                    this.mCheckpoints.put(path, entry);
+                } else if (type == RECORD_COMPLETED) {
+                    this.mCompleted = true;
+                }
+                valid = length - in.available();
+            }
+        } catch (EOFException e) {
+            // End of the journal
+        } finally {
+            try {
+                if (in != null) {
+                    in.close();
+                }
+            } catch (IOException e) {/**NON BLOCK**/}
+        }
+        return valid;
+    }
+
+    /**
+     * Method that creates a new journal.
+     *
+     * @param src The source path
+     * @param dst The destination path
+     * @param move If the operation is a move
+     * @throws IOException If the journal can't be created
+     */
+    private void create(String src, String dst, boolean move) throws IOException {
+        this.mCopiedFiles.clear();
+        this.mCheckpoints.clear();
+        this.mStarted.clear();
+        this.mCompleted = false;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeBoolean(move);
+        out.writeUTF(src);
+        out.writeUTF(dst);
+        out.flush();
+        this.mOut = new FileOutputStream(this.mFile, false);
+        this.mOut.write(buffer.toByteArray());
+        this.mOut.getFD().sync();
+    }
+
+    /**
+     * Method that appends a record to the journal. Every record is written at once,
+     * so a record is only partially written if the process dies while writing it.
+     *
+     * @param type The type of the record
+     * @param path The path of the file
+     * @param entry The offset of the file and the state of its source
+     * @param sync If the journal must be flushed to the storage
+     */
+    private void write(byte type, String path, Entry entry, boolean sync) {
+        if (this.mOut == null) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeByte(type);
+            out.writeUTF(path);
+            out.writeLong(entry.mOffset);
+            out.writeLong(entry.mSize);
+            out.writeLong(entry.mModified);
+            out.flush();
+            this.mOut.write(buffer.toByteArray());
+            if (sync) {
+                this.mOut.getFD().sync();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write the journal " + this.mFile, e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Method that deletes the abandoned journals, and the partial files of all the
+     * copies that they started and didn't complete.
+     *
+     * @param dir The directory of the journals
+     */
+    private static void purge(File dir) {
+        File[] journals = dir.listFiles();
+        if (journals == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File journal : journals) {
+            if (now - journal.lastModified() > MAX_JOURNAL_AGE) {
+                CopyJournal expired = new CopyJournal(journal);
+                try {
+                    expired.read(null, null, false);
+                } catch (IOException e) {/**NON BLOCK**/}
+                Set<String> partials = new HashSet<String>(expired.mStarted);
+                partials.addAll(expired.mCheckpoints.keySet());
+                for (String path : partials) {
+                    File temp = getTempFile(new File(path));
+                    if (temp.exists() && !temp.delete()) {
+                        Log.w(TAG, "Failed to delete the partial file " + temp); //$NON-NLS-1$
+                    }
+                }
+                if (!journal.delete()) {
+                    Log.w(TAG, "Failed to delete the journal " + journal); //$NON-NLS-1$
+                }
+            }
+        }
+    }
+}
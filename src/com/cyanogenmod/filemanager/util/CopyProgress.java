@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The progress of a copy or move operation, in bytes and files.<br/>
+ * <br/>
+ * The operation is sized before start by adding its items (see {@link #addItem(File)}).
+ * Then, the executables report the bytes and files copied while the operation
+ * progresses, and the operation reports the completion of every item (so the
+ * executables that can't report their progress advance an item at once). This
+ * class is thread-safe.
+ */
+public class CopyProgress {
+
+    /**
+     * An interface for receive the changes of the progress.
+     */
+    public interface OnProgressListener {
+        /**
+         * Method invoked when the progress changed. It's invoked from the thread that
+         * reports the progress, and no more than once every {@link #UPDATE_INTERVAL} ms.
+         *
+         * @param progress The progress
+         */
+        void onProgress(CopyProgress progress);
+    }
+
+    /**
+     * The minimum time between two notifications of the progress (in ms).
+     */
+    public static final long UPDATE_INTERVAL = 500L;
+
+    private final OnProgressListener mListener;
+    private final long mStartTime;
+    private final AtomicLong mLastUpdate = new AtomicLong();
+
+    private final AtomicLong mCopiedBytes = new AtomicLong();
+    private final AtomicLong mCopiedFiles = new AtomicLong();
+
+    // The sizes of the items (bytes and files)
+    private final List<long[]> mItems = new ArrayList<long[]>();
+    private long mTotalBytes;
+    private long mTotalFiles;
+    private long mCompletedBytes;
+    private long mCompletedFiles;
+    private int mCompletedItems;
+
+    /**
+     * Constructor of <code>CopyProgress</code>.
+     *
+     * @param listener The listener of the changes of the progress (may be null)
+     */
+    public CopyProgress(OnProgressListener listener) {
+        super();
+        this.mListener = listener;
+        this.mStartTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Method that adds an item to the operation, and measures its size. The items
+     * must be added in the same order they are copied.
+     *
+     * @param src The source file or directory
+     */
+    public void addItem(File src) {
+        long[] size = new long[2];
+        measure(src, size);
+        synchronized (this) {
+            this.mItems.add(size);
+            this.mTotalBytes += size[0];
+            this.mTotalFiles += size[1];
+        }
+    }
+
+    /**
+     * Method that reports that the next item of the operation was completed.
+     */
+    public void onItemCompleted() {
+        synchronized (this) {
+            if (this.mCompletedItems >= this.mItems.size()) {
+                return;
+            }
+            long[] size = this.mItems.get(this.mCompletedItems++);
+            this.mCompletedBytes += size[0];
+            this.mCompletedFiles += size[1];
+            advance(this.mCopiedBytes, this.mCompletedBytes);
+            advance(this.mCopiedFiles, this.mCompletedFiles);
+        }
+        notifyProgress(true);
+    }
+
+    /**
+     * Method that reports that some bytes were copied.
+     *
+     * @param bytes The number of bytes copied
+     */
+    public void onBytesCopied(long bytes) {
+        this.mCopiedBytes.addAndGet(bytes);
+        notifyProgress(false);
+    }
+
+    /**
+     * Method that reports that a file was copied.
+     */
+    public void onFileCopied() {
+        this.mCopiedFiles.incrementAndGet();
+        notifyProgress(false);
+    }
+
+    /**
+     * Method that returns the bytes to copy.
+     *
+     * @return long The bytes to copy
+     */
+    public synchronized long getTotalBytes() {
+        return this.mTotalBytes;
+    }
+
+    /**
+     * Method that returns the files to copy.
+     *
+     * @return long The files to copy
+     */
+    public synchronized long getTotalFiles() {
+        return this.mTotalFiles;
+    }
+
+    /**
+     * Method that returns the bytes copied.
+     *
+     * @return long The bytes copied
+     */
+    public long getCopiedBytes() {
+        return Math.min(this.mCopiedBytes.get(), getTotalBytes());
+    }
+
+    /**
+     * Method that returns the files copied.
+     *
+     * @return long The files copied
+     */
+    public long getCopiedFiles() {
+        return Math.min(this.mCopiedFiles.get(), getTotalFiles());
+    }
+
+    /**
+     * Method that returns the percentage of the bytes copied.
+     *
+     * @return int The percentage (0-100)
+     */
+    public int getPercentage() {
+        long total = getTotalBytes();
+        if (total <= 0) {
+            return 0;
+        }
+        return (int)((getCopiedBytes() * 100) / total);
+    }
+
+    /**
+     * Method that returns the throughput of the operation.
+     *
+     * @return long The bytes copied per second
+     */
+    public long getBytesPerSecond() {
+        long elapsed = getElapsedTime();
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return (getCopiedBytes() * 1000) / elapsed;
+    }
+
+    /**
+     * Method that returns the throughput of the operation.
+     *
+     * @return double The files copied per second
+     */
+    public double getFilesPerSecond() {
+        long elapsed = getElapsedTime();
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return (getCopiedFiles() * 1000.0d) / elapsed;
+    }
+
+    /**
+     * Method that returns the estimated time to complete the operation.
+     *
+     * @return long The remaining time (in ms), or -1 if it can't be estimated
+     */
+    public long getEta() {
+        long copied = getCopiedBytes();
+        long total = getTotalBytes();
+        if (copied <= 0 || total <= 0) {
+            return -1;
+        }
+        return ((total - copied) * getElapsedTime()) / copied;
+    }
+
+    /**
+     * Method that returns the time since the operation was started.
+     *
+     * @return long The elapsed time (in ms)
+     */
+    public long getElapsedTime() {
+        return System.currentTimeMillis() - this.mStartTime;
+    }
+
+    /**
+     * Method that notifies the listener, if the last notification is old enough.
+     *
+     * @param force Notify the listener anyway
+     */
+    private void notifyProgress(boolean force) {
+        if (this.mListener == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long last = this.mLastUpdate.get();
+        if (!force && now - last < UPDATE_INTERVAL) {
+            return;
+        }
+        if (!this.mLastUpdate.compareAndSet(last, now) && !force) {
+            // Other thread is notifying the listener
+            return;
+        }
+        this.mListener.onProgress(this);
+    }
+
+    /**
+     * Method that advances a counter to, at least, a value.
+     *
+     * @param counter The counter
+     * @param value The value
+     */
+    private static void advance(AtomicLong counter, long value) {
+        long current;
+        do {
+            current = counter.get();
+            if (current >= value) {
+                return;
+            }
+        } while (!counter.compareAndSet(current, value));
+    }
+
+    /**
+     * Method that measures the bytes and files of a file or directory tree.
+     *
+     * @param file The file or directory
+     * @param size The bytes and files accumulated
+     */
+    private static void measure(File file, long[] size) {
+        if (!file.isDirectory()) {
+            size[0] += file.length();
+            size[1]++;
+            return;
+        }
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                measure(f, size);
+            }
+        }
+    }
+}
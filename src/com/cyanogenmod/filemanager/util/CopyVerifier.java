@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.commands.java.Program;
+import com.cyanogenmod.filemanager.console.CancelledOperationException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The verification of a copy or move operation.<br/>
+ * <br/>
+ * The digest of every file is computed while the data is copied (see
+ * {@link FileHelper#copyFileWithNio(File, File, Program, CopyProgress, CopyJournal,
+ * CopyVerifier)}), so the source is read only once. Then only the destination is read
+ * again, after drop it from the page cache so the data is read from the storage, and
+ * its digest is compared with the digest of the source. The files that don't match
+ * are reported by {@link #getMismatches()}. This class is thread-safe.
+ */
+public class CopyVerifier {
+
+    private static final String TAG = "CopyVerifier"; //$NON-NLS-1$
+
+    /**
+     * The default algorithm of the digests.
+     */
+    public static final String DEFAULT_ALGORITHM = "MD5"; //$NON-NLS-1$
+
+    /**
+     * The size of the buffers used to read the files.
+     */
+    public static final int BUFFER_SIZE = 262144;
+
+    private final String mAlgorithm;
+    private final List<String> mMismatches = new ArrayList<String>();
+
+    /**
+     * Constructor of <code>CopyVerifier</code>.
+     *
+     * @param algorithm The algorithm of the digests
+     * @throws NoSuchAlgorithmException If the algorithm isn't supported
+     */
+    public CopyVerifier(String algorithm) throws NoSuchAlgorithmException {
+        super();
+        MessageDigest.getInstance(algorithm);
+        this.mAlgorithm = algorithm;
+    }
+
+    /**
+     * Method that creates a new digest to compute the digest of the source of a file.
+     *
+     * @return MessageDigest The digest
+     */
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(this.mAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            // Checked in the constructor
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Method that updates a digest with a range of a file.
+     *
+     * @param digest The digest
+     * @param channel The channel of the file
+     * @param position The position of the range
+     * @param length The length of the range
+     * @param buffer A buffer where to read the file
+     * @throws IOException If the file can't be read
+     */
+    public static void update(MessageDigest digest, FileChannel channel,
+            long position, long length, ByteBuffer buffer) throws IOException {
+        long end = position + length;
+        long pos = position;
+        while (pos < end) {
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), end - pos));
+            int read = channel.read(buffer, pos);
+            if (read <= 0) {
+                break;
+            }
+            digest.update(buffer.array(), 0, read);
+            pos += read;
+        }
+    }
+
+    /**
+     * Method that verifies a copied file, reading it from the storage and comparing
+     * its digest with the digest of the source. The data of the file must be flushed
+     * to the storage. A mismatch is recorded.
+     *
+     * @param src The source file
+     * @param dst The copied file
+     * @param expected The digest of the source
+     * @param program The program that copies (for check if it was cancelled)
+     * @return boolean If the copied file matches the source
+     * @throws CancelledOperationException If the operation was cancelled
+     */
+    public boolean verify(File src, File dst, byte[] expected, Program program)
+            throws CancelledOperationException {
+        MessageDigest digest = newDigest();
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(dst);
+
+            // Drop the file from the page cache, or we would verify the cached data
+            try {
+                Os.posix_fadvise(in.getFD(), 0, 0, OsConstants.POSIX_FADV_DONTNEED);
+            } catch (ErrnoException e) {/**NON BLOCK**/}
+
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long size = channel.size();
+            long pos = 0;
+            while (pos < size) {
+                if (program.isCancelled()) {
+                    throw new CancelledOperationException();
+                }
+                long length = Math.min(BUFFER_SIZE, size - pos);
+                update(digest, channel, pos, length, buffer);
+                pos += length;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, String.format("Failed to verify %s", dst), e); //$NON-NLS-1$
+            onMismatch(src);
+            return false;
+        } finally {
+            try {
+                if (in != null) {
+                    in.close();
+                }
+            } catch (IOException e) {/**NON BLOCK**/}
+        }
+
+        if (!MessageDigest.isEqual(expected, digest.digest())) {
+            Log.w(TAG, String.format("Copy of %s to %s doesn't match", src, dst)); //$NON-NLS-1$
+            onMismatch(src);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method that records a file that doesn't match its copy.
+     *
+     * @param src The source file
+     */
+    public void onMismatch(File src) {
+        synchronized (this.mMismatches) {
+            this.mMismatches.add(src.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Method that returns if some file doesn't match its copy.
+     *
+     * @return boolean If some file doesn't match
+     */
+    public boolean hasMismatches() {
+        synchronized (this.mMismatches) {
+            return !this.mMismatches.isEmpty();
+        }
+    }
+
+    /**
+     * Method that returns the source files that don't match their copies.
+     *
+     * @return List<String> The paths of the source files
+     */
+    public List<String> getMismatches() {
+        synchronized (this.mMismatches) {
+            return Collections.unmodifiableList(new ArrayList<String>(this.mMismatches));
+        }
+    }
+}
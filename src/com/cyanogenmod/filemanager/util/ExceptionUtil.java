@@ -197,9 +197,14 @@ public final class ExceptionUtil {
 
         // If an ExecutionException has specified a resource string to use,
         // this is a special case and should be displayed as such.
+        String details = null;
         if ((ex instanceof ExecutionException)
             && ((ExecutionException)ex).getDetailMessageResId() != 0) {
             msgResId = ((ExecutionException)ex).getDetailMessageResId();
+
+            // The details of the error doesn't fit in a toast
+            details = ex.getMessage();
+            toast = details == null;
         } else {
             int cc = KNOWN_EXCEPTIONS.length;
             for (int i = 0; i < cc; i++) {
@@ -228,6 +233,7 @@ public final class ExceptionUtil {
 
         //Build the alert
         final int fMsgResId = msgResId;
+        final String fDetails = details;
         final boolean fToast = toast;
         if (!quiet) {
             ((Activity)context).runOnUiThread(new Runnable() {
@@ -237,6 +243,9 @@ public final class ExceptionUtil {
                         String msg = null;
                         if (fMsgResId > 0) {
                             msg = context.getString(fMsgResId);
+                            if (fDetails != null) {
+                                msg = msg + "\n\n" + fDetails; //$NON-NLS-1$
+                            }
                         } else {
                             msg = ex.getMessage();
                         }
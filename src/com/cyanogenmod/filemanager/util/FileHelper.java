@@ -46,7 +46,6 @@ import com.cyanogenmod.filemanager.model.FileSystemObject;
 import com.cyanogenmod.filemanager.model.Group;
 import com.cyanogenmod.filemanager.model.Identity;
 import com.cyanogenmod.filemanager.model.NamedPipe;
-import com.cyanogenmod.filemanager.model.ParentDirectory;
 import com.cyanogenmod.filemanager.model.Permissions;
 import com.cyanogenmod.filemanager.model.RegularFile;
 import com.cyanogenmod.filemanager.model.Symlink;
@@ -66,11 +65,13 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
@@ -135,6 +136,34 @@ public final class FileHelper {
      */
     public final static long NIO_COPY_CHUNK_SIZE = 1024000L;
 
+    /**
+     * The maximum size of chunks that we will copy with nio during a copy operation.
+     *
+     * Set to 16MiB.
+     */
+    public final static long NIO_COPY_MAX_CHUNK_SIZE = 16384000L;
+
+    /**
+     * The time (in ms) that should take to copy a chunk with nio during a copy operation.
+     */
+    public final static long NIO_COPY_CHUNK_TIME = 100L;
+
+    /**
+     * The size of data that we will copy with nio before flush it to the storage
+     * and record a checkpoint during a journaled copy operation. Smaller files
+     * are not journaled.
+     *
+     * Set to 32MiB.
+     */
+    public final static long NIO_COPY_CHECKPOINT_SIZE = 33554432L;
+
+    // The user and group name of the files created from a java.io.File. Use the
+    // defaults one for sdcards
+    private static final String DEFAULT_USER = USER_ROOT;
+    private static final String DEFAULT_GROUP = "sdcard_r"; //$NON-NLS-1$
+    private static volatile User sDefaultUser;
+    private static volatile Group sDefaultGroup;
+
     // The date/time formats objects
     /**
      * @hide
@@ -315,22 +344,42 @@ public final class FileHelper {
      * if <code>fso</code> has no extension.
      */
     public static String getExtension(String name) {
+        int start = getExtensionStart(name);
+        if (start == -1) {
+            return null;
+        }
+        return name.substring(start);
+    }
+
+    /**
+     * Method that returns where the extension of a file system object starts, so the
+     * extension can be looked up without extract it.
+     *
+     * @param name The name of file system object
+     * @return int The position of the extension in the name (the extension ends with
+     * the name), or -1 if <code>fso</code> has no extension.
+     * @see #getExtension(String)
+     */
+    public static int getExtensionStart(String name) {
         final char dot = '.';
         int pos = name.lastIndexOf(dot);
         if (pos == -1 || pos == 0) { // Hidden files doesn't have extensions
-            return null;
+            return -1;
         }
 
         // Exceptions to the general extraction method
+        int len = name.length();
         int cc = COMPRESSED_TAR.length;
         for (int i = 0; i < cc; i++) {
-            if (name.endsWith("." + COMPRESSED_TAR[i])) { //$NON-NLS-1$
-                return COMPRESSED_TAR[i];
+            int start = len - COMPRESSED_TAR[i].length();
+            if (start > 0 && name.charAt(start - 1) == dot
+                    && name.endsWith(COMPRESSED_TAR[i])) {
+                return start;
             }
         }
 
         // General extraction method
-        return name.substring(pos + 1);
+        return pos + 1;
     }
 
     /**
@@ -555,58 +604,61 @@ public final class FileHelper {
     public static List<FileSystemObject> applyUserPreferences(
             List<FileSystemObject> files, Map<DisplayRestrictions, Object> restrictions,
             boolean noSort, boolean chRooted) {
-        //Retrieve user preferences
+        //Retrieve user preferences (once, not for every file)
         SharedPreferences prefs = Preferences.getSharedPreferences();
         FileManagerSettings sortModePref = FileManagerSettings.SETTINGS_SORT_MODE;
         FileManagerSettings showDirsFirstPref = FileManagerSettings.SETTINGS_SHOW_DIRS_FIRST;
         FileManagerSettings showHiddenPref = FileManagerSettings.SETTINGS_SHOW_HIDDEN;
         FileManagerSettings showSystemPref = FileManagerSettings.SETTINGS_SHOW_SYSTEM;
         FileManagerSettings showSymlinksPref = FileManagerSettings.SETTINGS_SHOW_SYMLINKS;
+        final boolean showHidden = !chRooted && prefs.getBoolean(
+                showHiddenPref.getId(),
+                ((Boolean)showHiddenPref.getDefaultValue()).booleanValue());
+        final boolean showSystem = !chRooted && prefs.getBoolean(
+                showSystemPref.getId(),
+                ((Boolean)showSystemPref.getDefaultValue()).booleanValue());
+        final boolean showSymlinks = !chRooted && prefs.getBoolean(
+                showSymlinksPref.getId(),
+                ((Boolean)showSymlinksPref.getDefaultValue()).booleanValue());
 
-        //Remove all unnecessary files (no required by the user)
+        //Remove all unnecessary files (no required by the user). The files that
+        //are kept are compacted at the start of the list, and the rest is removed at once
         int cc = files.size();
-        for (int i = cc - 1; i >= 0; i--) {
+        int kept = 0;
+        for (int i = 0; i < cc; i++) {
             FileSystemObject file = files.get(i);
 
             //Hidden files
-            if (!prefs.getBoolean(
-                    showHiddenPref.getId(),
-                    ((Boolean)showHiddenPref.getDefaultValue()).booleanValue()) || chRooted) {
-                if (file.isHidden()) {
-                    files.remove(i);
-                    continue;
-                }
+            if (!showHidden && file.isHidden()) {
+                continue;
             }
 
             //System files
-            if (!prefs.getBoolean(
-                    showSystemPref.getId(),
-                    ((Boolean)showSystemPref.getDefaultValue()).booleanValue()) || chRooted) {
-                if (file instanceof SystemFile) {
-                    files.remove(i);
-                    continue;
-                }
+            if (!showSystem && file instanceof SystemFile) {
+                continue;
             }
 
             //Symlinks files
-            if (!prefs.getBoolean(
-                    showSymlinksPref.getId(),
-                    ((Boolean)showSymlinksPref.getDefaultValue()).booleanValue()) || chRooted) {
-                if (file instanceof Symlink) {
-                    files.remove(i);
-                    continue;
-                }
+            if (!showSymlinks && file instanceof Symlink) {
+                continue;
             }
 
             // Restrictions (only apply to files)
             if (restrictions != null) {
                 if (!isDirectory(file)) {
                     if (!isDisplayAllowed(file, restrictions)) {
-                        files.remove(i);
                         continue;
                     }
                 }
             }
+
+            if (kept != i) {
+                files.set(kept, file);
+            }
+            kept++;
+        }
+        if (kept < cc) {
+            files.subList(kept, cc).clear();
         }
 
         //Apply sort mode
@@ -619,43 +671,35 @@ public final class FileHelper {
                     NavigationSortMode.fromId(
                             prefs.getInt(sortModePref.getId(),
                             ((ObjectIdentifier)sortModePref.getDefaultValue()).getId()));
-            Collections.sort(files, new Comparator<FileSystemObject>() {
-                @Override
-                public int compare(FileSystemObject lhs, FileSystemObject rhs) {
-                    //Parent directory always goes first
-                    boolean isLhsParentDirectory = lhs instanceof ParentDirectory;
-                    boolean isRhsParentDirectory = rhs instanceof ParentDirectory;
-                    if (isLhsParentDirectory || isRhsParentDirectory) {
-                        if (isLhsParentDirectory && isRhsParentDirectory) {
-                            return 0;
-                        }
-                        return (isLhsParentDirectory) ? -1 : 1;
-                    }
-
-                    //Need to sort directory first?
-                    if (showDirsFirst) {
-                        boolean isLhsDirectory = FileHelper.isDirectory(lhs);
-                        boolean isRhsDirectory = FileHelper.isDirectory(rhs);
-                        if (isLhsDirectory || isRhsDirectory) {
-                            if (isLhsDirectory && isRhsDirectory) {
-                                //Apply sort mode
-                                return FileHelper.doCompare(lhs, rhs, sortMode);
-                            }
-                            return (isLhsDirectory) ? -1 : 1;
-                        }
-                    }
-
-                    //Apply sort mode
-                    return FileHelper.doCompare(lhs, rhs, sortMode);
-                }
-
-            });
+            FileSorter.sort(files, sortMode, showDirsFirst, isCaseSensitiveSort());
         }
 
         //Return the files
         return files;
     }
 
+    /**
+     * Method that returns a comparator that sorts the files as
+     * {@link #applyUserPreferences(List, Map, boolean, boolean)} does with the
+     * current user preferences.
+     *
+     * @return Comparator<FileSystemObject> The comparator
+     */
+    public static Comparator<FileSystemObject> getUserPreferencesComparator() {
+        SharedPreferences prefs = Preferences.getSharedPreferences();
+        FileManagerSettings sortModePref = FileManagerSettings.SETTINGS_SORT_MODE;
+        FileManagerSettings showDirsFirstPref = FileManagerSettings.SETTINGS_SHOW_DIRS_FIRST;
+        final boolean showDirsFirst =
+                prefs.getBoolean(
+                        showDirsFirstPref.getId(),
+                    ((Boolean)showDirsFirstPref.getDefaultValue()).booleanValue());
+        final NavigationSortMode sortMode =
+                NavigationSortMode.fromId(
+                        prefs.getInt(sortModePref.getId(),
+                        ((ObjectIdentifier)sortModePref.getDefaultValue()).getId()));
+        return FileSorter.newComparator(sortMode, showDirsFirst, isCaseSensitiveSort());
+    }
+
     /**
      * Determines if a file system object complies w/ a user's display preferences implying that
      * the user is interested in this file
@@ -838,6 +882,19 @@ public final class FileHelper {
         }
     }
 
+    /**
+     * Method that returns the user preference for case sensitive sort.
+     *
+     * @return boolean If the names must be sorted case sensitive
+     */
+    public static boolean isCaseSensitiveSort() {
+        return Preferences.getSharedPreferences().
+                    getBoolean(
+                        FileManagerSettings.SETTINGS_CASE_SENSITIVE_SORT.getId(),
+                        ((Boolean)FileManagerSettings.SETTINGS_CASE_SENSITIVE_SORT.
+                                getDefaultValue()).booleanValue());
+    }
+
     /**
      * Method that do a comparison between 2 file system objects.
      *
@@ -852,14 +909,27 @@ public final class FileHelper {
             final FileSystemObject fso1,
             final FileSystemObject fso2,
             final NavigationSortMode mode) {
+        return doCompare(fso1, fso2, mode, isCaseSensitiveSort());
+    }
 
-        // Retrieve the user preference for case sensitive sort
-        boolean caseSensitive =
-                Preferences.getSharedPreferences().
-                    getBoolean(
-                        FileManagerSettings.SETTINGS_CASE_SENSITIVE_SORT.getId(),
-                        ((Boolean)FileManagerSettings.SETTINGS_CASE_SENSITIVE_SORT.
-                                getDefaultValue()).booleanValue());
+    /**
+     * Method that do a comparison between 2 file system objects. Callers that compare
+     * many objects should read the case sensitive preference once and use this method.
+     *
+     * @param fso1 The first file system objects
+     * @param fso2 The second file system objects
+     * @param mode The sort mode
+     * @param caseSensitive If the names must be compared case sensitive
+     * @return int a negative integer if {@code fso1} is less than {@code fso2};
+     *         a positive integer if {@code fso1} is greater than {@code fso2};
+     *         0 if {@code fso1} has the same order as {@code fso2}.
+     * @see #isCaseSensitiveSort()
+     */
+    public static int doCompare(
+            final FileSystemObject fso1,
+            final FileSystemObject fso2,
+            final NavigationSortMode mode,
+            final boolean caseSensitive) {
 
         //Name (ascending)
         if (mode.getId() == NavigationSortMode.NAME_ASC.getId()) {
@@ -887,11 +957,11 @@ public final class FileHelper {
 
         //Size (ascending)
         if (mode.getId() == NavigationSortMode.SIZE_ASC.getId()) {
-            return Long.compare(fso1.getSize(), fso2.getSize());
+            return Long.compare(fso1.getSortSize(), fso2.getSortSize());
         }
         //Size (descending)
         if (mode.getId() == NavigationSortMode.SIZE_DESC.getId()) {
-            return Long.compare(fso1.getSize(), fso2.getSize()) * -1;
+            return Long.compare(fso1.getSortSize(), fso2.getSortSize()) * -1;
         }
 
         //Type (ascending)
@@ -1075,41 +1145,22 @@ public final class FileHelper {
      * @return FileSystemObject The file system object reference
      */
     public static FileSystemObject createFileSystemObject(File file) {
-        try {
-            // The user and group name of the files. Use the defaults one for sdcards
-            final String USER = "root"; //$NON-NLS-1$
-            final String GROUP = "sdcard_r"; //$NON-NLS-1$
-
-            // The user and group name of the files. In ChRoot, aosp give restrict access to
-            // this user and group. This applies for permission also. This has no really much
-            // interest if we not allow to change the permissions
-            AID userAID = AIDHelper.getAIDFromName(USER);
-            AID groupAID = AIDHelper.getAIDFromName(GROUP);
-            User user = new User(userAID.getId(), userAID.getName());
-            Group group = new Group(groupAID.getId(), groupAID.getName());
-            Permissions perm = file.isDirectory()
-                    ? Permissions.createDefaultFolderPermissions()
-                    : Permissions.createDefaultFilePermissions();
-
-            // Build a directory?
-            Date lastModified = new Date(file.lastModified());
-            if (file.isDirectory()) {
-                return
-                    new Directory(
-                            file.getName(),
-                            file.getParent(),
-                            user, group, perm,
-                            lastModified, lastModified, lastModified); // The only date we have
-            }
+        return createFileSystemObject(file, file.isDirectory());
+    }
 
-            // Build a regular file
-            return
-                new RegularFile(
-                        file.getName(),
-                        file.getParent(),
-                        user, group, perm,
-                        file.length(),
-                        lastModified, lastModified, lastModified); // The only date we have
+    /**
+     * Method that creates a {@link FileSystemObject} from a {@link File} whose type
+     * is already known by the caller (avoids another stat of the file)
+     *
+     * @param file The file or folder reference
+     * @param isDirectory If the file is a directory
+     * @return FileSystemObject The file system object reference
+     */
+    public static FileSystemObject createFileSystemObject(File file, boolean isDirectory) {
+        try {
+            return createFileSystemObject(
+                    file.getName(), file.getParent(), isDirectory,
+                    isDirectory ? 0 : file.length(), file.lastModified());
         } catch (Exception e) {
             Log.e(TAG, "Exception retrieving the fso", e); //$NON-NLS-1$
         }
@@ -1117,95 +1168,238 @@ public final class FileHelper {
     }
 
     /**
-     * Method that copies recursively to the destination
+     * Method that creates a {@link FileSystemObject} from the known attributes of a
+     * file (as they were returned by a {@link File})
      *
-     * @param src The source file or folder
-     * @param dst The destination file or folder
-     * @return boolean If the operation complete successfully
-     * @throws ExecutionException If a problem was detected in the operation
+     * @param name The name of the file or folder
+     * @param parent The parent directory
+     * @param isDirectory If the file is a directory
+     * @param size The size of the file
+     * @param lastModified The last modification time
+     * @return FileSystemObject The file system object reference
      */
-    public static boolean copyRecursive(
-            final File src, final File dst, Program program)
-                throws ExecutionException, CancelledOperationException {
-        if (src.isDirectory()) {
-            // Create the directory
-            if (dst.exists() && !dst.isDirectory()) {
-                Log.e(TAG,
-                        String.format("Failed to check destionation dir: %s", dst)); //$NON-NLS-1$
-                throw new ExecutionException("the path exists but is not a folder"); //$NON-NLS-1$
-            }
-            if (!dst.exists()) {
-                if (!dst.mkdir()) {
-                    Log.e(TAG, String.format("Failed to create directory: %s", dst)); //$NON-NLS-1$
-                    return false;
-                }
-            }
-            File[] files = src.listFiles();
-            if (files != null) {
-                for (int i = 0; i < files.length; i++) {
-                    // Short circuit if we've been cancelled. Show's over :(
-                    if (program.isCancelled()) {
-                        throw new CancelledOperationException();
-                    }
+    public static FileSystemObject createFileSystemObject(
+            String name, String parent, boolean isDirectory, long size, long lastModified) {
+        // The user and group name of the files. In ChRoot, aosp give restrict access to
+        // this user and group. This applies for permission also. This has no really much
+        // interest if we not allow to change the permissions
+        User user = getDefaultUser();
+        Group group = getDefaultGroup();
+        Permissions perm = isDirectory
+                ? Permissions.createDefaultFolderPermissions()
+                : Permissions.createDefaultFilePermissions();
+
+        // Build a directory?
+        Date date = new Date(lastModified);
+        if (isDirectory) {
+            return
+                new Directory(
+                        name, parent,
+                        user, group, perm,
+                        date, date, date); // The only date we have
+        }
 
-                    if (!copyRecursive(files[i], new File(dst, files[i].getName()),
-                                       program)) {
-                        return false;
-                    }
-                }
+        // Build a regular file
+        return
+            new RegularFile(
+                    name, parent,
+                    user, group, perm,
+                    size,
+                    date, date, date); // The only date we have
+    }
+
+    /**
+     * Method that returns the user of the files created from a {@link File}. The
+     * user is resolved once (the AIDs are looked up by name) and then reused.
+     *
+     * @return User The default user
+     */
+    private static User getDefaultUser() {
+        User user = sDefaultUser;
+        if (user == null) {
+            AID aid = AIDHelper.getAIDFromName(DEFAULT_USER);
+            user = new User(aid.getId(), aid.getName());
+            if (aid.getId() != -1) {
+                sDefaultUser = user;
             }
-        } else {
-            // Copy the directory
-            if (!copyFileWithNio(src, dst, program)) {
-                return false;
+        }
+        return user;
+    }
+
+    /**
+     * Method that returns the group of the files created from a {@link File}. The
+     * group is resolved once (the AIDs are looked up by name) and then reused.
+     *
+     * @return Group The default group
+     */
+    private static Group getDefaultGroup() {
+        Group group = sDefaultGroup;
+        if (group == null) {
+            AID aid = AIDHelper.getAIDFromName(DEFAULT_GROUP);
+            group = new Group(aid.getId(), aid.getName());
+            if (aid.getId() != -1) {
+                sDefaultGroup = group;
             }
         }
-        return true;
+        return group;
     }
 
     /**
      * Method that copies a file, using FileChannel.transferFrom from
      * the nio package.
      *
-     * The file is chunked into chunks of size {@link #NIO_COPY_CHUNK_SIZE}
-     * and each chunk is transferred until the file is completely copied. This
-     * allows us to cancel the file transfer at any time.
-     *
      * @param src The source file
      * @param dst The destination file
      * @return boolean Whether the operation completed successfully
+     * @see #copyFileWithNio(File, File, Program, CopyProgress)
      */
     public static boolean copyFileWithNio(final File src, final File dst,
             Program program) throws CancelledOperationException, ExecutionException {
+        return copyFileWithNio(src, dst, program, null);
+    }
+
+    /**
+     * Method that copies a file, using FileChannel.transferFrom from
+     * the nio package.
+     *
+     * The file is transferred in chunks, starting with chunks of size
+     * {@link #NIO_COPY_CHUNK_SIZE}. The size of the chunks adapts to the speed of
+     * the storage, so every chunk takes around {@link #NIO_COPY_CHUNK_TIME} ms
+     * to be transferred. This allows us to cancel the file transfer at any time.
+     *
+     * @param src The source file
+     * @param dst The destination file
+     * @param progress The progress where report the copied bytes (may be null)
+     * @return boolean Whether the operation completed successfully
+     * @see #copyFileWithNio(File, File, Program, CopyProgress, CopyJournal, CopyVerifier)
+     */
+    public static boolean copyFileWithNio(final File src, final File dst,
+            Program program, CopyProgress progress)
+            throws CancelledOperationException, ExecutionException {
+        return copyFileWithNio(src, dst, program, progress, null, null);
+    }
+
+    /**
+     * Method that copies a file, using FileChannel.transferFrom from
+     * the nio package.
+     *
+     * The file is transferred in chunks, starting with chunks of size
+     * {@link #NIO_COPY_CHUNK_SIZE}. The size of the chunks adapts to the speed of
+     * the storage, so every chunk takes around {@link #NIO_COPY_CHUNK_TIME} ms
+     * to be transferred. This allows us to cancel the file transfer at any time.
+     *
+     * When the copy is journaled, the file is transferred to a temporary file that
+     * is renamed to the destination file when the copy completes, the data is
+     * flushed to the storage and recorded in the journal every
+     * {@link #NIO_COPY_CHECKPOINT_SIZE} bytes, and the copy continues from the last
+     * checkpoint of a previous copy of the file. Files smaller than
+     * {@link #NIO_COPY_CHECKPOINT_SIZE} are copied directly to the destination file
+     * and are not recorded in the journal, so copying many small files isn't slowed
+     * down by the flush and the journal writes; they are copied again on resume.
+     *
+     * When the copy is verified, the data is transferred through a buffer to compute
+     * its digest, and the copied file is read again and compared with the digest (see
+     * {@link CopyVerifier#verify(File, File, byte[], Program)}). A copied file that
+     * doesn't match is deleted and reported to the verifier, but it doesn't stop the
+     * operation.
+     *
+     * @param src The source file
+     * @param dst The destination file
+     * @param progress The progress where report the copied bytes (may be null)
+     * @param journal The journal of the copy (may be null)
+     * @param verifier The verifier of the copy (may be null)
+     * @return boolean Whether the operation completed successfully
+     */
+    public static boolean copyFileWithNio(final File src, final File dst,
+            Program program, CopyProgress progress, CopyJournal journal, CopyVerifier verifier)
+            throws CancelledOperationException, ExecutionException {
+        if (journal != null && src.length() < NIO_COPY_CHECKPOINT_SIZE) {
+            journal = null;
+        }
+        final File target = journal == null ? dst : CopyJournal.getTempFile(dst);
+        final MessageDigest digest = verifier == null ? null : verifier.newDigest();
+        final ByteBuffer buffer =
+                digest == null ? null : ByteBuffer.allocate(CopyVerifier.BUFFER_SIZE);
         FileChannel inputChannel = null;
         FileChannel outputChannel = null;
         long currentPosition = 0;
-        long count = NIO_COPY_CHUNK_SIZE;
+        long lastCheckpoint = 0;
+        long chunk = NIO_COPY_CHUNK_SIZE;
         try {
             inputChannel = new FileInputStream(src).getChannel();
-            outputChannel = new FileOutputStream(dst).getChannel();
-            while (currentPosition < inputChannel.size()) {
+            if (journal != null) {
+                // Continue from the last checkpoint, discarding the data not flushed
+                currentPosition = journal.getResumeOffset(src, dst);
+                lastCheckpoint = currentPosition;
+                if (currentPosition == 0) {
+                    journal.onFileStarted(src, dst);
+                }
+                outputChannel = new RandomAccessFile(target, "rw").getChannel(); //$NON-NLS-1$
+                outputChannel.truncate(currentPosition);
+                inputChannel.position(currentPosition);
+                if (currentPosition > 0 && digest != null) {
+                    CopyVerifier.update(digest, inputChannel, 0, currentPosition, buffer);
+                }
+                if (currentPosition > 0 && progress != null) {
+                    progress.onBytesCopied(currentPosition);
+                }
+            } else {
+                outputChannel = new FileOutputStream(target).getChannel();
+            }
+            final long size = inputChannel.size();
+            while (currentPosition < size) {
                 // Short circuit if we've been cancelled. Show's over :(
                 if (program.isCancelled()) {
                     throw new CancelledOperationException();
                 }
 
-                if ((currentPosition + count) > inputChannel.size()) {
-                    count = (inputChannel.size() - currentPosition);
+                long count = Math.min(chunk, size - currentPosition);
+                long start = System.nanoTime();
+                long transferred = digest == null
+                        ? outputChannel.transferFrom(inputChannel, currentPosition, count)
+                        : transferAndDigest(inputChannel, outputChannel,
+                                currentPosition, count, digest, buffer);
+                if (transferred <= 0) {
+                    // The source file was truncated while copying
+                    break;
+                }
+                currentPosition = currentPosition + transferred;
+                if (progress != null) {
+                    progress.onBytesCopied(transferred);
+                }
+                if (journal != null
+                        && currentPosition - lastCheckpoint >= NIO_COPY_CHECKPOINT_SIZE) {
+                    outputChannel.force(false);
+                    journal.onCheckpoint(src, dst, currentPosition);
+                    lastCheckpoint = currentPosition;
+                }
+
+                // Adapt the size of the next chunk
+                long elapsed = (System.nanoTime() - start) / 1000000L;
+                if (elapsed < NIO_COPY_CHUNK_TIME / 2 && chunk < NIO_COPY_MAX_CHUNK_SIZE) {
+                    chunk = chunk * 2;
+                } else if (elapsed > NIO_COPY_CHUNK_TIME && chunk > NIO_COPY_CHUNK_SIZE) {
+                    chunk = chunk / 2;
                 }
-                outputChannel.transferFrom(inputChannel, currentPosition, count);
-                currentPosition = currentPosition + count;
+            }
+            if (journal != null || digest != null) {
+                // The data must be in the storage before rename or verify the file
+                outputChannel.force(false);
             }
         } catch (Throwable e) {
             Log.e(TAG,
-                    String.format(TAG, "Failed to copy from %s to %d", src, dst), e); //$NON-NLS-1$
-
-            try {
-                // Delete the destination file upon failure
-                if (!dst.delete()) {
-                    Log.e(TAG, "Failed to delete the dest file: " + dst);
-                }
-            } catch (Throwable t) {/**NON BLOCK**/}
+                    String.format("Failed to copy from %s to %s", src, dst), e); //$NON-NLS-1$
+
+            // Delete the destination file upon failure. A journaled copy keeps the
+            // data for resume the copy, unless the user cancelled it
+            if (journal == null || e instanceof CancelledOperationException
+                    || e instanceof ClosedByInterruptException) {
+                try {
+                    if (!target.delete()) {
+                        Log.e(TAG, "Failed to delete the dest file: " + target);
+                    }
+                } catch (Throwable t) {/**NON BLOCK**/}
+            }
 
             // Check if this error is an out of space exception and throw that specifically.
             // ENOSPC -> Error No Space
@@ -1239,9 +1433,62 @@ public final class FileHelper {
             }
 
         }
+        if (digest != null && !verifier.verify(src, target, digest.digest(), program)) {
+            // Don't keep a copy that doesn't match its source
+            if (!target.delete()) {
+                Log.e(TAG, "Failed to delete the dest file: " + target);
+            }
+            return true;
+        }
+        if (journal != null) {
+            // Replace the destination file atomically, once the data is in the storage
+            if (!target.renameTo(dst)) {
+                Log.e(TAG, String.format(
+                        "Failed to rename %s to %s", target, dst)); //$NON-NLS-1$
+                return false;
+            }
+            journal.onFileCopied(src, dst);
+        }
+        if (progress != null) {
+            progress.onFileCopied();
+        }
         return true;
     }
 
+    /**
+     * Method that transfers data between two channels through a buffer, updating
+     * a digest with the data.
+     *
+     * @param inputChannel The channel to read from (at its current position)
+     * @param outputChannel The channel to write to
+     * @param position The position where to write
+     * @param count The maximum number of bytes to transfer
+     * @param digest The digest
+     * @param buffer The buffer
+     * @return long The number of bytes transferred
+     * @throws IOException If the data can't be transferred
+     */
+    private static long transferAndDigest(FileChannel inputChannel, FileChannel outputChannel,
+            long position, long count, MessageDigest digest, ByteBuffer buffer)
+            throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), count - transferred));
+            int read = inputChannel.read(buffer);
+            if (read <= 0) {
+                break;
+            }
+            digest.update(buffer.array(), 0, read);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                outputChannel.write(buffer, position + transferred + buffer.position());
+            }
+            transferred += read;
+        }
+        return transferred;
+    }
+
     /**
      * Method that deletes a folder recursively
      *
@@ -0,0 +1,794 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.content.Context;
+import android.os.FileObserver;
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.model.FileSystemObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A persistent index of the names of the files of some roots of the filesystem
+ * (the storage volumes), so searches can be resolved without walking the filesystem.<br/>
+ * <br/>
+ * A root is built with a full (parallel) scan and saved to disk. Then it's maintained
+ * incrementally with a {@link FileObserver} per directory, and with the changes
+ * notified by the app itself (see {@link #notifyChanged(String)}). When an index is
+ * loaded from disk, only the directories modified after the index was saved are
+ * scanned again.<br/>
+ * <br/>
+ * All the changes of the index are applied from a single background thread. Queries
+ * can be done from any thread, and they return <code>null</code> if the directory
+ * isn't indexed or the index can't be trusted (is building or wasn't revalidated
+ * recently), so the caller must fall back to walk the filesystem. Even an observed
+ * root is only trusted for a while, because the kernel drops the events when its
+ * queue overflows.
+ */
+public final class FileNameIndex {
+
+    private static final String TAG = "FileNameIndex"; //$NON-NLS-1$
+
+    private static final String INDEX_DIR = "name_index"; //$NON-NLS-1$
+    private static final String INDEX_EXT = ".idx"; //$NON-NLS-1$
+    private static final int INDEX_MAGIC = 0x464e4958;
+    private static final int INDEX_VERSION = 1;
+
+    // The maximum number of entries of a root. Bigger roots are not indexed
+    private static final int MAX_ENTRIES = 250000;
+    // The maximum number of directories observed by all the roots, and the share of the
+    // inotify watches of the user (shared with the rest of the app) that can be used.
+    // Roots with more directories are only trusted for a while after they were revalidated
+    private static final int MAX_OBSERVERS = 4096;
+    private static final int MAX_WATCHES_SHARE = 4;
+    private static final String MAX_WATCHES_FILE =
+            "/proc/sys/fs/inotify/max_user_watches"; //$NON-NLS-1$
+    private static final long UNOBSERVED_TIMEOUT = 60000L;
+    // An observed root may have missed events (the queue of the kernel overflowed), so it's
+    // only trusted for this time after it was revalidated
+    private static final long OBSERVED_TIMEOUT = 600000L;
+    // Delay between a change of the index and its write to disk
+    private static final long SAVE_DELAY = 30000L;
+    // The granularity of the modification time of the directories in some filesystems
+    private static final long MTIME_GRANULARITY = 2000L;
+
+    private static final int OBSERVER_MASK =
+            FileObserver.CREATE | FileObserver.DELETE | FileObserver.MOVED_FROM |
+            FileObserver.MOVED_TO | FileObserver.CLOSE_WRITE;
+    // The event of the kernel (not defined by FileObserver) notified when events were lost
+    private static final int IN_Q_OVERFLOW = 0x00004000;
+
+    /**
+     * An entry of a directory.
+     */
+    private static final class Entry {
+        final String mName;
+        final boolean mDirectory;
+        final long mSize;
+        final long mLastModified;
+
+        Entry(String name, boolean directory, long size, long lastModified) {
+            this.mName = name;
+            this.mDirectory = directory;
+            this.mSize = size;
+            this.mLastModified = lastModified;
+        }
+
+        static Entry from(File file, boolean directory) {
+            return new Entry(file.getName(), directory,
+                    directory ? 0 : file.length(), file.lastModified());
+        }
+    }
+
+    /**
+     * An indexed root. The entries of every directory are immutable arrays, so
+     * they can be read safely while the index thread replaces them.
+     */
+    private final class Root {
+        final String mPath;
+        final Map<String, Entry[]> mDirs = new ConcurrentHashMap<String, Entry[]>();
+        // Only accessed from the index thread
+        final Map<String, IndexObserver> mObservers = new HashMap<String, IndexObserver>();
+        volatile boolean mReady;
+        volatile boolean mObserved;
+        volatile long mTimestamp;
+        boolean mSaveScheduled;
+
+        Root(String path) {
+            this.mPath = path;
+        }
+
+        boolean contains(String path) {
+            return path.equals(this.mPath) || path.startsWith(this.mPath + File.separator);
+        }
+
+        boolean isFresh() {
+            long age = System.currentTimeMillis() - this.mTimestamp;
+            return this.mReady && age < (this.mObserved ? OBSERVED_TIMEOUT : UNOBSERVED_TIMEOUT);
+        }
+    }
+
+    /**
+     * The observer of an indexed directory.
+     */
+    private final class IndexObserver extends FileObserver {
+        private final Root mRoot;
+        private final String mDirectory;
+
+        IndexObserver(Root root, String directory) {
+            super(directory, OBSERVER_MASK);
+            this.mRoot = root;
+            this.mDirectory = directory;
+        }
+
+        @Override
+        public void onEvent(int event, final String path) {
+            if ((event & IN_Q_OVERFLOW) != 0) {
+                // The index can't be maintained from the events anymore
+                final long time = System.currentTimeMillis();
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        rebuild(IndexObserver.this.mRoot, time);
+                    }
+                });
+                return;
+            }
+            if (path == null) {
+                return;
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    updateEntry(IndexObserver.this.mRoot, IndexObserver.this.mDirectory, path);
+                }
+            });
+        }
+    }
+
+    private static FileNameIndex sInstance;
+
+    private final File mIndexDir;
+    private final List<Root> mRoots = new ArrayList<Root>();
+    private final ScheduledExecutorService mExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+    private final int mMaxObservers;
+    // Only accessed from the index thread
+    private int mObservers;
+
+    /**
+     * Constructor of <code>FileNameIndex</code>.
+     *
+     * @param ctx The current context
+     */
+    private FileNameIndex(Context ctx) {
+        super();
+        this.mIndexDir = new File(ctx.getFilesDir(), INDEX_DIR);
+        this.mMaxObservers = getMaxObservers();
+    }
+
+    /**
+     * Method that returns the maximum number of directories that can be observed, as
+     * the share of the inotify watches of the user available for the index.
+     *
+     * @return int The maximum number of observers
+     */
+    private static int getMaxObservers() {
+        BufferedReader br = null;
+        try {
+            br = new BufferedReader(new FileReader(MAX_WATCHES_FILE));
+            int watches = Integer.parseInt(br.readLine().trim());
+            return Math.max(0, Math.min(MAX_OBSERVERS, watches / MAX_WATCHES_SHARE));
+        } catch (Exception e) {
+            return MAX_OBSERVERS;
+        } finally {
+            try {
+                if (br != null) {
+                    br.close();
+                }
+            } catch (Throwable ex) {/**NON BLOCK**/}
+        }
+    }
+
+    /**
+     * Method that returns the index of the application.
+     *
+     * @param ctx The current context
+     * @return FileNameIndex The index
+     */
+    public static synchronized FileNameIndex getInstance(Context ctx) {
+        if (sInstance == null) {
+            sInstance = new FileNameIndex(ctx.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Method that returns the index of the application, only if it was already created.
+     *
+     * @return FileNameIndex The index or <code>null</code>
+     */
+    public static synchronized FileNameIndex peekInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Method that indexes a root, loading its index from disk (and revalidating it) or
+     * building it from the scratch. This method blocks until the root is indexed.
+     *
+     * @param path The root to index
+     */
+    public void index(final String path) {
+        Future<?> f = this.mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                indexRoot(new File(path).getAbsolutePath());
+            }
+        });
+        try {
+            f.get();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to index " + path, e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Method that notifies the index that a file or directory was created, changed or
+     * removed by the application.
+     *
+     * @param path The path of the file or directory
+     */
+    public void notifyChanged(final String path) {
+        if (path == null) {
+            return;
+        }
+        this.mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File f = new File(path).getAbsoluteFile();
+                Root root = getRoot(f.getPath());
+                if (root != null && root.mReady && f.getParent() != null) {
+                    updateEntry(root, f.getParent(), f.getName());
+                    if (root.mDirs.containsKey(f.getPath())) {
+                        rescanDirectory(root, f.getPath());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Method that searches the index.
+     *
+     * @param directory The directory where to search
+     * @param matcher The matcher of the names
+     * @return List<FileSystemObject> The matched files and directories, or
+     * <code>null</code> if the directory isn't indexed or the index can't be trusted
+     */
+    public List<FileSystemObject> query(String directory, FileNameMatcher matcher) {
+        String dir = new File(directory).getAbsolutePath();
+        final Root root = getRoot(dir);
+        if (root == null) {
+            return null;
+        }
+        if (!root.isFresh()) {
+            if (root.mReady) {
+                // Revalidate the index, so next searches can use it
+                this.mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        revalidate(root);
+                    }
+                });
+            }
+            return null;
+        }
+
+        List<FileSystemObject> result = new ArrayList<FileSystemObject>();
+        String prefix = dir.endsWith(File.separator) ? dir : dir + File.separator;
+        for (Map.Entry<String, Entry[]> e : root.mDirs.entrySet()) {
+            String parent = e.getKey();
+            if (!parent.equals(dir) && !parent.startsWith(prefix)) {
+                continue;
+            }
+            Entry[] entries = e.getValue();
+            int cc = entries.length;
+            for (int i = 0; i < cc; i++) {
+                Entry entry = entries[i];
+                if (matcher.matches(entry.mName)) {
+                    result.add(FileHelper.createFileSystemObject(
+                            entry.mName, parent, entry.mDirectory,
+                            entry.mSize, entry.mLastModified));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Method that returns the root that contains a path.
+     *
+     * @param path The absolute path
+     * @return Root The root or <code>null</code> if the path isn't indexed
+     */
+    private Root getRoot(String path) {
+        synchronized (this.mRoots) {
+            for (Root root : this.mRoots) {
+                if (root.contains(path)) {
+                    return root;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method that indexes a root (index thread).
+     *
+     * @param path The absolute path of the root
+     */
+    private void indexRoot(String path) {
+        Root root = getRoot(path);
+        if (root != null && root.mPath.equals(path)) {
+            revalidate(root);
+            return;
+        }
+
+        File dir = new File(path);
+        if (dir.listFiles() == null) {
+            // Not accessible (or still not mounted)
+            Log.w(TAG, "Can't index " + path); //$NON-NLS-1$
+            return;
+        }
+        root = new Root(path);
+        boolean loaded = load(root);
+        synchronized (this.mRoots) {
+            this.mRoots.add(root);
+        }
+        if (loaded) {
+            revalidate(root);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        root.mTimestamp = start;
+        if (!scan(root, dir)) {
+            Log.w(TAG, "Too many files to index " + path); //$NON-NLS-1$
+            synchronized (this.mRoots) {
+                this.mRoots.remove(root);
+            }
+            return;
+        }
+        observe(root);
+        root.mReady = true;
+        save(root);
+        Log.i(TAG, String.format("Indexed %s: %d directories in %d ms", //$NON-NLS-1$
+                path, Integer.valueOf(root.mDirs.size()),
+                Long.valueOf(System.currentTimeMillis() - start)));
+    }
+
+    /**
+     * Method that scans (in parallel) a directory tree and adds it to the index.
+     *
+     * @param root The root
+     * @param dir The directory to scan
+     * @return boolean If the directory was scanned (it hasn't too many entries)
+     */
+    private boolean scan(Root root, File dir) {
+        final ConcurrentMap<String, List<Entry>> dirs =
+                new ConcurrentHashMap<String, List<Entry>>();
+        final AtomicInteger count = new AtomicInteger();
+        getEntries(dirs, dir.getPath());
+        ParallelFileWalker.walk(dir, new ParallelFileWalker.Visitor() {
+            @Override
+            public void onVisit(File file, boolean isDirectory) {
+                // The walk of a subdirectory could start before its parent visits it,
+                // so the lists are created by the first one that needs them
+                if (isDirectory) {
+                    getEntries(dirs, file.getPath());
+                }
+                getEntries(dirs, file.getParent()).add(Entry.from(file, isDirectory));
+                count.incrementAndGet();
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return count.get() > MAX_ENTRIES;
+            }
+        });
+        if (count.get() > MAX_ENTRIES) {
+            return false;
+        }
+        for (Map.Entry<String, List<Entry>> e : dirs.entrySet()) {
+            List<Entry> entries = e.getValue();
+            root.mDirs.put(e.getKey(), entries.toArray(new Entry[entries.size()]));
+        }
+        return true;
+    }
+
+    /**
+     * Method that returns the list of the entries of a directory of a scan, creating it
+     * if it doesn't exist.
+     *
+     * @param dirs The directories of the scan
+     * @param dir The directory
+     * @return List<Entry> The entries of the directory
+     */
+    private static List<Entry> getEntries(ConcurrentMap<String, List<Entry>> dirs, String dir) {
+        List<Entry> entries = dirs.get(dir);
+        if (entries == null) {
+            entries = Collections.synchronizedList(new ArrayList<Entry>());
+            List<Entry> current = dirs.putIfAbsent(dir, entries);
+            if (current != null) {
+                entries = current;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Method that revalidates an index, scanning again the directories modified after
+     * the index was checked the last time (index thread).
+     *
+     * @param root The root
+     */
+    private void revalidate(Root root) {
+        long start = System.currentTimeMillis();
+        long since = root.mTimestamp - MTIME_GRANULARITY;
+        for (String dir : new ArrayList<String>(root.mDirs.keySet())) {
+            if (!root.mDirs.containsKey(dir)) {
+                // Removed while revalidating
+                continue;
+            }
+            File f = new File(dir);
+            if (!f.isDirectory()) {
+                removeTree(root, dir);
+            } else if (f.lastModified() >= since) {
+                rescanDirectory(root, dir);
+            }
+        }
+        root.mTimestamp = start;
+        if (!root.mObserved) {
+            observe(root);
+        }
+        root.mReady = true;
+        scheduleSave(root);
+    }
+
+    /**
+     * Method that builds again an index from the scratch, because it missed changes
+     * (index thread).
+     *
+     * @param root The root
+     * @param since The time when the changes were missed
+     */
+    private void rebuild(Root root, long since) {
+        if (!root.mReady || root.mTimestamp > since) {
+            // Not built yet, or already built after the changes were missed
+            return;
+        }
+        Log.w(TAG, "Lost the changes of " + root.mPath + ". Indexing again"); //$NON-NLS-1$
+        root.mReady = false;
+        removeTree(root, root.mPath);
+        root.mObserved = false;
+        root.mTimestamp = System.currentTimeMillis();
+        if (!scan(root, new File(root.mPath))) {
+            Log.w(TAG, "Too many files to index " + root.mPath); //$NON-NLS-1$
+            synchronized (this.mRoots) {
+                this.mRoots.remove(root);
+            }
+            return;
+        }
+        observe(root);
+        root.mReady = true;
+        scheduleSave(root);
+    }
+
+    /**
+     * Method that scans again the entries of an indexed directory (index thread).
+     *
+     * @param root The root
+     * @param dir The directory
+     */
+    private void rescanDirectory(Root root, String dir) {
+        File[] files = new File(dir).listFiles();
+        if (files == null) {
+            removeTree(root, dir);
+            return;
+        }
+        Entry[] old = root.mDirs.get(dir);
+        Map<String, Entry> oldEntries = new HashMap<String, Entry>();
+        if (old != null) {
+            for (Entry e : old) {
+                oldEntries.put(e.mName, e);
+            }
+        }
+
+        Entry[] entries = new Entry[files.length];
+        for (int i = 0; i < files.length; i++) {
+            boolean isDirectory = files[i].isDirectory();
+            entries[i] = Entry.from(files[i], isDirectory);
+            Entry prev = oldEntries.remove(entries[i].mName);
+            if (isDirectory && (prev == null || !prev.mDirectory)) {
+                // A new directory
+                addTree(root, files[i]);
+            } else if (!isDirectory && prev != null && prev.mDirectory) {
+                removeTree(root, files[i].getPath());
+            }
+        }
+        root.mDirs.put(dir, entries);
+
+        // Removed directories
+        for (Entry e : oldEntries.values()) {
+            if (e.mDirectory) {
+                removeTree(root, new File(dir, e.mName).getPath());
+            }
+        }
+        scheduleSave(root);
+    }
+
+    /**
+     * Method that updates the entry of a directory (index thread).
+     *
+     * @param root The root
+     * @param dir The parent directory
+     * @param name The name of the entry
+     */
+    private void updateEntry(Root root, String dir, String name) {
+        Entry[] old = root.mDirs.get(dir);
+        if (old == null) {
+            return;
+        }
+        File f = new File(dir, name);
+        boolean exists = f.exists();
+        boolean isDirectory = exists && f.isDirectory();
+
+        List<Entry> entries = new ArrayList<Entry>(old.length + 1);
+        boolean wasDirectory = false;
+        for (Entry e : old) {
+            if (e.mName.equals(name)) {
+                wasDirectory = e.mDirectory;
+            } else {
+                entries.add(e);
+            }
+        }
+        if (exists) {
+            entries.add(Entry.from(f, isDirectory));
+        }
+        root.mDirs.put(dir, entries.toArray(new Entry[entries.size()]));
+
+        if (wasDirectory && !isDirectory) {
+            removeTree(root, f.getPath());
+        } else if (isDirectory && !root.mDirs.containsKey(f.getPath())) {
+            addTree(root, f);
+        }
+        scheduleSave(root);
+    }
+
+    /**
+     * Method that adds a new directory tree to the index (index thread).
+     *
+     * @param root The root
+     * @param dir The directory
+     */
+    private void addTree(Root root, File dir) {
+        if (!scan(root, dir)) {
+            // The root is too big now. Stop using it
+            Log.w(TAG, "Too many files to index " + root.mPath); //$NON-NLS-1$
+            root.mReady = false;
+            return;
+        }
+        if (root.mObserved) {
+            observe(root);
+        }
+    }
+
+    /**
+     * Method that removes a directory tree from the index (index thread).
+     *
+     * @param root The root
+     * @param dir The directory
+     */
+    private void removeTree(Root root, String dir) {
+        String prefix = dir + File.separator;
+        Iterator<String> it = root.mDirs.keySet().iterator();
+        while (it.hasNext()) {
+            String path = it.next();
+            if (path.equals(dir) || path.startsWith(prefix)) {
+                it.remove();
+                IndexObserver observer = root.mObservers.remove(path);
+                if (observer != null) {
+                    observer.stopWatching();
+                    this.mObservers--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Method that starts the observers of the indexed directories (index thread).
+     *
+     * @param root The root
+     */
+    private void observe(Root root) {
+        boolean observed = true;
+        for (String dir : root.mDirs.keySet()) {
+            if (root.mObservers.containsKey(dir)) {
+                continue;
+            }
+            if (this.mObservers >= this.mMaxObservers) {
+                observed = false;
+                break;
+            }
+            IndexObserver observer = new IndexObserver(root, dir);
+            observer.startWatching();
+            root.mObservers.put(dir, observer);
+            this.mObservers++;
+        }
+        root.mObserved = observed;
+    }
+
+    /**
+     * Method that schedules the write of the index to disk (index thread).
+     *
+     * @param root The root
+     */
+    private void scheduleSave(final Root root) {
+        if (root.mSaveScheduled) {
+            return;
+        }
+        root.mSaveScheduled = true;
+        this.mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                root.mSaveScheduled = false;
+                save(root);
+            }
+        }, SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method that returns the file of the index of a root.
+     *
+     * @param root The root
+     * @return File The index file
+     */
+    private File getIndexFile(Root root) {
+        return new File(this.mIndexDir,
+                Integer.toHexString(root.mPath.hashCode()) + INDEX_EXT);
+    }
+
+    /**
+     * Method that writes the index of a root to disk (index thread).
+     *
+     * @param root The root
+     */
+    private void save(Root root) {
+        if (!root.mReady) {
+            return;
+        }
+        // An observed index is in sync with the filesystem right now
+        long timestamp = root.mObserved ? System.currentTimeMillis() : root.mTimestamp;
+        File file = getIndexFile(root);
+        File tmp = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+        if (!this.mIndexDir.isDirectory() && !this.mIndexDir.mkdirs()) {
+            return;
+        }
+        DataOutputStream os = null;
+        try {
+            os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            os.writeInt(INDEX_MAGIC);
+            os.writeInt(INDEX_VERSION);
+            os.writeUTF(root.mPath);
+            os.writeLong(timestamp);
+            Map<String, Entry[]> dirs = new HashMap<String, Entry[]>(root.mDirs);
+            os.writeInt(dirs.size());
+            for (Map.Entry<String, Entry[]> e : dirs.entrySet()) {
+                os.writeUTF(e.getKey());
+                Entry[] entries = e.getValue();
+                os.writeInt(entries.length);
+                for (Entry entry : entries) {
+                    os.writeUTF(entry.mName);
+                    os.writeBoolean(entry.mDirectory);
+                    os.writeLong(entry.mSize);
+                    os.writeLong(entry.mLastModified);
+                }
+            }
+            os.close();
+            os = null;
+            if (!tmp.renameTo(file)) {
+                Log.w(TAG, "Can't write the index " + file); //$NON-NLS-1$
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write the index " + file, e); //$NON-NLS-1$
+        } finally {
+            try {
+                if (os != null) {
+                    os.close();
+                }
+            } catch (Throwable ex) {/**NON BLOCK**/}
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Method that reads the index of a root from disk (index thread).
+     *
+     * @param root The root
+     * @return boolean If the index was read
+     */
+    private boolean load(Root root) {
+        File file = getIndexFile(root);
+        if (!file.isFile()) {
+            return false;
+        }
+        DataInputStream is = null;
+        try {
+            is = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (is.readInt() != INDEX_MAGIC || is.readInt() != INDEX_VERSION
+                    || !is.readUTF().equals(root.mPath)) {
+                return false;
+            }
+            root.mTimestamp = is.readLong();
+            int dirs = is.readInt();
+            for (int i = 0; i < dirs; i++) {
+                String dir = is.readUTF();
+                Entry[] entries = new Entry[is.readInt()];
+                for (int j = 0; j < entries.length; j++) {
+                    entries[j] = new Entry(
+                            is.readUTF(), is.readBoolean(), is.readLong(), is.readLong());
+                }
+                root.mDirs.put(dir, entries);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read the index " + file, e); //$NON-NLS-1$
+            root.mDirs.clear();
+            return false;
+        } finally {
+            try {
+                if (is != null) {
+                    is.close();
+                }
+            } catch (Throwable ex) {/**NON BLOCK**/}
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import com.cyanogenmod.filemanager.model.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A matcher of file names compiled from the terms of a {@link Query}.<br/>
+ * <br/>
+ * Every term of the query is translated as {@link SearchHelper#toRegExp(String, boolean)}
+ * does (<code>*term*</code>, where the inner wildcards split the term in literal segments),
+ * and the file name matches if any of the terms matches. Segments are case-folded once
+ * when the query is compiled, and names are matched in place, without compiling or
+ * running regular expressions and without allocating objects.
+ */
+public final class FileNameMatcher {
+
+    private static final char WILDCARD = '*';
+
+    // The literal segments (case-folded) of every term. A term without segments
+    // matches everything
+    private final char[][][] mTerms;
+
+    /**
+     * Constructor of <code>FileNameMatcher</code>.
+     *
+     * @param query The query to compile
+     */
+    public FileNameMatcher(Query query) {
+        super();
+        List<char[][]> terms = new ArrayList<char[][]>(query.getSlotsCount());
+        int cc = query.getSlotsCount();
+        for (int i = 0; i < cc; i++) {
+            String slot = query.getSlot(i);
+            if (slot == null || slot.trim().length() == 0) {
+                // An empty slot doesn't match anything
+                continue;
+            }
+            char[][] term = compileTerm(slot);
+            if (term.length == 0) {
+                // Matches everything. Other terms are not needed
+                terms.clear();
+                terms.add(term);
+                break;
+            }
+            terms.add(term);
+        }
+        this.mTerms = terms.toArray(new char[terms.size()][][]);
+    }
+
+    /**
+     * Method that returns if the name matches some of the terms of the query.
+     *
+     * @param name The name to check
+     * @return boolean If the name matches the query
+     */
+    public boolean matches(String name) {
+        final int cc = this.mTerms.length;
+        for (int i = 0; i < cc; i++) {
+            if (matchesTerm(name, this.mTerms[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method that returns if the query can match some name.
+     *
+     * @return boolean If the query has terms
+     */
+    public boolean isEmpty() {
+        return this.mTerms.length == 0;
+    }
+
+    /**
+     * Method that returns if the name contains all the segments of a term, in order.
+     *
+     * @param name The name to check
+     * @param term The segments of the term
+     * @return boolean If the name matches the term
+     */
+    private static boolean matchesTerm(String name, char[][] term) {
+        int from = 0;
+        final int cc = term.length;
+        for (int i = 0; i < cc; i++) {
+            int pos = indexOfIgnoreCase(name, term[i], from);
+            if (pos == -1) {
+                return false;
+            }
+            from = pos + term[i].length;
+        }
+        return true;
+    }
+
+    /**
+     * Method that finds a case-folded segment in a name.
+     *
+     * @param name The name where to search
+     * @param segment The case-folded segment
+     * @param from The index where start the search
+     * @return int The index of the segment in the name, or -1 if not found
+     */
+    private static int indexOfIgnoreCase(String name, char[] segment, int from) {
+        final int len = segment.length;
+        final int max = name.length() - len;
+        final char first = segment[0];
+        for (int i = from; i <= max; i++) {
+            if (fold(name.charAt(i)) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < len && fold(name.charAt(i + j)) == segment[j]) {
+                j++;
+            }
+            if (j == len) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method that folds the case of a character.
+     *
+     * @param c The character
+     * @return char The case-folded character
+     */
+    private static char fold(char c) {
+        if (c < 0x80) {
+            return (c >= 'A' && c <= 'Z') ? (char)(c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Method that compiles a term of the query into its literal segments. Only
+     * letters, digits, spaces and apostrophes are significant (as in a search regexp);
+     * the wildcards split the segments.
+     *
+     * @param query The term of the query
+     * @return char[][] The case-folded segments
+     */
+    private static char[][] compileTerm(String query) {
+        List<char[]> segments = new ArrayList<char[]>();
+        StringBuilder sb = new StringBuilder(query.length());
+        final int len = query.length();
+        for (int i = 0; i <= len; i++) {
+            char ch = i < len ? query.charAt(i) : WILDCARD;
+            if (ch == WILDCARD) {
+                if (sb.length() > 0) {
+                    char[] segment = new char[sb.length()];
+                    for (int j = 0; j < segment.length; j++) {
+                        segment[j] = fold(sb.charAt(j));
+                    }
+                    segments.add(segment);
+                    sb.setLength(0);
+                }
+            } else if (Character.isLetterOrDigit(ch) || ch == ' ' || ch == '\'') {
+                sb.append(ch);
+            }
+        }
+        return segments.toArray(new char[segments.size()][]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (char[][] term : this.mTerms) {
+            if (sb.length() > 0) {
+                sb.append('|');
+            }
+            sb.append(WILDCARD);
+            for (char[] segment : term) {
+                sb.append(segment).append(WILDCARD);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+}
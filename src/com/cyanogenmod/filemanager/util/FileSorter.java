@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import com.cyanogenmod.filemanager.model.FileSystemObject;
+import com.cyanogenmod.filemanager.model.ParentDirectory;
+import com.cyanogenmod.filemanager.preferences.NavigationSortMode;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A helper class that sorts the listed files as {@link FileHelper#doCompare(
+ * FileSystemObject, FileSystemObject, NavigationSortMode, boolean)} does.<br/>
+ * <br/>
+ * The sort keys of every file (the group, the case folded name, the date or size
+ * and the mime/type category) are computed once into primitive arrays, and then
+ * the indexes of the files are sorted with a stable merge sort over these keys,
+ * so the comparisons don't access the preferences, the names or the mime/types
+ * database.
+ */
+public final class FileSorter {
+
+    // The groups of the files (parent directory goes first, then directories if
+    // the user wants to see the directories first, and then the rest)
+    private static final int GROUP_PARENT = 0;
+    private static final int GROUP_DIRECTORY = 1;
+    private static final int GROUP_OTHER = 2;
+
+    // The kind of the key of the sort mode
+    private static final int KEY_NAME = 0;
+    private static final int KEY_LONG = 1;
+    private static final int KEY_CATEGORY = 2;
+    private static final int KEY_PATH = 3;
+
+    private final int[] mGroups;
+    private final String[] mNames;
+    private final long[] mLongs;
+    private final int[] mCategories;
+    private final int mKey;
+    private final int mOrder;
+
+    /**
+     * Constructor of <code>FileSorter</code>.
+     *
+     * @param files The files to sort
+     * @param mode The sort mode
+     * @param showDirsFirst If the directories must be sorted before the rest of files
+     * @param caseSensitive If the names must be compared case sensitive
+     */
+    private FileSorter(List<FileSystemObject> files, NavigationSortMode mode,
+            boolean showDirsFirst, boolean caseSensitive) {
+        super();
+        int id = mode.getId();
+        if (id == NavigationSortMode.NAME_ASC.getId()
+                || id == NavigationSortMode.NAME_DESC.getId()) {
+            this.mKey = KEY_NAME;
+        } else if (id == NavigationSortMode.DATE_ASC.getId()
+                || id == NavigationSortMode.DATE_DESC.getId()
+                || id == NavigationSortMode.SIZE_ASC.getId()
+                || id == NavigationSortMode.SIZE_DESC.getId()) {
+            this.mKey = KEY_LONG;
+        } else if (id == NavigationSortMode.TYPE_ASC.getId()
+                || id == NavigationSortMode.TYPE_DESC.getId()) {
+            this.mKey = KEY_CATEGORY;
+        } else {
+            this.mKey = KEY_PATH;
+        }
+        this.mOrder = (id == NavigationSortMode.NAME_DESC.getId()
+                || id == NavigationSortMode.DATE_DESC.getId()
+                || id == NavigationSortMode.SIZE_DESC.getId()
+                || id == NavigationSortMode.TYPE_DESC.getId()) ? -1 : 1;
+        boolean isDate = id == NavigationSortMode.DATE_ASC.getId()
+                || id == NavigationSortMode.DATE_DESC.getId();
+
+        int cc = files.size();
+        this.mGroups = new int[cc];
+        this.mNames = (this.mKey == KEY_NAME || this.mKey == KEY_PATH) ? new String[cc] : null;
+        this.mLongs = this.mKey == KEY_LONG ? new long[cc] : null;
+        this.mCategories = this.mKey == KEY_CATEGORY ? new int[cc] : null;
+        for (int i = 0; i < cc; i++) {
+            FileSystemObject fso = files.get(i);
+            this.mGroups[i] = getGroup(fso, showDirsFirst);
+
+            switch (this.mKey) {
+                case KEY_NAME:
+                    this.mNames[i] = caseSensitive ? fso.getName() : fold(fso.getName());
+                    break;
+                case KEY_LONG:
+                    if (isDate) {
+                        Date date = fso.getLastModifiedTime();
+                        this.mLongs[i] = date == null ? 0 : date.getTime();
+                    } else {
+                        // Directories are sorted by the size of its tree, if it's known.
+                        // The size is kept in the file, so the comparator (and the
+                        // lookups in the sorted listing) use the same key
+                        fso.setSortSize(FolderSizeCache.getFolderSize(fso));
+                        this.mLongs[i] = fso.getSortSize();
+                    }
+                    break;
+                case KEY_CATEGORY:
+                    // Shouldn't need context here, mimetypes should be loaded
+                    this.mCategories[i] = MimeTypeHelper.getCategory(null, fso).ordinal();
+                    break;
+                default:
+                    this.mNames[i] = fso.getFullPath();
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Method that sorts the files in place.
+     *
+     * @param files The files to sort
+     * @param mode The sort mode
+     * @param showDirsFirst If the directories must be sorted before the rest of files
+     * @param caseSensitive If the names must be compared case sensitive
+     */
+    public static void sort(List<FileSystemObject> files, NavigationSortMode mode,
+            boolean showDirsFirst, boolean caseSensitive) {
+        int cc = files.size();
+        if (cc < 2) {
+            return;
+        }
+
+        FileSorter sorter = new FileSorter(files, mode, showDirsFirst, caseSensitive);
+        int[] indexes = new int[cc];
+        for (int i = 0; i < cc; i++) {
+            indexes[i] = i;
+        }
+        sorter.mergeSort(indexes, new int[cc], 0, cc);
+
+        FileSystemObject[] sorted = new FileSystemObject[cc];
+        for (int i = 0; i < cc; i++) {
+            sorted[i] = files.get(indexes[i]);
+        }
+        for (int i = 0; i < cc; i++) {
+            files.set(i, sorted[i]);
+        }
+    }
+
+    /**
+     * Method that returns a comparator that sorts the files as {@link #sort(List,
+     * NavigationSortMode, boolean, boolean)} does, for locate a file in a sorted listing.
+     *
+     * @param mode The sort mode
+     * @param showDirsFirst If the directories must be sorted before the rest of files
+     * @param caseSensitive If the names must be compared case sensitive
+     * @return Comparator<FileSystemObject> The comparator
+     */
+    public static Comparator<FileSystemObject> newComparator(final NavigationSortMode mode,
+            final boolean showDirsFirst, final boolean caseSensitive) {
+        return new Comparator<FileSystemObject>() {
+            @Override
+            public int compare(FileSystemObject lhs, FileSystemObject rhs) {
+                int gl = getGroup(lhs, showDirsFirst);
+                int gr = getGroup(rhs, showDirsFirst);
+                if (gl != gr) {
+                    return gl < gr ? -1 : 1;
+                }
+                if (gl == GROUP_PARENT) {
+                    return 0;
+                }
+                return FileHelper.doCompare(lhs, rhs, mode, caseSensitive);
+            }
+        };
+    }
+
+    /**
+     * Method that returns the group of a file.
+     *
+     * @param fso The file
+     * @param showDirsFirst If the directories must be sorted before the rest of files
+     * @return int The group
+     */
+    private static int getGroup(FileSystemObject fso, boolean showDirsFirst) {
+        if (fso instanceof ParentDirectory) {
+            return GROUP_PARENT;
+        }
+        if (showDirsFirst && FileHelper.isDirectory(fso)) {
+            return GROUP_DIRECTORY;
+        }
+        return GROUP_OTHER;
+    }
+
+    /**
+     * Method that folds the case of a name, so the natural order of the folded
+     * names is the same as the {@link String#compareToIgnoreCase(String)} order.
+     *
+     * @param name The name
+     * @return String The folded name
+     */
+    static String fold(String name) {
+        int len = name.length();
+        char[] folded = null;
+        for (int i = 0; i < len; i++) {
+            char c = name.charAt(i);
+            char f = Character.toLowerCase(Character.toUpperCase(c));
+            if (f != c) {
+                if (folded == null) {
+                    folded = name.toCharArray();
+                }
+                folded[i] = f;
+            }
+        }
+        return folded == null ? name : new String(folded);
+    }
+
+    /**
+     * Method that compares the keys of two files.
+     *
+     * @param a The index of the first file
+     * @param b The index of the second file
+     * @return int a negative integer, zero, or a positive integer as the first file
+     * goes before, is equal, or goes after the second file
+     */
+    private int compare(int a, int b) {
+        int ga = this.mGroups[a];
+        int gb = this.mGroups[b];
+        if (ga != gb) {
+            return ga < gb ? -1 : 1;
+        }
+        if (ga == GROUP_PARENT) {
+            return 0;
+        }
+
+        switch (this.mKey) {
+            case KEY_NAME:
+                return this.mNames[a].compareTo(this.mNames[b]) * this.mOrder;
+            case KEY_LONG:
+                return Long.compare(this.mLongs[a], this.mLongs[b]) * this.mOrder;
+            case KEY_CATEGORY:
+                return (this.mCategories[a] - this.mCategories[b]) * this.mOrder;
+            default:
+                return this.mNames[a].compareTo(this.mNames[b]);
+        }
+    }
+
+    /**
+     * Method that sorts (stable) a range of the indexes of the files.
+     *
+     * @param indexes The indexes to sort
+     * @param tmp A buffer of the same size of the indexes
+     * @param from The first index of the range (inclusive)
+     * @param to The last index of the range (exclusive)
+     */
+    private void mergeSort(int[] indexes, int[] tmp, int from, int to) {
+        int len = to - from;
+        if (len < 8) {
+            // Insertion sort for small ranges
+            for (int i = from + 1; i < to; i++) {
+                int v = indexes[i];
+                int j = i - 1;
+                while (j >= from && compare(indexes[j], v) > 0) {
+                    indexes[j + 1] = indexes[j];
+                    j--;
+                }
+                indexes[j + 1] = v;
+            }
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        mergeSort(indexes, tmp, from, mid);
+        mergeSort(indexes, tmp, mid, to);
+        if (compare(indexes[mid - 1], indexes[mid]) <= 0) {
+            // Already in order
+            return;
+        }
+
+        System.arraycopy(indexes, from, tmp, from, len);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to) {
+            if (compare(tmp[j], tmp[i]) < 0) {
+                indexes[k++] = tmp[j++];
+            } else {
+                indexes[k++] = tmp[i++];
+            }
+        }
+        while (i < mid) {
+            indexes[k++] = tmp[i++];
+        }
+        while (j < to) {
+            indexes[k++] = tmp[j++];
+        }
+    }
+}
@@ -0,0 +1,569 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.FileManagerApplication;
+import com.cyanogenmod.filemanager.model.Directory;
+import com.cyanogenmod.filemanager.model.FileSystemObject;
+import com.cyanogenmod.filemanager.model.ParentDirectory;
+import com.cyanogenmod.filemanager.util.MimeTypeHelper.MimeTypeCategory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent cache of the usage of the directories, so the size of a directory
+ * tree can be known without walk the tree again.<br/>
+ * <br/>
+ * Every directory has its own {@link Summary}: the modification time of the directory
+ * when it was summarized, the usage of its own files (number, size and space used by
+ * every {@link MimeTypeCategory}), the names of its child directories and the totals
+ * of the whole tree. A summary is only valid while the
+ * directory keeps the same modification time, so a tree is revalidated bottom-up with
+ * only one stat per directory, and only the directories that changed are listed again
+ * (see {@link FolderUsageEngine#computeCached(File)}). The changes made by the app
+ * itself must be notified (see {@link #invalidate(String)}), because the changes of
+ * the content of a file don't change the modification time of its directory. The
+ * directories modified just before they were listed are not cached, because a later
+ * change in the same granule of the modification time wouldn't be noticed.<br/>
+ * <br/>
+ * The size of a tree is only returned without revalidating it (see
+ * {@link #getFolderSize(FileSystemObject)}) if the whole tree was revalidated recently,
+ * so the changes of its subdirectories are noticed too.<br/>
+ * <br/>
+ * The cache holds the most recently used directories (up to {@link #MAX_ENTRIES}),
+ * and it's written to the data directory of the app a while after it changes. This
+ * class is thread-safe.
+ */
+public final class FolderSizeCache {
+
+    private static final String TAG = "FolderSizeCache"; //$NON-NLS-1$
+
+    private static final String CACHE_FILE = "folder_size_cache.bin"; //$NON-NLS-1$
+    private static final int MAGIC = 0x434d4653;
+    private static final int VERSION = 2;
+
+    /**
+     * The maximum number of directories in the cache.
+     */
+    public static final int MAX_ENTRIES = 20000;
+
+    // Delay between a change of the cache and its write to disk
+    private static final long SAVE_DELAY = 30000L;
+    // The granularity of the modification time of the directories in some filesystems
+    private static final long MTIME_GRANULARITY = 2000L;
+    // The time a tree is trusted after all its directories were checked
+    private static final long VERIFIED_TIMEOUT = 60000L;
+
+    /**
+     * The usage of a directory. Summaries are immutable (except the time when the
+     * modification times of its tree were checked the last time).
+     */
+    public static final class Summary {
+        final long mLastModified;
+        // The usage of the own entries of the directory. The space used by the child
+        // directories themselves is accounted as NONE
+        final int mFiles;
+        final long mSize;
+        final long[] mCategories;
+        final long[] mCategorySizes;
+        final String[] mChildren;
+        // The usage of the whole tree
+        final int mTotalFolders;
+        final int mTotalFiles;
+        final long mTotalSize;
+        final long[] mTotalCategories;
+        final long[] mTotalCategorySizes;
+        volatile long mVerified;
+
+        Summary(long lastModified, int files, long size, long[] categories,
+                long[] categorySizes, String[] children, int totalFolders, int totalFiles,
+                long totalSize, long[] totalCategories, long[] totalCategorySizes) {
+            this.mLastModified = lastModified;
+            this.mFiles = files;
+            this.mSize = size;
+            this.mCategories = categories;
+            this.mCategorySizes = categorySizes;
+            this.mChildren = children;
+            this.mTotalFolders = totalFolders;
+            this.mTotalFiles = totalFiles;
+            this.mTotalSize = totalSize;
+            this.mTotalCategories = totalCategories;
+            this.mTotalCategorySizes = totalCategorySizes;
+        }
+
+        /**
+         * Method that returns the number of files of a category in the whole tree.
+         *
+         * @param category The category
+         * @return long The number of files
+         */
+        public long getTotalFiles(MimeTypeCategory category) {
+            return this.mTotalCategories[category.ordinal()];
+        }
+
+        /**
+         * Method that returns the space used by a category in the whole tree.
+         *
+         * @param category The category
+         * @return long The space used (in bytes)
+         */
+        public long getTotalSize(MimeTypeCategory category) {
+            return this.mTotalCategorySizes[category.ordinal()];
+        }
+    }
+
+    // The summaries by path, in access order (the eldest is the least recently used)
+    private static final LinkedHashMap<String, Summary> sEntries =
+            new LinkedHashMap<String, Summary>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Summary> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+    // The trees being verified
+    private static final Set<String> sVerifying = new HashSet<String>();
+    private static final Object sLoadSync = new Object();
+    private static volatile boolean sLoaded;
+    private static boolean sLoadScheduled;
+    private static boolean sSaveScheduled;
+    private static ScheduledExecutorService sExecutor;
+
+    /**
+     * Constructor of <code>FolderSizeCache</code>.
+     */
+    private FolderSizeCache() {
+        super();
+    }
+
+    /**
+     * Method that returns the summary of a directory.
+     *
+     * @param path The absolute path of the directory
+     * @param lastModified The current modification time of the directory
+     * @return Summary The summary, or null if the directory isn't cached or it changed
+     * since it was summarized
+     */
+    static Summary get(String path, long lastModified) {
+        ensureLoaded();
+        synchronized (sEntries) {
+            Summary summary = sEntries.get(path);
+            if (summary == null || summary.mLastModified != lastModified) {
+                return null;
+            }
+            return summary;
+        }
+    }
+
+    /**
+     * Method that stores the summary of a directory, which tree was just revalidated.
+     * The summary isn't stored if the directory was modified just before it was listed.
+     *
+     * @param path The absolute path of the directory
+     * @param summary The summary
+     * @param listed The time when the directory was listed
+     */
+    static void put(String path, Summary summary, long listed) {
+        if (listed - summary.mLastModified < MTIME_GRANULARITY) {
+            return;
+        }
+        ensureLoaded();
+        summary.mVerified = System.currentTimeMillis();
+        synchronized (sEntries) {
+            sEntries.put(path, summary);
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Method that returns the cached size of a directory tree. This method doesn't
+     * block, so it can be used from the ui thread. If the tree wasn't revalidated
+     * recently, the size isn't known until it's revalidated in background.
+     *
+     * @param fso The directory
+     * @return long The size of the tree, or -1 if it isn't known
+     */
+    public static long getFolderSize(FileSystemObject fso) {
+        if (!(fso instanceof Directory) || fso instanceof ParentDirectory) {
+            return -1;
+        }
+        Date lastModified = fso.getLastModifiedTime();
+        if (lastModified == null) {
+            return -1;
+        }
+        if (!sLoaded) {
+            scheduleLoad();
+            return -1;
+        }
+        Summary summary;
+        synchronized (sEntries) {
+            summary = sEntries.get(fso.getFullPath());
+        }
+        // Not all the consoles list the times with milliseconds
+        if (summary == null
+                || summary.mLastModified / 1000L != lastModified.getTime() / 1000L) {
+            return -1;
+        }
+        if (System.currentTimeMillis() - summary.mVerified > VERIFIED_TIMEOUT) {
+            scheduleVerify(fso.getFullPath());
+            return -1;
+        }
+        return summary.mTotalSize;
+    }
+
+    /**
+     * Method that checks in background that no directory of a tree changed since the
+     * tree was summarized. The summary of a changed tree is removed.
+     *
+     * @param path The absolute path of the directory
+     */
+    private static void scheduleVerify(final String path) {
+        synchronized (sEntries) {
+            if (!sVerifying.add(path)) {
+                return;
+            }
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.currentTimeMillis();
+                    Summary summary;
+                    synchronized (sEntries) {
+                        summary = sEntries.get(path);
+                    }
+                    if (summary != null) {
+                        if (isUnchanged(new File(path), summary)) {
+                            summary.mVerified = start;
+                        } else {
+                            synchronized (sEntries) {
+                                if (sEntries.get(path) == summary) {
+                                    sEntries.remove(path);
+                                }
+                            }
+                        }
+                    }
+                    synchronized (sEntries) {
+                        sVerifying.remove(path);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Method that checks that every directory of a tree has a summary, and that they
+     * keep the modification time they had when they were summarized.
+     *
+     * @param dir The directory
+     * @param summary The summary of the directory
+     * @return boolean If the tree didn't change
+     */
+    private static boolean isUnchanged(File dir, Summary summary) {
+        if (dir.lastModified() != summary.mLastModified) {
+            return false;
+        }
+        for (String name : summary.mChildren) {
+            File file = new File(dir, name);
+            Summary child;
+            synchronized (sEntries) {
+                child = sEntries.get(file.getAbsolutePath());
+            }
+            if (child == null || !isUnchanged(file, child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method that invalidates the summaries affected by a change of a file or directory:
+     * the summaries of its ancestors, its own summary and the summaries of its children.
+     *
+     * @param path The changed file or directory
+     */
+    public static void invalidate(String path) {
+        if (path == null) {
+            return;
+        }
+        String normalized = path;
+        if (normalized.length() > 1 && normalized.endsWith(File.separator)) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        String children = normalized.endsWith(File.separator) ?
+                normalized : normalized + File.separator;
+        synchronized (sEntries) {
+            boolean changed = false;
+            Iterator<String> it = sEntries.keySet().iterator();
+            while (it.hasNext()) {
+                String dir = it.next();
+                if (dir.equals(normalized) || dir.startsWith(children)) {
+                    it.remove();
+                    changed = true;
+                }
+            }
+            String parent = new File(normalized).getParent();
+            while (parent != null) {
+                changed |= sEntries.remove(parent) != null;
+                parent = new File(parent).getParent();
+            }
+            if (changed) {
+                scheduleSave();
+            }
+        }
+    }
+
+    /**
+     * Method that returns the file of the cache.
+     *
+     * @return File The file of the cache
+     */
+    private static File getCacheFile() {
+        return new File(FileManagerApplication.getInstance().getFilesDir(), CACHE_FILE);
+    }
+
+    /**
+     * Method that returns the thread of the cache, creating it the first time (lock held).
+     *
+     * @return ScheduledExecutorService The thread of the cache
+     */
+    private static ScheduledExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadScheduledExecutor();
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Method that reads the cache from disk in background, if it wasn't read yet.
+     */
+    private static void scheduleLoad() {
+        synchronized (sEntries) {
+            if (sLoadScheduled) {
+                return;
+            }
+            sLoadScheduled = true;
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    ensureLoaded();
+                }
+            });
+        }
+    }
+
+    /**
+     * Method that reads the cache from disk, if it wasn't read yet. The file is read
+     * without holding the lock of the entries, so readers are not blocked meanwhile.
+     */
+    private static void ensureLoaded() {
+        if (sLoaded) {
+            return;
+        }
+        synchronized (sLoadSync) {
+            if (sLoaded) {
+                return;
+            }
+            Map<String, Summary> loaded = read();
+            synchronized (sEntries) {
+                // Entries are stored from the least to the most recently used. Don't
+                // overwrite the summaries computed while the file was read
+                for (Map.Entry<String, Summary> e : loaded.entrySet()) {
+                    if (!sEntries.containsKey(e.getKey())) {
+                        sEntries.put(e.getKey(), e.getValue());
+                    }
+                }
+                sLoaded = true;
+            }
+        }
+    }
+
+    /**
+     * Method that reads the file of the cache.
+     *
+     * @return Map<String, Summary> The summaries, from the least to the most recently used
+     */
+    private static Map<String, Summary> read() {
+        Map<String, Summary> entries = new LinkedHashMap<String, Summary>();
+        File file = getCacheFile();
+        if (!file.isFile()) {
+            return entries;
+        }
+        final int count = MimeTypeCategory.values().length;
+        DataInputStream is = null;
+        try {
+            is = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (is.readInt() != MAGIC || is.readInt() != VERSION || is.readInt() != count) {
+                return entries;
+            }
+            int n = is.readInt();
+            for (int i = 0; i < n; i++) {
+                String path = is.readUTF();
+                long lastModified = is.readLong();
+                int files = is.readInt();
+                long size = is.readLong();
+                long[] categories = readLongs(is, count);
+                long[] categorySizes = readLongs(is, count);
+                String[] children = new String[is.readInt()];
+                for (int j = 0; j < children.length; j++) {
+                    children[j] = is.readUTF();
+                }
+                int totalFolders = is.readInt();
+                int totalFiles = is.readInt();
+                long totalSize = is.readLong();
+                long[] totalCategories = readLongs(is, count);
+                long[] totalCategorySizes = readLongs(is, count);
+                entries.put(path, new Summary(lastModified, files, size, categories,
+                        categorySizes, children, totalFolders, totalFiles, totalSize,
+                        totalCategories, totalCategorySizes));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read the folder size cache " + file, e); //$NON-NLS-1$
+            entries.clear();
+        } finally {
+            try {
+                if (is != null) {
+                    is.close();
+                }
+            } catch (Throwable ex) {/**NON BLOCK**/}
+        }
+        return entries;
+    }
+
+    /**
+     * Method that reads an array of longs.
+     *
+     * @param is The stream
+     * @param count The number of longs
+     * @return long[] The longs
+     * @throws IOException If the stream can't be read
+     */
+    private static long[] readLongs(DataInputStream is, int count) throws IOException {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = is.readLong();
+        }
+        return values;
+    }
+
+    /**
+     * Method that schedules the write of the cache to disk (lock held).
+     */
+    private static void scheduleSave() {
+        if (sSaveScheduled) {
+            return;
+        }
+        sSaveScheduled = true;
+        getExecutor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                List<String> paths;
+                List<Summary> summaries;
+                synchronized (sEntries) {
+                    sSaveScheduled = false;
+                    paths = new ArrayList<String>(sEntries.keySet());
+                    summaries = new ArrayList<Summary>(sEntries.values());
+                }
+                save(paths, summaries);
+            }
+        }, SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method that writes the cache to disk.
+     *
+     * @param paths The paths of the directories, from the least to the most recently used
+     * @param summaries The summaries of the directories, in the same order
+     */
+    private static void save(List<String> paths, List<Summary> summaries) {
+        File file = getCacheFile();
+        File tmp = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+        DataOutputStream os = null;
+        try {
+            os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            os.writeInt(MAGIC);
+            os.writeInt(VERSION);
+            os.writeInt(MimeTypeCategory.values().length);
+            int cc = paths.size();
+            os.writeInt(cc);
+            for (int i = 0; i < cc; i++) {
+                Summary summary = summaries.get(i);
+                os.writeUTF(paths.get(i));
+                os.writeLong(summary.mLastModified);
+                os.writeInt(summary.mFiles);
+                os.writeLong(summary.mSize);
+                writeLongs(os, summary.mCategories);
+                writeLongs(os, summary.mCategorySizes);
+                os.writeInt(summary.mChildren.length);
+                for (String child : summary.mChildren) {
+                    os.writeUTF(child);
+                }
+                os.writeInt(summary.mTotalFolders);
+                os.writeInt(summary.mTotalFiles);
+                os.writeLong(summary.mTotalSize);
+                writeLongs(os, summary.mTotalCategories);
+                writeLongs(os, summary.mTotalCategorySizes);
+            }
+            os.close();
+            os = null;
+            if (!tmp.renameTo(file)) {
+                Log.w(TAG, "Can't write the folder size cache " + file); //$NON-NLS-1$
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write the folder size cache " + file, e); //$NON-NLS-1$
+        } finally {
+            try {
+                if (os != null) {
+                    os.close();
+                }
+            } catch (Throwable ex) {/**NON BLOCK**/}
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Method that writes an array of longs.
+     *
+     * @param os The stream
+     * @param values The longs
+     * @throws IOException If the stream can't be written
+     */
+    private static void writeLongs(DataOutputStream os, long[] values) throws IOException {
+        for (long value : values) {
+            os.writeLong(value);
+        }
+    }
+}
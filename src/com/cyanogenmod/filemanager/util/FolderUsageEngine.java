@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.os.SystemClock;
+
+import com.cyanogenmod.filemanager.commands.AsyncResultListener;
+import com.cyanogenmod.filemanager.model.FolderUsage;
+import com.cyanogenmod.filemanager.util.FolderSizeCache.Summary;
+import com.cyanogenmod.filemanager.util.MimeTypeHelper.MimeTypeCategory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A class that computes the usage of a folder.<br/>
+ * <br/>
+ * Every thread that adds entries has its own counters (primitive values, one per
+ * {@link MimeTypeCategory}), so the threads don't compete for the same data. The
+ * counters are merged into the {@link FolderUsage} only when a partial result is
+ * published, and partial results are published at most every
+ * {@link #PARTIAL_INTERVAL} milliseconds, whatever the number of entries.
+ */
+public final class FolderUsageEngine {
+
+    /**
+     * The minimum time between two partial results (in milliseconds).
+     */
+    public static final long PARTIAL_INTERVAL = 250L;
+
+    /**
+     * The counters of a thread.
+     */
+    private static final class Counters {
+        int mFolders;
+        int mFiles;
+        long mSize;
+        final long[] mCategories = new long[MimeTypeCategory.values().length];
+    }
+
+    private final FolderUsage mFolderUsage;
+    private final AsyncResultListener mAsyncResultListener;
+
+    private final List<Counters> mCounters = new ArrayList<Counters>();
+    private final ThreadLocal<Counters> mThreadCounters = new ThreadLocal<Counters>() {
+        @Override
+        protected Counters initialValue() {
+            Counters counters = new Counters();
+            synchronized (FolderUsageEngine.this.mCounters) {
+                FolderUsageEngine.this.mCounters.add(counters);
+            }
+            return counters;
+        }
+    };
+    private final AtomicLong mNextPartial;
+    private volatile boolean mStopped;
+
+    /**
+     * Constructor of <code>FolderUsageEngine</code>.
+     *
+     * @param folderUsage The usage where to publish the totals
+     * @param asyncResultListener The listener where to send the partial results (may be null)
+     */
+    public FolderUsageEngine(FolderUsage folderUsage, AsyncResultListener asyncResultListener) {
+        super();
+        this.mFolderUsage = folderUsage;
+        this.mAsyncResultListener = asyncResultListener;
+        this.mNextPartial = new AtomicLong(SystemClock.elapsedRealtime() + PARTIAL_INTERVAL);
+        this.mStopped = false;
+    }
+
+    /**
+     * Method that computes the usage of a directory tree, walking the tree in parallel
+     * (see {@link ParallelFileWalker}). This method returns when the whole tree was
+     * computed or the engine was stopped, after publish the final totals.
+     *
+     * @param folder The folder where to start the computation
+     */
+    public void compute(File folder) {
+        ParallelFileWalker.walk(folder, new ParallelFileWalker.Visitor() {
+            @Override
+            public void onVisit(File file, boolean isDirectory) {
+                if (isDirectory) {
+                    addFolder();
+                } else {
+                    String ext = FileHelper.getExtension(file.getName());
+                    MimeTypeCategory category =
+                            MimeTypeHelper.getCategoryFromExt(null, ext, file.getAbsolutePath());
+                    addFile(category, file.length());
+                }
+                publish(false);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return FolderUsageEngine.this.mStopped;
+            }
+        });
+        publish(true);
+    }
+
+    /**
+     * Method that computes the usage of a directory tree of the real filesystem, reusing
+     * the summaries of the directories that didn't change since they were computed (see
+     * {@link FolderSizeCache}). The tree is revalidated in parallel, only the changed
+     * directories are listed, and their new summaries are stored in the cache. This
+     * method returns when the whole tree was computed or the engine was stopped, after
+     * publish the final totals.
+     *
+     * @param folder The folder where to start the computation
+     * @return Summary The summary of the whole tree, or null if the engine was stopped
+     */
+    public Summary computeCached(File folder) {
+        Summary summary = ParallelFileWalker.invoke(new SummaryTask(folder));
+        publish(true);
+        return summary;
+    }
+
+    /**
+     * Method that adds a folder to the usage.
+     */
+    public void addFolder() {
+        Counters counters = this.mThreadCounters.get();
+        synchronized (counters) {
+            counters.mFolders++;
+        }
+    }
+
+    /**
+     * Method that adds a file to the usage.
+     *
+     * @param category The category of the file
+     * @param size The size of the file
+     */
+    public void addFile(MimeTypeCategory category, long size) {
+        Counters counters = this.mThreadCounters.get();
+        synchronized (counters) {
+            counters.mFiles++;
+            counters.mSize += size;
+            counters.mCategories[category.ordinal()]++;
+        }
+    }
+
+    /**
+     * Method that adds the usage of the own files of a directory.
+     *
+     * @param folders The number of child directories
+     * @param files The number of files
+     * @param size The size of the files
+     * @param categories The number of files of every category
+     */
+    private void add(int folders, int files, long size, long[] categories) {
+        Counters counters = this.mThreadCounters.get();
+        synchronized (counters) {
+            counters.mFolders += folders;
+            counters.mFiles += files;
+            counters.mSize += size;
+            for (int i = 0; i < categories.length; i++) {
+                counters.mCategories[i] += categories[i];
+            }
+        }
+    }
+
+    /**
+     * Method that publishes the current totals, and sends them as a partial result.
+     *
+     * @param force If the totals must be published now. Otherwise, they are only
+     * published if the last partial result is older than {@link #PARTIAL_INTERVAL}
+     */
+    public void publish(boolean force) {
+        long now = SystemClock.elapsedRealtime();
+        if (force) {
+            this.mNextPartial.set(now + PARTIAL_INTERVAL);
+        } else {
+            long next = this.mNextPartial.get();
+            if (now < next || !this.mNextPartial.compareAndSet(next, now + PARTIAL_INTERVAL)) {
+                // Too soon, or other thread is publishing it
+                return;
+            }
+        }
+
+        // Merge the counters of all the threads
+        synchronized (this.mCounters) {
+            int folders = 0;
+            int files = 0;
+            long size = 0;
+            long[] categories = new long[MimeTypeCategory.values().length];
+            for (Counters counters : this.mCounters) {
+                synchronized (counters) {
+                    folders += counters.mFolders;
+                    files += counters.mFiles;
+                    size += counters.mSize;
+                    for (int i = 0; i < categories.length; i++) {
+                        categories[i] += counters.mCategories[i];
+                    }
+                }
+            }
+            this.mFolderUsage.setUsage(folders, files, size, categories);
+        }
+
+        //If a listener is defined, then send the partial result
+        if (this.mAsyncResultListener != null) {
+            this.mAsyncResultListener.onPartialResult(this.mFolderUsage);
+        }
+    }
+
+    /**
+     * Method that stops the computation.
+     */
+    public void stop() {
+        this.mStopped = true;
+    }
+
+    /**
+     * The task that summarizes a directory tree: it reuses the summary of the directory
+     * if the directory didn't change, or lists it otherwise, and forks a new task for
+     * every child directory. It returns null if the engine was stopped.
+     */
+    private final class SummaryTask extends RecursiveTask<Summary> {
+        private static final long serialVersionUID = -2479437312586047170L;
+
+        private final File mDirectory;
+
+        /**
+         * Constructor of <code>SummaryTask</code>.
+         *
+         * @param directory The directory to summarize
+         */
+        public SummaryTask(File directory) {
+            super();
+            this.mDirectory = directory;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected Summary compute() {
+            if (FolderUsageEngine.this.mStopped) {
+                return null;
+            }
+            String path = this.mDirectory.getAbsolutePath();
+            long listed = System.currentTimeMillis();
+            long lastModified = this.mDirectory.lastModified();
+            Summary cached = FolderSizeCache.get(path, lastModified);
+
+            // The own files of the directory
+            int files = 0;
+            long size = 0;
+            long[] categories;
+            long[] categorySizes;
+            String[] children;
+            if (cached != null) {
+                files = cached.mFiles;
+                size = cached.mSize;
+                categories = cached.mCategories;
+                categorySizes = cached.mCategorySizes;
+                children = cached.mChildren;
+            } else {
+                // Only one listing per directory
+                categories = new long[MimeTypeCategory.values().length];
+                categorySizes = new long[categories.length];
+                List<String> dirs = new ArrayList<String>();
+                File[] entries = this.mDirectory.listFiles();
+                if (entries != null) {
+                    for (File entry : entries) {
+                        long length = entry.length();
+                        if (entry.isDirectory()) {
+                            dirs.add(entry.getName());
+                            categorySizes[MimeTypeCategory.NONE.ordinal()] += length;
+                            continue;
+                        }
+                        String ext = FileHelper.getExtension(entry.getName());
+                        MimeTypeCategory category = MimeTypeHelper.getCategoryFromExt(
+                                null, ext, entry.getAbsolutePath());
+                        files++;
+                        size += length;
+                        categories[category.ordinal()]++;
+                        categorySizes[category.ordinal()] += length;
+                    }
+                }
+                children = dirs.toArray(new String[dirs.size()]);
+            }
+            add(children.length, files, size, categories);
+            publish(false);
+
+            // Summarize the subtrees (or walk them here if nobody stole them)
+            int cc = children.length;
+            List<SummaryTask> subtasks = new ArrayList<SummaryTask>(cc);
+            for (int i = 0; i < cc; i++) {
+                SummaryTask task = new SummaryTask(new File(this.mDirectory, children[i]));
+                task.fork();
+                subtasks.add(task);
+            }
+            int totalFolders = cc;
+            int totalFiles = files;
+            long totalSize = size;
+            long[] totalCategories = categories.clone();
+            long[] totalCategorySizes = categorySizes.clone();
+            boolean complete = true;
+            for (int i = cc - 1; i >= 0; i--) {
+                Summary child = subtasks.get(i).join();
+                if (child == null) {
+                    complete = false;
+                    continue;
+                }
+                totalFolders += child.mTotalFolders;
+                totalFiles += child.mTotalFiles;
+                totalSize += child.mTotalSize;
+                for (int j = 0; j < totalCategories.length; j++) {
+                    totalCategories[j] += child.mTotalCategories[j];
+                    totalCategorySizes[j] += child.mTotalCategorySizes[j];
+                }
+            }
+            if (!complete) {
+                return null;
+            }
+
+            Summary summary = new Summary(lastModified, files, size, categories,
+                    categorySizes, children, totalFolders, totalFiles, totalSize,
+                    totalCategories, totalCategorySizes);
+            FolderSizeCache.put(path, summary, listed);
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import com.cyanogenmod.filemanager.console.ConsoleBuilder;
+import com.cyanogenmod.filemanager.console.VirtualMountPointConsole;
+import com.cyanogenmod.filemanager.model.FileSystemObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of the last listed directories, for show instantly the directories of the
+ * navigation history.<br/>
+ * <br/>
+ * The cache holds the raw listings (before apply the user preferences) of the most
+ * recently used directories, by path and type of console. A listing is only returned
+ * while the modification time of its directory is the same as when it was listed,
+ * and the actions that change the filesystem invalidate the affected directories.
+ * Because the modification time of a directory doesn't change when the content of
+ * a file changes, callers should refresh the listing in background after show it.
+ * This class is thread-safe.
+ */
+public final class ListingCache {
+
+    // The maximum number of listings in the cache
+    private static final int MAX_ENTRIES = 32;
+
+    // The granularity of the modification time of the filesystems. A directory that
+    // was changed in the last seconds before list it could change again without change
+    // its modification time, so it isn't cached
+    private static final long MTIME_GRANULARITY = 2000L;
+
+    /**
+     * A listing of the cache.
+     */
+    private static class Entry {
+        final List<FileSystemObject> mFiles;
+        final long mLastModified;
+
+        Entry(List<FileSystemObject> files, long lastModified) {
+            super();
+            this.mFiles = files;
+            this.mLastModified = lastModified;
+        }
+    }
+
+    private static final Map<String, Entry> sCache =
+            new LinkedHashMap<String, Entry>(MAX_ENTRIES, 0.75f, true) {
+        private static final long serialVersionUID = -2846135907163452184L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Constructor of <code>ListingCache</code>.
+     */
+    private ListingCache() {
+        super();
+    }
+
+    /**
+     * Method that returns the modification time of a directory, for cache a listing
+     * of it. The modification time must be taken before list the directory.
+     *
+     * @param directory The directory
+     * @return long The modification time, or 0 if the listing of the directory can't
+     * be cached
+     */
+    public static long stat(String directory) {
+        if (directory == null
+                || VirtualMountPointConsole.getVirtualConsoleForPath(directory) != null) {
+            // Virtual filesystems are not cached
+            return 0;
+        }
+        return new File(directory).lastModified();
+    }
+
+    /**
+     * Method that returns the cached listing of a directory.
+     *
+     * @param directory The directory
+     * @return List<FileSystemObject> A copy of the listing, or null if the directory
+     * isn't cached or its listing is not valid anymore
+     */
+    public static List<FileSystemObject> get(String directory) {
+        String key = getKey(directory);
+        Entry entry;
+        synchronized (sCache) {
+            entry = sCache.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        // Revalidate the listing
+        if (stat(directory) != entry.mLastModified) {
+            synchronized (sCache) {
+                if (sCache.get(key) == entry) {
+                    sCache.remove(key);
+                }
+            }
+            return null;
+        }
+        return new ArrayList<FileSystemObject>(entry.mFiles);
+    }
+
+    /**
+     * Method that caches the listing of a directory.
+     *
+     * @param directory The directory
+     * @param files The raw listing of the directory
+     * @param lastModified The modification time of the directory before list it
+     * (see {@link #stat(String)})
+     */
+    public static void put(String directory, List<FileSystemObject> files, long lastModified) {
+        String key = getKey(directory);
+        if (lastModified <= 0
+                || lastModified > System.currentTimeMillis() - MTIME_GRANULARITY) {
+            synchronized (sCache) {
+                sCache.remove(key);
+            }
+            return;
+        }
+        Entry entry = new Entry(new ArrayList<FileSystemObject>(files), lastModified);
+        synchronized (sCache) {
+            sCache.put(key, entry);
+        }
+    }
+
+    /**
+     * Method that invalidates the listings affected by a change of a file or directory:
+     * the listing of its parent, its own listing and the listings of its children.
+     *
+     * @param path The changed file or directory
+     */
+    public static void invalidate(String path) {
+        if (path == null) {
+            return;
+        }
+        String normalized = path;
+        if (normalized.length() > 1 && normalized.endsWith(File.separator)) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        String parent = new File(normalized).getParent();
+        String children = normalized.endsWith(File.separator) ?
+                normalized : normalized + File.separator;
+        synchronized (sCache) {
+            Iterator<String> it = sCache.keySet().iterator();
+            while (it.hasNext()) {
+                String dir = getDirectory(it.next());
+                if (dir.equals(normalized) || dir.equals(parent) || dir.startsWith(children)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Method that invalidates all the listings.
+     */
+    public static void invalidateAll() {
+        synchronized (sCache) {
+            sCache.clear();
+        }
+    }
+
+    /**
+     * Method that checks if two listings of a directory are different (some file
+     * was added, removed or changed its size or modification time).
+     *
+     * @param oldFiles The old listing
+     * @param newFiles The new listing
+     * @return boolean If the listings are different
+     */
+    public static boolean hasChanged(
+            List<FileSystemObject> oldFiles, List<FileSystemObject> newFiles) {
+        int cc = oldFiles.size();
+        if (cc != newFiles.size()) {
+            return true;
+        }
+        Map<String, FileSystemObject> old = new HashMap<String, FileSystemObject>(cc * 2);
+        for (int i = 0; i < cc; i++) {
+            FileSystemObject fso = oldFiles.get(i);
+            old.put(fso.getFullPath(), fso);
+        }
+        for (int i = 0; i < cc; i++) {
+            FileSystemObject fso = newFiles.get(i);
+            FileSystemObject o = old.get(fso.getFullPath());
+            if (o == null
+                    || o.getClass() != fso.getClass()
+                    || o.getSize() != fso.getSize()
+                    || !equals(o.getLastModifiedTime(), fso.getLastModifiedTime())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method that returns the key of a directory. The key includes the type of console
+     * because a privileged console could list more files than a non privileged one.
+     *
+     * @param directory The directory
+     * @return String The key
+     */
+    private static String getKey(String directory) {
+        return (ConsoleBuilder.isPrivileged() ? "p:" : "u:") + directory; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Method that returns the directory of a key.
+     *
+     * @param key The key
+     * @return String The directory
+     */
+    private static String getDirectory(String key) {
+        return key.substring(2);
+    }
+
+    private static boolean equals(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+}
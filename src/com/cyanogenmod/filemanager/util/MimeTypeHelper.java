@@ -32,13 +32,10 @@ import com.cyanogenmod.filemanager.model.NamedPipe;
 import com.cyanogenmod.filemanager.model.Symlink;
 import com.cyanogenmod.filemanager.model.SystemFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.Locale;
-import java.util.Map;
-import java.util.Properties;
 
 /**
  * A helper class with useful methods for deal with mime types.
@@ -143,69 +140,6 @@ public final class MimeTypeHelper {
         }
     }
 
-    /**
-     * An internal class for holding the mime/type database structure
-     */
-    private static class MimeTypeInfo {
-        MimeTypeInfo() {/**NON BLOCK**/}
-        public MimeTypeCategory mCategory;
-        public String mMimeType;
-        public String mDrawable;
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result
-                    + ((this.mCategory == null) ? 0 : this.mCategory.hashCode());
-            result = prime * result
-                    + ((this.mDrawable == null) ? 0 : this.mDrawable.hashCode());
-            result = prime * result
-                    + ((this.mMimeType == null) ? 0 : this.mMimeType.hashCode());
-            return result;
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj)
-                return true;
-            if (obj == null)
-                return false;
-            if (getClass() != obj.getClass())
-                return false;
-            MimeTypeInfo other = (MimeTypeInfo) obj;
-            if (this.mCategory != other.mCategory)
-                return false;
-            if (this.mDrawable == null) {
-                if (other.mDrawable != null)
-                    return false;
-            } else if (!this.mDrawable.equals(other.mDrawable))
-                return false;
-            if (this.mMimeType == null) {
-                if (other.mMimeType != null)
-                    return false;
-            } else if (!this.mMimeType.equals(other.mMimeType))
-                return false;
-            return true;
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public String toString() {
-            return "MimeTypeInfo [mCategory=" + this.mCategory + //$NON-NLS-1$
-                    ", mMimeType="+ this.mMimeType + //$NON-NLS-1$
-                    ", mDrawable=" + this.mDrawable + "]"; //$NON-NLS-1$ //$NON-NLS-2$
-        }
-    }
-
     private static final String TAG = "MimeTypeHelper"; //$NON-NLS-1$
 
     /**
@@ -213,11 +147,7 @@ public final class MimeTypeHelper {
      */
     public static final String ALL_MIME_TYPES = "*/*"; //$NON-NLS-1$
 
-    private static Map<String, ArrayList<MimeTypeInfo>> sMimeTypes;
-    /**
-     * Maps from a combination key of <extension> + <mimetype> to MimeTypeInfo objects.
-     */
-    private static HashMap<String, MimeTypeInfo> sExtensionMimeTypes;
+    private static volatile MimeTypeTable sMimeTypes;
 
     /**
      * Constructor of <code>MimeTypeHelper</code>.
@@ -255,12 +185,11 @@ public final class MimeTypeHelper {
             return false;
         }
 
-        for (ArrayList<MimeTypeInfo> mimeTypeInfoList : sMimeTypes.values()) {
-            for (MimeTypeInfo info : mimeTypeInfoList) {
-                String mimeTypeRegExp = convertToRegExp(mimeType);
-                if (info.mMimeType.matches(mimeTypeRegExp)) {
-                    return true;
-                }
+        String mimeTypeRegExp = convertToRegExp(mimeType);
+        int cc = sMimeTypes.size();
+        for (int i = 0; i < cc; i++) {
+            if (sMimeTypes.getMimeType(i).matches(mimeTypeRegExp)) {
+                return true;
             }
         }
 
@@ -301,25 +230,22 @@ public final class MimeTypeHelper {
         }
 
         //Get the extension and delivery
-        String ext = FileHelper.getExtension(fso);
-        if (ext != null) {
-            MimeTypeInfo mimeTypeInfo = getMimeTypeInternal(fso, ext, firstFound);
-
-            if (mimeTypeInfo != null) {
-                // Create a new drawable
-                if (!TextUtils.isEmpty(mimeTypeInfo.mDrawable)) {
-                    return mimeTypeInfo.mDrawable;
-                }
-
-                // Something was wrong here. The resource should exist, but it's not present.
-                // Audit the wrong mime/type resource and return the best fso drawable (probably
-                // default)
-                Log.w(TAG, String.format(
-                        "Something was wrong with the drawable of the fso:" + //$NON-NLS-1$
-                        "%s, mime: %s", //$NON-NLS-1$
-                        fso.toString(),
-                        mimeTypeInfo.toString()));
+        int info = getMimeTypeInternal(fso, firstFound);
+        if (info != -1) {
+            // Create a new drawable
+            String drawable = sMimeTypes.getDrawable(info);
+            if (!TextUtils.isEmpty(drawable)) {
+                return drawable;
             }
+
+            // Something was wrong here. The resource should exist, but it's not present.
+            // Audit the wrong mime/type resource and return the best fso drawable (probably
+            // default)
+            Log.w(TAG, String.format(
+                    "Something was wrong with the drawable of the fso:" + //$NON-NLS-1$
+                    "%s, mime: %s", //$NON-NLS-1$
+                    fso.toString(),
+                    sMimeTypes.getMimeType(info)));
         }
 
         // Check  system file
@@ -441,51 +367,52 @@ public final class MimeTypeHelper {
     }
 
     /**
-     * Get the MimeTypeInfo that describes this file.
+     * Get the info of the mime type that describes this file.
      * @param fso The file.
-     * @param ext The extension of the file.
-     * @return The MimeTypeInfo object that describes this file, or null if it cannot be retrieved.
+     * @param firstFound If the first mime type of an ambiguous extension must be returned
+     * (without read the file to resolve the ambiguity).
+     * @return The info of the mime type, or -1 if it cannot be retrieved.
      */
-    private static final MimeTypeInfo getMimeTypeInternal(FileSystemObject fso, String ext) {
-        return getMimeTypeInternal(fso.getFullPath(), ext);
-    }
-
-    private static final MimeTypeInfo getMimeTypeInternal(FileSystemObject fso,
-                                                          String ext,
-                                                          boolean firstFound) {
-        return getMimeTypeInternal(fso.getFullPath(), ext, firstFound);
+    private static final int getMimeTypeInternal(FileSystemObject fso, boolean firstFound) {
+        String name = fso.getName();
+        int start = FileHelper.getExtensionStart(name);
+        if (start == -1) {
+            return -1;
+        }
+        return getMimeTypeInternal(fso.getFullPath(), name, start, firstFound);
     }
 
     /**
-     * Get the MimeTypeInfo that describes this file.
-     * @param absolutePath The absolute path of the file.
-     * @param ext The extension of the file.
-     * @return The MimeTypeInfo object that describes this file, or null if it cannot be retrieved.
+     * Get the info of the mime type that describes this file. The extension is read from
+     * the end of a string, so the extension is only extracted if it's ambiguous.
+     * @param absolutePath The absolute path of the file. Can be null if not available.
+     * @param s The name or the extension of the file.
+     * @param start The start of the extension in the string.
+     * @param firstFound If the first mime type of an ambiguous extension must be returned
+     * (without read the file to resolve the ambiguity).
+     * @return The info of the mime type, or -1 if it cannot be retrieved.
      */
-    private static final MimeTypeInfo getMimeTypeInternal(String absolutePath, String ext) {
-        return getMimeTypeInternal(absolutePath, ext, false);
-    }
-
-    private static final MimeTypeInfo getMimeTypeInternal(String absolutePath,
-                                                          String ext,
-                                                          boolean firstFound) {
-        MimeTypeInfo mimeTypeInfo = null;
-        ArrayList<MimeTypeInfo> mimeTypeInfoList = sMimeTypes.get(ext.toLowerCase(Locale.ROOT));
+    private static final int getMimeTypeInternal(String absolutePath, String s, int start,
+                                                 boolean firstFound) {
+        int entry = sMimeTypes.find(s, start, s.length());
+        if (entry == -1) {
+            return -1;
+        }
         // Multiple mimetypes map to the same extension, try to resolve it.
-        if (mimeTypeInfoList != null && mimeTypeInfoList.size() > 1) {
-            if ((absolutePath != null) && (!firstFound)) {
-                String mimeType = getAmbiguousExtensionMimeType(absolutePath, ext);
-                mimeTypeInfo = sExtensionMimeTypes.get(ext + mimeType);
-            } else {
-                // We don't have the ability to read the file to resolve the ambiguity,
-                // so default to the first available mimetype.
-                mimeTypeInfo = mimeTypeInfoList.get(0);
+        int cc = sMimeTypes.getInfoCount(entry);
+        if (cc > 1 && absolutePath != null && !firstFound) {
+            String mimeType = getAmbiguousExtensionMimeType(absolutePath, s.substring(start));
+            for (int i = 0; i < cc; i++) {
+                int info = sMimeTypes.getInfo(entry, i);
+                if (sMimeTypes.getMimeType(info).equals(mimeType)) {
+                    return info;
+                }
             }
-        } else if (mimeTypeInfoList != null && mimeTypeInfoList.size() == 1) {
-            // Only one possible mimetype, so pick that one.
-            mimeTypeInfo = mimeTypeInfoList.get(0);
+            return -1;
         }
-        return mimeTypeInfo;
+        // Only one possible mimetype, or we don't have the ability to read the file to
+        // resolve the ambiguity, so pick the first available mimetype.
+        return sMimeTypes.getInfo(entry, 0);
     }
 
     private static final String getMimeTypeFromExtension(final FileSystemObject fso) {
@@ -501,12 +428,12 @@ public final class MimeTypeHelper {
         }
 
         //Load from the database of mime types
-        MimeTypeInfo mimeTypeInfo = getMimeTypeInternal(fso, ext);
-        if (mimeTypeInfo == null) {
+        int info = getMimeTypeInternal(fso.getFullPath(), ext, 0, false);
+        if (info == -1) {
             return "application/octet-stream";
         }
 
-        return mimeTypeInfo.mMimeType;
+        return sMimeTypes.getMimeType(info);
     }
 
     /**
@@ -530,9 +457,9 @@ public final class MimeTypeHelper {
         }
         if (ext != null) {
             //Load from the database of mime types
-            MimeTypeInfo mimeTypeInfo = getMimeTypeInternal(absolutePath, ext);
-            if (mimeTypeInfo != null) {
-                return mimeTypeInfo.mCategory;
+            int info = getMimeTypeInternal(absolutePath, ext, 0, false);
+            if (info != -1) {
+                return sMimeTypes.getCategory(info);
             }
         }
 
@@ -564,9 +491,7 @@ public final class MimeTypeHelper {
         }
 
         //Get the extension and delivery
-        return getCategoryFromExt(context,
-                                  FileHelper.getExtension(file.getName()),
-                                  file.getAbsolutePath());
+        return getCategoryFromName(file.getName(), file.getAbsolutePath());
     }
 
     /**
@@ -596,8 +521,7 @@ public final class MimeTypeHelper {
         }
 
         //Get the extension and delivery
-        final MimeTypeCategory category = getCategoryFromExt(context,
-                FileHelper.getExtension(fso), fso.getFullPath());
+        final MimeTypeCategory category = getCategoryFromName(fso.getName(), fso.getFullPath());
 
         // Check  system file
         if (category == MimeTypeCategory.NONE && fso instanceof SystemFile) {
@@ -607,6 +531,27 @@ public final class MimeTypeHelper {
         return category;
     }
 
+    /**
+     * Method that returns the mime/type category of a file from its name, without
+     * extract its extension (mime types must be loaded).
+     *
+     * @param name The name of the file
+     * @param absolutePath The absolute path of the file
+     * @return MimeTypeCategory The mime/type category
+     */
+    private static final MimeTypeCategory getCategoryFromName(String name, String absolutePath) {
+        int start = FileHelper.getExtensionStart(name);
+        if (start != -1) {
+            int info = getMimeTypeInternal(absolutePath, name, start, false);
+            if (info != -1) {
+                return sMimeTypes.getCategory(info);
+            }
+        }
+
+        // No category
+        return MimeTypeCategory.NONE;
+    }
+
     /**
      * Method that returns the description of the category
      *
@@ -652,47 +597,16 @@ public final class MimeTypeHelper {
     public static synchronized void loadMimeTypes(Context context) {
         if (sMimeTypes == null) {
             try {
-                // Load the mime/type database
-                Properties mimeTypes = new Properties();
-                mimeTypes.load(context.getResources().openRawResource(R.raw.mime_types));
-
-                // Parse the properties to an in-memory structure
-                // Format:  <extension> = <category> | <mime type> | <drawable>
-                sMimeTypes = new HashMap<String, ArrayList<MimeTypeInfo>>();
-                sExtensionMimeTypes = new HashMap<String, MimeTypeInfo>();
-                Enumeration<Object> e = mimeTypes.keys();
-                while (e.hasMoreElements()) {
-                    try {
-                        String extension = (String)e.nextElement();
-                        String data = mimeTypes.getProperty(extension);
-                        String[] datas = data.split(",");
-                        for (String theData : datas) {
-                            String[] mimeData = theData.split("\\|");  //$NON-NLS-1$
-
-                            // Create a reference of MimeType
-                            MimeTypeInfo mimeTypeInfo = new MimeTypeInfo();
-                            mimeTypeInfo.mCategory = MimeTypeCategory.valueOf(mimeData[0].trim());
-                            mimeTypeInfo.mMimeType = mimeData[1].trim();
-                            mimeTypeInfo.mDrawable = mimeData[2].trim();
-
-                            // If no list exists yet for this mimetype, create one.
-                            // Else, add it to the existing list.
-                            if (sMimeTypes.get(extension) == null) {
-                                ArrayList<MimeTypeInfo> infoList = new ArrayList<MimeTypeInfo>();
-                                infoList.add(mimeTypeInfo);
-                                sMimeTypes.put(extension, infoList);
-                            } else {
-                                sMimeTypes.get(extension).add(mimeTypeInfo);
-                            }
-                            sExtensionMimeTypes.put(extension + mimeTypeInfo.mMimeType,
-                                                    mimeTypeInfo);
-                        }
-
-                    } catch (Exception e2) { /**NON BLOCK**/}
-                }
+                // Map the compiled mime/type database. The raw file is only parsed the
+                // first time after the app is installed (see MimeTypeTable)
+                sMimeTypes = MimeTypeTable.load(context);
 
             } catch (Exception e) {
                 Log.e(TAG, "Fail to load mime types raw file.", e); //$NON-NLS-1$
+                try {
+                    // Continue without mime types
+                    sMimeTypes = MimeTypeTable.compile(new ByteArrayInputStream(new byte[0]));
+                } catch (IOException e2) {/**NON BLOCK**/}
             }
         }
     }
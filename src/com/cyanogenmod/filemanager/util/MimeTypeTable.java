@@ -0,0 +1,670 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.R;
+import com.cyanogenmod.filemanager.util.MimeTypeHelper.MimeTypeCategory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A compiled and read-only database of mime types, indexed by extension.<br/>
+ * <br/>
+ * The <code>mime_types</code> raw resource is compiled into a compact binary table:
+ * <ul>
+ * <li>The extensions are indexed with a perfect hash (hash and displace), so an
+ * extension is found with two hashes and one comparison.</li>
+ * <li>The categories, mime types and drawables of every extension are stored as ids
+ * of a table of interned strings, so lookups don't create objects.</li>
+ * </ul>
+ * The table is compiled once per install of the app, and then written to the data
+ * directory of the app, so the next starts only map the file into memory (see
+ * {@link #load(Context)}). Extensions are matched ignoring the case (only ASCII
+ * extensions are indexed). This class is thread-safe.
+ */
+public final class MimeTypeTable {
+
+    private static final String TAG = "MimeTypeTable"; //$NON-NLS-1$
+
+    private static final String TABLE_FILE = "mime_types.bin"; //$NON-NLS-1$
+    private static final int MAGIC = 0x434d4d54;
+    private static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    // The header: magic, version, stamp, buckets, slots, infos, strings and key bytes
+    private static final int HEADER_SIZE = 36;
+    // A slot: key offset (-1 if empty), key length, first info and number of infos
+    private static final int SLOT_SIZE = 16;
+    // An info: category, mime type id and drawable id
+    private static final int INFO_SIZE = 12;
+
+    // The average number of extensions per bucket of the perfect hash, and the
+    // maximum displacements tried for a bucket before grow the table
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_DISPLACEMENTS = 65536;
+
+    private static final MimeTypeCategory[] CATEGORIES = MimeTypeCategory.values();
+
+    private final ByteBuffer mBuffer;
+    private final int mBuckets;
+    private final int mSlots;
+    private final int mInfos;
+    private final int mSlotsOffset;
+    private final int mInfosOffset;
+    private final int mKeysOffset;
+    private final String[] mStrings;
+
+    /**
+     * Constructor of <code>MimeTypeTable</code>.
+     *
+     * @param buffer The compiled table
+     * @throws IOException If the table is not valid
+     */
+    private MimeTypeTable(ByteBuffer buffer) throws IOException {
+        super();
+        this.mBuffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != VERSION) {
+            throw new IOException("Invalid mime type table"); //$NON-NLS-1$
+        }
+        this.mBuckets = buffer.getInt(16);
+        this.mSlots = buffer.getInt(20);
+        this.mInfos = buffer.getInt(24);
+        int strings = buffer.getInt(28);
+        int keys = buffer.getInt(32);
+        checkRange(this.mBuckets, 1, Integer.MAX_VALUE);
+        checkRange(this.mSlots, 1, Integer.MAX_VALUE);
+        checkRange(this.mInfos, 0, Integer.MAX_VALUE);
+        checkRange(strings, 0, Integer.MAX_VALUE);
+        checkRange(keys, 0, Integer.MAX_VALUE);
+
+        // The file may be truncated or corrupt, so every offset is checked before it's
+        // read (with longs, so they can't overflow)
+        final int limit = buffer.limit();
+        long slotsOffset = HEADER_SIZE + this.mBuckets * 4L;
+        long infosOffset = slotsOffset + this.mSlots * (long)SLOT_SIZE;
+        long offset = infosOffset + this.mInfos * (long)INFO_SIZE;
+        checkRange(offset, 0, limit);
+        this.mSlotsOffset = (int)slotsOffset;
+        this.mInfosOffset = (int)infosOffset;
+
+        // Intern the strings, so every lookup returns the same instances
+        this.mStrings = new String[strings];
+        for (int i = 0; i < strings; i++) {
+            checkRange(offset + 4, 0, limit);
+            int length = buffer.getInt((int)offset);
+            checkRange(length, 0, limit - offset - 4);
+            byte[] data = new byte[length];
+            for (int j = 0; j < length; j++) {
+                data[j] = buffer.get((int)offset + 4 + j);
+            }
+            this.mStrings[i] = new String(data, UTF8);
+            offset += 4 + length;
+        }
+        checkRange(offset + keys, 0, limit);
+        this.mKeysOffset = (int)offset;
+
+        // The references of the slots and the infos
+        for (int i = 0; i < this.mSlots; i++) {
+            int slot = this.mSlotsOffset + i * SLOT_SIZE;
+            int keyOffset = buffer.getInt(slot);
+            if (keyOffset < 0) {
+                continue;
+            }
+            int keyLength = buffer.getInt(slot + 4);
+            checkRange(keyLength, 0, keys);
+            checkRange(keyOffset, 0, keys - keyLength);
+            int info = buffer.getInt(slot + 8);
+            checkRange(info, 0, this.mInfos);
+            checkRange(buffer.getInt(slot + 12), 0, this.mInfos - info);
+        }
+        for (int i = 0; i < this.mInfos; i++) {
+            int info = this.mInfosOffset + i * INFO_SIZE;
+            checkRange(buffer.getInt(info), 0, CATEGORIES.length - 1);
+            checkRange(buffer.getInt(info + 4), 0, strings - 1);
+            checkRange(buffer.getInt(info + 8), 0, strings - 1);
+        }
+    }
+
+    /**
+     * Method that checks a value read from the table.
+     *
+     * @param value The value
+     * @param min The minimum valid value
+     * @param max The maximum valid value
+     * @throws IOException If the value isn't valid (the table is corrupt)
+     */
+    private static void checkRange(long value, long min, long max) throws IOException {
+        if (value < min || value > max) {
+            throw new IOException("Corrupt mime type table"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Method that returns the stamp of the source of the table.
+     *
+     * @return long The stamp
+     */
+    private long getStamp() {
+        return this.mBuffer.getLong(8);
+    }
+
+    /**
+     * Method that finds an extension in the table. The extension is read from a range
+     * of a string, so no substring is needed to look up the extension of a name.
+     *
+     * @param s The string that contains the extension
+     * @param start The start of the extension (inclusive)
+     * @param end The end of the extension (exclusive)
+     * @return int The entry of the extension, or -1 if the extension is not in the table
+     */
+    public int find(CharSequence s, int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        int hash = hash(s, start, end, 0);
+        if (hash < 0) {
+            // Not an ASCII extension
+            return -1;
+        }
+        int seed = this.mBuffer.getInt(HEADER_SIZE + (hash % this.mBuckets) * 4);
+        int entry = hash(s, start, end, seed) % this.mSlots;
+        int slot = this.mSlotsOffset + entry * SLOT_SIZE;
+        int keyOffset = this.mBuffer.getInt(slot);
+        int keyLength = this.mBuffer.getInt(slot + 4);
+        if (keyOffset < 0 || keyLength != end - start) {
+            return -1;
+        }
+        int pos = this.mKeysOffset + keyOffset;
+        for (int i = start; i < end; i++, pos++) {
+            if (toLowerCase(s.charAt(i)) != this.mBuffer.get(pos)) {
+                return -1;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Method that returns the number of mime types of an extension. An extension with
+     * more than one mime type is ambiguous.
+     *
+     * @param entry The entry of the extension (see {@link #find(CharSequence, int, int)})
+     * @return int The number of mime types
+     */
+    public int getInfoCount(int entry) {
+        return this.mBuffer.getInt(this.mSlotsOffset + entry * SLOT_SIZE + 12);
+    }
+
+    /**
+     * Method that returns a mime type of an extension.
+     *
+     * @param entry The entry of the extension (see {@link #find(CharSequence, int, int)})
+     * @param index The index of the mime type of the extension, in the order of the
+     * database
+     * @return int The info of the mime type
+     */
+    public int getInfo(int entry, int index) {
+        return this.mBuffer.getInt(this.mSlotsOffset + entry * SLOT_SIZE + 8) + index;
+    }
+
+    /**
+     * Method that returns the number of infos of the table.
+     *
+     * @return int The number of infos
+     */
+    public int size() {
+        return this.mInfos;
+    }
+
+    /**
+     * Method that returns the category of an info.
+     *
+     * @param info The info
+     * @return MimeTypeCategory The category
+     */
+    public MimeTypeCategory getCategory(int info) {
+        return CATEGORIES[this.mBuffer.getInt(this.mInfosOffset + info * INFO_SIZE)];
+    }
+
+    /**
+     * Method that returns the mime type of an info.
+     *
+     * @param info The info
+     * @return String The mime type
+     */
+    public String getMimeType(int info) {
+        return this.mStrings[this.mBuffer.getInt(this.mInfosOffset + info * INFO_SIZE + 4)];
+    }
+
+    /**
+     * Method that returns the drawable of an info.
+     *
+     * @param info The info
+     * @return String The drawable
+     */
+    public String getDrawable(int info) {
+        return this.mStrings[this.mBuffer.getInt(this.mInfosOffset + info * INFO_SIZE + 8)];
+    }
+
+    /**
+     * Method that loads the table of the app. The compiled table is mapped from the
+     * data directory of the app if it was compiled for the current install of the
+     * app. Otherwise, the <code>mime_types</code> raw resource is compiled and the
+     * table is written for the next starts.
+     *
+     * @param context The current context
+     * @return MimeTypeTable The table
+     * @throws IOException If the raw resource can't be read
+     */
+    public static MimeTypeTable load(Context context) throws IOException {
+        long stamp = 0;
+        try {
+            stamp = context.getPackageManager().getPackageInfo(
+                    context.getPackageName(), 0).lastUpdateTime;
+        } catch (Exception e) {
+            Log.w(TAG, "Can't resolve the install of the app", e); //$NON-NLS-1$
+        }
+        File file = new File(context.getFilesDir(), TABLE_FILE);
+        if (stamp != 0 && file.isFile()) {
+            try {
+                MimeTypeTable table = map(file);
+                if (table.getStamp() == stamp) {
+                    return table;
+                }
+            } catch (Exception e) {
+                // Compile the table again
+                Log.w(TAG, "Can't map the mime type table " + file, e); //$NON-NLS-1$
+            }
+        }
+
+        InputStream is = context.getResources().openRawResource(R.raw.mime_types);
+        byte[] data;
+        try {
+            data = compile(is, stamp);
+        } finally {
+            try {
+                is.close();
+            } catch (Throwable ex) {/**NON BLOCK**/}
+        }
+        if (stamp != 0) {
+            write(file, data);
+        }
+        return new MimeTypeTable(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Method that compiles a database of mime types.
+     *
+     * @param properties The database, with the format of the <code>mime_types</code>
+     * raw resource (it isn't closed)
+     * @return MimeTypeTable The table
+     * @throws IOException If the database can't be read
+     */
+    public static MimeTypeTable compile(InputStream properties) throws IOException {
+        return new MimeTypeTable(ByteBuffer.wrap(compile(properties, 0)));
+    }
+
+    /**
+     * Method that maps a compiled table into memory.
+     *
+     * @param file The file of the table
+     * @return MimeTypeTable The table
+     * @throws IOException If the table can't be mapped or it's not valid
+     */
+    private static MimeTypeTable map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+        try {
+            FileChannel channel = raf.getChannel();
+            return new MimeTypeTable(
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            try {
+                raf.close();
+            } catch (Throwable ex) {/**NON BLOCK**/}
+        }
+    }
+
+    /**
+     * Method that writes a compiled table.
+     *
+     * @param file The file of the table
+     * @param data The compiled table
+     */
+    private static void write(File file, byte[] data) {
+        File tmp = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+        FileOutputStream os = null;
+        try {
+            os = new FileOutputStream(tmp);
+            os.write(data);
+            os.close();
+            os = null;
+            if (!tmp.renameTo(file)) {
+                Log.w(TAG, "Can't write the mime type table " + file); //$NON-NLS-1$
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write the mime type table " + file, e); //$NON-NLS-1$
+        } finally {
+            try {
+                if (os != null) {
+                    os.close();
+                }
+            } catch (Throwable ex) {/**NON BLOCK**/}
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Method that compiles a database of mime types into a binary table.
+     *
+     * @param properties The database (it isn't closed)
+     * @param stamp The stamp of the source of the table
+     * @return byte[] The compiled table
+     * @throws IOException If the database can't be read
+     */
+    private static byte[] compile(InputStream properties, long stamp) throws IOException {
+        Properties mimeTypes = new Properties();
+        mimeTypes.load(properties);
+
+        // Parse the properties, with the extensions in lower case
+        // Format:  <extension> = <category> | <mime type> | <drawable>[, ...]
+        Map<String, List<int[]>> extensions = new HashMap<String, List<int[]>>();
+        Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        Enumeration<Object> e = mimeTypes.keys();
+        while (e.hasMoreElements()) {
+            String extension = ((String)e.nextElement()).trim();
+            if (!isAscii(extension) || extension.length() == 0) {
+                Log.w(TAG, "Ignored extension " + extension); //$NON-NLS-1$
+                continue;
+            }
+            List<int[]> infos = new ArrayList<int[]>();
+            for (String theData : mimeTypes.getProperty(extension).split(",")) { //$NON-NLS-1$
+                try {
+                    String[] mimeData = theData.split("\\|"); //$NON-NLS-1$
+                    int category = MimeTypeCategory.valueOf(mimeData[0].trim()).ordinal();
+                    infos.add(new int[]{category,
+                            intern(strings, mimeData[1].trim()),
+                            intern(strings, mimeData[2].trim())});
+                } catch (Exception e2) { /**NON BLOCK**/}
+            }
+            if (infos.isEmpty()) {
+                continue;
+            }
+            String key = toLowerCase(extension);
+            List<int[]> current = extensions.get(key);
+            if (current == null) {
+                extensions.put(key, infos);
+            } else {
+                current.addAll(infos);
+            }
+        }
+
+        // Index the extensions
+        List<String> keys = new ArrayList<String>(extensions.keySet());
+        Collections.sort(keys);
+        int n = Math.max(1, keys.size());
+        int buckets = Math.max(1, n / BUCKET_SIZE);
+        int slots = n + n / 4 + 1;
+        int[] seeds;
+        int[] entries;
+        while (true) {
+            seeds = new int[buckets];
+            entries = new int[slots];
+            if (index(keys, seeds, entries)) {
+                break;
+            }
+            slots += slots / 4 + 1;
+        }
+
+        // The strings, the key bytes and the infos, in the order of the slots
+        List<byte[]> stringBytes = new ArrayList<byte[]>();
+        int stringsSize = 0;
+        for (String s : strings.keySet()) {
+            byte[] data = s.getBytes(UTF8);
+            stringBytes.add(data);
+            stringsSize += 4 + data.length;
+        }
+        int infos = 0;
+        int keysSize = 0;
+        for (String key : keys) {
+            infos += extensions.get(key).size();
+            keysSize += key.length();
+        }
+        byte[] keyBytes = new byte[keysSize];
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + buckets * 4 + slots * SLOT_SIZE
+                + infos * INFO_SIZE + stringsSize + keysSize);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(stamp);
+        buffer.putInt(buckets);
+        buffer.putInt(slots);
+        buffer.putInt(infos);
+        buffer.putInt(strings.size());
+        buffer.putInt(keysSize);
+        for (int seed : seeds) {
+            buffer.putInt(seed);
+        }
+        int keyOffset = 0;
+        int info = 0;
+        List<int[]> allInfos = new ArrayList<int[]>(infos);
+        for (int i = 0; i < slots; i++) {
+            if (entries[i] == 0) {
+                buffer.putInt(-1);
+                buffer.putInt(0);
+                buffer.putInt(0);
+                buffer.putInt(0);
+                continue;
+            }
+            String key = keys.get(entries[i] - 1);
+            List<int[]> keyInfos = extensions.get(key);
+            for (int j = 0; j < key.length(); j++) {
+                keyBytes[keyOffset + j] = (byte)key.charAt(j);
+            }
+            buffer.putInt(keyOffset);
+            buffer.putInt(key.length());
+            buffer.putInt(info);
+            buffer.putInt(keyInfos.size());
+            keyOffset += key.length();
+            info += keyInfos.size();
+            allInfos.addAll(keyInfos);
+        }
+        for (int[] data : allInfos) {
+            buffer.putInt(data[0]);
+            buffer.putInt(data[1]);
+            buffer.putInt(data[2]);
+        }
+        for (byte[] data : stringBytes) {
+            buffer.putInt(data.length);
+            buffer.put(data);
+        }
+        buffer.put(keyBytes);
+        return buffer.array();
+    }
+
+    /**
+     * Method that builds the perfect hash of the extensions. Buckets are placed from
+     * the biggest, finding for every bucket a seed that moves all its extensions to
+     * free slots.
+     *
+     * @param keys The extensions
+     * @param seeds The seeds of the buckets (output)
+     * @param entries The index + 1 of the extension of every slot, or 0 if the slot is
+     * free (output)
+     * @return boolean If the hash was built. Otherwise, more slots are needed
+     */
+    private static boolean index(final List<String> keys, int[] seeds, int[] entries) {
+        int buckets = seeds.length;
+        final List<List<Integer>> byBucket = new ArrayList<List<Integer>>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            byBucket.add(new ArrayList<Integer>());
+        }
+        int cc = keys.size();
+        for (int i = 0; i < cc; i++) {
+            String key = keys.get(i);
+            byBucket.get(hash(key, 0, key.length(), 0) % buckets).add(Integer.valueOf(i));
+        }
+        Integer[] order = new Integer[buckets];
+        for (int i = 0; i < buckets; i++) {
+            order[i] = Integer.valueOf(i);
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return byBucket.get(rhs.intValue()).size() - byBucket.get(lhs.intValue()).size();
+            }
+        });
+
+        int slots = entries.length;
+        for (Integer bucket : order) {
+            List<Integer> members = byBucket.get(bucket.intValue());
+            if (members.isEmpty()) {
+                break;
+            }
+            boolean placed = false;
+            int[] targets = new int[members.size()];
+            for (int seed = 1; seed <= MAX_DISPLACEMENTS && !placed; seed++) {
+                placed = true;
+                for (int i = 0; i < targets.length && placed; i++) {
+                    String key = keys.get(members.get(i).intValue());
+                    targets[i] = hash(key, 0, key.length(), seed) % slots;
+                    if (entries[targets[i]] != 0) {
+                        placed = false;
+                    }
+                    for (int j = 0; j < i && placed; j++) {
+                        if (targets[j] == targets[i]) {
+                            placed = false;
+                        }
+                    }
+                }
+                if (placed) {
+                    seeds[bucket.intValue()] = seed;
+                    for (int i = 0; i < targets.length; i++) {
+                        entries[targets[i]] = members.get(i).intValue() + 1;
+                    }
+                }
+            }
+            if (!placed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method that hashes the lower case of an extension.
+     *
+     * @param s The string that contains the extension
+     * @param start The start of the extension (inclusive)
+     * @param end The end of the extension (exclusive)
+     * @param seed The seed of the hash
+     * @return int The positive hash, or -1 if the extension is not ASCII
+     */
+    private static int hash(CharSequence s, int start, int end, int seed) {
+        int h = 0x811c9dc5 ^ (seed * 0x9e3779b9);
+        for (int i = start; i < end; i++) {
+            int c = toLowerCase(s.charAt(i));
+            if (c < 0) {
+                return -1;
+            }
+            h = (h ^ c) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h & 0x7fffffff;
+    }
+
+    /**
+     * Method that returns the lower case of an ASCII char.
+     *
+     * @param c The char
+     * @return int The lower case char, or -1 if the char is not ASCII
+     */
+    private static int toLowerCase(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c + ('a' - 'A');
+        }
+        return c < 0x80 ? c : -1;
+    }
+
+    /**
+     * Method that returns the lower case of an ASCII string.
+     *
+     * @param s The string
+     * @return String The lower case string
+     */
+    private static String toLowerCase(String s) {
+        char[] chars = new char[s.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char)toLowerCase(s.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Method that returns if a string only has ASCII chars.
+     *
+     * @param s The string
+     * @return boolean If the string only has ASCII chars
+     */
+    private static boolean isAscii(String s) {
+        int cc = s.length();
+        for (int i = 0; i < cc; i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method that returns the id of a string, adding it to the table of strings.
+     *
+     * @param strings The table of strings
+     * @param s The string
+     * @return int The id of the string
+     */
+    private static int intern(Map<String, Integer> strings, String s) {
+        Integer id = strings.get(s);
+        if (id == null) {
+            id = Integer.valueOf(strings.size());
+            strings.put(s, id);
+        }
+        return id.intValue();
+    }
+}
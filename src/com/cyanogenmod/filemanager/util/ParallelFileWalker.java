@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A helper class that walks a directory tree in parallel.<br/>
+ * <br/>
+ * Every directory is listed by its own task on a shared and bounded work-stealing
+ * pool, so idle threads steal the pending subtrees of the busy ones. The entries
+ * are delivered to a {@link Visitor} from the threads of the pool, in no particular
+ * order. The walk is performed over the {@link File} returned by the listing of
+ * the parent, so subclasses of {@link File} (like the ones of a virtual filesystem)
+ * are preserved.
+ */
+public final class ParallelFileWalker {
+
+    /**
+     * An interface for receive the entries of the walk.
+     */
+    public interface Visitor {
+        /**
+         * Method invoked for every entry of the tree (the root directory is not
+         * visited). Invoked concurrently from the threads of the pool.
+         *
+         * @param file The file or directory
+         * @param isDirectory If the entry is a directory
+         */
+        void onVisit(File file, boolean isDirectory);
+
+        /**
+         * Method that returns if the walk must be stopped.
+         *
+         * @return boolean If the walk must be stopped
+         */
+        boolean isCancelled();
+    }
+
+    // The maximum number of threads of the pool, whatever the number of cores
+    private static final int MAX_PARALLELISM = 4;
+
+    private static ForkJoinPool sPool;
+
+    /**
+     * Constructor of <code>ParallelFileWalker</code>.
+     */
+    private ParallelFileWalker() {
+        super();
+    }
+
+    /**
+     * Method that walks a directory tree. This method returns when all the
+     * entries were visited or the walk was cancelled.
+     *
+     * @param root The directory where to start the walk
+     * @param visitor The visitor of the entries
+     */
+    public static void walk(File root, Visitor visitor) {
+        getPool().invoke(new DirectoryTask(root, visitor));
+    }
+
+    /**
+     * Method that runs a task in the shared pool, so other walks of the filesystem
+     * (the ones that need to aggregate the results of the subtrees) share the same
+     * bounded threads. This method returns when the task is done.
+     *
+     * @param task The task
+     * @return T The result of the task
+     */
+    public static <T> T invoke(ForkJoinTask<T> task) {
+        return getPool().invoke(task);
+    }
+
+    /**
+     * Method that returns the shared pool, creating it the first time.
+     *
+     * @return ForkJoinPool The pool
+     */
+    private static synchronized ForkJoinPool getPool() {
+        if (sPool == null) {
+            int parallelism = Math.max(1,
+                    Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARALLELISM));
+            sPool = new ForkJoinPool(parallelism);
+        }
+        return sPool;
+    }
+
+    /**
+     * The task that visits the entries of a directory and forks a new task for
+     * every child directory.
+     */
+    private static class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 5736802453154727148L;
+
+        private final File mDirectory;
+        private final Visitor mVisitor;
+
+        /**
+         * Constructor of <code>DirectoryTask</code>.
+         *
+         * @param directory The directory to walk
+         * @param visitor The visitor of the entries
+         */
+        public DirectoryTask(File directory, Visitor visitor) {
+            super();
+            this.mDirectory = directory;
+            this.mVisitor = visitor;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            File[] files = this.mDirectory.listFiles();
+            if (files == null) {
+                return;
+            }
+
+            List<DirectoryTask> subtasks = null;
+            int cc = files.length;
+            for (int i = 0; i < cc; i++) {
+                if (this.mVisitor.isCancelled()) {
+                    break;
+                }
+                boolean isDirectory = files[i].isDirectory();
+                if (isDirectory) {
+                    if (subtasks == null) {
+                        subtasks = new ArrayList<DirectoryTask>();
+                    }
+                    DirectoryTask task = new DirectoryTask(files[i], this.mVisitor);
+                    task.fork();
+                    subtasks.add(task);
+                }
+                try {
+                    this.mVisitor.onVisit(files[i], isDirectory);
+                } catch (Exception e) {/**NON BLOCK**/}
+            }
+
+            // Wait for the subtrees (or walk them here if nobody stole them)
+            if (subtasks != null) {
+                int count = subtasks.size();
+                for (int i = count - 1; i >= 0; i--) {
+                    subtasks.get(i).join();
+                }
+            }
+        }
+    }
+}
@@ -64,6 +64,23 @@ public final class ParseHelper {
     }
     private static int TERSE_STAT_STRUCT_LENGTH = TERSE_STAT_STRUCT.values().length;
 
+    /**
+     * The format of a record of a compact listing (see {@link #parseListOutput(String, String)})
+     */
+    public static final String LIST_OUTPUT_FORMAT = "%f %u %g %s %X %Y %Z %n"; //$NON-NLS-1$
+
+    // The structure of a record of a compact listing. The filename is always the last field
+    private static enum LIST_OUTPUT_STRUCT {
+        RAW_MODE,
+        UID,
+        GID,
+        SIZE,
+        ACCESS,
+        MODIFY,
+        CHANGE
+    }
+    private static final LIST_OUTPUT_STRUCT[] LIST_OUTPUT_FIELDS = LIST_OUTPUT_STRUCT.values();
+
     // The structure of raw mode in hex format (defined with octal values)
     // http://unix.stackexchange.com/questions/39716/what-is-raw-mode-in-hex-from-stat-output
     private static enum RMIHF {
@@ -209,6 +226,95 @@ public final class ParseHelper {
         }
     }
 
+    /**
+     * Method that parses a record of a compact listing.<br/>
+     * <br/>
+     * The record has fixed fields (numbers without padding) separated by one space,
+     * and the filename at the end, as is emitted by a {@link #LIST_OUTPUT_FORMAT} stat:<br/>
+     * <br/>
+     * <code/>
+     *  list format = "%f %u %g %s %X %Y %Z %n":
+     *      Raw_mode(HEX)
+     *      Uid
+     *      Gid
+     *      size(bytes)
+     *      Access(Epoch seconds)
+     *      Modify(Epoch seconds)
+     *      Change(Epoch seconds)
+     *      filename
+     * </code>
+     * <br/>
+     * Unlike {@link #parseStatOutput(String)}, this method doesn't split the record
+     * and doesn't access the filesystem. Symlinks are returned without its reference.
+     *
+     * @param output Line with the record of the listing
+     * @param parentDir The directory that was listed, or <code>null</code> to take the
+     * directory of the filename of the record
+     * @return FileSystemObject The file system object reference
+     * @throws ParseException If the record can't be parsed
+     */
+    public static FileSystemObject parseListOutput(final String output, final String parentDir)
+            throws ParseException {
+        final int len = output.length();
+        final int fields = LIST_OUTPUT_FIELDS.length;
+        long[] data = new long[fields];
+        int pos = 0;
+        for (int i = 0; i < fields; i++) {
+            final int radix = LIST_OUTPUT_FIELDS[i] == LIST_OUTPUT_STRUCT.RAW_MODE ? 16 : 10;
+            boolean negative = false;
+            if (pos < len && output.charAt(pos) == '-') {
+                negative = true;
+                pos++;
+            }
+            final int start = pos;
+            long value = 0;
+            while (pos < len && output.charAt(pos) != ' ') {
+                int digit = Character.digit(output.charAt(pos), radix);
+                if (digit == -1) {
+                    throw new ParseException(
+                            String.format("Invalid record: %s", output), pos); //$NON-NLS-1$
+                }
+                value = (value * radix) + digit;
+                pos++;
+            }
+            if (pos == start || pos >= len - 1) {
+                throw new ParseException(
+                        String.format("Not enought data: %s", output), pos); //$NON-NLS-1$
+            }
+            data[i] = negative ? -value : value;
+            pos++;
+        }
+
+        // The name is the last segment of the filename
+        int slash = output.lastIndexOf(File.separatorChar);
+        String name = output.substring(slash >= pos ? slash + 1 : pos);
+        if (name.length() == 0) {
+            throw new ParseException(
+                    String.format("No filename: %s", output), pos); //$NON-NLS-1$
+        }
+
+        String parent = parentDir;
+        if (parent == null) {
+            parent = slash > pos ? output.substring(pos, slash) : FileHelper.ROOT_DIRECTORY;
+        }
+
+        final int mode = (int)data[LIST_OUTPUT_STRUCT.RAW_MODE.ordinal()];
+        final int uid = (int)data[LIST_OUTPUT_STRUCT.UID.ordinal()];
+        final int gid = (int)data[LIST_OUTPUT_STRUCT.GID.ordinal()];
+        return createObject(
+                parent,
+                getType(mode),
+                name,
+                null,
+                new User(uid, AIDHelper.getNullSafeName(uid)),
+                new Group(gid, AIDHelper.getNullSafeName(gid)),
+                toPermissions(mode),
+                data[LIST_OUTPUT_STRUCT.SIZE.ordinal()],
+                new Date(data[LIST_OUTPUT_STRUCT.ACCESS.ordinal()] * 1000L),
+                new Date(data[LIST_OUTPUT_STRUCT.MODIFY.ordinal()] * 1000L),
+                new Date(data[LIST_OUTPUT_STRUCT.CHANGE.ordinal()] * 1000L));
+    }
+
     /**
      * Method that parses and extracts the permissions from a unix string format.
      *
@@ -496,22 +602,7 @@ public final class ParseHelper {
                 stat[cc - (TERSE_STAT_STRUCT_LENGTH - TERSE_STAT_STRUCT.RAW_MODE.ordinal())],16);
 
         // Extract the type
-        char t = RegularFile.UNIX_ID;
-        if (RMIHF.S_IFSOCK.mValue == (rawInt & RMIHF.S_IFSOCK.mValue)) {
-            t = DomainSocket.UNIX_ID;
-        } else if (RMIHF.S_IFLNK.mValue == (rawInt & RMIHF.S_IFLNK.mValue)) {
-            t = Symlink.UNIX_ID;
-        } else if (RMIHF.S_IFREG.mValue == (rawInt & RMIHF.S_IFREG.mValue)) {
-            t = RegularFile.UNIX_ID;
-        } else if (RMIHF.S_IFBLK.mValue == (rawInt & RMIHF.S_IFBLK.mValue)) {
-            t = BlockDevice.UNIX_ID;
-        } else if (RMIHF.S_IFDIR.mValue == (rawInt & RMIHF.S_IFDIR.mValue)) {
-            t = Directory.UNIX_ID;
-        } else if (RMIHF.S_IFCHR.mValue == (rawInt & RMIHF.S_IFCHR.mValue)) {
-            t = CharacterDevice.UNIX_ID;
-        } else if (RMIHF.S_IFIFO.mValue == (rawInt & RMIHF.S_IFIFO.mValue)) {
-            t = NamedPipe.UNIX_ID;
-        }
+        char t = getType(rawInt);
 
         // Extract User/Group/Others
         boolean us = RMIHF.S_ISUID.mValue == (rawInt & RMIHF.S_ISUID.mValue);
@@ -548,4 +639,56 @@ public final class ParseHelper {
         return sb.toString();
     }
 
+    /**
+     * Method that extracts the type of a file system object from its raw mode.
+     *
+     * @param rawInt The raw mode
+     * @return char The raw char type of the file system object
+     */
+    private static char getType(int rawInt) {
+        char t = RegularFile.UNIX_ID;
+        if (RMIHF.S_IFSOCK.mValue == (rawInt & RMIHF.S_IFSOCK.mValue)) {
+            t = DomainSocket.UNIX_ID;
+        } else if (RMIHF.S_IFLNK.mValue == (rawInt & RMIHF.S_IFLNK.mValue)) {
+            t = Symlink.UNIX_ID;
+        } else if (RMIHF.S_IFREG.mValue == (rawInt & RMIHF.S_IFREG.mValue)) {
+            t = RegularFile.UNIX_ID;
+        } else if (RMIHF.S_IFBLK.mValue == (rawInt & RMIHF.S_IFBLK.mValue)) {
+            t = BlockDevice.UNIX_ID;
+        } else if (RMIHF.S_IFDIR.mValue == (rawInt & RMIHF.S_IFDIR.mValue)) {
+            t = Directory.UNIX_ID;
+        } else if (RMIHF.S_IFCHR.mValue == (rawInt & RMIHF.S_IFCHR.mValue)) {
+            t = CharacterDevice.UNIX_ID;
+        } else if (RMIHF.S_IFIFO.mValue == (rawInt & RMIHF.S_IFIFO.mValue)) {
+            t = NamedPipe.UNIX_ID;
+        }
+        return t;
+    }
+
+    /**
+     * Method that creates the permissions from a raw mode, without an intermediate
+     * string representation.
+     *
+     * @param rawInt The raw mode
+     * @return Permissions An object with all the permissions
+     */
+    private static Permissions toPermissions(int rawInt) {
+        UserPermission up = new UserPermission(
+                RMIHF.S_IRUSR.mValue == (rawInt & RMIHF.S_IRUSR.mValue),
+                RMIHF.S_IWUSR.mValue == (rawInt & RMIHF.S_IWUSR.mValue),
+                RMIHF.S_IXUSR.mValue == (rawInt & RMIHF.S_IXUSR.mValue),
+                RMIHF.S_ISUID.mValue == (rawInt & RMIHF.S_ISUID.mValue));
+        GroupPermission gp = new GroupPermission(
+                RMIHF.S_IRGRP.mValue == (rawInt & RMIHF.S_IRGRP.mValue),
+                RMIHF.S_IWGRP.mValue == (rawInt & RMIHF.S_IWGRP.mValue),
+                RMIHF.S_IXGRP.mValue == (rawInt & RMIHF.S_IXGRP.mValue),
+                RMIHF.S_ISGID.mValue == (rawInt & RMIHF.S_ISGID.mValue));
+        OthersPermission op = new OthersPermission(
+                RMIHF.S_IROTH.mValue == (rawInt & RMIHF.S_IROTH.mValue),
+                RMIHF.S_IWOTH.mValue == (rawInt & RMIHF.S_IWOTH.mValue),
+                RMIHF.S_IXOTH.mValue == (rawInt & RMIHF.S_IXOTH.mValue),
+                RMIHF.S_ISVTX.mValue == (rawInt & RMIHF.S_ISVTX.mValue));
+        return new Permissions(up, gp, op);
+    }
+
 }
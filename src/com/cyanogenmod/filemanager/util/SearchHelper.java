@@ -22,7 +22,6 @@ import android.text.SpannableString;
 import android.text.style.BackgroundColorSpan;
 import android.text.style.StyleSpan;
 
-import android.util.Log;
 import com.cyanogenmod.filemanager.model.FileSystemObject;
 import com.cyanogenmod.filemanager.model.Query;
 import com.cyanogenmod.filemanager.model.SearchResult;
@@ -30,16 +29,12 @@ import com.cyanogenmod.filemanager.model.SearchResult;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 
 /**
  * A helper class with useful methods for deal with search results.
  */
 public final class SearchHelper {
-    private static final String TAG = SearchHelper.class.getSimpleName();
     private static final String REGEXP_WILCARD = "*";  //$NON-NLS-1$
     private static final String REGEXP_WILCARD_JAVA = ".*";  //$NON-NLS-1$
 
@@ -107,32 +102,32 @@ public final class SearchHelper {
      */
     public static CharSequence getHighlightedName(
             SearchResult result, List<String> queries, int highlightedColor) {
+        CompiledQuery query = new CompiledQuery(new Query().fillSlots(queries));
         String name = result.getFso().getName();
-        int cc = queries.size();
-        for (int i = 0; i < cc; i++) {
-            //Get the query removing wildcards
-            String query =
-                    queries.get(i)
-                        .replace(".", "[.]") //$NON-NLS-1$//$NON-NLS-2$
-                        .replace("*", ".*"); //$NON-NLS-1$//$NON-NLS-2$
-            Pattern pattern;
-            try {
-                pattern = Pattern.compile(query, Pattern.CASE_INSENSITIVE);
-            } catch (PatternSyntaxException e) {
-                Log.w(TAG, "Invalid regex syntax. Using literal query. Error=" + e);
-                pattern = Pattern.compile(query, Pattern.CASE_INSENSITIVE | Pattern.LITERAL);
-            }
-            Matcher matcher = pattern.matcher(name);
+        return getHighlightedName(name, query.match(name), highlightedColor);
+    }
+
+    /**
+     * Method that returns the name string highlighted with the match of a
+     * {@link CompiledQuery}.
+     *
+     * @param name The name to highlight
+     * @param match The match of the name
+     * @param highlightedColor The highlight color
+     * @return CharSequence The name string highlighted
+     */
+    public static CharSequence getHighlightedName(
+            String name, CompiledQuery.Match match, int highlightedColor) {
+        if (match.hasHighlight()) {
+            //Highlight the match
             Spannable span =  new SpannableString(name);
-            if (matcher.find()) {
-                //Highlight the match
-                span.setSpan(
-                        new BackgroundColorSpan(highlightedColor),
-                        matcher.start(), matcher.end(), 0);
-                span.setSpan(
-                        new StyleSpan(Typeface.BOLD), matcher.start(), matcher.end(), 0);
-                return span;
-            }
+            span.setSpan(
+                    new BackgroundColorSpan(highlightedColor),
+                    match.getHighlightStart(), match.getHighlightEnd(), 0);
+            span.setSpan(
+                    new StyleSpan(Typeface.BOLD),
+                    match.getHighlightStart(), match.getHighlightEnd(), 0);
+            return span;
         }
 
         // Something is wrong!!!. Name should be matched by some of the queries
@@ -162,11 +157,12 @@ public final class SearchHelper {
      */
     public static List<SearchResult> convertToResults(List<FileSystemObject> files, Query queries) {
         //Converts the list of files in a list of search results
+        CompiledQuery query = new CompiledQuery(queries);
         List<SearchResult> results = new ArrayList<SearchResult>(files.size());
         int cc = files.size();
         for (int i = 0; i < cc; i++) {
             FileSystemObject fso = files.get(i);
-            results.add( convertToResult(fso, queries) );
+            results.add( convertToResult(fso, query) );
         }
         return results;
     }
@@ -183,6 +179,18 @@ public final class SearchHelper {
         return new SearchResult(relevance, fso);
     }
 
+    /**
+     * Method that converts a file system object to a search result.
+     *
+     * @param fso FileSystemObject that needs to be converted to a SearchResult
+     * @param query The compiled terms of the search
+     * @return SearchResult
+     */
+    public static SearchResult convertToResult(FileSystemObject fso, CompiledQuery query) {
+        double relevance = calculateRelevance(fso, query);
+        return new SearchResult(relevance, fso);
+    }
+
     /**
      * Method that calculates the relevance of a file system object for the terms
      * of a query.<br/>
@@ -211,46 +219,20 @@ public final class SearchHelper {
      * @return double A value from 1 to 10 where 10 has more relevance
      */
     public static double calculateRelevance(FileSystemObject fso, Query queries) {
-        double relevance = 1.0;  //Minimum relevance (is in the result so has some relevance)
-        List<String> terms = queries.getQueries();
-        String name = fso.getName();
-        int cc = terms.size();
-        for (int i = 0; i < cc; i++) {
-            String query =
-                    terms.get(i)
-                        .replace(".", "[.]") //$NON-NLS-1$//$NON-NLS-2$
-                        .replace("*", ".*"); //$NON-NLS-1$//$NON-NLS-2$
-            Pattern pattern;
-            try {
-                pattern = Pattern.compile(query, Pattern.CASE_INSENSITIVE);
-            } catch (PatternSyntaxException e) {
-                Log.w(TAG, "Invalid regex syntax. Using literal query. Error=" + e);
-                pattern = Pattern.compile(query, Pattern.CASE_INSENSITIVE | Pattern.LITERAL);
-            }
-            Matcher matcher = pattern.matcher(name);
-            if (matcher.find()) {
-                //By name
-                double byNameRelevance = 1.0;
-                if (matcher.group().length() == name.length()) {
-                    byNameRelevance = 3.0;
-                } else if (name.startsWith(matcher.group()) || name.endsWith(matcher.group())) {
-                    byNameRelevance = 2.0;
-                }
-
-                //By accuracy
-                double byNameAccuracy = 1.0;
-                if (i == 0) {
-                    byNameAccuracy = 3.0;
-                } else if (i != terms.size()) {
-                    byNameAccuracy = 2.0;
-                }
-
-                //Calculate the relevance
-                relevance += byNameRelevance * byNameAccuracy;
-            }
-        }
-        return relevance;
+        return calculateRelevance(fso, new CompiledQuery(queries));
+    }
 
+    /**
+     * Method that calculates the relevance of a file system object for the compiled
+     * terms of a query.
+     *
+     * @param fso The file system object
+     * @param query The compiled terms of the search
+     * @return double A value from 1 to 10 where 10 has more relevance
+     * @see #calculateRelevance(FileSystemObject, Query)
+     */
+    public static double calculateRelevance(FileSystemObject fso, CompiledQuery query) {
+        return query.match(fso.getName()).getRelevance();
     }
 
 }
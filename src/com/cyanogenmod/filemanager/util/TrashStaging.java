@@ -0,0 +1,476 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.content.Context;
+import android.media.MediaScannerConnection;
+import android.os.storage.StorageVolume;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A helper class that deletes files and directories in two stages.<br/>
+ * <br/>
+ * First the files are renamed into a hidden staging directory of their storage
+ * volume, which is instant because the rename doesn't leave the filesystem. The
+ * staged files can be restored to their original paths while the grace period
+ * lasts. Then the staged trees are purged in background, by a pool of workers that
+ * walks the directories concurrently. The staged trees left by a killed process are
+ * purged the next time the application starts. This class is thread-safe.
+ */
+public final class TrashStaging {
+
+    private static final String TAG = "TrashStaging"; //$NON-NLS-1$
+
+    /**
+     * The time that the staged files can be restored (in milliseconds).
+     */
+    public static final long GRACE_PERIOD = 8000L;
+
+    // The name of the staging directory of the storage volumes
+    private static final String STAGING_DIR = ".cmfm_trash"; //$NON-NLS-1$
+
+    // The maximum number of workers, whatever the number of cores
+    private static final int MAX_WORKERS = 4;
+
+    // The time that an idle worker is kept alive (in seconds)
+    private static final long WORKER_KEEP_ALIVE = 10L;
+
+    private static ScheduledThreadPoolExecutor sScheduler;
+    private static ThreadPoolExecutor sWorkers;
+    private static final AtomicInteger sNextId = new AtomicInteger();
+
+    // The pending batches, by directory of the batch
+    private static final Map<String, Batch> sPending = new HashMap<String, Batch>();
+
+    /**
+     * A staged file or directory.
+     */
+    private static class Entry {
+        final String mOriginal;
+        final File mStaged;
+
+        Entry(String original, File staged) {
+            super();
+            this.mOriginal = original;
+            this.mStaged = staged;
+        }
+    }
+
+    /**
+     * The files and directories staged by a delete operation.
+     */
+    public static final class Batch {
+        final List<Entry> mEntries = new ArrayList<Entry>();
+        final List<File> mDirs = new ArrayList<File>();
+        final List<String> mNotStaged = new ArrayList<String>();
+        ScheduledFuture<?> mPurge;
+        boolean mDone;
+
+        Batch() {
+            super();
+        }
+
+        /**
+         * Method that returns if no file was staged.
+         *
+         * @return boolean If no file was staged
+         */
+        public boolean isEmpty() {
+            return this.mEntries.isEmpty();
+        }
+
+        /**
+         * Method that returns the paths that couldn't be staged, and must be deleted
+         * in the usual way.
+         *
+         * @return List<String> The paths not staged
+         */
+        public List<String> getNotStaged() {
+            return this.mNotStaged;
+        }
+    }
+
+    /**
+     * Constructor of <code>TrashStaging</code>.
+     */
+    private TrashStaging() {
+        super();
+    }
+
+    /**
+     * Method that stages files and directories to delete, and schedules their purge
+     * when the grace period ends. The paths that aren't in a storage volume, or that
+     * can't be renamed, are returned by {@link Batch#getNotStaged()}.
+     *
+     * @param ctx The current context
+     * @param paths The paths to delete
+     * @return Batch The staged files
+     */
+    public static Batch stage(Context ctx, List<String> paths) {
+        final Context appCtx = ctx.getApplicationContext();
+        final Batch batch = new Batch();
+        String id = System.currentTimeMillis() + "-" + sNextId.incrementAndGet(); //$NON-NLS-1$
+        Map<String, File> dirs = new HashMap<String, File>();
+        for (String path : paths) {
+            String volume = getVolume(ctx, path);
+            if (volume == null) {
+                batch.mNotStaged.add(path);
+                continue;
+            }
+
+            // Every batch has its own directory in every storage volume
+            File dir = dirs.get(volume);
+            if (dir == null) {
+                dir = new File(getStagingDir(volume), id);
+                if (!dir.mkdirs()) {
+                    batch.mNotStaged.add(path);
+                    continue;
+                }
+                dirs.put(volume, dir);
+                batch.mDirs.add(dir);
+                synchronized (sPending) {
+                    sPending.put(dir.getAbsolutePath(), batch);
+                }
+            }
+
+            File staged = new File(dir, String.valueOf(batch.mEntries.size()));
+            if (new File(path).renameTo(staged)) {
+                batch.mEntries.add(new Entry(path, staged));
+                onChanged(appCtx, path);
+            } else {
+                batch.mNotStaged.add(path);
+            }
+        }
+        synchronized (sPending) {
+            if (batch.isEmpty()) {
+                batch.mDone = true;
+                for (File dir : batch.mDirs) {
+                    sPending.remove(dir.getAbsolutePath());
+                    dir.delete();
+                }
+                return batch;
+            }
+            batch.mPurge = getScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    purge(appCtx, batch);
+                }
+            }, GRACE_PERIOD, TimeUnit.MILLISECONDS);
+        }
+        return batch;
+    }
+
+    /**
+     * Method that restores the staged files to their original paths, if the batch
+     * wasn't purged yet.
+     *
+     * @param ctx The current context
+     * @param batch The staged files
+     * @return boolean If all the files were restored
+     */
+    public static boolean restore(Context ctx, Batch batch) {
+        synchronized (sPending) {
+            if (batch.mDone) {
+                return false;
+            }
+            batch.mDone = true;
+            batch.mPurge.cancel(false);
+            for (File dir : batch.mDirs) {
+                sPending.remove(dir.getAbsolutePath());
+            }
+        }
+
+        final Context appCtx = ctx.getApplicationContext();
+        final List<Entry> failed = new ArrayList<Entry>();
+        for (Entry entry : batch.mEntries) {
+            File original = new File(entry.mOriginal);
+            if (original.exists() || !entry.mStaged.renameTo(original)) {
+                Log.w(TAG, String.format("Failed to restore %s", original)); //$NON-NLS-1$
+                failed.add(entry);
+                continue;
+            }
+            onChanged(appCtx, entry.mOriginal);
+        }
+
+        // Purge what couldn't be restored
+        final List<File> dirs = batch.mDirs;
+        getScheduler().execute(new Runnable() {
+            @Override
+            public void run() {
+                purge(appCtx, failed, dirs);
+            }
+        });
+        return failed.isEmpty();
+    }
+
+    /**
+     * Method that purges in background the staged trees of the storage volumes that
+     * don't belong to a pending batch (they were left by a killed process).
+     *
+     * @param ctx The current context
+     */
+    public static void purgeStale(Context ctx) {
+        final Context appCtx = ctx.getApplicationContext();
+        final StorageVolume[] volumes = StorageHelper.getStorageVolumes(ctx, false);
+        getScheduler().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (StorageVolume volume : volumes) {
+                    File[] dirs = getStagingDir(volume.getPath()).listFiles();
+                    if (dirs == null) {
+                        continue;
+                    }
+                    List<File> stale = new ArrayList<File>();
+                    synchronized (sPending) {
+                        for (File dir : dirs) {
+                            if (dir.isDirectory()
+                                    && !sPending.containsKey(dir.getAbsolutePath())) {
+                                stale.add(dir);
+                            }
+                        }
+                    }
+
+                    // The original paths are unknown, so the media scanner isn't notified
+                    List<Entry> entries = new ArrayList<Entry>();
+                    for (File dir : stale) {
+                        File[] files = dir.listFiles();
+                        if (files != null) {
+                            for (File f : files) {
+                                entries.add(new Entry(null, f));
+                            }
+                        }
+                    }
+                    purge(appCtx, entries, stale);
+                }
+            }
+        });
+    }
+
+    /**
+     * Method that purges a batch when its grace period ends.
+     *
+     * @param ctx The application context
+     * @param batch The staged files
+     */
+    static void purge(Context ctx, Batch batch) {
+        synchronized (sPending) {
+            if (batch.mDone) {
+                return;
+            }
+            batch.mDone = true;
+            for (File dir : batch.mDirs) {
+                sPending.remove(dir.getAbsolutePath());
+            }
+        }
+        purge(ctx, batch.mEntries, batch.mDirs);
+    }
+
+    /**
+     * Method that deletes staged trees concurrently, and then removes the deleted
+     * files from the media scanner.
+     *
+     * @param ctx The application context
+     * @param entries The staged files and directories
+     * @param dirs The directories of the batches, deleted at the end
+     */
+    private static void purge(Context ctx, List<Entry> entries, List<File> dirs) {
+        final List<String> deleted = Collections.synchronizedList(new ArrayList<String>());
+        final List<File> visited = Collections.synchronizedList(new ArrayList<File>());
+        final AtomicInteger pending = new AtomicInteger();
+        final Object sync = new Object();
+        final ThreadPoolExecutor workers = getWorkers();
+
+        // Every worker lists a directory and unlinks its files, and hands the
+        // subdirectories to other workers. The directories are removed at the end,
+        // the deepest first
+        for (Entry entry : entries) {
+            if (entry.mStaged.isDirectory()) {
+                walk(workers, entry.mStaged, entry.mOriginal, visited, deleted, pending, sync);
+            } else if (entry.mStaged.delete() && entry.mOriginal != null) {
+                deleted.add(MediaHelper.normalizeMediaPath(entry.mOriginal));
+            }
+        }
+        synchronized (sync) {
+            while (pending.get() > 0) {
+                try {
+                    sync.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        List<File> tree = new ArrayList<File>(visited);
+        Collections.sort(tree, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                return rhs.getAbsolutePath().length() - lhs.getAbsolutePath().length();
+            }
+        });
+        tree.addAll(dirs);
+        for (File dir : tree) {
+            if (!dir.delete() && dir.exists()) {
+                Log.w(TAG, String.format("Failed to purge %s", dir)); //$NON-NLS-1$
+            }
+        }
+
+        if (!deleted.isEmpty()) {
+            MediaScannerConnection.scanFile(
+                    ctx, deleted.toArray(new String[deleted.size()]), null, null);
+        }
+    }
+
+    /**
+     * Method that submits the walk of a directory to the workers.
+     *
+     * @param workers The workers
+     * @param dir The staged directory
+     * @param original The original path of the directory (null if unknown)
+     * @param visited The visited directories
+     * @param deleted The original paths of the deleted files
+     * @param pending The number of directories pending to walk
+     * @param sync The object notified when no directory is pending
+     */
+    static void walk(final ThreadPoolExecutor workers, final File dir, final String original,
+            final List<File> visited, final List<String> deleted,
+            final AtomicInteger pending, final Object sync) {
+        pending.incrementAndGet();
+        workers.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    visited.add(dir);
+                    if (original != null) {
+                        deleted.add(MediaHelper.normalizeMediaPath(original));
+                    }
+                    File[] files = dir.listFiles();
+                    if (files == null) {
+                        return;
+                    }
+                    for (File f : files) {
+                        String o = original != null
+                                ? original + File.separator + f.getName() : null;
+                        if (f.isDirectory()) {
+                            walk(workers, f, o, visited, deleted, pending, sync);
+                        } else if (f.delete() && o != null) {
+                            deleted.add(MediaHelper.normalizeMediaPath(o));
+                        }
+                    }
+                } finally {
+                    if (pending.decrementAndGet() == 0) {
+                        synchronized (sync) {
+                            sync.notifyAll();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Method that returns the storage volume of a path.
+     *
+     * @param ctx The current context
+     * @param path The path
+     * @return String The path of the storage volume, or null if the path isn't in
+     * a storage volume (or it's a storage volume or the staging directory)
+     */
+    private static String getVolume(Context ctx, String path) {
+        String p = new File(path).getAbsolutePath();
+        for (StorageVolume volume : StorageHelper.getStorageVolumes(ctx, false)) {
+            String v = new File(volume.getPath()).getAbsolutePath();
+            if (p.startsWith(v + File.separator)) {
+                return p.startsWith(getStagingDir(v).getAbsolutePath()) ? null : v;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method that returns the staging directory of a storage volume, creating it
+     * (and excluding it from the media scanner) if it doesn't exist.
+     *
+     * @param volume The path of the storage volume
+     * @return File The staging directory
+     */
+    static File getStagingDir(String volume) {
+        File dir = new File(volume, STAGING_DIR);
+        if (!dir.exists() && dir.mkdirs()) {
+            try {
+                new File(dir, ".nomedia").createNewFile(); //$NON-NLS-1$
+            } catch (IOException e) {/**NON BLOCK**/}
+        }
+        return dir;
+    }
+
+    /**
+     * Method that notifies the change of a path to the caches.
+     *
+     * @param ctx The application context
+     * @param path The changed path
+     */
+    private static void onChanged(Context ctx, String path) {
+        ListingCache.invalidate(path);
+        FileNameIndex.getInstance(ctx).notifyChanged(path);
+        FolderSizeCache.invalidate(path);
+    }
+
+    /**
+     * Method that returns the scheduler of the purges, creating it the first time.
+     *
+     * @return ScheduledThreadPoolExecutor The scheduler
+     */
+    private static synchronized ScheduledThreadPoolExecutor getScheduler() {
+        if (sScheduler == null) {
+            sScheduler = new ScheduledThreadPoolExecutor(1);
+        }
+        return sScheduler;
+    }
+
+    /**
+     * Method that returns the shared pool of workers, creating it the first time. The
+     * workers are released when they are idle.
+     *
+     * @return ThreadPoolExecutor The pool of workers
+     */
+    private static synchronized ThreadPoolExecutor getWorkers() {
+        if (sWorkers == null) {
+            int workers = Math.max(1,
+                    Math.min(Runtime.getRuntime().availableProcessors(), MAX_WORKERS));
+            sWorkers = new ThreadPoolExecutor(workers, workers,
+                    WORKER_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+            sWorkers.allowCoreThreadTimeOut(true);
+        }
+        return sWorkers;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.commands.shell;
+
+import android.os.Environment;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.cyanogenmod.filemanager.commands.BatchExecutable.OPERATION;
+import com.cyanogenmod.filemanager.commands.BatchExecutable.Operation;
+import com.cyanogenmod.filemanager.util.CommandHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class for testing the {@link BatchCommand} command.
+ *
+ * @see BatchCommand
+ */
+public class BatchCommandTest extends AbstractConsoleTest {
+
+    private static final String PATH_FILE =
+            Environment.getDataDirectory().getAbsolutePath() + "/batchtest.txt"; //$NON-NLS-1$
+    private static final String PATH_COPY =
+            Environment.getDataDirectory().getAbsolutePath() + "/batchtest2.txt"; //$NON-NLS-1$
+    private static final String PATH_DIR =
+            Environment.getDataDirectory().getAbsolutePath() + "/batchtest"; //$NON-NLS-1$
+    private static final String PATH_ERROR = "/foo/foo121212/batchtest.txt"; //$NON-NLS-1$
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRootConsoleNeeded() {
+        return true;
+    }
+
+    /**
+     * Method that performs a test to execute a batch of operations, with a failed
+     * operation in the middle.
+     *
+     * @throws Exception If test failed
+     */
+    @SmallTest
+    public void testBatch() throws Exception {
+        CommandHelper.createFile(getContext(), PATH_FILE, getConsole());
+        CommandHelper.createDirectory(getContext(), PATH_DIR, getConsole());
+
+        List<Operation> operations = new ArrayList<Operation>();
+        operations.add(new Operation(OPERATION.COPY, PATH_FILE, PATH_COPY));
+        operations.add(new Operation(OPERATION.DELETE_FILE, PATH_ERROR, null));
+        operations.add(new Operation(OPERATION.DELETE_FILE, PATH_FILE, null));
+        operations.add(new Operation(OPERATION.DELETE_FILE, PATH_COPY, null));
+        operations.add(new Operation(OPERATION.DELETE_DIR, PATH_DIR, null));
+        boolean[] ret = CommandHelper.batch(getContext(), operations, getConsole());
+
+        assertEquals("length", operations.size(), ret.length); //$NON-NLS-1$
+        assertTrue("copy==false", ret[0]); //$NON-NLS-1$
+        assertFalse("delete error==true", ret[1]); //$NON-NLS-1$
+        assertTrue("delete file==false", ret[2]); //$NON-NLS-1$
+        assertTrue("delete copy==false", ret[3]); //$NON-NLS-1$
+        assertTrue("delete dir==false", ret[4]); //$NON-NLS-1$
+    }
+
+}
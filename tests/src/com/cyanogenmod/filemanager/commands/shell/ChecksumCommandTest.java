@@ -22,7 +22,6 @@ import android.test.suitebuilder.annotation.SmallTest;
 import com.cyanogenmod.filemanager.commands.AsyncResultListener;
 import com.cyanogenmod.filemanager.commands.ChecksumExecutable;
 import com.cyanogenmod.filemanager.commands.ChecksumExecutable.CHECKSUMS;
-import com.cyanogenmod.filemanager.util.CommandHelper;
 
 /**
  * A class for testing checksum command.
@@ -55,15 +54,16 @@ public class ChecksumCommandTest extends AbstractConsoleTest {
     }
 
     /**
-     * Method that performs a checksum test
+     * Method that performs a checksum test. The command is executed directly in the
+     * shell console, because the files readable by the app are checksummed by the
+     * java console.
      *
      * @throws Exception If an exception occurs while executing the test
      */
     @SmallTest
-    @SuppressWarnings("null")
     public void testChecksums() throws Exception {
         ChecksumExecutable cmd =
-                CommandHelper.checksum(getContext(),
+                new ChecksumCommand(
                         TEST_FILE, new AsyncResultListener() {
                             @Override
                             public void onAsyncStart() {
@@ -88,10 +88,13 @@ public class ChecksumCommandTest extends AbstractConsoleTest {
                             public void onPartialResult(Object results) {
                                 /**NON BLOCK**/
                             }
-                        }, getConsole());
+                        });
+        getConsole().execute(cmd, getContext());
 
         synchronized (ChecksumCommandTest.this.mSync) {
-            ChecksumCommandTest.this.mSync.wait(15000L);
+            if (!this.mNormalEnd) {
+                ChecksumCommandTest.this.mSync.wait(15000L);
+            }
         }
         try {
             if (!this.mNormalEnd && cmd != null && cmd.isCancellable() && !cmd.isCancelled()) {
@@ -102,6 +105,9 @@ public class ChecksumCommandTest extends AbstractConsoleTest {
         assertNotNull("sha1==null", cmd.getChecksum(CHECKSUMS.SHA1)); //$NON-NLS-1$
         assertEquals("md5sum fails", MD5_SUM, cmd.getChecksum(CHECKSUMS.MD5)); //$NON-NLS-1$
         assertEquals("sha1sum fails", SHA1_SUM, cmd.getChecksum(CHECKSUMS.SHA1)); //$NON-NLS-1$
+        // The shell only calculates the md5 and sha1 checksums
+        assertEquals("crc32 fails", //$NON-NLS-1$
+                ChecksumExecutable.UNAVAILABLE, cmd.getChecksum(CHECKSUMS.CRC32));
     }
 
 }
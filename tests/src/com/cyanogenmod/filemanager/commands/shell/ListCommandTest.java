@@ -16,8 +16,10 @@
 
 package com.cyanogenmod.filemanager.commands.shell;
 
+import android.test.suitebuilder.annotation.LargeTest;
 import android.test.suitebuilder.annotation.MediumTest;
 import android.test.suitebuilder.annotation.SmallTest;
+import android.util.Log;
 
 import com.cyanogenmod.filemanager.model.Directory;
 import com.cyanogenmod.filemanager.model.FileSystemObject;
@@ -25,7 +27,10 @@ import com.cyanogenmod.filemanager.model.RegularFile;
 import com.cyanogenmod.filemanager.model.Symlink;
 import com.cyanogenmod.filemanager.util.CommandHelper;
 import com.cyanogenmod.filemanager.util.FileHelper;
+import com.cyanogenmod.filemanager.util.ParseHelper;
 
+import java.io.BufferedReader;
+import java.io.StringReader;
 import java.util.List;
 
 /**
@@ -35,7 +40,10 @@ import java.util.List;
  */
 public class ListCommandTest extends AbstractConsoleTest {
 
+    private static final String TAG = "ListCommandTest"; //$NON-NLS-1$
+
     private static final String LS_PATH = FileHelper.ROOT_DIRECTORY;
+    private static final String LS_BENCHMARK_PATH = "/sdcard/DCIM/Camera"; //$NON-NLS-1$
     private static final String LS_INFOFILE = "/boot.txt"; //$NON-NLS-1$
     private static final String LS_INFOFILE_NAME = "boot.txt"; //$NON-NLS-1$
 
@@ -86,10 +94,13 @@ public class ListCommandTest extends AbstractConsoleTest {
     public void testParse() throws Exception {
         ListCommand cmd = new ListCommand(LS_PATH, getConsole());
         String in =
-            "/acct 0 0 41ed 0 0 d 1054 3 0 0 1357390899 1357390899 1357390899 4096\n" + //$NON-NLS-1$
-            "/init.cm.rc 1238 8 81e8 0 0 1 370 1 0 0 1357390899 1357390899 1357390899 4096\n" + //$NON-NLS-1$
-            "/vendor 14 0 a1ff 0 0 1 1052 1 0 0 1357390899 1357390899 1357390899 4096\n" + //$NON-NLS-1$
-            "/cache 4096 8 41f9 1000 2001 b307 2 5 0 0 0 1357390900 1357390900 4096\n"; //$NON-NLS-1$
+            "41ed 0 0 0 1357390899 1357390899 1357390899 /acct\n" + //$NON-NLS-1$
+            "81e8 0 0 1238 1357390899 1357390899 1357390899 /init.cm.rc\n" + //$NON-NLS-1$
+            "a1ff 0 0 14 1357390899 1357390899 1357390899 /vendor\n" + //$NON-NLS-1$
+            "41f9 1000 2001 4096 0 1357390900 1357390900 /cache\n" + //$NON-NLS-1$
+            "--links--\n" + //$NON-NLS-1$
+            "/vendor -> /system/vendor\n" + //$NON-NLS-1$
+            "41ed 0 0 4096 1357390899 1357390899 1357390899 /vendor\n"; //$NON-NLS-1$
 
         String err = ""; //$NON-NLS-1$
         cmd.parse(in, err);
@@ -108,6 +119,12 @@ public class ListCommandTest extends AbstractConsoleTest {
         assertNotNull(
                 "files(2) linkref is null", //$NON-NLS-1$
                 ((Symlink)files.get(2)).getLinkRef());
+        assertTrue(
+                "files(2) linkref is not a directory", //$NON-NLS-1$
+                ((Symlink)files.get(2)).getLinkRef() instanceof Directory);
+        assertNotNull(
+                "files(2) link is null", //$NON-NLS-1$
+                ((Symlink)files.get(2)).getLink());
         assertTrue(
                 "files(3) != user", //$NON-NLS-1$
                 files.get(3).getUser().getName().compareTo("system") == 0); //$NON-NLS-1$
@@ -123,4 +140,67 @@ public class ListCommandTest extends AbstractConsoleTest {
                     .toRawString().compareTo("rwxr-x---") == 0); //$NON-NLS-1$
     }
 
+    /**
+     * Method that compares the time needed to parse a big directory listing with
+     * the compact listing records against the terse stat output.
+     *
+     * @throws Exception If test failed
+     * {@link ListCommand#parse(String, String)}
+     * {@link ParseHelper#parseStatOutput(String)}
+     */
+    @LargeTest
+    public void testParseBenchmark() throws Exception {
+        final int entries = 20000;
+        StringBuilder terse = new StringBuilder();
+        StringBuilder compact = new StringBuilder();
+        StringBuilder targets = new StringBuilder();
+        StringBuilder links = new StringBuilder();
+        for (int i = 0; i < entries; i++) {
+            String name = LS_BENCHMARK_PATH + "/file " + i + ".jpg"; //$NON-NLS-1$ //$NON-NLS-2$
+            boolean symlink = (i % 10) == 0;
+            String mode = symlink ? "a1ff" : "81b0"; //$NON-NLS-1$ //$NON-NLS-2$
+            terse.append(name).append(" 102400 200 ").append(mode) //$NON-NLS-1$
+                 .append(" 1023 1023 b307 ").append(i) //$NON-NLS-1$
+                 .append(" 1 0 0 1357390899 1357390899 1357390899 4096\n"); //$NON-NLS-1$
+            compact.append(mode).append(" 1023 1023 102400 ") //$NON-NLS-1$
+                   .append("1357390899 1357390899 1357390899 ") //$NON-NLS-1$
+                   .append(name).append("\n"); //$NON-NLS-1$
+            if (symlink) {
+                targets.append(name).append(" -> ").append(name) //$NON-NLS-1$
+                       .append(".orig\n"); //$NON-NLS-1$
+                links.append("81b0 1023 1023 102400 ") //$NON-NLS-1$
+                     .append("1357390899 1357390899 1357390899 ") //$NON-NLS-1$
+                     .append(name).append("\n"); //$NON-NLS-1$
+            }
+        }
+        compact.append("--links--\n").append(targets).append(links); //$NON-NLS-1$
+
+        // Terse stat output (the symlinks are resolved against the filesystem)
+        long start = System.currentTimeMillis();
+        BufferedReader br = new BufferedReader(new StringReader(terse.toString()));
+        String line = null;
+        int count = 0;
+        while ((line = br.readLine()) != null) {
+            ParseHelper.parseStatOutput(line);
+            count++;
+        }
+        long terseTime = System.currentTimeMillis() - start;
+        assertTrue("terse count!=entries", count == entries); //$NON-NLS-1$
+
+        // Compact records
+        start = System.currentTimeMillis();
+        ListCommand cmd = new ListCommand(LS_BENCHMARK_PATH, getConsole());
+        cmd.parse(compact.toString(), ""); //$NON-NLS-1$
+        long compactTime = System.currentTimeMillis() - start;
+        // Entries + parent directory
+        assertTrue("compact count!=entries", cmd.getResult().size() == entries + 1); //$NON-NLS-1$
+        assertNotNull(
+                "symlink linkref is null", //$NON-NLS-1$
+                ((Symlink)cmd.getResult().get(1)).getLinkRef());
+
+        Log.i(TAG, String.format(
+                "Parse of %d entries: terse stat %d ms, compact listing %d ms", //$NON-NLS-1$
+                Integer.valueOf(entries), Long.valueOf(terseTime), Long.valueOf(compactTime)));
+    }
+
 }
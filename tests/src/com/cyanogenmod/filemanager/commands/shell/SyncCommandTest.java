@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.commands.shell;
+
+import android.os.Environment;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.cyanogenmod.filemanager.commands.AsyncResultListener;
+import com.cyanogenmod.filemanager.commands.SyncExecutable;
+import com.cyanogenmod.filemanager.commands.SyncExecutable.CHANGES;
+import com.cyanogenmod.filemanager.model.FileSystemObject;
+import com.cyanogenmod.filemanager.util.CommandHelper;
+
+import java.util.List;
+
+/**
+ * A class for testing the {@link SyncCommand} command.
+ *
+ * @see SyncCommand
+ */
+public class SyncCommandTest extends AbstractConsoleTest {
+
+    private static final String PATH_SRC =
+            Environment.getDataDirectory().getAbsolutePath() + "/synctest"; //$NON-NLS-1$
+    private static final String PATH_DST =
+            Environment.getDataDirectory().getAbsolutePath() + "/synctest2"; //$NON-NLS-1$
+    private static final String PATH_OUT =
+            Environment.getDataDirectory().getAbsolutePath() + "/synctest3"; //$NON-NLS-1$
+
+    /**
+     * @hide
+     */
+    final Object mSync = new Object();
+    /**
+     * @hide
+     */
+    boolean mNormalEnd;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRootConsoleNeeded() {
+        return true;
+    }
+
+    /**
+     * Method that performs a test to synchronize a directory twice. The second
+     * synchronization must not transfer any file.
+     *
+     * @throws Exception If test failed
+     */
+    @SmallTest
+    public void testSyncOk() throws Exception {
+        try {
+            CommandHelper.createDirectory(getContext(), PATH_SRC, getConsole());
+            CommandHelper.createFile(getContext(), PATH_SRC + "/synctest.txt", //$NON-NLS-1$
+                    getConsole());
+            CommandHelper.createDirectory(getContext(), PATH_DST, getConsole());
+            CommandHelper.createFile(getContext(), PATH_DST + "/extra.txt", //$NON-NLS-1$
+                    getConsole());
+
+            SyncExecutable cmd = sync();
+            assertTrue("response==false", cmd.getResult().booleanValue()); //$NON-NLS-1$
+            assertEquals("added", 1, cmd.getChanges(CHANGES.ADDED)); //$NON-NLS-1$
+            assertEquals("deleted", 1, cmd.getChanges(CHANGES.DELETED)); //$NON-NLS-1$
+
+            cmd = sync();
+            assertTrue("response==false", cmd.getResult().booleanValue()); //$NON-NLS-1$
+            assertEquals("added", 0, cmd.getChanges(CHANGES.ADDED)); //$NON-NLS-1$
+            assertEquals("updated", 0, cmd.getChanges(CHANGES.UPDATED)); //$NON-NLS-1$
+        } finally {
+            try {
+                CommandHelper.deleteDirectory(getContext(), PATH_SRC, getConsole());
+            } catch (Throwable ex) {
+                /**NON BLOCK**/
+            }
+            try {
+                CommandHelper.deleteDirectory(getContext(), PATH_DST, getConsole());
+            } catch (Throwable ex) {
+                /**NON BLOCK**/
+            }
+        }
+    }
+
+    /**
+     * Method that performs a test to synchronize a destination directory with symbolic
+     * links to directories outside of it. The links must be replaced or deleted, but the
+     * directories they point to must not be modified.
+     *
+     * @throws Exception If test failed
+     */
+    @SmallTest
+    public void testSyncSymlinkOk() throws Exception {
+        try {
+            CommandHelper.createDirectory(getContext(), PATH_SRC, getConsole());
+            CommandHelper.createDirectory(getContext(), PATH_SRC + "/dir", //$NON-NLS-1$
+                    getConsole());
+            CommandHelper.createFile(getContext(), PATH_SRC + "/dir/synctest.txt", //$NON-NLS-1$
+                    getConsole());
+            CommandHelper.createDirectory(getContext(), PATH_OUT, getConsole());
+            CommandHelper.createFile(getContext(), PATH_OUT + "/keep.txt", //$NON-NLS-1$
+                    getConsole());
+            CommandHelper.createDirectory(getContext(), PATH_DST, getConsole());
+            CommandHelper.createLink(getContext(), PATH_OUT, PATH_DST + "/dir", //$NON-NLS-1$
+                    getConsole());
+            CommandHelper.createLink(getContext(), PATH_OUT, PATH_DST + "/extra", //$NON-NLS-1$
+                    getConsole());
+
+            SyncExecutable cmd = sync();
+            assertTrue("response==false", cmd.getResult().booleanValue()); //$NON-NLS-1$
+            assertEquals("added", 2, cmd.getChanges(CHANGES.ADDED)); //$NON-NLS-1$
+            assertEquals("deleted", 1, cmd.getChanges(CHANGES.DELETED)); //$NON-NLS-1$
+
+            List<FileSystemObject> files =
+                    CommandHelper.listFiles(getContext(), PATH_OUT, getConsole());
+            boolean kept = false;
+            for (FileSystemObject fso : files) {
+                assertFalse("synctest.txt copied through the link", //$NON-NLS-1$
+                        "synctest.txt".equals(fso.getName())); //$NON-NLS-1$
+                kept |= "keep.txt".equals(fso.getName()); //$NON-NLS-1$
+            }
+            assertTrue("keep.txt deleted through the link", kept); //$NON-NLS-1$
+        } finally {
+            try {
+                CommandHelper.deleteDirectory(getContext(), PATH_SRC, getConsole());
+            } catch (Throwable ex) {
+                /**NON BLOCK**/
+            }
+            try {
+                CommandHelper.deleteDirectory(getContext(), PATH_DST, getConsole());
+            } catch (Throwable ex) {
+                /**NON BLOCK**/
+            }
+            try {
+                CommandHelper.deleteDirectory(getContext(), PATH_OUT, getConsole());
+            } catch (Throwable ex) {
+                /**NON BLOCK**/
+            }
+        }
+    }
+
+    /**
+     * Method that synchronizes the test directories, and waits for the end.
+     *
+     * @return SyncExecutable The executed command
+     * @throws Exception If the synchronization failed
+     */
+    private SyncExecutable sync() throws Exception {
+        this.mNormalEnd = false;
+        SyncExecutable cmd =
+                CommandHelper.sync(getContext(),
+                        PATH_SRC, PATH_DST, false, true, new AsyncResultListener() {
+                            @Override
+                            public void onAsyncStart() {
+                                /**NON BLOCK**/
+                            }
+                            @Override
+                            public void onAsyncEnd(boolean cancelled) {
+                                synchronized (SyncCommandTest.this.mSync) {
+                                    SyncCommandTest.this.mNormalEnd = true;
+                                    SyncCommandTest.this.mSync.notify();
+                                }
+                            }
+                            @Override
+                            public void onAsyncExitCode(int exitCode) {
+                                /**NON BLOCK**/
+                            }
+                            @Override
+                            public void onException(Exception cause) {
+                                fail(String.valueOf(cause));
+                            }
+                            @Override
+                            public void onPartialResult(Object results) {
+                                /**NON BLOCK**/
+                            }
+                        }, getConsole());
+
+        synchronized (SyncCommandTest.this.mSync) {
+            if (!this.mNormalEnd) {
+                SyncCommandTest.this.mSync.wait(15000L);
+            }
+        }
+        assertTrue("timeout", this.mNormalEnd); //$NON-NLS-1$
+        return cmd;
+    }
+
+}
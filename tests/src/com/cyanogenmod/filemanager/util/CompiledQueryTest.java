@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.test.suitebuilder.annotation.LargeTest;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.model.Query;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * A class for testing the compiled queries of the search.
+ *
+ * @see CompiledQuery
+ */
+public class CompiledQueryTest extends android.test.AndroidTestCase {
+
+    private static final String TAG = "CompiledQueryTest"; //$NON-NLS-1$
+
+    private static final String[] NAMES = {
+        "photo.jpg", "Photo 2012.JPG", "my photos", "holiday_photo.png", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        "music.mp3", "readme", "photo", "a.photo.b" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    };
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Method that checks that the compiled query scores and highlights as the
+     * regular expressions of every term do.
+     *
+     * @throws Exception If test failed
+     * {@link CompiledQuery#match(String)}
+     */
+    @SmallTest
+    public void testMatch() throws Exception {
+        Query query = new Query().setSlot("photo", 0).setSlot("*.jpg", 1); //$NON-NLS-1$ //$NON-NLS-2$
+        CompiledQuery compiled = new CompiledQuery(query);
+        for (String name : NAMES) {
+            CompiledQuery.Match match = compiled.match(name);
+            assertEquals("relevance " + name, //$NON-NLS-1$
+                    relevance(name, query.getQueries()), match.getRelevance(), 0.0d);
+
+            int[] range = highlight(name, query.getQueries());
+            assertEquals("start " + name, range[0], match.getHighlightStart()); //$NON-NLS-1$
+            assertEquals("end " + name, range[1], match.getHighlightEnd()); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Method that compares the time of score a million of names with the compiled query
+     * and compiling the patterns of every term for every name.
+     *
+     * @throws Exception If test failed
+     * {@link CompiledQuery#match(String, CompiledQuery.Match)}
+     */
+    @LargeTest
+    public void testMatchBenchmark() throws Exception {
+        final int names = 1000000;
+        Query query = new Query().setSlot("photo", 0).setSlot("*.jpg", 1); //$NON-NLS-1$ //$NON-NLS-2$
+        List<String> terms = query.getQueries();
+
+        long start = System.currentTimeMillis();
+        double legacy = 0;
+        for (int i = 0; i < names; i++) {
+            String name = NAMES[i % NAMES.length];
+            legacy += relevance(name, terms);
+            highlight(name, terms);
+        }
+        long legacyTime = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        double compiled = 0;
+        CompiledQuery compiledQuery = new CompiledQuery(query);
+        CompiledQuery.Match match = new CompiledQuery.Match();
+        for (int i = 0; i < names; i++) {
+            compiledQuery.match(NAMES[i % NAMES.length], match);
+            compiled += match.getRelevance();
+        }
+        long compiledTime = System.currentTimeMillis() - start;
+        assertEquals("relevance", legacy, compiled, 0.0d); //$NON-NLS-1$
+
+        Log.i(TAG, String.format(
+                "Score of %d names: per-name patterns %d ms, compiled query %d ms", //$NON-NLS-1$
+                Integer.valueOf(names), Long.valueOf(legacyTime), Long.valueOf(compiledTime)));
+    }
+
+    /**
+     * The relevance computed compiling the patterns of every term.
+     */
+    private static double relevance(String name, List<String> terms) {
+        double relevance = 1.0;
+        int cc = terms.size();
+        for (int i = 0; i < cc; i++) {
+            Matcher matcher = compile(terms.get(i)).matcher(name);
+            if (matcher.find()) {
+                double byNameRelevance = 1.0;
+                if (matcher.group().length() == name.length()) {
+                    byNameRelevance = 3.0;
+                } else if (name.startsWith(matcher.group()) || name.endsWith(matcher.group())) {
+                    byNameRelevance = 2.0;
+                }
+                double byNameAccuracy = i == 0 ? 3.0 : 2.0;
+                relevance += byNameRelevance * byNameAccuracy;
+            }
+        }
+        return relevance;
+    }
+
+    /**
+     * The highlight range computed compiling the patterns of every term.
+     */
+    private static int[] highlight(String name, List<String> terms) {
+        for (String term : terms) {
+            Matcher matcher = compile(term).matcher(name);
+            if (matcher.find()) {
+                return new int[]{matcher.start(), matcher.end()};
+            }
+        }
+        return new int[]{-1, -1};
+    }
+
+    private static Pattern compile(String term) {
+        return Pattern.compile(
+                term.replace(".", "[.]").replace("*", ".*"), //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$//$NON-NLS-4$
+                Pattern.CASE_INSENSITIVE);
+    }
+}
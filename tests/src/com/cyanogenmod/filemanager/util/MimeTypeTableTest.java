@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2012 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.filemanager.util;
+
+import android.test.suitebuilder.annotation.LargeTest;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.util.Log;
+
+import com.cyanogenmod.filemanager.R;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+
+/**
+ * A class for testing the compiled database of mime types.
+ *
+ * @see MimeTypeTable
+ */
+public class MimeTypeTableTest extends android.test.AndroidTestCase {
+
+    private static final String TAG = "MimeTypeTableTest"; //$NON-NLS-1$
+
+    private static final String[] NAMES = {
+        "photo.jpg", "Photo 2012.JPG", "song.mp3", "backup.tar.gz", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        "readme", "archive.Z", "notes.unknownext", "app.apk" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    };
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Method that checks that every extension of the raw database is found in the
+     * compiled table, ignoring the case, with its mime types in order.
+     *
+     * @throws Exception If test failed
+     * {@link MimeTypeTable#find(CharSequence, int, int)}
+     */
+    @SmallTest
+    public void testCompile() throws Exception {
+        Properties mimeTypes = loadProperties();
+        MimeTypeTable table = compile();
+        Enumeration<Object> e = mimeTypes.keys();
+        while (e.hasMoreElements()) {
+            String extension = (String)e.nextElement();
+            String name = "file." + extension.toUpperCase(Locale.ROOT); //$NON-NLS-1$
+            int entry = table.find(name, name.length() - extension.length(), name.length());
+            assertTrue("found " + extension, entry != -1); //$NON-NLS-1$
+
+            String[] datas = mimeTypes.getProperty(extension).split(","); //$NON-NLS-1$
+            assertTrue("count " + extension, //$NON-NLS-1$
+                    table.getInfoCount(entry) >= datas.length);
+            for (int i = 0; i < datas.length; i++) {
+                String[] mimeData = datas[i].split("\\|"); //$NON-NLS-1$
+                int info = table.getInfo(entry, i);
+                assertEquals("category " + extension, //$NON-NLS-1$
+                        mimeData[0].trim(), table.getCategory(info).name());
+                assertEquals("mime type " + extension, //$NON-NLS-1$
+                        mimeData[1].trim(), table.getMimeType(info));
+                assertEquals("drawable " + extension, //$NON-NLS-1$
+                        mimeData[2].trim(), table.getDrawable(info));
+            }
+        }
+        assertEquals("unknown", -1, table.find("notes.unknownext", 6, 16)); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals("empty", -1, table.find("notes.", 6, 6)); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Method that checks that the table mapped from the data directory is the same
+     * that the compiled one.
+     *
+     * @throws Exception If test failed
+     * {@link MimeTypeTable#load(android.content.Context)}
+     */
+    @SmallTest
+    public void testLoad() throws Exception {
+        MimeTypeTable compiled = compile();
+        MimeTypeTable.load(getContext());
+        MimeTypeTable mapped = MimeTypeTable.load(getContext());
+        assertEquals("size", compiled.size(), mapped.size()); //$NON-NLS-1$
+        for (String name : NAMES) {
+            int start = FileHelper.getExtensionStart(name);
+            int expected = start == -1 ? -1 : compiled.find(name, start, name.length());
+            int entry = start == -1 ? -1 : mapped.find(name, start, name.length());
+            assertEquals("found " + name, expected != -1, entry != -1); //$NON-NLS-1$
+            if (entry != -1) {
+                assertEquals("mime type " + name, //$NON-NLS-1$
+                        compiled.getMimeType(compiled.getInfo(expected, 0)),
+                        mapped.getMimeType(mapped.getInfo(entry, 0)));
+            }
+        }
+    }
+
+    /**
+     * Method that compares the time of load the database and look up a million of names
+     * parsing the raw database into maps and with the compiled table.
+     *
+     * @throws Exception If test failed
+     * {@link MimeTypeTable#find(CharSequence, int, int)}
+     */
+    @LargeTest
+    public void testLookupBenchmark() throws Exception {
+        final int names = 1000000;
+
+        long start = System.currentTimeMillis();
+        Map<String, List<String>> legacy = parse(loadProperties());
+        long legacyLoadTime = System.currentTimeMillis() - start;
+
+        MimeTypeTable.load(getContext());
+        start = System.currentTimeMillis();
+        MimeTypeTable table = MimeTypeTable.load(getContext());
+        long mapTime = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        int legacyFound = 0;
+        for (int i = 0; i < names; i++) {
+            String ext = FileHelper.getExtension(NAMES[i % NAMES.length]);
+            if (ext != null && legacy.get(ext.toLowerCase(Locale.ROOT)) != null) {
+                legacyFound++;
+            }
+        }
+        long legacyTime = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        int found = 0;
+        for (int i = 0; i < names; i++) {
+            String name = NAMES[i % NAMES.length];
+            int pos = FileHelper.getExtensionStart(name);
+            if (pos != -1 && table.find(name, pos, name.length()) != -1) {
+                found++;
+            }
+        }
+        long tableTime = System.currentTimeMillis() - start;
+        assertTrue("found", found >= legacyFound); //$NON-NLS-1$
+
+        Log.i(TAG, String.format(
+                "Load: parsed %d ms, mapped %d ms. Lookup of %d names: " + //$NON-NLS-1$
+                "maps %d ms, compiled table %d ms", //$NON-NLS-1$
+                Long.valueOf(legacyLoadTime), Long.valueOf(mapTime), Integer.valueOf(names),
+                Long.valueOf(legacyTime), Long.valueOf(tableTime)));
+    }
+
+    private Properties loadProperties() throws Exception {
+        InputStream is = getContext().getResources().openRawResource(R.raw.mime_types);
+        try {
+            Properties mimeTypes = new Properties();
+            mimeTypes.load(is);
+            return mimeTypes;
+        } finally {
+            is.close();
+        }
+    }
+
+    private MimeTypeTable compile() throws Exception {
+        InputStream is = getContext().getResources().openRawResource(R.raw.mime_types);
+        try {
+            return MimeTypeTable.compile(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * The mime types of every extension, parsed as the legacy loader did.
+     */
+    private static Map<String, List<String>> parse(Properties mimeTypes) {
+        Map<String, List<String>> extensions = new HashMap<String, List<String>>();
+        Enumeration<Object> e = mimeTypes.keys();
+        while (e.hasMoreElements()) {
+            String extension = (String)e.nextElement();
+            List<String> infos = new ArrayList<String>();
+            for (String theData : mimeTypes.getProperty(extension).split(",")) { //$NON-NLS-1$
+                infos.add(theData.split("\\|")[1].trim()); //$NON-NLS-1$
+            }
+            extensions.put(extension, infos);
+        }
+        return extensions;
+    }
+}